@@ -1,12 +1,18 @@
 package com.github.didmar.jrl.agent;
 
+import java.util.Arrays;
+
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
+import com.github.didmar.jrl.environment.ParallelRollouts;
 import com.github.didmar.jrl.policy.ParametricPolicy;
 import com.github.didmar.jrl.utils.CEParametersDistribution;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Cross Entropy Policy Search is similar to the Finite Difference method, 
@@ -18,6 +24,11 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public final class CEPS extends LearningAgent {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("CEPS.updates");
+	/** Number of candidates eliminated early by {@link #raceUpdate} */
+	private static final Counter eliminatedCounter = Metrics.counter("CEPS.eliminatedCandidates");
+
 	/** How many policies we draw from the prior and evaluate */
 	private final int nPolEvalPerUpdate;
 	/** How many episodes are used to evaluate one policy */
@@ -57,6 +68,10 @@ public final class CEPS extends LearningAgent {
 	private int e;
 	/** Step counter */
 	private int t;
+	// arrays used by raceUpdate, allocated on first use
+	private @Nullable double[][] raceR = null;
+	private @Nullable int[] alive = null;
+	private @Nullable double[] selectionR = null;
 	
 	@SuppressWarnings("null")
 	public CEPS(ParametricPolicy pol, int nPolEvalPerUpdate, int nEpiPerPolEval,
@@ -222,24 +237,7 @@ public final class CEPS extends LearningAgent {
         		s /= nEpiPerPolEval;
         		meanR[i] = s;
         	}
-        	// Get the index of the best sample parameters
-        	final int indBest = paramsDist.computeParamsDistribution(meanR,
-        			thetas,	nSelectedPol, noise, greedy);
-        	// Copy the best sample parameters
-        	System.arraycopy(thetas[indBest], 0, bestTheta, 0, n);
-        	// Bound the mean of the updated distribution 
-        	((ParametricPolicy)pol).boundParams(paramsDist.getMean());
-        	// Draw new parameters for the next iteration,
-        	// according to the updated distribution
-        	paramsDist.drawParameters(thetas);
-        	// Bound these parameters  
-    		for(int i=0; i<nPolEvalPerUpdate; i++) {
-    			((ParametricPolicy)pol).boundParams(thetas[i]);
-    		}
-        	// Reuse the best params ?
-        	if(reuseTheBest) {
-        		System.arraycopy(bestTheta, 0, thetas[0], 0, bestTheta.length);
-        	}
+        	updateDistribution(meanR);
     		e = 0;
     		ArrUtils.zeros(R);
         }
@@ -248,6 +246,130 @@ public final class CEPS extends LearningAgent {
         ((ParametricPolicy)pol).setParams(paramsDist.getMean());
 	}
 
+	/**
+	 * Updates the parameters distribution given the performance of each
+	 * candidate, then draws the candidates for the next iteration.
+	 * @param perf  performance of each candidate, will be sorted
+	 */
+	private final void updateDistribution(double[] perf) {
+		updatesCounter.increment();
+		// Get the index of the best sample parameters
+		final int indBest = paramsDist.computeParamsDistribution(perf,
+				thetas,	nSelectedPol, noise, greedy);
+		// Copy the best sample parameters
+		System.arraycopy(thetas[indBest], 0, bestTheta, 0, n);
+		// Bound the mean of the updated distribution
+		((ParametricPolicy)pol).boundParams(paramsDist.getMean());
+		// Draw new parameters for the next iteration,
+		// according to the updated distribution
+		paramsDist.drawParameters(thetas);
+		// Bound these parameters
+		for(int i=0; i<nPolEvalPerUpdate; i++) {
+			((ParametricPolicy)pol).boundParams(thetas[i]);
+		}
+		// Reuse the best params ?
+		if(reuseTheBest) {
+			System.arraycopy(bestTheta, 0, thetas[0], 0, bestTheta.length);
+		}
+	}
+
+	/**
+	 * Performs a whole update by evaluating the candidates concurrently
+	 * with the given rollouts, instead of listening to an environment.
+	 * Hopeless candidates are eliminated early by successive halving : the
+	 * candidates are first evaluated on a few episodes, then only the best
+	 * <tt>1/eta</tt> of them get <tt>eta</tt> times more episodes, and so on
+	 * until <tt>nSelectedPol</tt> candidates remain. The last ones always get
+	 * the full <tt>nEpiPerPolEval</tt> episodes, so with
+	 * <tt>nEpiPerPolEval &lt; eta</tt> there is no elimination at all.
+	 * <p>
+	 * Eliminated candidates keep the mean performance of their partial
+	 * evaluation in {@link #getMeanR()}, but are never selected.
+	 * @param rollouts  runs the episodes, its policies must have the same
+	 *                  parameters size as this agent's
+	 * @param eta       elimination rate, must be at least 2
+	 * @return the number of episodes performed
+	 */
+	public final int raceUpdate(ParallelRollouts rollouts, int eta) {
+		if(eta < 2) {
+			throw new IllegalArgumentException("eta must be at least 2");
+		}
+		if(e != 0) {
+			throw new IllegalStateException(
+					"Cannot race in the middle of a sequential update");
+		}
+		if(raceR == null) {
+			raceR = new double[nPolEvalPerUpdate][nEpiPerPolEval];
+			alive = new int[nPolEvalPerUpdate];
+			selectionR = new double[nPolEvalPerUpdate];
+		}
+		final double[][] raceR = this.raceR;
+		final int[] alive = this.alive;
+		final double[] selectionR = this.selectionR;
+		assert raceR != null && alive != null && selectionR != null;
+
+		int nAlive = nPolEvalPerUpdate;
+		for(int i=0; i<nAlive; i++) {
+			alive[i] = i;
+		}
+		// Number of eliminations, until nSelectedPol candidates remain or the
+		// number of episodes per candidate cannot grow anymore
+		int nRounds = 0;
+		for(int c=nAlive, b=eta; c>nSelectedPol && b<=nEpiPerPolEval;
+				c=Math.max(nSelectedPol, (c+eta-1)/eta), b*=eta) {
+			nRounds++;
+		}
+		int nbEpi = 0;
+		int done = 0;
+		for(int round=0; round<=nRounds; round++) {
+			// Episodes per candidate grow by eta each round, up to nEpiPerPolEval
+			int target = nEpiPerPolEval;
+			for(int i=round; i<nRounds; i++) {
+				target /= eta;
+			}
+			rollouts.evaluate(thetas, alive, nAlive, done, target, raceR);
+			nbEpi += nAlive * (target - done);
+			done = target;
+			for(int k=0; k<nAlive; k++) {
+				final int i = alive[k];
+				double s = 0.;
+				for(int j=0; j<done; j++) {
+					s += raceR[i][j] * weightR[j];
+				}
+				meanR[i] = s / done;
+			}
+			if(round < nRounds) {
+				// Keep the best 1/eta of the candidates
+				sortByMeanR(alive, nAlive);
+				final int nKept = Math.max(nSelectedPol, (nAlive+eta-1)/eta);
+				eliminatedCounter.add(nAlive - nKept);
+				nAlive = nKept;
+			}
+		}
+		// Eliminated candidates rank below all the remaining ones
+		Arrays.fill(selectionR, Double.NEGATIVE_INFINITY);
+		for(int k=0; k<nAlive; k++) {
+			selectionR[alive[k]] = meanR[alive[k]];
+		}
+		updateDistribution(selectionR);
+		// Use the mean of the policy parameters distribution
+		((ParametricPolicy)pol).setParams(paramsDist.getMean());
+		return nbEpi;
+	}
+
+	/** Sorts the first n indices by decreasing mean performance */
+	private final void sortByMeanR(int[] indices, int n) {
+		for(int k=1; k<n; k++) {
+			final int i = indices[k];
+			int l = k-1;
+			while(l >= 0 && meanR[indices[l]] < meanR[i]) {
+				indices[l+1] = indices[l];
+				l--;
+			}
+			indices[l+1] = i;
+		}
+	}
+
 	public final CEParametersDistribution getParamsDist() {
 		return paramsDist;
 	}
@@ -0,0 +1,376 @@
+package com.github.didmar.jrl.agent;
+
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.policy.ParametricPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.cma.CMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.CMAOptions;
+import com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.LMCMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.SepCMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Policy search with the Covariance Matrix Adaptation Evolution Strategy
+ * (CMA-ES) over the policy parameters. Each update samples a population of
+ * <tt>nPolEvalPerUpdate</tt> policy parameters, evaluates each of them on
+ * <tt>nEpiPerPolEval</tt> episodes, and adapts the search distribution so
+ * that it favors the parameters with the highest discounted reward.
+ * <p>
+ * Like {@link CEPS}, the agent learns either by listening to an
+ * environment, or by evaluating whole populations concurrently with
+ * {@link #parallelUpdate(ParallelRollouts)}.
+ * <p>
+ * When the strategy meets one of its termination criteria, it can be
+ * restarted from the initial distribution with an increasing population
+ * size (IPOP-CMA-ES, Auger and Hansen 2005), or alternately with a large
+ * population and with a small population and step size (BIPOP-CMA-ES,
+ * Hansen 2009). Without restarts, the search goes on with the current
+ * distribution.
+ * <p>
+ * The covariance model is chosen with {@link CMAOptions#covarianceModel}: the
+ * full covariance matrix costs O(n^2) per sampled policy and O(n^3) per
+ * eigendecomposition, which is only affordable for a few hundred
+ * parameters, while the separable and limited memory models cost O(n) and
+ * O(n m).
+ *
+ * @author Didier Marin
+ */
+public final class CMAESPS extends LearningAgent {
+
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("CMAESPS.updates");
+	/** Number of restarts performed by all the instances */
+	private static final Counter restartsCounter = Metrics.counter("CMAESPS.restarts");
+
+	/** Restart strategies, applied when the termination criteria are met */
+	public enum RestartStrategy {
+		/** No restart */
+		NONE,
+		/** Restart with a population size doubled each time */
+		IPOP,
+		/** Alternate large population restarts as in IPOP and small
+		 * population restarts with a smaller initial step size, spending
+		 * about the same number of episodes in both regimes */
+		BIPOP;
+	}
+
+	/** How many episodes are used to evaluate one policy */
+	private final int nEpiPerPolEval;
+	/** Discount factor */
+	private final DiscountFactor gamma;
+	/** Initial policy parameters, starting point of every restart */
+	private final double[] thetaInit;
+	/** Initial std dev of the policy parameters */
+	private final double[] sigmaInit;
+	/** Population size of the first run */
+	private final int defaultPopSize;
+	/** Restart strategy */
+	private final RestartStrategy restartStrategy;
+	/** Maximum number of restarts */
+	private final int maxRestarts;
+	/** Options of every run, including the covariance model */
+	private final CMAOptions options;
+	/** Length of the policy parameters */
+	private final int n;
+	/** Bounded mean of the search distribution */
+	private final double[] meanTheta;
+
+	/** Current run of the evolution strategy */
+	private ICMAEvolutionStrategy cma;
+	/** Population size of the current run */
+	private int popSize;
+	/** The bounded policy parameters of the current population */
+	private double[][] thetas;
+	/** Sum of the performances of each policy of the current population */
+	private double[] R;
+	/** Function values given to the strategy, which minimizes them */
+	private double[] fitness;
+	/** Performance of each episode for parallelUpdate, allocated on first
+	 * use and when the population size changes */
+	private @Nullable double[][] parR = null;
+
+	/** Number of restarts performed so far */
+	private int nRestarts = 0;
+	/** Number of large population restarts performed so far, for BIPOP */
+	private int nLargeRestarts = 0;
+	/** Indicates if the current run is a large population one, for BIPOP */
+	private boolean largeRun = true;
+	/** Episodes spent in the large and small population runs, for BIPOP */
+	private long largeBudget = 0;
+	private long smallBudget = 0;
+
+	/** Episode counter */
+	private int e = 0;
+	/** Discount of the current step */
+	private double discount = 1.;
+
+	/**
+	 * @param pol                the policy whose parameters are searched,
+	 *                           its current parameters are the initial mean
+	 * @param nPolEvalPerUpdate  population size of the first run
+	 * @param nEpiPerPolEval     number of episodes to evaluate one policy
+	 * @param gamma              discount factor
+	 * @param sigma              initial std dev of the policy parameters
+	 * @param restartStrategy    what to do when the termination criteria
+	 *                           are met
+	 * @param maxRestarts        maximum number of restarts
+	 * @param options            options of the evolution strategy, including
+	 *                           its covariance model and termination criteria
+	 */
+	public CMAESPS(ParametricPolicy pol, int nPolEvalPerUpdate,
+			int nEpiPerPolEval, DiscountFactor gamma, double[] sigma,
+			RestartStrategy restartStrategy, int maxRestarts,
+			CMAOptions options) {
+		super(pol);
+		if(nPolEvalPerUpdate < 2) {
+			throw new IllegalArgumentException("nPolEvalPerUpdate must be at least 2");
+		}
+		if(nEpiPerPolEval <= 0) {
+			throw new IllegalArgumentException("nEpiPerPolEval must be greater than 0");
+		}
+		if(sigma.length != pol.getParamsSize()) {
+			throw new IllegalArgumentException("sigma must have the length of the policy parameters");
+		}
+		if(maxRestarts < 0) {
+			throw new IllegalArgumentException("maxRestarts must be positive");
+		}
+		this.nEpiPerPolEval = nEpiPerPolEval;
+		this.gamma = gamma;
+		this.restartStrategy = restartStrategy;
+		this.maxRestarts = maxRestarts;
+		this.options = options;
+		thetaInit = ArrUtils.cloneVec(pol.getParams());
+		sigmaInit = ArrUtils.cloneVec(sigma);
+		n = thetaInit.length;
+		defaultPopSize = nPolEvalPerUpdate;
+		meanTheta = ArrUtils.cloneVec(thetaInit);
+		startRun(nPolEvalPerUpdate, 1.);
+	}
+
+	/**
+	 * Uses a full covariance matrix and the default termination criteria.
+	 */
+	public CMAESPS(ParametricPolicy pol, int nPolEvalPerUpdate,
+			int nEpiPerPolEval, DiscountFactor gamma, double[] sigma,
+			RestartStrategy restartStrategy, int maxRestarts) {
+		this(pol, nPolEvalPerUpdate, nEpiPerPolEval, gamma, sigma,
+				restartStrategy, maxRestarts, defaultOptions());
+	}
+
+	/**
+	 * Variant without restarts.
+	 */
+	public CMAESPS(ParametricPolicy pol, int nPolEvalPerUpdate,
+			int nEpiPerPolEval, DiscountFactor gamma, double[] sigma) {
+		this(pol, nPolEvalPerUpdate, nEpiPerPolEval, gamma, sigma,
+				RestartStrategy.NONE, 0);
+	}
+
+	/**
+	 * Starts a new run of the evolution strategy from the initial parameters.
+	 * @param lambda       the population size
+	 * @param sigmaFactor  factor of the initial std dev
+	 */
+	@SuppressWarnings("null")
+	private final void startRun(int lambda, double sigmaFactor) {
+		final double[] sigma0 = new double[n];
+		for(int i=0; i<n; i++) {
+			sigma0[i] = sigmaFactor * sigmaInit[i];
+		}
+		final Random rand = new Random(RandUtils.nextLong());
+		switch(options.covarianceModel) {
+		case SEPARABLE:
+			cma = new SepCMAEvolutionStrategy(options, lambda, thetaInit,
+					sigma0, rand);
+			break;
+		case LIMITED_MEMORY:
+			cma = new LMCMAEvolutionStrategy(options, lambda, thetaInit,
+					sigma0, rand);
+			break;
+		default:
+			final CMAEvolutionStrategy full = new CMAEvolutionStrategy();
+			full.options = options;
+			full.setRand(rand);
+			full.parameters.setPopulationSize(lambda);
+			full.init(n, thetaInit, sigma0);
+			cma = full;
+		}
+		popSize = lambda;
+		thetas = new double[lambda][n];
+		R = new double[lambda];
+		fitness = new double[lambda];
+		samplePopulation();
+	}
+
+	/** Draws the next population and bounds it into thetas */
+	private final void samplePopulation() {
+		final double[][] pop = cma.samplePopulation();
+		for(int k=0; k<popSize; k++) {
+			System.arraycopy(pop[k], 0, thetas[k], 0, n);
+			((ParametricPolicy)pol).boundParams(thetas[k]);
+		}
+		ArrUtils.zeros(R);
+	}
+
+	/**
+	 * Updates the strategy with the performances in R, restarts it if
+	 * needed, and samples the next population.
+	 */
+	private final void update() {
+		for(int k=0; k<popSize; k++) {
+			fitness[k] = - R[k] / nEpiPerPolEval;
+		}
+		cma.updateDistribution(fitness);
+		updatesCounter.increment();
+		if(largeRun) {
+			largeBudget += popSize * nEpiPerPolEval;
+		} else {
+			smallBudget += popSize * nEpiPerPolEval;
+		}
+		if(restartStrategy != RestartStrategy.NONE && nRestarts < maxRestarts
+				&& cma.isStopConditionMet()) {
+			restart();
+		} else {
+			samplePopulation();
+		}
+		// Use the mean of the search distribution
+		System.arraycopy(cma.getMeanX(), 0, meanTheta, 0, n);
+		((ParametricPolicy)pol).boundParams(meanTheta);
+		((ParametricPolicy)pol).setParams(meanTheta);
+	}
+
+	private final void restart() {
+		nRestarts++;
+		restartsCounter.increment();
+		if(restartStrategy == RestartStrategy.BIPOP && smallBudget < largeBudget) {
+			// Small population with a step size drawn log-uniformly in
+			// [1e-2,1] times the initial one
+			largeRun = false;
+			final double u = RandUtils.nextDouble();
+			final double largePopSize = defaultPopSize * Math.pow(2, nLargeRestarts);
+			final int lambda = Math.max(2, (int) Math.floor(defaultPopSize
+					* Math.pow(0.5 * largePopSize / defaultPopSize, u*u)));
+			startRun(lambda, Math.pow(10., -2.*u));
+		} else {
+			largeRun = true;
+			nLargeRestarts++;
+			startRun(defaultPopSize << nLargeRestarts, 1.);
+		}
+	}
+
+	/**
+	 * Performs a whole update by evaluating the population concurrently with
+	 * the given rollouts, instead of listening to an environment.
+	 * @param rollouts  runs the episodes, its policies must have the same
+	 *                  parameters size as this agent's
+	 */
+	public final void parallelUpdate(ParallelRollouts rollouts) {
+		if(e != 0) {
+			throw new IllegalStateException(
+					"Cannot perform a parallel update in the middle of a sequential update");
+		}
+		double[][] parR = this.parR;
+		if(parR == null || parR.length != popSize) {
+			parR = new double[popSize][nEpiPerPolEval];
+			this.parR = parR;
+		}
+		rollouts.evaluate(thetas, nEpiPerPolEval, parR);
+		for(int k=0; k<popSize; k++) {
+			R[k] = ArrUtils.sum(parR[k]);
+		}
+		update();
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.environment.EnvironmentListener#newEpisode(double[], int)
+	 */
+	public final void newEpisode(@NonNull double[] x0, int maxT) {
+		// Use the parameters of the current candidate for this episode
+		((ParametricPolicy)pol).setParams(thetas[e / nEpiPerPolEval]);
+		discount = 1.;
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.environment.EnvironmentListener#receiveSample(double[], double[], double, double[])
+	 */
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u,
+									@NonNull double[] xn,
+									double r,
+									boolean isTerminal) {
+		// Add this reward to the discounted reward of the candidate
+		R[e / nEpiPerPolEval] += discount * r;
+		discount *= gamma.value;
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.environment.EnvironmentListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		e++;
+		if(e == popSize * nEpiPerPolEval) {
+			e = 0;
+			update();
+		} else {
+			// Use the mean of the search distribution between episodes
+			((ParametricPolicy)pol).setParams(meanTheta);
+		}
+	}
+
+	/**
+	 * Returns the current run of the evolution strategy.
+	 * @return the current run of the evolution strategy
+	 */
+	public final ICMAEvolutionStrategy getStrategy() {
+		return cma;
+	}
+
+	/**
+	 * Returns the bounded mean of the search distribution.
+	 * @return the bounded mean of the search distribution
+	 */
+	public final double[] getMean() {
+		return meanTheta;
+	}
+
+	/**
+	 * Returns the policy parameters of the current population.
+	 * @return the policy parameters of the current population
+	 */
+	public final double[][] getThetas() {
+		return thetas;
+	}
+
+	/** Population size of the current run */
+	public final int getPopulationSize() {
+		return popSize;
+	}
+
+	/** Number of restarts performed so far */
+	public final int getNbRestarts() {
+		return nRestarts;
+	}
+
+	/** Default options, without console nor file output */
+	private static CMAOptions defaultOptions() {
+		final CMAOptions options = new CMAOptions();
+		options.verbosity = -1;
+		options.writeDisplayToFile = 0;
+		return options;
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "CMA-ES Policy Search";
+	}
+}
@@ -1,6 +1,6 @@
 package com.github.didmar.jrl.agent;
 
-import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.environment.DiscreteActionListener;
 import com.github.didmar.jrl.policy.Policy;
 
 /**
@@ -9,10 +9,20 @@ import com.github.didmar.jrl.policy.Policy;
  * 
  * @author Didier Marin
  */
-public abstract class LearningAgent extends PolicyAgent implements EnvironmentListener {
+public abstract class LearningAgent extends PolicyAgent implements DiscreteActionListener {
 
 	public LearningAgent(final Policy pol) {
 		super(pol);
 	}
 
+	/**
+	 * Ignores the action index by default, and notifies the sample through
+	 * {@link #receiveSample(double[], double[], double[], double, boolean)}.
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	public void receiveSample(double[] x, double[] u, int uIndex, double[] xn,
+			double r, boolean isTerminal) {
+		receiveSample(x, u, xn, r, isTerminal);
+	}
+
 }
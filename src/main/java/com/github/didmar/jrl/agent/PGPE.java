@@ -1,20 +1,35 @@
 package com.github.didmar.jrl.agent;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
+import com.github.didmar.jrl.environment.ParallelRollouts;
 import com.github.didmar.jrl.policy.ParametricPolicy;
 import com.github.didmar.jrl.stepsize.StepSize;
 import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.ImportanceWeighting;
 import com.github.didmar.jrl.utils.PGPEParametersDistribution;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Policy Gradient with Parameter-based exploration
+ * <p>
+ * Optionally, the sample parameters of the last updates and their
+ * performances are kept in a bounded history, and reused in the next
+ * updates: they are weighted by importance sampling, according to their
+ * probability under the current distribution compared to the distribution
+ * they were drawn from. Each update thus uses more samples for the same
+ * number of episodes.
  * 
  * @author Didier Marin
  */
 public final class PGPE extends LearningAgent {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("PGPE.updates");
+
 	/** Reward discount factor */
 	private final DiscountFactor gamma;
 	/** Number of sample episodes used for each update */
@@ -29,11 +44,54 @@ public final class PGPE extends LearningAgent {
 	private int e;
 	/** Step counter */
 	private int t;
-	
-	@SuppressWarnings("null")
+	// arrays used by symmetricUpdate, allocated on first use
+	private @Nullable double[][] eps = null;
+	private @Nullable double[][] symR = null;
+	private @Nullable double[] RPlus = null;
+	private @Nullable double[] RMinus = null;
+
+	/** Maximum number of past samples reused in each update, 0 if none */
+	private final int historySize;
+	/** How the past samples are weighted */
+	private final ImportanceWeighting weighting;
+	/** Past sample parameters, performances, and log densities under the
+	 * distribution they were drawn from, in a circular buffer */
+	private final double[][] histThetas;
+	private final double[] histR;
+	private final double[] histLogP;
+	/** Number of samples in the history */
+	private int histCount = 0;
+	/** Index in the history where the next sample is stored */
+	private int histNext = 0;
+	// arrays for temporary storage to avoid mem. alloc.
+	/** Used to store the current and past samples, and their weights */
+	private final double[][] allThetas;
+	private final double[] allR;
+	private final double[] logRatios;
+	private final double[] weights;
+	/** Used to store the log densities of the current sample parameters */
+	private final double[] logP;
+
 	public PGPE(ParametricPolicy pol, DiscountFactor gamma, int nEpiPerUpdate,
 			double[] sigma, double minSigma, StepSize stepSize) {
+		this(pol, gamma, nEpiPerUpdate, sigma, minSigma, stepSize, 0,
+				ImportanceWeighting.SELF_NORMALIZED);
+	}
+
+	/**
+	 * @param historySize  maximum number of past samples reused in each
+	 *                     update, in addition to the nEpiPerUpdate current
+	 *                     ones, or 0 to reuse none
+	 * @param weighting    how the past samples are weighted
+	 */
+	@SuppressWarnings("null")
+	public PGPE(ParametricPolicy pol, DiscountFactor gamma, int nEpiPerUpdate,
+			double[] sigma, double minSigma, StepSize stepSize,
+			int historySize, ImportanceWeighting weighting) {
 		super(pol);
+		if(historySize < 0) {
+			throw new IllegalArgumentException("historySize must be positive or zero");
+		}
 		this.gamma = gamma;
 		this.nEpiPerUpdate = nEpiPerUpdate;
 		paramsDist = new PGPEParametersDistribution(pol.getParams(), sigma,
@@ -48,6 +106,18 @@ public final class PGPE extends LearningAgent {
 		//meanR = new double[nEpiPerUpdate];
 		e = 0; // set the episode counter to zero
 		t = 0; // set the step counter to zero
+
+		this.historySize = historySize;
+		this.weighting = weighting;
+		final int n = pol.getParamsSize();
+		histThetas = new double[historySize][n];
+		histR = new double[historySize];
+		histLogP = new double[historySize];
+		allThetas = new double[nEpiPerUpdate + historySize][];
+		allR = new double[nEpiPerUpdate + historySize];
+		logRatios = new double[nEpiPerUpdate + historySize];
+		weights = new double[nEpiPerUpdate + historySize];
+		logP = new double[nEpiPerUpdate];
 	}
 	
 	/* (non-Javadoc)
@@ -83,7 +153,12 @@ public final class PGPE extends LearningAgent {
         if(e == nEpiPerUpdate) {
         	// Update the parameters distribution using an estimation of
         	// the performance gradient
-        	paramsDist.updateParamsDistribution(R, thetas);
+        	if(historySize > 0) {
+        		updateWithHistory();
+        	} else {
+        		paramsDist.updateParamsDistribution(R, thetas);
+        	}
+        	updatesCounter.increment();
         	// Bound the mean of the updated distribution 
         	((ParametricPolicy)pol).boundParams(paramsDist.getMean());
         	// Draw new parameters for the next iteration,
@@ -103,6 +178,107 @@ public final class PGPE extends LearningAgent {
         ((ParametricPolicy)pol).setParams(paramsDist.getMean());
 	}
 	
+	/**
+	 * Updates the parameters distribution with the current and past sample
+	 * parameters, weighted by importance sampling, then stores the current
+	 * ones in the history in place of the oldest ones.
+	 */
+	private final void updateWithHistory() {
+		int N = 0;
+		// The current samples were drawn from the current distribution
+		for(int i=0; i<nEpiPerUpdate; i++) {
+			allThetas[N] = thetas[i];
+			allR[N] = R[i];
+			logP[i] = paramsDist.logDensity(thetas[i]);
+			logRatios[N] = 0.;
+			N++;
+		}
+		for(int k=0; k<histCount; k++) {
+			allThetas[N] = histThetas[k];
+			allR[N] = histR[k];
+			logRatios[N] = paramsDist.logDensity(histThetas[k]) - histLogP[k];
+			N++;
+		}
+		weighting.computeWeights(logRatios, N, weights);
+		paramsDist.updateParamsDistribution(allR, allThetas, weights, N);
+		for(int i=0; i<nEpiPerUpdate; i++) {
+			System.arraycopy(thetas[i], 0, histThetas[histNext], 0,
+					thetas[i].length);
+			histR[histNext] = R[i];
+			histLogP[histNext] = logP[i];
+			histNext = (histNext + 1) % historySize;
+			histCount = Math.min(histCount + 1, historySize);
+		}
+	}
+
+	/**
+	 * Performs a whole update with symmetric sampling, evaluating the sample
+	 * parameters concurrently with the given rollouts instead of listening
+	 * to an environment. The <tt>nEpiPerUpdate</tt> episodes are made of
+	 * <tt>nEpiPerUpdate/2</tt> pairs of mirrored parameters
+	 * <tt>mean + eps</tt> and <tt>mean - eps</tt>, which gives a gradient
+	 * estimate of lower variance than independent samples. The history of
+	 * past samples, if any, is neither used nor updated.
+	 * @param rollouts          runs the episodes, its policies must have the
+	 *                          same parameters size as this agent's
+	 * @param normalizeRewards  if true, the performances are divided by
+	 *                          their std dev before estimating the gradient
+	 * @see PGPEParametersDistribution#updateParamsDistributionSymmetric(double[], double[], double[][], boolean)
+	 */
+	public final void symmetricUpdate(ParallelRollouts rollouts,
+			boolean normalizeRewards) {
+		if(nEpiPerUpdate % 2 != 0) {
+			throw new IllegalArgumentException(
+					"nEpiPerUpdate must be even for symmetric sampling");
+		}
+		if(e != 0) {
+			throw new IllegalStateException(
+					"Cannot perform a symmetric update in the middle of a sequential update");
+		}
+		final int nPairs = nEpiPerUpdate / 2;
+		final int n = paramsDist.getMean().length;
+		if(eps == null) {
+			eps = new double[nPairs][n];
+			symR = new double[nEpiPerUpdate][1];
+			RPlus = new double[nPairs];
+			RMinus = new double[nPairs];
+		}
+		final double[][] eps = this.eps;
+		final double[][] symR = this.symR;
+		final double[] RPlus = this.RPlus;
+		final double[] RMinus = this.RMinus;
+		assert eps != null && symR != null && RPlus != null && RMinus != null;
+
+		// Mirrored sample parameters, bounded for the rollouts only
+		final double[] mean = paramsDist.getMean();
+		paramsDist.drawPerturbations(eps);
+		for(int i=0; i<nPairs; i++) {
+			for(int j=0; j<n; j++) {
+				thetas[2*i][j]   = mean[j] + eps[i][j];
+				thetas[2*i+1][j] = mean[j] - eps[i][j];
+			}
+			((ParametricPolicy)pol).boundParams(thetas[2*i]);
+			((ParametricPolicy)pol).boundParams(thetas[2*i+1]);
+		}
+		rollouts.evaluate(thetas, 1, symR);
+		for(int i=0; i<nPairs; i++) {
+			RPlus[i] = symR[2*i][0];
+			RMinus[i] = symR[2*i+1][0];
+		}
+		paramsDist.updateParamsDistributionSymmetric(RPlus, RMinus, eps,
+				normalizeRewards);
+		updatesCounter.increment();
+		// Bound the mean of the updated distribution
+		((ParametricPolicy)pol).boundParams(paramsDist.getMean());
+		// Draw new parameters, in case the agent goes on sequentially
+		paramsDist.drawParameters(thetas);
+		for(int i=0; i<nEpiPerUpdate; i++) {
+			((ParametricPolicy)pol).boundParams(thetas[i]);
+		}
+		// Use the mean of the parameters distribution
+		((ParametricPolicy)pol).setParams(paramsDist.getMean());
+	}
+
 	public final PGPEParametersDistribution getParamsDist() {
 		return paramsDist;
 	}
@@ -1,5 +1,7 @@
 package com.github.didmar.jrl.agent;
 
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.policy.DiscreteActionPolicy;
 import com.github.didmar.jrl.policy.Policy;
 
 /**
@@ -11,6 +13,9 @@ public class PolicyAgent implements Agent {
 
 	/** The policy it takes actions from */
 	protected Policy pol;
+	/** Index of the last action taken in the set of actions of the policy,
+	 * if it is a {@link DiscreteActionPolicy} */
+	private int lastActionIndex = DiscreteActionListener.NO_ACTION_INDEX;
 
 	public PolicyAgent(Policy pol) {
 		if(pol == null) {
@@ -26,6 +31,20 @@ public class PolicyAgent implements Agent {
 		assert x != null;
 		
 		pol.computePolicyDistribution(x);
+		if(pol instanceof DiscreteActionPolicy) {
+			final DiscreteActionPolicy discretePol = (DiscreteActionPolicy) pol;
+			lastActionIndex = discretePol.drawActionIndex();
+			return discretePol.getActions()[lastActionIndex];
+		}
 	    return pol.drawAction();
 	}
+
+	/**
+	 * Returns the index of the last action taken in the set of actions of
+	 * the policy, or {@link DiscreteActionListener#NO_ACTION_INDEX} if the
+	 * policy is not a {@link DiscreteActionPolicy}.
+	 */
+	public final int getLastActionIndex() {
+		return lastActionIndex;
+	}
 }
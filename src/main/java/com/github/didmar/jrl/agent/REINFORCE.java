@@ -4,18 +4,31 @@ import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
 
-import com.github.didmar.jrl.environment.Logger;
-import com.github.didmar.jrl.evaluation.REINFORCEGradientEstimator;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.ParallelRollouts.ListenerFactory;
+import com.github.didmar.jrl.evaluation.ImportanceWeightedREINFORCEEstimator;
+import com.github.didmar.jrl.evaluation.OnlineGPOMDPEstimator;
+import com.github.didmar.jrl.evaluation.OnlineGradientEstimator;
+import com.github.didmar.jrl.evaluation.OnlineREINFORCEEstimator;
 import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+import com.github.didmar.jrl.policy.ParametricPolicy;
 import com.github.didmar.jrl.stepsize.StepSize;
 import com.github.didmar.jrl.utils.DiscountFactor;
-import com.github.didmar.jrl.utils.Episode;
 import com.github.didmar.jrl.utils.ParametricFunction;
 
 /**
  * Agent that implements the Episodic REINFORCE method with optimal baseline,
  * in the discounted reward case.
- * 
+ * <p>
+ * The gradient estimation is accumulated online while the episodes are
+ * running, see {@link OnlineREINFORCEEstimator}, so that the samples are
+ * not stored. Another likelihood ratio estimator can be given instead, such
+ * as {@link OnlineGPOMDPEstimator} which needs fewer episodes for the same
+ * accuracy, or {@link ImportanceWeightedREINFORCEEstimator} which reuses
+ * the episodes of the previous updates. The agent learns either by
+ * listening to an environment, or by running the episodes of a whole
+ * update concurrently with {@link #parallelUpdate(ParallelRollouts)}.
+ *
  * @author Didier Marin
  */
 public final class REINFORCE extends LearningAgent {
@@ -26,90 +39,155 @@ public final class REINFORCE extends LearningAgent {
 	private final int nEpiPerUpdate;
 	/** Length of the policy parameters vector */
 	private final int n;
-	/** This computes the REINFORCE estimation of the performance gradient */
-	private final REINFORCEGradientEstimator estimator;
-	/** a {@link jrl_testing.environment.Logger} that stores the sample episodes */
-	private final Logger log;
-	
+	/** This computes the estimation of the performance gradient */
+	private final OnlineGradientEstimator estimator;
+
 	// arrays for temporary storage to avoid mem. alloc.
-	/** Used to store the product of the learning rate alpha by the gradient
-	 * estimate dJ */
+	/** Used to store the gradient estimate dJ, then its product by the
+	 * learning rate alpha */
 	private final double[] alphaMultdJ;
-	
-	public REINFORCE(ILogDifferentiablePolicy pol, int xDim, int uDim,
-			StepSize stepSize, int nEpiPerUpdate, DiscountFactor gamma) {
+
+	/**
+	 * @param pol            the policy to learn
+	 * @param stepSize       learning step
+	 * @param nEpiPerUpdate  number of episodes to use for each policy update
+	 * @param estimator      estimator of the performance gradient of pol,
+	 *                       with no completed episode
+	 */
+	public REINFORCE(ILogDifferentiablePolicy pol, StepSize stepSize,
+			int nEpiPerUpdate, OnlineGradientEstimator estimator) {
 		super(pol);
+		if(nEpiPerUpdate <= 0) {
+			throw new IllegalArgumentException("nEpiPerUpdate must be greater than 0");
+		}
 		this.stepSize = stepSize;
-        this.nEpiPerUpdate = nEpiPerUpdate;
-        // assert this.nEpiPerUpdate > 0
-        n = pol.getParamsSize(); // Number of policy (and advantage approximation) parameters
-        estimator = new REINFORCEGradientEstimator(pol,gamma,nEpiPerUpdate);
-        log = new Logger(xDim,uDim); // Use a logger to keep the samples
-        
-        // init the arrays for temporary storage
-        alphaMultdJ = new double[n];
+		this.nEpiPerUpdate = nEpiPerUpdate;
+		this.estimator = estimator;
+		n = pol.getParamsSize(); // Number of policy parameters
+
+		// init the arrays for temporary storage
+		alphaMultdJ = new double[n];
+	}
+
+	/**
+	 * Uses the Episodic REINFORCE estimator with optimal baseline.
+	 */
+	public REINFORCE(ILogDifferentiablePolicy pol, StepSize stepSize,
+			int nEpiPerUpdate, DiscountFactor gamma) {
+		this(pol, stepSize, nEpiPerUpdate,
+				new OnlineREINFORCEEstimator(pol, gamma));
+	}
+
+	/**
+	 * @deprecated the samples are not stored anymore, so xDim and uDim are
+	 *             not needed, use
+	 *             {@link #REINFORCE(ILogDifferentiablePolicy, StepSize, int, DiscountFactor)}
+	 */
+	@Deprecated
+	public REINFORCE(ILogDifferentiablePolicy pol, int xDim, int uDim,
+			StepSize stepSize, int nEpiPerUpdate, DiscountFactor gamma) {
+		this(pol, stepSize, nEpiPerUpdate, gamma);
 	}
-	
+
 	/**
-	 * Propagate the notification to the logger responsible of storing the samples.
-	 * @see jrl_testing.environment.EnvironmentListener#newEpisode(double[], int)
+	 * Propagate the notification to the gradient estimator.
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#newEpisode(double[], int)
 	 */
 	public final void newEpisode(@NonNull final double[] x0, int maxT) {
-		log.newEpisode(x0,maxT);
+		estimator.newEpisode(x0,maxT);
 	}
 
 	/**
-	 * Propagate the notification to the logger responsible of storing the samples.
-	 * @see jrl_testing.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
+	 * Propagate the notification to the gradient estimator.
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
 	 */
 	public final void receiveSample(@NonNull final double[] x,
 									@NonNull final double[] u,
 									@NonNull final double[] xn,
 									double r, boolean isTerminal) {
-		log.receiveSample(x,u,xn,r, false);
+		estimator.receiveSample(x,u,xn,r,isTerminal);
+	}
+
+	/**
+	 * Propagate the notification to the gradient estimator.
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	@Override
+	public final void receiveSample(@NonNull final double[] x,
+									@NonNull final double[] u, int uIndex,
+									@NonNull final double[] xn,
+									double r, boolean isTerminal) {
+		estimator.receiveSample(x,u,uIndex,xn,r,isTerminal);
 	}
 
 	/**
-	 * Propagate the notification to the logger responsible of storing the
-	 * samples and, if the required number of sample episodes is matched,
-	 * perform a policy update.
-	 * @see jrl_testing.environment.EnvironmentListener#endEpisode()
+	 * Propagate the notification to the gradient estimator and, if the
+	 * required number of sample episodes is matched, perform a policy update.
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#endEpisode()
 	 */
 	public final void endEpisode() {
-		log.endEpisode();
-        // Test if we reached the number of episode needed for an update
-        if(log.getNbEpisodes() == nEpiPerUpdate) {
-            // Update the step-size
-            stepSize.updateStep();
-            // Get the episodes from the logger
-            final List<Episode> episodes = log.getEpisodes();
-            // Compute the REINFORCE gradient estimation
-            try {
-            	@NonNull final double[] dJ
-            		= estimator.computeGradientEstimation(episodes);
-				// Compute the policy parameters update
-	            double alpha = stepSize.getStep(); // Get the current learning rate
-	            for(int i=0; i<n; i++) {
-	            	// Multiply the gradient estimation by the learning rate
-	            	alphaMultdJ[i] = alpha * dJ[i];
-	            }
-	            // Update the policy parameters
-	            ((ParametricFunction) pol).updateParams( alphaMultdJ );
-				// Reset the logger since we don't want to reuse these episodes
-	            log.reset();
-            } catch (Exception e) {
-				e.printStackTrace();
-				System.exit(0);
-			}
-        }
+		estimator.endEpisode();
+		// Test if we reached the number of episode needed for an update
+		if(estimator.getNbEpisodes() == nEpiPerUpdate) {
+			update();
+		}
+	}
+
+	/**
+	 * Performs a whole update by running the episodes concurrently with the
+	 * given rollouts, instead of listening to an environment. Each worker
+	 * accumulates the gradient estimation of its own episodes, and the
+	 * partial sums are then combined.
+	 * @param rollouts  runs the episodes, its policies must be
+	 *                  {@link ILogDifferentiablePolicy} with the same
+	 *                  parameters size as this agent's
+	 */
+	public final void parallelUpdate(ParallelRollouts rollouts) {
+		if(estimator.getNbEpisodes() != 0) {
+			throw new IllegalStateException(
+					"Cannot perform a parallel update in the middle of a sequential update");
+		}
+		final List<OnlineGradientEstimator> partials = rollouts.interact(
+				((ParametricPolicy) pol).getParams(), nEpiPerUpdate,
+				new ListenerFactory<OnlineGradientEstimator>() {
+					public OnlineGradientEstimator newListener(
+							ParametricPolicy workerPol) {
+						if(!(workerPol instanceof ILogDifferentiablePolicy)) {
+							throw new IllegalArgumentException(
+									"The policies of the rollouts must be log-differentiable");
+						}
+						return estimator.newInstance(
+								(ILogDifferentiablePolicy) workerPol);
+					}
+				});
+		for(OnlineGradientEstimator partial : partials) {
+			estimator.add(partial);
+		}
+		update();
+	}
+
+	/** Updates the policy parameters with the gradient estimation */
+	private final void update() {
+		// Update the step-size
+		stepSize.updateStep();
+		// Compute the gradient estimation
+		estimator.computeGradientEstimation(alphaMultdJ);
+		// Compute the policy parameters update
+		final double alpha = stepSize.getStep(); // Get the current learning rate
+		for(int i=0; i<n; i++) {
+			// Multiply the gradient estimation by the learning rate
+			alphaMultdJ[i] *= alpha;
+		}
+		// Update the policy parameters
+		((ParametricFunction) pol).updateParams( alphaMultdJ );
+		// End the batch, the estimator may keep these episodes for reuse
+		estimator.reset();
 	}
 
 	@Override
 	@NonNull
 	public final String toString() {
-		return "REINFORCE";
+		return estimator.toString();
 	}
-	
-	
 
 }
@@ -0,0 +1,282 @@
+package com.github.didmar.jrl.agent;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.evaluation.OnlineGradientEstimator;
+import com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy;
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+import com.github.didmar.jrl.stepsize.StepSize;
+import com.github.didmar.jrl.utils.ParametricFunction;
+import com.github.didmar.jrl.utils.array.ConjugateGradient;
+import com.github.didmar.jrl.utils.array.ConjugateGradient.LinearOperator;
+import com.github.didmar.jrl.utils.array.MatKernels;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Truncated Natural Policy Gradient, see Kakade 2002 "A natural policy
+ * gradient" and Duan et al. 2016 "Benchmarking deep reinforcement learning
+ * for continuous control".
+ * <p>
+ * The vanilla performance gradient g is estimated by an
+ * {@link OnlineGradientEstimator}, and the natural gradient F^-1 g is
+ * obtained by a few iterations of conjugate gradient. The Fisher information
+ * matrix F of the trajectory distribution is never formed: its products
+ * with a vector v are estimated from the log-policy derivatives psi_t of
+ * the samples of the update as
+ * <pre>
+ * F v = 1/N sum_t psi_t (psi_t . v) + lambda v
+ * </pre>
+ * where N is the number of episodes, and lambda is <tt>damping</tt> times
+ * the mean of the diagonal of F, so that the damping does not depend on the
+ * scale of the log-policy derivatives. Unlike
+ * {@link com.github.didmar.jrl.agent.ac.NAC} and
+ * {@link com.github.didmar.jrl.agent.ac.KNAC}, which keep (m+n)^2 matrices
+ * over the compatible features, the memory is thus O(k n) for k samples and
+ * n policy parameters.
+ * <p>
+ * The natural gradient is either multiplied by a step size, or scaled so
+ * that the update has an approximate KL divergence of <tt>maxKL</tt>
+ * between the old and new trajectory distributions, which makes the step
+ * independent of the scale of the rewards.
+ *
+ * @author Didier Marin
+ */
+public final class TNPG extends LearningAgent {
+
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("TNPG.updates");
+	/** Relative tolerance on the residual of conjugate gradient */
+	private static final double CG_TOLERANCE = 1e-10;
+
+	/** Learning step, null if the step is KL-constrained */
+	private final @Nullable StepSize stepSize;
+	/** Approximate KL divergence of each update, if stepSize is null */
+	private final double maxKL;
+	/** Number of episodes to use for each policy update */
+	private final int nEpiPerUpdate;
+	/** This computes the estimation of the vanilla performance gradient */
+	private final OnlineGradientEstimator estimator;
+	/** Maximum number of conjugate gradient iterations */
+	private final int cgIterations;
+	/** Multiple of the identity added to the Fisher matrix, relative to the
+	 * mean of its diagonal */
+	private final double damping;
+	/** Multiple of the identity added to the Fisher matrix, for the current
+	 * update */
+	private double lambda = 0.;
+	/** Length of the policy parameters vector */
+	private final int n;
+	private final ConjugateGradient cg;
+	/** Products of the damped Fisher matrix with a vector */
+	private final LinearOperator fisher;
+
+	/** Log-policy derivatives of the samples of the current update, one
+	 * after the other */
+	private double[] scores;
+	/** Number of samples in scores */
+	private int k = 0;
+	/** Number of conjugate gradient iterations of the last update */
+	private int lastCGIterations = 0;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	/** Used to store the vanilla gradient */
+	private final double[] g;
+	/** Used to store the natural gradient, then the parameters update */
+	private final double[] d;
+	/** Used to store the product of the Fisher matrix and d */
+	private final double[] Fd;
+
+	/**
+	 * @param pol            the policy to learn
+	 * @param stepSize       learning step
+	 * @param nEpiPerUpdate  number of episodes to use for each policy update
+	 * @param estimator      estimator of the performance gradient of pol,
+	 *                       with no completed episode
+	 * @param cgIterations   maximum number of conjugate gradient iterations,
+	 *                       10 is usually enough
+	 * @param damping        multiple of the identity added to the Fisher
+	 *                       matrix, relative to the mean of its diagonal,
+	 *                       0.1 is a safe choice since the Fisher matrix
+	 *                       is poorly estimated for the rarely visited
+	 *                       states, and singular with fewer samples than
+	 *                       parameters
+	 */
+	public TNPG(ILogDifferentiablePolicy pol, StepSize stepSize,
+			int nEpiPerUpdate, OnlineGradientEstimator estimator,
+			int cgIterations, double damping) {
+		this(pol, stepSize, Double.NaN, nEpiPerUpdate, estimator,
+				cgIterations, damping);
+	}
+
+	/**
+	 * @param pol            the policy to learn
+	 * @param maxKL          approximate KL divergence between the trajectory
+	 *                       distributions before and after each update
+	 * @param nEpiPerUpdate  number of episodes to use for each policy update
+	 * @param estimator      estimator of the performance gradient of pol,
+	 *                       with no completed episode
+	 * @param cgIterations   maximum number of conjugate gradient iterations,
+	 *                       10 is usually enough
+	 * @param damping        multiple of the identity added to the Fisher
+	 *                       matrix, relative to the mean of its diagonal,
+	 *                       0.1 is a safe choice since the Fisher matrix
+	 *                       is poorly estimated for the rarely visited
+	 *                       states, and singular with fewer samples than
+	 *                       parameters
+	 */
+	public TNPG(ILogDifferentiablePolicy pol, double maxKL,
+			int nEpiPerUpdate, OnlineGradientEstimator estimator,
+			int cgIterations, double damping) {
+		this(pol, null, maxKL, nEpiPerUpdate, estimator, cgIterations,
+				damping);
+		if(!(maxKL > 0.)) {
+			throw new IllegalArgumentException("maxKL must be greater than 0");
+		}
+	}
+
+	private TNPG(ILogDifferentiablePolicy pol, @Nullable StepSize stepSize,
+			double maxKL, int nEpiPerUpdate, OnlineGradientEstimator estimator,
+			int cgIterations, double damping) {
+		super(pol);
+		if(nEpiPerUpdate <= 0) {
+			throw new IllegalArgumentException("nEpiPerUpdate must be greater than 0");
+		}
+		if(cgIterations <= 0) {
+			throw new IllegalArgumentException("cgIterations must be greater than 0");
+		}
+		if(damping < 0.) {
+			throw new IllegalArgumentException("damping must be positive or zero");
+		}
+		this.stepSize = stepSize;
+		this.maxKL = maxKL;
+		this.nEpiPerUpdate = nEpiPerUpdate;
+		this.estimator = estimator;
+		this.cgIterations = cgIterations;
+		this.damping = damping;
+		n = pol.getParamsSize();
+		cg = new ConjugateGradient(n);
+		scores = new double[64 * n];
+		g = new double[n];
+		d = new double[n];
+		Fd = new double[n];
+		fisher = new LinearOperator() {
+			public void apply(double[] v, double[] result) {
+				fisherProduct(v, result);
+			}
+		};
+	}
+
+	/**
+	 * Propagate the notification to the gradient estimator.
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#newEpisode(double[], int)
+	 */
+	public final void newEpisode(@NonNull final double[] x0, int maxT) {
+		estimator.newEpisode(x0, maxT);
+	}
+
+	/**
+	 * Propagate the notification to the gradient estimator, and store the
+	 * log-policy derivative of the sample.
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
+	 */
+	public final void receiveSample(@NonNull final double[] x,
+									@NonNull final double[] u,
+									@NonNull final double[] xn,
+									double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/**
+	 * Propagate the notification to the gradient estimator, and store the
+	 * log-policy derivative of the sample.
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	@Override
+	public final void receiveSample(@NonNull final double[] x,
+									@NonNull final double[] u, int uIndex,
+									@NonNull final double[] xn,
+									double r, boolean isTerminal) {
+		estimator.receiveSample(x, u, uIndex, xn, r, isTerminal);
+		if((k+1) * n > scores.length) {
+			scores = Arrays.copyOf(scores, 2 * scores.length);
+		}
+		final double[] dLogdTheta;
+		if(uIndex != DiscreteActionListener.NO_ACTION_INDEX
+				&& pol instanceof IDiscreteLogDifferentiablePolicy) {
+			dLogdTheta = ((IDiscreteLogDifferentiablePolicy) pol).dLogdTheta(x, uIndex);
+		} else {
+			dLogdTheta = ((ILogDifferentiablePolicy) pol).dLogdTheta(x, u);
+		}
+		System.arraycopy(dLogdTheta, 0, scores, k * n, n);
+		k++;
+	}
+
+	/**
+	 * Propagate the notification to the gradient estimator and, if the
+	 * required number of sample episodes is matched, perform a policy update.
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		estimator.endEpisode();
+		if(estimator.getNbEpisodes() == nEpiPerUpdate) {
+			update();
+		}
+	}
+
+	/** Updates the policy parameters with the natural gradient */
+	private final void update() {
+		estimator.computeGradientEstimation(g);
+		// The trace of F is the mean squared norm of the episodes scores
+		lambda = damping * MatKernels.dot(scores, scores, k * n)
+				/ (estimator.getNbEpisodes() * n);
+		Arrays.fill(d, 0.);
+		lastCGIterations = cg.solve(fisher, g, d, cgIterations, CG_TOLERANCE);
+		final double alpha;
+		final StepSize stepSize = this.stepSize;
+		if(stepSize != null) {
+			stepSize.updateStep();
+			alpha = stepSize.getStep();
+		} else {
+			// The KL divergence of a step alpha d is about alpha^2 d'Fd / 2
+			fisherProduct(d, Fd);
+			final double dFd = MatKernels.dot(d, Fd, n);
+			alpha = (dFd > 0. ? Math.sqrt(2. * maxKL / dFd) : 0.);
+		}
+		for(int j=0; j<n; j++) {
+			d[j] *= alpha;
+		}
+		((ParametricFunction) pol).updateParams(d);
+		updatesCounter.increment();
+		estimator.reset();
+		k = 0;
+	}
+
+	/** Computes the product of the damped Fisher matrix with v */
+	private final void fisherProduct(double[] v, double[] result) {
+		final int nEpi = estimator.getNbEpisodes();
+		for(int j=0; j<n; j++) {
+			result[j] = lambda * v[j];
+		}
+		for(int s=0; s<k; s++) {
+			final double c = MatKernels.dot(scores, s*n, v, 0, n) / nEpi;
+			MatKernels.axpy(c, scores, s*n, result, 0, n);
+		}
+	}
+
+	/** Number of conjugate gradient iterations of the last update */
+	public final int getLastCGIterations() {
+		return lastCGIterations;
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "Truncated Natural Policy Gradient";
+	}
+}
@@ -1,10 +1,11 @@
 package com.github.didmar.jrl.agent.ac;
 
 import com.github.didmar.jrl.agent.LearningAgent;
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.vflearner.td.TD;
 import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
 import com.github.didmar.jrl.stepsize.StepSize;
-import com.github.didmar.jrl.utils.DiscountFactor;
 
 /**
  * Very basic Actor-Critic architecture which forwards the samples to a TD
@@ -21,10 +22,10 @@ public final class BasicAC extends LearningAgent {
 	private final TD tdLearner;
 	/** Learning step */
 	private final StepSize stepSize;
-	/** Discount factor */
-	private final DiscountFactor gamma;
 	/** Length of policy parameters */
 	private final int n;
+	/** Computations shared by the Actor and the Critic for each sample */
+	private final StepContext context;
 
 	// arrays for temporary storage to avoid mem. alloc.
 	/** Used the store the policy update */
@@ -34,8 +35,8 @@ public final class BasicAC extends LearningAgent {
 		super(pol);
 		this.tdLearner = tdLearner;
 		this.stepSize = stepSize;
-		gamma = this.tdLearner.getDiscountFactor();
 		n = pol.getParamsSize();
+		context = this.tdLearner.newStepContext(pol);
 		// TODO check that the TD learner has a faster step size !
 
 		dJ = new double[n];
@@ -53,14 +54,25 @@ public final class BasicAC extends LearningAgent {
 	 * @see jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double)
 	 */
 	public final void receiveSample(double[] x, double[] u, double[] xn, double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	@Override
+	public final void receiveSample(double[] x, double[] u, int uIndex,
+			double[] xn, double r, boolean isTerminal) {
+		context.set(x, u, uIndex, xn, isTerminal);
 		// Transmit to the TD Learner
-		tdLearner.receiveSample(x, u, xn, r, isTerminal);
+		tdLearner.addSample(context, r);
 		// Update the step-size
         stepSize.updateStep();
         // Get the TD Error
-        final double tdErr = tdLearner.getVFunction().tdError(x,xn,r,isTerminal,gamma);
+        final double tdErr = tdLearner.tdError(context, r);
         // Get the log policy gradient
-        final double[] psi = ((ILogDifferentiablePolicy)pol).dLogdTheta(x, u);
+        final double[] psi = context.dLogdTheta();
         // Compute an estimation of the performance gradient (dJ ~ psi * tdErr)
         // multiplied by the learning rate
         final double beta = stepSize.getStep();
@@ -3,6 +3,8 @@ package com.github.didmar.jrl.agent.ac;
 import org.eclipse.jdt.annotation.NonNull;
 
 import com.github.didmar.jrl.agent.LearningAgent;
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.evaluation.vflearner.lstd.ILSTDAV;
@@ -11,6 +13,8 @@ import com.github.didmar.jrl.features.Features;
 import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
 import com.github.didmar.jrl.stepsize.StepSize;
 import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 // TODO add another convergence criterion : when the norm of the update of
 // advantage and state value parameters is below a threshold epsilon
@@ -21,6 +25,9 @@ import com.github.didmar.jrl.utils.DiscountFactor;
  */
 public final class NAC extends LearningAgent {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("NAC.updates");
+
 	private final ILSTDAV ilstdav;
 	/** Linear advantage function approximator for the Critic part */
 	private final LinearQFunction aFunction;
@@ -34,6 +41,11 @@ public final class NAC extends LearningAgent {
 	private final int nbSamplesBeforeUpdate;
 	/** Number of (x,u,r,xn) samples collected since the last update */
 	private int nbSampleSinceLastUpd;
+	/** Computations shared by the Critic for each sample */
+	private final StepContext context;
+	
+	// arrays for temporary storage to avoid mem. alloc.
+	private final double[] w;
 	
 	public NAC(final ILogDifferentiablePolicy pol,
 			   final Features stateFeat,
@@ -55,6 +67,8 @@ public final class NAC extends LearningAgent {
 		this.kappa = kappa;
 		this.nbSamplesBeforeUpdate = nbSamplesBeforeUpdate;
 		nbSampleSinceLastUpd = 0;
+		context = new StepContext(stateFeat, pol, xDim);
+		w = new double[aFunction.getParamsSize()];
 	}
 
 	/* (non-Javadoc)
@@ -78,13 +92,26 @@ public final class NAC extends LearningAgent {
 									@NonNull final double[] u,
 									@NonNull final double[] xn,
 									double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	@Override
+	public final void receiveSample(@NonNull final double[] x,
+									@NonNull final double[] u, int uIndex,
+									@NonNull final double[] xn,
+									double r, boolean isTerminal) {
 		// Update the step-size
         stepSize.updateStep();
         // Update the sample counter
         nbSampleSinceLastUpd++;
         
         // *** Critic part
-        ilstdav.receiveSample(x, u, xn, r, isTerminal);
+        context.set(x, u, uIndex, xn, isTerminal);
+        ilstdav.receiveSample(context, r);
         
         // *** Actor part
         // Check if the gradient w has converged
@@ -108,11 +135,12 @@ public final class NAC extends LearningAgent {
         if(converged) {
             // Perform a policy update
         	double alpha = stepSize.getStep();
-        	double[] w = aFunction.getParams().clone();
+        	final double[] aParams = aFunction.getParams();
         	for(int i=0; i<w.length; i++) {
-        		w[i] *= alpha;
+        		w[i] = alpha * aParams[i];
         	}
         	((ILogDifferentiablePolicy)pol).updateParams(w);
+        	updatesCounter.increment();
             // Partially forget statistics
             ilstdav.applyForgetFactor(kappa);
             // Reset the sample counter
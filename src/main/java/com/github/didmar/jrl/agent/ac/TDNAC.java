@@ -1,6 +1,8 @@
 package com.github.didmar.jrl.agent.ac;
 
 import com.github.didmar.jrl.agent.LearningAgent;
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
 import com.github.didmar.jrl.evaluation.vflearner.td.AdvantageTDBootstrap;
 import com.github.didmar.jrl.evaluation.vflearner.td.TD;
@@ -31,6 +33,8 @@ public final class TDNAC extends LearningAgent {
 	private final DiscountFactor kappa;
 	/** Length of the policy parameters */
 	private final int n;
+	/** Computations shared by the Critic learners for each sample */
+	private final StepContext context;
 	
 	// arrays for temporary storage to avoid mem. alloc.
 	private final double[] w;
@@ -54,6 +58,7 @@ public final class TDNAC extends LearningAgent {
 				uDim), xDim, uDim);
 		advTDBoot = new AdvantageTDBootstrap(aFunction,td,stepSize); 
 		n = pol.getParamsSize();
+		context = td.newStepContext(pol);
 		
 		// arrays for temporary storage to avoid mem. alloc.
 		w = new double[n];
@@ -72,8 +77,19 @@ public final class TDNAC extends LearningAgent {
 	 * @see jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double)
 	 */
 	public final void receiveSample(double[] x, double[] u, double[] xn, double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	@Override
+	public final void receiveSample(double[] x, double[] u, int uIndex,
+			double[] xn, double r, boolean isTerminal) {
+		context.set(x, u, uIndex, xn, isTerminal);
 		// Transmit to the advantage function learner
-		advTDBoot.receiveSample(x, u, xn, r, isTerminal);
+		advTDBoot.receiveSample(context, r);
 		// Update the step-size
         stepSize.updateStep();
         // Compute an estimation of the performance gradient dJ as the
@@ -1,8 +1,9 @@
 package com.github.didmar.jrl.agent.ac;
 
 import com.github.didmar.jrl.agent.LearningAgent;
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
-import com.github.didmar.jrl.evaluation.valuefunction.QFunction;
 import com.github.didmar.jrl.evaluation.vflearner.td.AdvantageTDBootstrap;
 import com.github.didmar.jrl.evaluation.vflearner.td.TD;
 import com.github.didmar.jrl.features.CompatibleFeatures;
@@ -24,11 +25,13 @@ public final class VAC extends LearningAgent {
 	/** The Critic part */	
 	private final AdvantageTDBootstrap advTDBoot;
 	/** Advantage function approximator for the Critic part */
-	private final QFunction aFunction;
+	private final LinearQFunction aFunction;
 	/** Learning step */
 	private final StepSize stepSize;
 	/** Length of the policy parameters */
 	private final int n;
+	/** Computations shared by the Actor and the Critic for each sample */
+	private final StepContext context;
 	
 	// arrays for temporary storage to avoid mem. alloc.
 	/** Used the store the policy update */
@@ -50,6 +53,7 @@ public final class VAC extends LearningAgent {
 				uDim), xDim, uDim);
 		advTDBoot = new AdvantageTDBootstrap(aFunction,td,stepSize); 
 		n = pol.getParamsSize();
+		context = td.newStepContext(pol);
 		
 		// arrays for temporary storage to avoid mem. alloc.
 		dJ = new double[n];
@@ -67,16 +71,27 @@ public final class VAC extends LearningAgent {
 	 * @see jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double)
 	 */
 	public final void receiveSample(double[] x, double[] u, double[] xn, double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	@Override
+	public final void receiveSample(double[] x, double[] u, int uIndex,
+			double[] xn, double r, boolean isTerminal) {
+		context.set(x, u, uIndex, xn, isTerminal);
 		// Transmit to the advantage function learner
-		advTDBoot.receiveSample(x, u, xn, r, isTerminal);
+		advTDBoot.receiveSample(context, r);
 		// Update the step-size
         stepSize.updateStep();
-        // Get the log policy gradient
-        final double[] psi = ((ILogDifferentiablePolicy)pol).dLogdTheta(x,u);
+        // Get the log policy gradient, which are also the compatible features
+        final double[] psi = context.dLogdTheta();
         // Compute an estimation of the performance gradient (dJ ~ psi*A(x,u))
         // multiplied by the learning rate
         final double beta = stepSize.getStep();
-        final double A = aFunction.get(x, u);
+        final double A = aFunction.getForFeaturesVector(psi);
         for(int i=0; i<n; i++) {
         	dJ[i] = beta * psi[i] * A;
         }
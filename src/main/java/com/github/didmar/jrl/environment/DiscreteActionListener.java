@@ -0,0 +1,29 @@
+package com.github.didmar.jrl.environment;
+
+/**
+ * An {@link EnvironmentListener} that is also notified of the index of the
+ * action taken, when the agent follows a
+ * {@link com.github.didmar.jrl.policy.DiscreteActionPolicy}.
+ * @see Environment
+ * @author Didier Marin
+ */
+public interface DiscreteActionListener extends EnvironmentListener {
+
+	/** Action index of the samples whose action is not known to be part of
+	 * a discrete set */
+	public static final int NO_ACTION_INDEX = -1;
+
+	/**
+	 * Notify a (x,u,xn,r) sample, which is notified through this method
+	 * instead of {@link #receiveSample(double[], double[], double[], double, boolean)}
+	 * @param x       the state
+	 * @param u       the action
+	 * @param uIndex  the index of u in the set of actions of the policy
+	 *                followed, or {@link #NO_ACTION_INDEX} if unknown
+	 * @param xn      the next state
+	 * @param r       the reward
+	 * @param isTerminal indicates whether if the tuple (x,u,xn) is terminal or not
+	 */
+	public void receiveSample(double[] x, double[] u, int uIndex, double[] xn,
+							  double r, boolean isTerminal);
+}
@@ -8,7 +8,11 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.github.didmar.jrl.agent.Agent;
+import com.github.didmar.jrl.agent.PolicyAgent;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Histogram;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Partial implementation of the {@link IEnvironment} interface. For a complete
@@ -17,6 +21,13 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public abstract class Environment implements IEnvironment {
 
+	/** Number of steps performed in all the environments */
+	private static final Counter stepsCounter = Metrics.counter("environment.steps");
+	/** Number of episodes performed in all the environments */
+	private static final Counter episodesCounter = Metrics.counter("environment.episodes");
+	/** Length of the episodes performed in all the environments */
+	private static final Histogram episodeLength = Metrics.histogram("environment.episodeLength");
+
 	/** State-space dimension */
 	protected final int xDim;
 	/** Action-space dimension */
@@ -96,6 +107,11 @@ public abstract class Environment implements IEnvironment {
 			throw new IllegalArgumentException("Given initial state x0 does not"
 					+"match the state-space dimension");
 		}
+        // Current state, once the start state is left: nextState may return
+        // the same array at each call, which must not be the current state
+        final double[] xCur = new double[xDim];
+        // Latency of each listener receiveSample, only if metrics are enabled
+        @Nullable final Histogram[] listenersLatency = listenersLatencyHistograms();
         // Loop over episodes
         for(int e=0; e<nbEpi; e++) {
             // If no start state was specified, draw one
@@ -107,11 +123,14 @@ public abstract class Environment implements IEnvironment {
             for(EnvironmentListener l : listeners) {
                 l.newEpisode(x, maxT);
             }
+            // Number of steps performed in this episode
+            int T = 0;
             // Loop over decision steps
             for(int t=0; t<maxT; t++) {
             	// The agent takes an action
             	@NonNull final double[] u = agent.takeAction(x);
             	assert u.length == uDim : "Invalid action dimension";
+            	final int uIndex = lastActionIndex(agent);
                 // Check that this action is legal
                 try {
 					checkIfLegalAction(u);
@@ -131,23 +150,84 @@ public abstract class Environment implements IEnvironment {
                 // Check whether the tuple (x,u,xn) is terminal or not
                 final boolean terminal = isTerminal(x,u,xn);
                 // Send the sample to the listeners
-                for(EnvironmentListener l : listeners) {
-                    l.receiveSample(x, u, xn, r, terminal);
+                if(listenersLatency == null) {
+                	for(EnvironmentListener l : listeners) {
+                		notifySample(l, x, u, uIndex, xn, r, terminal);
+                	}
+                } else {
+                	for(int i=0; i<listeners.size(); i++) {
+                		final long start = System.nanoTime();
+                		notifySample(listeners.get(i), x, u, uIndex, xn, r,
+                				terminal);
+                		if(i < listenersLatency.length) {
+                			listenersLatency[i].recordSince(start);
+                		}
+                	}
                 }
+                T++;
+                stepsCounter.increment();
                 // If the sample is terminal, stop this episode
                 if(terminal) {
                     break;
                 }
                 // Prepare the next step : next state becomes current state
-                x = xn;
+                System.arraycopy(xn, 0, xCur, 0, xDim);
+                x = xCur;
             }
             // Notify the end of the episode to the listeners
             for(EnvironmentListener l : listeners) {
                 l.endEpisode();
             }
+            episodesCounter.increment();
+            episodeLength.record(T);
         }
 	}
 
+	/**
+	 * Returns the index of the last action taken by the agent in the set of
+	 * actions of its policy, or {@link DiscreteActionListener#NO_ACTION_INDEX}
+	 * if the agent does not follow a
+	 * {@link com.github.didmar.jrl.policy.DiscreteActionPolicy}.
+	 */
+	protected static final int lastActionIndex(Agent agent) {
+		if(agent instanceof PolicyAgent) {
+			return ((PolicyAgent) agent).getLastActionIndex();
+		}
+		return DiscreteActionListener.NO_ACTION_INDEX;
+	}
+
+	/**
+	 * Sends a sample to a listener, along with the action index if the
+	 * listener is a {@link DiscreteActionListener}.
+	 */
+	protected static final void notifySample(EnvironmentListener l,
+			double[] x, double[] u, int uIndex, double[] xn, double r,
+			boolean isTerminal) {
+		if(l instanceof DiscreteActionListener) {
+			((DiscreteActionListener) l).receiveSample(x, u, uIndex, xn, r,
+					isTerminal);
+		} else {
+			l.receiveSample(x, u, xn, r, isTerminal);
+		}
+	}
+
+	/**
+	 * Returns the histograms of the receiveSample latency of each listener,
+	 * named after the listener class, or null if the metrics are disabled.
+	 */
+	@Nullable
+	private final Histogram[] listenersLatencyHistograms() {
+		if(!Metrics.isEnabled()) {
+			return null;
+		}
+		final Histogram[] histos = new Histogram[listeners.size()];
+		for(int i=0; i<histos.length; i++) {
+			histos[i] = Metrics.histogram(
+					listeners.get(i).getClass().getSimpleName()+".receiveSample");
+		}
+		return histos;
+	}
+
     /* (non-Javadoc)
 	 * @see jrl.environment.IEnvironment#interact(jrl.agent.Agent, int, int)
 	 */
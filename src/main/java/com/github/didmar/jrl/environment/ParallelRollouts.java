@@ -0,0 +1,282 @@
+package com.github.didmar.jrl.environment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.policy.ParametricPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Evaluates policy parameters by running episodes concurrently. Each worker
+ * thread owns an environment and a policy created by the given factories, so
+ * that neither needs to be thread-safe. The performance of an episode is its
+ * discounted reward.
+ * <p>
+ * Episodes are independent tasks, so the evaluation of several parameters
+ * with several episodes each is spread over all the workers. The threads are
+ * daemon threads, {@link #shutdown()} releases them.
+ * <p>
+ * Learning agents that need more than the performance of each episode can
+ * attach a listener of their own to each worker with
+ * {@link #interact(double[], int, ListenerFactory)}, and reduce the results
+ * of these listeners once the episodes are done.
+ *
+ * @author Didier Marin
+ */
+public final class ParallelRollouts {
+
+	/** Number of episodes performed by all the instances */
+	private static final Counter episodesCounter = Metrics.counter("ParallelRollouts.episodes");
+
+	/** Discount factor */
+	private final DiscountFactor gamma;
+	/** Maximum duration of an episode */
+	private final int maxT;
+	/** Number of workers */
+	private final int nbThreads;
+	/** All the workers */
+	private final List<Worker> workers;
+	/** Workers that are not running an episode */
+	private final BlockingQueue<Worker> idleWorkers;
+	/** Threads that run the episodes */
+	private final ExecutorService executor;
+
+	/**
+	 * @param envFactory  creates the environment of each worker
+	 * @param polFactory  creates the policy of each worker
+	 * @param gamma       discount factor of the episodes performance
+	 * @param maxT        maximum duration of an episode
+	 * @param nbThreads   number of worker threads
+	 */
+	public ParallelRollouts(Factory<? extends IEnvironment> envFactory,
+							Factory<? extends ParametricPolicy> polFactory,
+							DiscountFactor gamma, int maxT, int nbThreads) {
+		if(maxT <= 0) {
+			throw new IllegalArgumentException("maxT must be greater than 0");
+		}
+		if(nbThreads <= 0) {
+			throw new IllegalArgumentException("nbThreads must be greater than 0");
+		}
+		this.gamma = gamma;
+		this.maxT = maxT;
+		this.nbThreads = nbThreads;
+		workers = new ArrayList<Worker>(nbThreads);
+		for(int i=0; i<nbThreads; i++) {
+			workers.add(new Worker(envFactory.newInstance(),
+					polFactory.newInstance()));
+		}
+		idleWorkers = new ArrayBlockingQueue<Worker>(nbThreads, false, workers);
+		executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+			private int count = 0;
+			public synchronized Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "ParallelRollouts-"+(count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Uses one worker per available processor.
+	 * @see #ParallelRollouts(Factory, Factory, DiscountFactor, int, int)
+	 */
+	public ParallelRollouts(Factory<? extends IEnvironment> envFactory,
+							Factory<? extends ParametricPolicy> polFactory,
+							DiscountFactor gamma, int maxT) {
+		this(envFactory, polFactory, gamma, maxT,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Runs the episodes <tt>fromEpi</tt> (inclusive) to <tt>toEpi</tt>
+	 * (exclusive) of some of the given parameters, and stores the
+	 * performance of episode <tt>j</tt> of parameters <tt>i</tt> in
+	 * <tt>R[i][j]</tt>.
+	 * @param thetas       the policy parameters
+	 * @param candidates   indices in thetas of the parameters to evaluate
+	 * @param nCandidates  number of indices to use from candidates
+	 * @param fromEpi      index of the first episode to run
+	 * @param toEpi        index of the episode after the last one to run
+	 * @param R            [on return] performance of the episodes
+	 */
+	public final void evaluate(final double[][] thetas, final int[] candidates,
+			int nCandidates, int fromEpi, int toEpi, final double[][] R) {
+		assert nCandidates <= candidates.length;
+		assert fromEpi <= toEpi;
+
+		final List<Callable<Object>> tasks
+			= new ArrayList<Callable<Object>>(nCandidates * (toEpi-fromEpi));
+		for(int k=0; k<nCandidates; k++) {
+			final int i = candidates[k];
+			for(int j=fromEpi; j<toEpi; j++) {
+				final int epi = j;
+				tasks.add(new Callable<Object>() {
+					public Object call() throws InterruptedException {
+						final Worker worker = idleWorkers.take();
+						try {
+							R[i][epi] = worker.runEpisode(thetas[i]);
+						} finally {
+							idleWorkers.put(worker);
+						}
+						return null;
+					}
+				});
+			}
+		}
+		runAll(tasks);
+		episodesCounter.add(tasks.size());
+	}
+
+	/**
+	 * Runs <tt>nbEpi</tt> episodes for each of the given parameters, and
+	 * stores the performance of episode <tt>j</tt> of parameters <tt>i</tt>
+	 * in <tt>R[i][j]</tt>.
+	 */
+	public final void evaluate(final double[][] thetas, int nbEpi,
+			final double[][] R) {
+		final int[] all = new int[thetas.length];
+		for(int i=0; i<all.length; i++) {
+			all[i] = i;
+		}
+		evaluate(thetas, all, all.length, 0, nbEpi, R);
+	}
+
+	/**
+	 * Runs <tt>nbEpi</tt> episodes with the given parameters, while a
+	 * listener created for each worker by the given factory listens to the
+	 * episodes run by that worker.
+	 * @param theta    the policy parameters
+	 * @param nbEpi    number of episodes to run
+	 * @param factory  creates the listener of each worker
+	 * @return the listeners, one per worker, which are not used anymore by
+	 *         the workers when this method returns
+	 */
+	public final <L extends EnvironmentListener> List<L> interact(
+			final double[] theta, int nbEpi, ListenerFactory<L> factory) {
+		final List<L> listeners = new ArrayList<L>(nbThreads);
+		for(Worker worker : workers) {
+			final L listener = factory.newListener(worker.pol);
+			listeners.add(listener);
+			worker.env.addListener(listener);
+		}
+		final List<Callable<Object>> tasks
+			= new ArrayList<Callable<Object>>(nbEpi);
+		for(int j=0; j<nbEpi; j++) {
+			tasks.add(new Callable<Object>() {
+				public Object call() throws InterruptedException {
+					final Worker worker = idleWorkers.take();
+					try {
+						worker.runEpisode(theta);
+					} finally {
+						idleWorkers.put(worker);
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			runAll(tasks);
+		} finally {
+			for(int i=0; i<nbThreads; i++) {
+				workers.get(i).env.removeListener(listeners.get(i));
+			}
+		}
+		episodesCounter.add(nbEpi);
+		return listeners;
+	}
+
+	private final void runAll(List<Callable<Object>> tasks) {
+		try {
+			for(Future<Object> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running episodes", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("An episode failed", e.getCause());
+		}
+	}
+
+	/** Number of episodes that can run concurrently */
+	public final int getNbThreads() {
+		return nbThreads;
+	}
+
+	/**
+	 * Stops the worker threads. The instance cannot be used afterwards.
+	 */
+	public final void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Creates the listener of a worker.
+	 * @param <L> the type of the listeners
+	 */
+	public interface ListenerFactory<L extends EnvironmentListener> {
+
+		/**
+		 * Returns a new listener for a worker.
+		 * @param pol  the policy of the worker, which follows the evaluated
+		 *             parameters during the episodes
+		 * @return a new listener
+		 */
+		public L newListener(ParametricPolicy pol);
+
+	}
+
+	/**
+	 * An environment and a policy used by one thread at a time.
+	 */
+	private final class Worker implements EnvironmentListener {
+
+		private final IEnvironment env;
+		private final ParametricPolicy pol;
+		private final PolicyAgent agent;
+		/** Discounted reward of the current episode */
+		private double ret;
+		/** Discount of the current step */
+		private double discount;
+
+		Worker(IEnvironment env, ParametricPolicy pol) {
+			this.env = env;
+			this.pol = pol;
+			agent = new PolicyAgent(pol);
+			env.addListener(this);
+		}
+
+		final double runEpisode(double[] theta) {
+			pol.setParams(theta);
+			env.interact(agent, 1, maxT);
+			return ret;
+		}
+
+		public final void newEpisode(double[] x0, int maxT) {
+			ret = 0.;
+			discount = 1.;
+		}
+
+		public final void receiveSample(double[] x, double[] u, double[] xn,
+				double r, boolean isTerminal) {
+			ret += discount * r;
+			discount *= gamma.value;
+		}
+
+		public final void endEpisode() {
+			// Nothing to do
+		}
+	}
+}
@@ -121,6 +121,9 @@ public abstract class PartiallyObservableEnvironment extends Environment {
 			throw new IllegalArgumentException("Given initial state x0 does not"
 					+"match the state-space dimension");
 		}
+        // Current state, once the start state is left: nextState may return
+        // the same array at each call, which must not be the current state
+        final double[] xCur = new double[xDim];
 		// Loop over episodes
         for(int e=0; e<nbEpi; e++) {
             // If no start state was specified, draw one
@@ -147,6 +150,7 @@ public abstract class PartiallyObservableEnvironment extends Environment {
             	// The agent takes an action based on the observation
             	final double[] u = agent.takeAction(o);
             	assert u.length == uDim : "Invalid action dimension";
+            	final int uIndex = lastActionIndex(agent);
                 // Check that this action is legal
                 try {
 					checkIfLegalAction(u);
@@ -169,19 +173,20 @@ public abstract class PartiallyObservableEnvironment extends Environment {
                 computeObservation(xn, on);
                 // Send the sample to the fully observable environment listeners
                 for(EnvironmentListener l : fullyObsEnv) {
-                    l.receiveSample(x, u, xn, r, terminal);
+                    notifySample(l, x, u, uIndex, xn, r, terminal);
                 }
                 // and also to the partially observable environment listeners,
                 // replacing the (next) state by the (next) observation
                 for(EnvironmentListener l : listeners) {
-                    l.receiveSample(o, u, on, r, terminal);
+                    notifySample(l, o, u, uIndex, on, r, terminal);
                 }
                 // If the sample is terminal, stop this episode
                 if(terminal) {
                     break;
                 }
                 // Prepare the next step : next state becomes current state 
-                x = xn;
+                System.arraycopy(xn, 0, xCur, 0, xDim);
+                x = xCur;
                 // and the next observation becomes the current observation
                 System.arraycopy(on, 0, o, 0, oDim);
             }
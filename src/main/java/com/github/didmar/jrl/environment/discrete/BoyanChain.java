@@ -18,56 +18,45 @@ public final class BoyanChain extends DiscreteEnvironment {
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#isTerminal(double[], double[], double[])
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#isTerminal(int, int, int)
 	 */
 	@Override
-	public final boolean isTerminal(double[] x, double[] u, double[] xn) {
-		assert x.length == xDim;
-		assert u.length == uDim;
-		assert xn.length == xDim;
-
-		return (x[0]==0 ? true : false);
+	public final boolean isTerminal(int x, int u, int xn) {
+		return x == 0;
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#nextState(double[], double[])
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#nextStateIndex(int, int)
 	 */
 	@Override
-	public final double[] nextState(double[] x, double[] u) {
-		assert x.length == xDim;
-		assert u.length == uDim;
-
-		if(x[0] >= 3) {
-			return new double[]{x[0]-1-(RandUtils.nextInt(2))};
-		} else if (x[0] == 2) {
-			return new double[]{1};
+	public final int nextStateIndex(int x, int u) {
+		if(x >= 3) {
+			return x-1-(RandUtils.nextInt(2));
+		} else if (x == 2) {
+			return 1;
 		}
-		return new double[]{0}; // absorbing state
+		return 0; // absorbing state
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#reward(double[], double[], double[])
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#reward(int, int, int)
 	 */
 	@Override
-	public final double reward(double[] x, double[] u, double[] xn) {
-		assert x.length == xDim;
-		assert u.length == uDim;
-		assert xn.length == xDim;
-
-		if(x[0] >= 3) {
+	public final double reward(int x, int u, int xn) {
+		if(x >= 3) {
 			return -3;
-		} else if (x[0] == 2) {
+		} else if (x == 2) {
 			return -2;
 		}
 		return 0; // next to last state and absorbing state
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#startState()
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#startStateIndex()
 	 */
 	@Override
-	public final double[] startState() {
-		return new double[]{CHAIN_LENGTH-1};
+	public final int startStateIndex() {
+		return CHAIN_LENGTH-1;
 	}
 
 }
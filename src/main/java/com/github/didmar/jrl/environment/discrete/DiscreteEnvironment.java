@@ -1,13 +1,33 @@
 package com.github.didmar.jrl.environment.discrete;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.github.didmar.jrl.environment.Environment;
+import com.github.didmar.jrl.policy.TabularPolicy;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Histogram;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Environment with discrete one-dimensional states and actions.
+ * <p>
+ * Subclasses implement the dynamics over the state and action indices,
+ * which the {@link Environment} methods wrap into one-dimensional arrays.
+ * Tabular agents can bypass these arrays with
+ * {@link #interactTabular(TabularPolicy, int, int)}, which notifies the
+ * {@link TabularListener}s with the indices and does not allocate memory.
  * @author Didier Marin
  */
 public abstract class DiscreteEnvironment extends Environment {
 
+	/** Number of steps performed in all the environments */
+	private static final Counter stepsCounter = Metrics.counter("environment.steps");
+	/** Number of episodes performed in all the environments */
+	private static final Counter episodesCounter = Metrics.counter("environment.episodes");
+	/** Length of the episodes performed in all the environments */
+	private static final Histogram episodeLength = Metrics.histogram("environment.episodeLength");
+
 	/** State-space cardinality : states are in [0,xCard[ */
 	public final int xCard;
 	/** Action-space cardinality : actions are in [0,uCard[ */
@@ -20,6 +40,8 @@ public abstract class DiscreteEnvironment extends Environment {
 	private final double[] uMin;
 	/** Action-space upper bound */
 	private final double[] uMax;
+	/** Listeners of the tabular interactions */
+	private final List<TabularListener> tabularListeners;
 
 	public DiscreteEnvironment(int xCard, int uCard) {
 		super(1, 1);
@@ -35,6 +57,151 @@ public abstract class DiscreteEnvironment extends Environment {
 		xMax = new double[]{xCard-1.};
 		uMin = new double[]{0.};
 		uMax = new double[]{uCard-1.};
+		tabularListeners = new ArrayList<TabularListener>();
+	}
+
+	/**
+	 * Returns an initial state.
+	 * @return an initial state in [0,xCard[
+	 */
+	public abstract int startStateIndex();
+
+	/**
+	 * Returns the next state given a state and an action.
+	 * @param x    a state in [0,xCard[
+	 * @param u    an action in [0,uCard[
+	 * @return the next state in [0,xCard[
+	 */
+	public abstract int nextStateIndex(int x, int u);
+
+	/**
+	 * Returns the reward given a state, an action and a next state.
+	 * @param x    a state
+	 * @param u    an action
+	 * @param xn   a next state
+	 * @return the reward
+	 */
+	public abstract double reward(int x, int u, int xn);
+
+	/**
+	 * Returns whether a state, action and next state sample is terminal or not.
+	 * @param x    a state
+	 * @param u    an action
+	 * @param xn   a next state
+	 * @return true is (x,u,xn) is a terminal sample, false else
+	 */
+	public abstract boolean isTerminal(int x, int u, int xn);
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.Environment#startState()
+	 */
+	@Override
+	public final double[] startState() {
+		return new double[]{startStateIndex()};
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.Environment#nextState(double[], double[])
+	 */
+	@Override
+	public final double[] nextState(double[] x, double[] u) {
+		return new double[]{nextStateIndex(stateIndex(x), actionIndex(u))};
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.Environment#reward(double[], double[], double[])
+	 */
+	@Override
+	public final double reward(double[] x, double[] u, double[] xn) {
+		return reward(stateIndex(x), actionIndex(u), stateIndex(xn));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.Environment#isTerminal(double[], double[], double[])
+	 */
+	@Override
+	public final boolean isTerminal(double[] x, double[] u, double[] xn) {
+		return isTerminal(stateIndex(x), actionIndex(u), stateIndex(xn));
+	}
+
+	private final int stateIndex(double[] x) {
+		if(x.length != xDim) {
+			throw new IllegalArgumentException("x must have length xDim");
+		}
+		return (int) x[0];
+	}
+
+	private final int actionIndex(double[] u) {
+		if(u.length != uDim) {
+			throw new IllegalArgumentException("u must have length uDim");
+		}
+		return (int) u[0];
+	}
+
+	/**
+	 * Make a tabular policy interact with the environment, notifying the
+	 * {@link TabularListener}s, but not the
+	 * {@link com.github.didmar.jrl.environment.EnvironmentListener}s.
+	 * @param pol   the policy to follow
+	 * @param nbEpi the number of episodes to perform
+	 * @param maxT  the maximum duration of an episode
+	 */
+	public final void interactTabular(TabularPolicy pol, int nbEpi, int maxT) {
+		if(nbEpi < 0) {
+			throw new IllegalArgumentException("nbEpi must be positive");
+		}
+		if(maxT <= 0) {
+			throw new IllegalArgumentException("maxT must be greater than 0");
+		}
+		final int nListeners = tabularListeners.size();
+		for(int e=0; e<nbEpi; e++) {
+			int x = startStateIndex();
+			assert x >= 0 && x < xCard : "Invalid initial state : "+x;
+			for(int i=0; i<nListeners; i++) {
+				tabularListeners.get(i).newEpisode(x, maxT);
+			}
+			// Number of steps performed in this episode
+			int T = 0;
+			for(int t=0; t<maxT; t++) {
+				final int u = pol.drawAction(x);
+				assert u >= 0 && u < uCard : "Invalid action : "+u;
+				final int xn = nextStateIndex(x, u);
+				assert xn >= 0 && xn < xCard : "Invalid next state : "+xn;
+				final double r = reward(x, u, xn);
+				final boolean terminal = isTerminal(x, u, xn);
+				for(int i=0; i<nListeners; i++) {
+					tabularListeners.get(i).receiveSample(x, u, xn, r, terminal);
+				}
+				T++;
+				stepsCounter.increment();
+				if(terminal) {
+					break;
+				}
+				x = xn;
+			}
+			for(int i=0; i<nListeners; i++) {
+				tabularListeners.get(i).endEpisode();
+			}
+			episodesCounter.increment();
+			episodeLength.record(T);
+		}
+	}
+
+	/**
+	 * Adds a listener of the tabular interactions.
+	 * @param listener  the listener to add
+	 */
+	public final void addListener(TabularListener listener) {
+		tabularListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener of the tabular interactions.
+	 * @param listener  the listener to remove
+	 * @return true if the listener was listening to the environment
+	 */
+	public final boolean removeListener(TabularListener listener) {
+		return tabularListeners.remove(listener);
 	}
 
 	/**
@@ -2,27 +2,73 @@ package com.github.didmar.jrl.environment.discrete;
 
 import com.github.didmar.jrl.environment.discrete.DiscreteEnvironment;
 import com.github.didmar.jrl.mdp.DiscreteMDP;
+import com.github.didmar.jrl.utils.AliasTable;
 import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 // TODO make the connection with DiscreteMDP more clear
 /**
  * An environment based on a discrete one-dimensional state and action MDP with
  * an initial state distribution P0, a transition function P and deterministic
  * reward function R.
+ * <p>
+ * The next states are drawn in O(1) from an {@link AliasTable} of the
+ * transition probabilities of each state-action, which is built the first
+ * time the state-action is met. The tables only hold the successors of
+ * non-zero probability, and their total size is bounded: once it reaches
+ * <tt>maxCachedEntries</tt>, the next states of the state-actions without a
+ * table are drawn in O(n) from the transition probabilities. The MDP must
+ * thus not be modified after the creation of the environment.
  * @author Didier Marin
  */
 public class DiscreteMDPEnvironment extends DiscreteEnvironment {
 
+	/** Default maximum total size of the alias tables, which take 16 bytes
+	 * per entry */
+	public static final int DEFAULT_MAX_CACHED_ENTRIES = 1 << 22;
+
+	/** Number of alias tables built, for all the environments */
+	private static final Counter tablesCounter
+		= Metrics.counter("DiscreteMDPEnvironment.aliasTables");
+
 	/** Underlying MDP */
 	protected final DiscreteMDP mdp;
+	/** Alias table of the transition probabilities of each state-action,
+	 * null until it is first needed */
+	private final AliasTable[][] tables;
+	/** Alias table of the initial state probabilities */
+	private final AliasTable startTable;
+	/** Maximum total size of the alias tables */
+	private final int maxCachedEntries;
+	/** Total size of the alias tables */
+	private int cachedEntries = 0;
 
 	/**
 	 * Construct a DiscreteEnvironment given an MDP.
 	 * @param MDP  the MDP
 	 */
 	public DiscreteMDPEnvironment(DiscreteMDP mdp) {
+		this(mdp, DEFAULT_MAX_CACHED_ENTRIES);
+	}
+
+	/**
+	 * Construct a DiscreteEnvironment given an MDP and a bound on the memory
+	 * used to draw the next states.
+	 * @param mdp               the MDP
+	 * @param maxCachedEntries  maximum total size of the alias tables of the
+	 *                          transition probabilities, which may be
+	 *                          exceeded by the size of the last table
+	 */
+	public DiscreteMDPEnvironment(DiscreteMDP mdp, int maxCachedEntries) {
 		super(mdp.P0.length, mdp.P[0].length);
+		if(maxCachedEntries < 0) {
+			throw new IllegalArgumentException("maxCachedEntries must be positive or zero");
+		}
 		this.mdp = mdp;
+		this.maxCachedEntries = maxCachedEntries;
+		tables = new AliasTable[mdp.n][mdp.m];
+		startTable = new AliasTable(mdp.P0);
 	}
 
 	/**
@@ -33,8 +79,7 @@ public class DiscreteMDPEnvironment extends DiscreteEnvironment {
 	 * @param R    reward table
 	 */
 	public DiscreteMDPEnvironment(double[] P0, double[][][] P,	double[][] R) {
-		super(P0.length, P[0].length);
-		mdp = new DiscreteMDP(P0, P, R);
+		this(new DiscreteMDP(P0, P, R));
 	}
 
 //	/**
@@ -52,45 +97,37 @@ public class DiscreteMDPEnvironment extends DiscreteEnvironment {
 //	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#nextState(double[], double[])
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#nextStateIndex(int, int)
 	 */
 	@Override
-	public final double[] nextState(double[] x, double[] u) {
-		if(x==null) throw new IllegalArgumentException("x must not be null");
-		if(u==null) throw new IllegalArgumentException("u must not be null");
-		if(x.length != xDim ){
-			throw new IllegalArgumentException("x must have length xDim");
+	public final int nextStateIndex(int x, int u) {
+		AliasTable table = tables[x][u];
+		if(table == null) {
+			if(cachedEntries >= maxCachedEntries) {
+				return RandUtils.drawFromDiscreteProbTable(mdp.P[x][u]);
+			}
+			table = new AliasTable(mdp.P[x][u]);
+			tables[x][u] = table;
+			cachedEntries += table.size();
+			tablesCounter.increment();
 		}
-		if(u.length != uDim ){
-			throw new IllegalArgumentException("u must have length uDim");
-		}
-
-		return new double[]{RandUtils.drawFromDiscreteProbTable(mdp.P[(int) x[0]][(int) u[0]])};
+		return table.draw();
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#reward(double[], double[], double[])
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#reward(int, int, int)
 	 */
 	@Override
-	public final double reward(double[] x, double[] u, double[] xn) {
-		if(x==null) throw new IllegalArgumentException("x must not be null");
-		if(u==null) throw new IllegalArgumentException("u must not be null");
-		if(x.length != xDim ){
-			throw new IllegalArgumentException("x must have length xDim");
-		}
-		if(u.length != uDim ){
-			throw new IllegalArgumentException("u must have length uDim");
-		}
-
-		return mdp.R[(int)x[0]][(int)u[0]];
+	public final double reward(int x, int u, int xn) {
+		return mdp.R[x][u];
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.environment.Environment#startState()
+	 * @see com.github.didmar.jrl.environment.discrete.DiscreteEnvironment#startStateIndex()
 	 */
 	@Override
-	public final double[] startState() {
-		return new double[]{RandUtils.drawFromDiscreteProbTable(mdp.P0)};
+	public final int startStateIndex() {
+		return startTable.draw();
 	}
 
 	public final double[] getP0() {
@@ -105,11 +142,16 @@ public class DiscreteMDPEnvironment extends DiscreteEnvironment {
 		return mdp.R;
 	}
 
+	/** Total size of the alias tables built so far */
+	public final int getCachedEntries() {
+		return cachedEntries;
+	}
+
 	/**
 	 * No terminal sample, by default.
 	 */
 	@Override
-	public boolean isTerminal(double[] x, double[] u, double[] xn) {
+	public boolean isTerminal(int x, int u, int xn) {
 		return false;
 	}
 }
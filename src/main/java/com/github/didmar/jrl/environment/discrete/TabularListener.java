@@ -0,0 +1,36 @@
+package com.github.didmar.jrl.environment.discrete;
+
+/**
+ * A TabularListener is notified of the interactions that occur in a
+ * {@link DiscreteEnvironment} through
+ * {@link DiscreteEnvironment#interactTabular(com.github.didmar.jrl.policy.TabularPolicy, int, int)},
+ * where the states and actions are their indices instead of one-dimensional
+ * arrays.
+ * @see com.github.didmar.jrl.environment.EnvironmentListener
+ * @author Didier Marin
+ */
+public interface TabularListener {
+
+	/**
+	 * Notify the beginning of a new episode
+	 * @param x0    the start state
+	 * @param maxT  the maximum length of this episode
+	 */
+	public void newEpisode(int x0, int maxT);
+
+	/**
+	 * Notify a (x,u,xn,r) sample
+	 * @param x    the state
+	 * @param u    the action
+	 * @param xn   the next state
+	 * @param r    the reward
+	 * @param isTerminal indicates whether if the tuple (x,u,xn) is terminal or not
+	 */
+	public void receiveSample(int x, int u, int xn, double r,
+							  boolean isTerminal);
+
+	/**
+	 * Notify the end of an episode
+	 */
+	public void endEpisode();
+}
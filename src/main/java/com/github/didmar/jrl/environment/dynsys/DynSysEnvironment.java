@@ -2,8 +2,8 @@ package com.github.didmar.jrl.environment.dynsys;
 
 import com.github.didmar.jrl.environment.Environment;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.rk4.ArrayRungeKutta4;
 import com.github.didmar.jrl.utils.rk4.RkRoutine;
-import com.github.didmar.jrl.utils.rk4.RungeKutta4;
 
 // TODO choix d'une autre méthode d'intégration (Runge-Kutta)
 /**
@@ -20,7 +20,9 @@ public abstract class DynSysEnvironment extends Environment {
 	/** State-space upper bound */
 	protected final double[] xMax;
 
-	private final RungeKutta4<double[]> rk4 = new RungeKutta4<double[]>();
+	private final ArrayRungeKutta4 rk4;
+	/** Routine passed to the RK4 method, reused across calls */
+	private final RkDotXRoutine rkRoutine;
 
 	/** Used to store the next state */
 	private final double[] xn;
@@ -46,6 +48,8 @@ public abstract class DynSysEnvironment extends Environment {
 
 		xn = new double[xDim];
 		dX = new double[xDim];
+		rk4 = new ArrayRungeKutta4(xDim);
+		rkRoutine = new RkDotXRoutine(new double[uDim]);
 	}
 
 	/* (non-Javadoc)
@@ -57,8 +61,8 @@ public abstract class DynSysEnvironment extends Environment {
 		assert u.length == uDim;
 
 		// RK4 method
-		final RkDotXRoutine rkRoutine = new RkDotXRoutine(u);
-		System.arraycopy(rk4.rk4(x, 0., dt, 1, rkRoutine), 0, xn, 0, xDim);
+		rkRoutine.setU(u);
+		rk4.rk4(x, 0., dt, 1, rkRoutine, xn);
 
 		// Euler method
 //		dynSys.dotX(x, u, dX);
@@ -74,7 +78,7 @@ public abstract class DynSysEnvironment extends Environment {
 	public class RkDotXRoutine implements RkRoutine<double[]> {
 
 		private final double[] dotX;
-		private final double[] u;
+		private double[] u;
 
 		public RkDotXRoutine(double[] u) {
 			this.u = u;
@@ -87,6 +91,10 @@ public abstract class DynSysEnvironment extends Environment {
 			return dotX;
 		}
 
+		public void setU(double[] u) {
+			this.u = u;
+		}
+
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,256 @@
+package com.github.didmar.jrl.environment.remote;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.Environment;
+import com.github.didmar.jrl.utils.metrics.Histogram;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * An environment simulated by another process, through a channel of a
+ * {@link RemoteSimulator}, created by {@link RemoteSimulator#newInstance()}.
+ * <p>
+ * A transition takes a single round trip : {@link #nextState(double[], double[])}
+ * receives the next state along with the reward and the termination of the
+ * transition, which {@link #reward(double[], double[], double[])} and
+ * {@link #isTerminal(double[], double[], double[])} then return without any
+ * request. They are thus only known for the last transition, whose next
+ * state is the array returned by nextState.
+ * <p>
+ * Like most environments, a remote environment runs one episode at a time,
+ * in a single thread. Concurrent episodes use one remote environment each,
+ * which can share the same simulator. Closing a remote environment releases
+ * its channel, whose number is then reused by the next channel of the
+ * simulator.
+ *
+ * @author Didier Marin
+ */
+public final class RemoteEnvironment extends Environment
+		implements Closeable {
+
+	/** Time between a request and its response, in nanoseconds */
+	private static final Histogram roundTrips = Metrics.histogram("RemoteSimulator.roundTrip");
+
+	private final RemoteSimulator sim;
+	/** Channel number of this environment */
+	private final int channel;
+
+	// The responses, written by the reader thread of the simulator
+	/** Last start state */
+	private final double[] x0;
+	/** Next state of the last transition */
+	private final double[] xn;
+	/** Reward of the last transition */
+	private double r = 0.;
+	/** Indicates if the last transition is terminal */
+	private boolean terminal = false;
+	/** Status of the last response */
+	private byte status = SimulatorProtocol.STATUS_OK;
+	/** Indicates if a request is waiting for its response, guarded by this */
+	private boolean pending = false;
+	/** Indicates if nextState has been called since the last start state */
+	private boolean hasTransition = false;
+	/** Indicates if the channel was released, guarded by this */
+	private boolean closed = false;
+
+	RemoteEnvironment(RemoteSimulator sim, int channel) {
+		super(sim.xDim, sim.uDim);
+		this.sim = sim;
+		this.channel = channel;
+		x0 = new double[xDim];
+		xn = new double[xDim];
+	}
+
+	/**
+	 * Requests a start state from the simulator.
+	 * @see com.github.didmar.jrl.environment.Environment#startState()
+	 * @throws IllegalStateException if the connection or the simulator failed
+	 */
+	@Override
+	@NonNull
+	public final double[] startState() {
+		roundTrip(SimulatorProtocol.OP_START, x0, x0);
+		hasTransition = false;
+		return x0;
+	}
+
+	/**
+	 * Requests the next state, reward and termination of a transition from
+	 * the simulator.
+	 * @see com.github.didmar.jrl.environment.Environment#nextState(double[], double[])
+	 * @throws IllegalStateException if the connection or the simulator failed
+	 */
+	@Override
+	@NonNull
+	public final double[] nextState(@NonNull final double[] x,
+									@NonNull final double[] u) {
+		assert x.length == xDim;
+		assert u.length == uDim;
+
+		roundTrip(SimulatorProtocol.OP_STEP, x, u);
+		hasTransition = true;
+		return xn;
+	}
+
+	/**
+	 * Returns the reward of the last transition.
+	 * @see com.github.didmar.jrl.environment.Environment#reward(double[], double[], double[])
+	 * @throws IllegalStateException if xn is not the next state of the last
+	 *                               transition
+	 */
+	@Override
+	public final double reward(@NonNull final double[] x,
+							   @NonNull final double[] u,
+							   @NonNull final double[] xn) {
+		checkLastTransition(xn);
+		return r;
+	}
+
+	/**
+	 * Returns whether the last transition is terminal.
+	 * @see com.github.didmar.jrl.environment.Environment#isTerminal(double[], double[], double[])
+	 * @throws IllegalStateException if xn is not the next state of the last
+	 *                               transition
+	 */
+	@Override
+	public final boolean isTerminal(@NonNull final double[] x,
+									@NonNull final double[] u,
+									@NonNull final double[] xn) {
+		checkLastTransition(xn);
+		return terminal;
+	}
+
+	private final void checkLastTransition(double[] xn) {
+		if(!hasTransition || xn != this.xn) {
+			throw new IllegalStateException("The reward and termination are"
+					+" only known for the last transition of nextState");
+		}
+	}
+
+	/** Sends a request and waits for its response */
+	private final void roundTrip(byte op, double[] x, double[] u) {
+		final long start = Metrics.startTimer();
+		synchronized(this) {
+			if(closed) {
+				throw new IllegalStateException("The remote environment is closed");
+			}
+			pending = true;
+		}
+		final boolean answered;
+		try {
+			sim.send(channel, op, x, u);
+			synchronized(this) {
+				while(pending && sim.getFailure() == null) {
+					wait();
+				}
+				answered = !pending;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Connection to the simulator failed", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the simulator", e);
+		}
+		if(!answered) {
+			throw new IllegalStateException("Connection to the simulator failed",
+					sim.getFailure());
+		}
+		if(status != SimulatorProtocol.STATUS_OK) {
+			throw new IllegalStateException("The simulator failed on this request");
+		}
+		roundTrips.recordSince(start);
+	}
+
+	/**
+	 * Reads the payload of a response, then wakes the waiting request. Called
+	 * by the reader thread of the simulator.
+	 */
+	final void receive(DataInputStream in, byte op, byte status)
+			throws IOException {
+		if(status == SimulatorProtocol.STATUS_OK) {
+			if(op == SimulatorProtocol.OP_START) {
+				for(int i=0; i<xDim; i++) {
+					x0[i] = in.readDouble();
+				}
+			} else {
+				for(int i=0; i<xDim; i++) {
+					xn[i] = in.readDouble();
+				}
+				r = in.readDouble();
+				terminal = in.readBoolean();
+			}
+		}
+		synchronized(this) {
+			this.status = status;
+			pending = false;
+			notifyAll();
+		}
+	}
+
+	/** Wakes the waiting request after the connection failed. Called by the
+	 * reader thread of the simulator. */
+	final synchronized void fail() {
+		notifyAll();
+	}
+
+	/**
+	 * Releases the channel of this environment, once its pending request,
+	 * if any, is answered. The environment cannot be used anymore.
+	 */
+	public final void close() {
+		synchronized(this) {
+			if(closed) {
+				return;
+			}
+			boolean interrupted = false;
+			while(pending && sim.getFailure() == null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			closed = true;
+		}
+		sim.release(this);
+	}
+
+	/** Channel number of this environment in its simulator */
+	public final int getChannel() {
+		return channel;
+	}
+
+	@Override
+	public final @Nullable double[] getXMin() {
+		return sim.xMin;
+	}
+
+	@Override
+	public final @Nullable double[] getXMax() {
+		return sim.xMax;
+	}
+
+	@Override
+	public final @Nullable double[] getUMin() {
+		return sim.uMin;
+	}
+
+	@Override
+	public final @Nullable double[] getUMax() {
+		return sim.uMax;
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "RemoteEnvironment(channel "+channel+")";
+	}
+}
@@ -0,0 +1,231 @@
+package com.github.didmar.jrl.environment.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Connection to a simulator running in another process of the same host,
+ * such as a {@link SimulatorServer}, see {@link SimulatorProtocol}.
+ * <p>
+ * The connection is shared by any number of {@link RemoteEnvironment}s,
+ * each one being a channel which runs one episode at a time. The requests
+ * of the channels are pipelined over the connection : a channel waits for
+ * its own response only, while a single reader thread receives the
+ * responses of all the channels. Concurrent episodes thus only need a thread
+ * each to run their agent, e.g. the workers of a
+ * {@link com.github.didmar.jrl.environment.ParallelRollouts} created with
+ * this simulator as environment factory, and no thread is blocked on the
+ * socket but the reader.
+ * <p>
+ * A channel is released by {@link RemoteEnvironment#close()}, and its
+ * number is reused by the next channel, so that a long-lived connection
+ * whose channels come and go keeps a bounded table of channels.
+ *
+ * @author Didier Marin
+ */
+public final class RemoteSimulator implements Factory<RemoteEnvironment>,
+		Closeable {
+
+	/** Number of requests sent by all the instances */
+	private static final Counter requestsCounter = Metrics.counter("RemoteSimulator.requests");
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	/** State-space dimension */
+	final int xDim;
+	/** Action-space dimension */
+	final int uDim;
+	final double[] xMin;
+	final double[] xMax;
+	final double[] uMin;
+	final double[] uMax;
+	/** Channels, indexed by their number, null for the released ones,
+	 * guarded by this */
+	private RemoteEnvironment[] channels = new RemoteEnvironment[0];
+	/** One more than the highest channel number in use, guarded by this */
+	private int nSlots = 0;
+	/** Number of open channels, guarded by this */
+	private int nChannels = 0;
+	/** Cause of the failure of the connection, null while it works */
+	private volatile @Nullable IOException failure = null;
+
+	/**
+	 * Connects to a simulator on the loopback interface.
+	 * @param port  the port of the simulator
+	 * @throws IOException if the connection fails, or if this is not a
+	 *                     simulator
+	 */
+	public RemoteSimulator(int port) throws IOException {
+		socket = new Socket(InetAddress.getByName(null), port);
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(
+				socket.getOutputStream()));
+		if(in.readInt() != SimulatorProtocol.MAGIC) {
+			socket.close();
+			throw new IOException("Not a simulator on port "+port);
+		}
+		xDim = in.readInt();
+		uDim = in.readInt();
+		xMin = readVector(xDim);
+		xMax = readVector(xDim);
+		uMin = readVector(uDim);
+		uMax = readVector(uDim);
+		final Thread reader = new Thread(new Runnable() {
+			public void run() {
+				readResponses();
+			}
+		}, "RemoteSimulator-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private final double[] readVector(int n) throws IOException {
+		final double[] v = new double[n];
+		for(int i=0; i<n; i++) {
+			v[i] = in.readDouble();
+		}
+		return v;
+	}
+
+	/**
+	 * Returns a new channel of this simulator, whose number is the lowest
+	 * one not in use.
+	 * @see com.github.didmar.jrl.utils.Factory#newInstance()
+	 */
+	public final synchronized RemoteEnvironment newInstance() {
+		int channel = 0;
+		while(channel < nSlots && channels[channel] != null) {
+			channel++;
+		}
+		if(channel == channels.length) {
+			channels = Arrays.copyOf(channels, Math.max(4, 2 * channel));
+		}
+		final RemoteEnvironment env = new RemoteEnvironment(this, channel);
+		channels[channel] = env;
+		nSlots = Math.max(nSlots, channel + 1);
+		nChannels++;
+		return env;
+	}
+
+	/** Releases the number of a closed channel, and shrinks the table of
+	 * the channels once it is mostly unused */
+	final synchronized void release(RemoteEnvironment env) {
+		final int channel = env.getChannel();
+		if(channels[channel] != env) {
+			return;
+		}
+		channels[channel] = null;
+		nChannels--;
+		while(nSlots > 0 && channels[nSlots-1] == null) {
+			nSlots--;
+		}
+		if(channels.length > 4 && nSlots <= channels.length / 4) {
+			channels = Arrays.copyOf(channels, Math.max(4, 2 * nSlots));
+		}
+	}
+
+	private final synchronized RemoteEnvironment channel(int channel)
+			throws IOException {
+		final RemoteEnvironment env = (channel >= 0 && channel < nSlots
+				? channels[channel] : null);
+		if(env == null) {
+			throw new IOException("Response to an unknown channel "+channel);
+		}
+		return env;
+	}
+
+	/**
+	 * Sends a request, see {@link SimulatorProtocol}.
+	 * @param channel  the channel of the request
+	 * @param op       the operation
+	 * @param x        the state, for {@link SimulatorProtocol#OP_STEP}
+	 * @param u        the action, for {@link SimulatorProtocol#OP_STEP}
+	 * @throws IOException if the connection failed
+	 */
+	final void send(int channel, byte op, double[] x, double[] u)
+			throws IOException {
+		final IOException failure = this.failure;
+		if(failure != null) {
+			throw failure;
+		}
+		synchronized(out) {
+			out.writeInt(channel);
+			out.writeByte(op);
+			if(op == SimulatorProtocol.OP_STEP) {
+				for(int i=0; i<xDim; i++) {
+					out.writeDouble(x[i]);
+				}
+				for(int i=0; i<uDim; i++) {
+					out.writeDouble(u[i]);
+				}
+			}
+			out.flush();
+		}
+		requestsCounter.increment();
+	}
+
+	/** Dispatches the responses to their channel until the connection
+	 * ends. Any failure of the reader, including an unexpected exception,
+	 * is recorded, closes the connection and makes the pending and next
+	 * requests fail. */
+	private final void readResponses() {
+		try {
+			while(true) {
+				final int channel = in.readInt();
+				final byte op = in.readByte();
+				final byte status = in.readByte();
+				channel(channel).receive(in, op, status);
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (Throwable t) {
+			failure = new IOException("The reader of the simulator failed", t);
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing more to do
+			}
+			final RemoteEnvironment[] all;
+			synchronized(this) {
+				all = Arrays.copyOf(channels, nSlots);
+			}
+			for(RemoteEnvironment env : all) {
+				if(env != null) {
+					env.fail();
+				}
+			}
+		}
+	}
+
+	/** Cause of the failure of the connection, null while it works */
+	final @Nullable IOException getFailure() {
+		return failure;
+	}
+
+	/** Number of open channels */
+	public final synchronized int getNbChannels() {
+		return nChannels;
+	}
+
+	/** Closes the connection, which makes the pending requests fail */
+	public final void close() throws IOException {
+		socket.close();
+	}
+}
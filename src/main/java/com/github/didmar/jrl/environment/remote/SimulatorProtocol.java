@@ -0,0 +1,41 @@
+package com.github.didmar.jrl.environment.remote;
+
+/**
+ * Binary protocol between a {@link RemoteSimulator} and a simulator such as
+ * a {@link SimulatorServer}. All the values are big-endian, as written by
+ * {@link java.io.DataOutputStream}.
+ * <ul>
+ * <li>On connection, the simulator sends the header : {@link #MAGIC} (int),
+ * the state and action dimensions (int, int), then the bounds xMin, xMax,
+ * uMin and uMax (double), which are infinite if unbounded.</li>
+ * <li>A request is a channel (int), an operation (byte), then for
+ * {@link #OP_STEP} the state and the action (double).</li>
+ * <li>The response to a request is its channel (int), its operation
+ * (byte), a status (byte), then if the status is {@link #STATUS_OK} the
+ * start state for {@link #OP_START}, or the next state (double), the reward
+ * (double) and whether the transition is terminal (boolean) for
+ * {@link #OP_STEP}.</li>
+ * </ul>
+ * The simulator answers the requests of a connection in order. A channel
+ * has at most one request in flight, but the requests of many channels can
+ * be in flight at once over the same connection.
+ *
+ * @author Didier Marin
+ */
+final class SimulatorProtocol {
+
+	/** First int sent by the simulator, "JRLS" in ASCII */
+	static final int MAGIC = 0x4A524C53;
+	/** Draws a start state */
+	static final byte OP_START = 0;
+	/** Draws the next state, reward and termination of a transition */
+	static final byte OP_STEP = 1;
+	/** Status of a successful response */
+	static final byte STATUS_OK = 0;
+	/** Status of a response to a request which the simulator failed on */
+	static final byte STATUS_ERROR = 1;
+
+	private SimulatorProtocol() {
+		// Static class
+	}
+}
@@ -0,0 +1,185 @@
+package com.github.didmar.jrl.environment.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.IEnvironment;
+
+/**
+ * Serves an in-process environment to {@link RemoteSimulator}s, over TCP
+ * connections on the loopback interface, see {@link SimulatorProtocol}. It
+ * stands in for an out-of-process simulator, e.g. in tests.
+ * <p>
+ * Each connection has a thread which answers its requests in order, and
+ * only flushes its responses once no more requests are buffered, so that
+ * the pipelined requests of many channels are answered in few writes. The
+ * environment is used by one connection at a time, so it does not need to
+ * be thread-safe.
+ *
+ * @author Didier Marin
+ */
+public final class SimulatorServer implements Closeable {
+
+	/** The simulated environment, which guards its own use */
+	private final IEnvironment env;
+	private final ServerSocket serverSocket;
+	/** Open connections */
+	private final List<Socket> sockets;
+	private volatile boolean closed = false;
+
+	/**
+	 * Starts a simulator on the loopback interface.
+	 * @param env   the simulated environment
+	 * @param port  the port to listen on, or 0 for any free port (see
+	 *              {@link #getPort()})
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public SimulatorServer(IEnvironment env, int port) throws IOException {
+		this.env = env;
+		sockets = new CopyOnWriteArrayList<Socket>();
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+		final Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				acceptConnections();
+			}
+		}, "SimulatorServer-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/** Accepts connections until the server is closed */
+	private final void acceptConnections() {
+		while(!closed) {
+			try {
+				final Socket socket = serverSocket.accept();
+				sockets.add(socket);
+				final Thread thread = new Thread(new Runnable() {
+					public void run() {
+						serve(socket);
+					}
+				}, "SimulatorServer-connection");
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// The server socket was closed
+			}
+		}
+	}
+
+	/** Answers the requests of a connection until it ends */
+	private final void serve(Socket socket) {
+		final int xDim = env.getXDim();
+		final int uDim = env.getUDim();
+		final double[] x = new double[xDim];
+		final double[] u = new double[uDim];
+		try {
+			socket.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(SimulatorProtocol.MAGIC);
+			out.writeInt(xDim);
+			out.writeInt(uDim);
+			writeBounds(out, env.getXMin(), xDim, Double.NEGATIVE_INFINITY);
+			writeBounds(out, env.getXMax(), xDim, Double.POSITIVE_INFINITY);
+			writeBounds(out, env.getUMin(), uDim, Double.NEGATIVE_INFINITY);
+			writeBounds(out, env.getUMax(), uDim, Double.POSITIVE_INFINITY);
+			out.flush();
+			while(true) {
+				final int channel = in.readInt();
+				final byte op = in.readByte();
+				if(op == SimulatorProtocol.OP_STEP) {
+					for(int i=0; i<xDim; i++) {
+						x[i] = in.readDouble();
+					}
+					for(int i=0; i<uDim; i++) {
+						u[i] = in.readDouble();
+					}
+				}
+				out.writeInt(channel);
+				out.writeByte(op);
+				synchronized(env) {
+					try {
+						if(op == SimulatorProtocol.OP_START) {
+							final double[] x0 = env.startState();
+							out.writeByte(SimulatorProtocol.STATUS_OK);
+							writeVector(out, x0, xDim);
+						} else if(op == SimulatorProtocol.OP_STEP) {
+							final double[] xn = env.nextState(x, u);
+							final double r = env.reward(x, u, xn);
+							final boolean terminal = env.isTerminal(x, u, xn);
+							out.writeByte(SimulatorProtocol.STATUS_OK);
+							writeVector(out, xn, xDim);
+							out.writeDouble(r);
+							out.writeBoolean(terminal);
+						} else {
+							out.writeByte(SimulatorProtocol.STATUS_ERROR);
+						}
+					} catch (RuntimeException e) {
+						out.writeByte(SimulatorProtocol.STATUS_ERROR);
+					}
+				}
+				if(in.available() == 0) {
+					out.flush();
+				}
+			}
+		} catch (IOException e) {
+			// The client closed the connection, or the server was closed
+		} finally {
+			sockets.remove(socket);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing more to do
+			}
+		}
+	}
+
+	private static void writeVector(DataOutputStream out, double[] v, int n)
+			throws IOException {
+		for(int i=0; i<n; i++) {
+			out.writeDouble(v[i]);
+		}
+	}
+
+	private static void writeBounds(DataOutputStream out, @Nullable double[] b,
+			int n, double unbounded) throws IOException {
+		for(int i=0; i<n; i++) {
+			out.writeDouble(b == null ? unbounded : b[i]);
+		}
+	}
+
+	/** Port the server listens on */
+	public final int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** Stops the server and closes all its connections */
+	public final void close() {
+		closed = true;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// Nothing more to do
+		}
+		for(Socket socket : sockets) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing more to do
+			}
+		}
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * Environments simulated by another process, reached over a loopback TCP
+ * connection: a {@link com.github.didmar.jrl.environment.remote.RemoteSimulator}
+ * is the connection to a simulator, shared by the
+ * {@link com.github.didmar.jrl.environment.remote.RemoteEnvironment} of each
+ * concurrent episode, and a
+ * {@link com.github.didmar.jrl.environment.remote.SimulatorServer} serves an
+ * in-process environment with the same protocol.
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package com.github.didmar.jrl.environment.remote;
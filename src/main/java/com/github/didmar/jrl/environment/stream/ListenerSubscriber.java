@@ -0,0 +1,139 @@
+package com.github.didmar.jrl.environment.stream;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.environment.EnvironmentListener;
+
+/**
+ * Feeds the samples of a {@link SamplePublisher} to an
+ * {@link EnvironmentListener}, such as a learning agent or a logger, which
+ * then runs on the executor of the subscription instead of the simulation
+ * thread. The listener is notified of the beginning and end of the episodes
+ * as by the environment. Samples are requested by batches, a new batch
+ * being requested once half of the previous one was received.
+ * <p>
+ * The listener runs concurrently with the simulation, so a learning agent
+ * must not be fed the samples of its own policy : the agent which acts in
+ * the environment must follow an immutable policy, such as a
+ * {@link com.github.didmar.jrl.policy.SnapshotPolicy} view of a snapshot of
+ * the learned policy, or a frozen policy (see {@link SamplePublisher}).
+ * <p>
+ * If the listener throws, the publisher cancels the subscription : the
+ * listener is not fed anymore, while the simulation goes on. The exception
+ * is then returned by {@link #getError()}.
+ *
+ * @author Didier Marin
+ */
+public final class ListenerSubscriber implements Subscriber<Sample> {
+
+	/** The listener fed with the samples */
+	private final EnvironmentListener listener;
+	/** Number of samples of each request */
+	private final long batchSize;
+	private @Nullable Subscription subscription = null;
+	/** Number of samples requested and not received yet */
+	private long outstanding = 0;
+	/** Indicates if an episode was started and not ended yet */
+	private boolean inEpisode = false;
+	/** Error which ended the subscription, if any */
+	private volatile @Nullable Throwable error = null;
+
+	/**
+	 * @param listener   the listener fed with the samples
+	 * @param batchSize  number of samples of each request, usually the size
+	 *                   of the pool of the publisher
+	 */
+	public ListenerSubscriber(EnvironmentListener listener, long batchSize) {
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be greater than 0");
+		}
+		this.listener = listener;
+		this.batchSize = batchSize;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.stream.Subscriber#onSubscribe(com.github.didmar.jrl.environment.stream.Subscription)
+	 */
+	public final void onSubscribe(Subscription subscription) {
+		this.subscription = subscription;
+		outstanding = batchSize;
+		subscription.request(batchSize);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.stream.Subscriber#onNext(java.lang.Object)
+	 */
+	public final void onNext(Sample sample) {
+		if(sample.getT() == 0) {
+			if(inEpisode) {
+				listener.endEpisode();
+			}
+			listener.newEpisode(sample.getX(), sample.getMaxT());
+			inEpisode = true;
+		}
+		if(inEpisode) {
+			if(listener instanceof DiscreteActionListener) {
+				((DiscreteActionListener) listener).receiveSample(sample.getX(),
+						sample.getU(), sample.getUIndex(), sample.getXn(),
+						sample.getR(), sample.isTerminal());
+			} else {
+				listener.receiveSample(sample.getX(), sample.getU(),
+						sample.getXn(), sample.getR(), sample.isTerminal());
+			}
+			if(sample.isLast()) {
+				listener.endEpisode();
+				inEpisode = false;
+			}
+		}
+		outstanding--;
+		final Subscription subscription = this.subscription;
+		if(subscription != null && outstanding <= batchSize / 2) {
+			subscription.request(batchSize - outstanding);
+			outstanding = batchSize;
+		}
+	}
+
+	/**
+	 * Keeps the error, see {@link #getError()}, and ends the current
+	 * episode, if any.
+	 * @see com.github.didmar.jrl.environment.stream.Subscriber#onError(java.lang.Throwable)
+	 */
+	public final void onError(Throwable error) {
+		this.error = error;
+		onComplete();
+	}
+
+	/**
+	 * Ends the current episode, if any.
+	 * @see com.github.didmar.jrl.environment.stream.Subscriber#onComplete()
+	 */
+	public final void onComplete() {
+		if(inEpisode) {
+			listener.endEpisode();
+			inEpisode = false;
+		}
+	}
+
+	/**
+	 * Returns the error which ended the subscription, such as an exception
+	 * thrown by the listener, or null if there was none.
+	 * @return the error, or null
+	 */
+	public final @Nullable Throwable getError() {
+		return error;
+	}
+
+	/** Returns the listener fed with the samples */
+	public final EnvironmentListener getListener() {
+		return listener;
+	}
+
+	/** Stops feeding the listener */
+	public final void cancel() {
+		final Subscription subscription = this.subscription;
+		if(subscription != null) {
+			subscription.cancel();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.github.didmar.jrl.environment.stream;
+
+/**
+ * A producer of items, which are received by its {@link Subscriber}s as
+ * they request them, following the Reactive Streams contract.
+ *
+ * @param <T> the type of the items
+ * @author Didier Marin
+ */
+public interface Publisher<T> {
+
+	/**
+	 * Adds a subscriber, whose
+	 * {@link Subscriber#onSubscribe(Subscription)} is called first, then
+	 * {@link Subscriber#onNext(Object)} for each requested item, until
+	 * {@link Subscriber#onComplete()} or {@link Subscriber#onError(Throwable)}
+	 * is called, or until the subscription is cancelled.
+	 * @param subscriber  the subscriber
+	 */
+	public void subscribe(Subscriber<? super T> subscriber);
+
+}
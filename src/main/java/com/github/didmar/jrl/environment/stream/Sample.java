@@ -0,0 +1,111 @@
+package com.github.didmar.jrl.environment.stream;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+
+/**
+ * A (x,u,xn,r) sample published by a {@link SamplePublisher}, along with its
+ * position in its episode. Samples are pooled : a sample is only valid
+ * during the {@link Subscriber#onNext(Object)} call which receives it, and
+ * is reused once all the subscribers have received it, so its arrays must
+ * neither be modified nor kept.
+ *
+ * @author Didier Marin
+ */
+public final class Sample {
+
+	private final double[] x;
+	private final double[] u;
+	private int uIndex = DiscreteActionListener.NO_ACTION_INDEX;
+	private final double[] xn;
+	private double r = 0.;
+	private boolean isTerminal = false;
+	/** Number of the episode, starting from 0 */
+	private long episode = 0;
+	/** Step of the sample in its episode, starting from 0 */
+	private int t = 0;
+	/** Maximum length of the episode */
+	private int maxT = 0;
+	/** Number of subscribers which have not received this sample yet */
+	private final AtomicInteger pending = new AtomicInteger();
+	/** The publisher which owns this sample */
+	private final SamplePublisher publisher;
+
+	Sample(SamplePublisher publisher, int xDim, int uDim) {
+		this.publisher = publisher;
+		x = new double[xDim];
+		u = new double[uDim];
+		xn = new double[xDim];
+	}
+
+	/** Fills this sample, which is to be received by n subscribers */
+	final void set(double[] x, double[] u, int uIndex, double[] xn, double r,
+			boolean isTerminal, long episode, int t, int maxT, int n) {
+		System.arraycopy(x, 0, this.x, 0, this.x.length);
+		System.arraycopy(u, 0, this.u, 0, this.u.length);
+		this.uIndex = uIndex;
+		System.arraycopy(xn, 0, this.xn, 0, this.xn.length);
+		this.r = r;
+		this.isTerminal = isTerminal;
+		this.episode = episode;
+		this.t = t;
+		this.maxT = maxT;
+		pending.set(n);
+	}
+
+	/** Called once by each subscriber which is done with this sample, the
+	 * last one returning it to the pool */
+	final void release() {
+		if(pending.decrementAndGet() == 0) {
+			publisher.recycle(this);
+		}
+	}
+
+	public final double[] getX() {
+		return x;
+	}
+
+	public final double[] getU() {
+		return u;
+	}
+
+	/** Index of the action in the set of actions of the policy followed, or
+	 * {@link DiscreteActionListener#NO_ACTION_INDEX} if unknown */
+	public final int getUIndex() {
+		return uIndex;
+	}
+
+	public final double[] getXn() {
+		return xn;
+	}
+
+	public final double getR() {
+		return r;
+	}
+
+	public final boolean isTerminal() {
+		return isTerminal;
+	}
+
+	/** Number of the episode of the sample, starting from 0 */
+	public final long getEpisode() {
+		return episode;
+	}
+
+	/** Step of the sample in its episode, starting from 0 */
+	public final int getT() {
+		return t;
+	}
+
+	/** Maximum length of the episode of the sample */
+	public final int getMaxT() {
+		return maxT;
+	}
+
+	/** Indicates if this is the last sample of its episode, i.e. if it is
+	 * terminal or if the episode reached its maximum length */
+	public final boolean isLast() {
+		return isTerminal || t == maxT - 1;
+	}
+}
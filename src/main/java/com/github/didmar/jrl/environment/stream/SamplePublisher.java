@@ -0,0 +1,424 @@
+package com.github.didmar.jrl.environment.stream;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.environment.IEnvironment;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Histogram;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Publishes the samples of the environments it listens to as a stream of
+ * pooled {@link Sample}s, so that learners, loggers and metrics can
+ * subscribe and consume the samples at their own pace, each on its own
+ * executor, instead of being called on the simulation thread.
+ * <p>
+ * The publisher owns a fixed pool of samples. Each sample of the
+ * environment is copied into a free sample of the pool, which is queued for
+ * every subscriber, and returns to the pool once all of them have received
+ * it. A subscriber only receives the samples it requested, so the samples
+ * queued for a slow subscriber hold the pool, and once the pool is empty
+ * the simulation thread waits for a free sample : slow subscribers throttle
+ * the simulation instead of buffering the samples without bound, and the
+ * samples are never allocated after the pool. Without any subscriber, the
+ * samples are dropped.
+ * <p>
+ * A subscriber receives the samples published after it subscribed, until
+ * {@link #close()} is called, after which it is completed. Closing the
+ * publisher also releases a simulation thread waiting for a free sample,
+ * even if a subscriber never requests its samples. If its
+ * {@link Subscriber#onNext(Object)} throws, even an {@link Error}, its
+ * subscription is cancelled and it receives the exception through
+ * {@link Subscriber#onError(Throwable)}. If one of its other methods
+ * throws, its subscription is cancelled.
+ * <p>
+ * Since the subscribers run concurrently with the simulation, a subscriber
+ * which learns from the samples, such as a
+ * {@link com.github.didmar.jrl.agent.LearningAgent} fed by a
+ * {@link ListenerSubscriber}, must not update the policy which acts in the
+ * environment : the acting policy must be immutable, e.g. a
+ * {@link com.github.didmar.jrl.policy.SnapshotPolicy} view of a snapshot of
+ * the learned policy, or a frozen policy, replaced by a newer snapshot
+ * between the episodes.
+ * <p>
+ * The publisher records the number of published samples, and the time the
+ * simulation waited for a free sample, in nanoseconds, under the
+ * <tt>SamplePublisher</tt> metrics (see {@link Metrics}).
+ *
+ * @author Didier Marin
+ */
+public final class SamplePublisher implements DiscreteActionListener,
+		Publisher<Sample> {
+
+	/** Number of samples published by all the instances */
+	private static final Counter publishedCounter = Metrics.counter("SamplePublisher.published");
+	/** Time the simulation waited for a free sample */
+	private static final Histogram waitHistogram = Metrics.histogram("SamplePublisher.wait");
+	/** Period at which a simulation waiting for a free sample checks if the
+	 * publisher was closed, in milliseconds */
+	private static final long CLOSED_CHECK_MILLIS = 10;
+
+	/** Free samples */
+	private final BlockingQueue<Sample> pool;
+	/** Number of samples of the pool */
+	private final int poolSize;
+	/** Current subscriptions, replaced on each change, guarded by this */
+	private volatile SampleSubscription[] subscriptions = new SampleSubscription[0];
+	/** Indicates if the publisher is closed, guarded by this */
+	private volatile boolean closed = false;
+
+	// The current episode, only used by the simulation thread
+	/** Number of the current episode, -1 before the first one */
+	private long episode = -1;
+	/** Step of the next sample in the current episode */
+	private int t = 0;
+	/** Maximum length of the current episode */
+	private int maxT = 0;
+
+	/**
+	 * @param xDim      state-space dimension
+	 * @param uDim      action-space dimension
+	 * @param poolSize  number of samples of the pool, i.e. the maximum number
+	 *                  of samples which have not been received by all the
+	 *                  subscribers yet
+	 */
+	public SamplePublisher(int xDim, int uDim, int poolSize) {
+		if(poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize must be greater than 0");
+		}
+		this.poolSize = poolSize;
+		pool = new ArrayBlockingQueue<Sample>(poolSize);
+		for(int i=0; i<poolSize; i++) {
+			pool.add(new Sample(this, xDim, uDim));
+		}
+	}
+
+	/**
+	 * Creates a publisher of the samples of an environment, as one of its
+	 * listeners.
+	 * @param env       the environment
+	 * @param poolSize  number of samples of the pool
+	 * @return the publisher, which listens to env
+	 */
+	public static SamplePublisher attach(IEnvironment env, int poolSize) {
+		final SamplePublisher publisher = new SamplePublisher(env.getXDim(),
+				env.getUDim(), poolSize);
+		env.addListener(publisher);
+		return publisher;
+	}
+
+	/**
+	 * Subscribes with a single thread of its own, which is released once the
+	 * subscription ends.
+	 * @see com.github.didmar.jrl.environment.stream.Publisher#subscribe(com.github.didmar.jrl.environment.stream.Subscriber)
+	 */
+	public final void subscribe(Subscriber<? super Sample> subscriber) {
+		final ExecutorService executor = Executors.newSingleThreadExecutor(
+				new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "SamplePublisher-subscriber");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		subscribe(subscriber, executor, executor);
+	}
+
+	/**
+	 * Subscribes with a given executor, which runs the methods of the
+	 * subscriber one task at a time.
+	 * @param subscriber  the subscriber
+	 * @param executor    the executor which calls the subscriber
+	 */
+	public final void subscribe(Subscriber<? super Sample> subscriber,
+			Executor executor) {
+		subscribe(subscriber, executor, null);
+	}
+
+	private final synchronized void subscribe(
+			Subscriber<? super Sample> subscriber, Executor executor,
+			@Nullable ExecutorService ownedExecutor) {
+		final SampleSubscription s = new SampleSubscription(subscriber,
+				executor, ownedExecutor);
+		if(closed) {
+			s.completed = true;
+		} else {
+			final SampleSubscription[] subs = Arrays.copyOf(subscriptions,
+					subscriptions.length + 1);
+			subs[subs.length - 1] = s;
+			subscriptions = subs;
+		}
+		s.signal();
+	}
+
+	private final synchronized void remove(SampleSubscription s) {
+		final SampleSubscription[] subs = subscriptions;
+		for(int i=0; i<subs.length; i++) {
+			if(subs[i] == s) {
+				final SampleSubscription[] newSubs
+					= new SampleSubscription[subs.length - 1];
+				System.arraycopy(subs, 0, newSubs, 0, i);
+				System.arraycopy(subs, i+1, newSubs, i, subs.length - i - 1);
+				subscriptions = newSubs;
+				return;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#newEpisode(double[], int)
+	 */
+	public final void newEpisode(double[] x0, int maxT) {
+		episode++;
+		t = 0;
+		this.maxT = maxT;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
+	 */
+	public final void receiveSample(double[] x, double[] u, double[] xn,
+			double r, boolean isTerminal) {
+		receiveSample(x, u, NO_ACTION_INDEX, xn, r, isTerminal);
+	}
+
+	/**
+	 * Publishes the sample, waiting for a free sample of the pool if
+	 * necessary. The sample is dropped if the publisher is closed meanwhile.
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 * @throws IllegalStateException if interrupted while waiting
+	 */
+	public final void receiveSample(double[] x, double[] u, int uIndex,
+			double[] xn, double r, boolean isTerminal) {
+		final int step = t++;
+		final SampleSubscription[] subs = subscriptions;
+		if(subs.length == 0) {
+			return;
+		}
+		Sample sample = pool.poll();
+		if(sample == null) {
+			final long start = System.nanoTime();
+			try {
+				while(sample == null) {
+					if(closed) {
+						return;
+					}
+					sample = pool.poll(CLOSED_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the subscribers", e);
+			}
+			waitHistogram.recordSince(start);
+		}
+		sample.set(x, u, uIndex, xn, r, isTerminal, episode, step, maxT,
+				subs.length);
+		for(SampleSubscription s : subs) {
+			s.offer(sample);
+		}
+		publishedCounter.increment();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		// The last sample of the episode is known from its step
+	}
+
+	/** Returns a sample to the pool, once all the subscribers received it */
+	final void recycle(Sample sample) {
+		pool.add(sample);
+	}
+
+	/**
+	 * Stops publishing : each subscriber is completed once it has received
+	 * the samples already published, and later subscribers are completed at
+	 * once. The samples received afterwards are dropped, including the one
+	 * the simulation may be waiting a free sample for.
+	 */
+	public final synchronized void close() {
+		closed = true;
+		final SampleSubscription[] subs = subscriptions;
+		subscriptions = new SampleSubscription[0];
+		for(SampleSubscription s : subs) {
+			s.completed = true;
+			s.signal();
+		}
+	}
+
+	/** Number of current subscribers */
+	public final int getNbSubscribers() {
+		return subscriptions.length;
+	}
+
+	/** Number of free samples of the pool */
+	public final int getNbFreeSamples() {
+		return pool.size();
+	}
+
+	/**
+	 * The subscription of a subscriber, whose samples are queued until they
+	 * are requested. The subscriber is called by a drain task run on its
+	 * executor, which is scheduled by any change of the queue, the demand or
+	 * the state of the subscription, and of which at most one runs at a
+	 * time.
+	 */
+	private final class SampleSubscription implements Subscription, Runnable {
+
+		private final Subscriber<? super Sample> subscriber;
+		private final Executor executor;
+		/** Executor created for this subscription, shut down at its end */
+		private final @Nullable ExecutorService ownedExecutor;
+		/** Samples published for the subscriber and not received yet. There
+		 * cannot be more than the size of the pool. */
+		private final BlockingQueue<Sample> queue;
+		/** Number of requested samples not received yet */
+		private final AtomicLong demand = new AtomicLong();
+		/** Number of signals not handled by the drain task yet */
+		private final AtomicInteger signals = new AtomicInteger();
+		private volatile boolean cancelled = false;
+		/** Indicates if the publisher was closed */
+		volatile boolean completed = false;
+		/** Error of an invalid request, if any */
+		private volatile @Nullable Throwable error = null;
+		// Only used by the drain task
+		private boolean subscribed = false;
+		private boolean done = false;
+
+		SampleSubscription(Subscriber<? super Sample> subscriber,
+				Executor executor, @Nullable ExecutorService ownedExecutor) {
+			this.subscriber = subscriber;
+			this.executor = executor;
+			this.ownedExecutor = ownedExecutor;
+			queue = new ArrayBlockingQueue<Sample>(poolSize);
+		}
+
+		/** Queues a sample, called by the simulation thread */
+		final void offer(Sample sample) {
+			queue.add(sample);
+			signal();
+		}
+
+		public final void request(long n) {
+			if(n <= 0) {
+				error = new IllegalArgumentException("The number of requested samples must be greater than 0");
+				cancel();
+				return;
+			}
+			long d;
+			long newD;
+			do {
+				d = demand.get();
+				newD = (d + n < 0 ? Long.MAX_VALUE : d + n);
+			} while(!demand.compareAndSet(d, newD));
+			signal();
+		}
+
+		public final void cancel() {
+			cancelled = true;
+			remove(this);
+			signal();
+		}
+
+		/** Schedules the drain task, unless it is already scheduled */
+		final void signal() {
+			if(signals.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					// The executor was shut down, hence the subscription
+					// cannot receive its samples anymore
+					signals.set(0);
+					releaseAll();
+				}
+			}
+		}
+
+		/** The drain task */
+		public final void run() {
+			int missed = 1;
+			do {
+				try {
+					drain();
+				} catch (Throwable t) {
+					// onSubscribe, onError or onComplete threw, the
+					// subscription ends and gives its samples back
+					cancelled = true;
+					remove(this);
+					terminate();
+				}
+				missed = signals.addAndGet(-missed);
+			} while(missed != 0);
+		}
+
+		private final void drain() {
+			if(done) {
+				releaseAll();
+				return;
+			}
+			if(!subscribed) {
+				subscribed = true;
+				subscriber.onSubscribe(this);
+			}
+			while(!cancelled && demand.get() > 0) {
+				final Sample sample = queue.poll();
+				if(sample == null) {
+					break;
+				}
+				if(demand.get() != Long.MAX_VALUE) {
+					demand.decrementAndGet();
+				}
+				try {
+					subscriber.onNext(sample);
+				} catch (Throwable t) {
+					error = t;
+					cancelled = true;
+					remove(this);
+				} finally {
+					sample.release();
+				}
+			}
+			final Throwable error = this.error;
+			if(cancelled) {
+				terminate();
+				if(error != null) {
+					subscriber.onError(error);
+				}
+			} else if(completed && queue.isEmpty()) {
+				terminate();
+				subscriber.onComplete();
+			}
+		}
+
+		/** Ends the subscription, and gives its samples back */
+		private final void terminate() {
+			done = true;
+			releaseAll();
+			final ExecutorService ownedExecutor = this.ownedExecutor;
+			if(ownedExecutor != null) {
+				ownedExecutor.shutdown();
+			}
+		}
+
+		private final void releaseAll() {
+			Sample sample;
+			while((sample = queue.poll()) != null) {
+				sample.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.didmar.jrl.environment.stream;
+
+/**
+ * A receiver of the items of a {@link Publisher}. The methods of a
+ * subscriber are called one at a time, in order.
+ *
+ * @param <T> the type of the items
+ * @author Didier Marin
+ */
+public interface Subscriber<T> {
+
+	/**
+	 * Called once, before any other method. No item is received until some
+	 * are requested with {@link Subscription#request(long)}.
+	 * @param subscription  the subscription, to request items or cancel
+	 */
+	public void onSubscribe(Subscription subscription);
+
+	/**
+	 * Receives the next item, which was requested.
+	 * @param item  the item
+	 */
+	public void onNext(T item);
+
+	/**
+	 * Called once if the subscription fails, after which no method is
+	 * called.
+	 * @param error  the cause of the failure
+	 */
+	public void onError(Throwable error);
+
+	/**
+	 * Called once after the last item, after which no method is called.
+	 */
+	public void onComplete();
+
+}
@@ -0,0 +1,25 @@
+package com.github.didmar.jrl.environment.stream;
+
+/**
+ * The link between a {@link Publisher} and one of its {@link Subscriber}s,
+ * through which the subscriber signals its demand.
+ *
+ * @author Didier Marin
+ */
+public interface Subscription {
+
+	/**
+	 * Requests n more items. Demand accumulates, and {@link Long#MAX_VALUE}
+	 * means an unbounded demand.
+	 * @param n  number of items, which must be greater than 0, else the
+	 *           subscription fails with an {@link IllegalArgumentException}
+	 */
+	public void request(long n);
+
+	/**
+	 * Stops receiving items. Some items may still be received, if they were
+	 * already being delivered.
+	 */
+	public void cancel();
+
+}
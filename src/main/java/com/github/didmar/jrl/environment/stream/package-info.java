@@ -0,0 +1,11 @@
+/**
+ * Streams of the samples of an environment, with demand-based back-pressure,
+ * which learners, loggers and metrics can consume at their own pace on
+ * their own threads. The {@link com.github.didmar.jrl.environment.stream.Publisher},
+ * {@link com.github.didmar.jrl.environment.stream.Subscriber} and
+ * {@link com.github.didmar.jrl.environment.stream.Subscription} interfaces
+ * follow the Reactive Streams contract.
+ * @see com.github.didmar.jrl.environment.stream.SamplePublisher
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package com.github.didmar.jrl.environment.stream;
@@ -0,0 +1,316 @@
+package com.github.didmar.jrl.evaluation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.ImportanceWeighting;
+
+/**
+ * Estimates the performance gradient with the Episodic REINFORCE method with
+ * optimal baseline, like {@link OnlineREINFORCEEstimator}, but also reuses
+ * the episodes of the previous estimations: they are weighted by importance
+ * sampling, according to their probability under the current policy
+ * compared to the policy they were generated with.
+ * <p>
+ * Unlike with the online estimators, {@link #reset()} does not forget the
+ * completed episodes: they are moved to a history of at most
+ * <tt>historySize</tt> episodes, the oldest ones being dropped. Since the
+ * likelihood ratios and the log-policy derivatives must be evaluated for
+ * the current parameters, the whole trajectories are stored, and each
+ * estimation costs O(N T n) for N episodes of T steps.
+ *
+ * @author Didier Marin
+ */
+public final class ImportanceWeightedREINFORCEEstimator
+		implements OnlineGradientEstimator {
+
+	/** The policy followed during the sample episodes */
+	private final ILogDifferentiablePolicy pol;
+	private final DiscountFactor gamma;
+	/** Maximum number of past episodes kept for the next estimations */
+	private final int historySize;
+	/** How the past episodes are weighted */
+	private final ImportanceWeighting weighting;
+	private final int n;
+
+	/** Episodes completed since the last reset */
+	private final List<Trajectory> batch = new ArrayList<Trajectory>();
+	/** Past episodes, the oldest first */
+	private final ArrayDeque<Trajectory> history = new ArrayDeque<Trajectory>();
+	/** Dropped episodes, whose arrays are reused for the next ones */
+	private final ArrayDeque<Trajectory> pool = new ArrayDeque<Trajectory>();
+	/** The current episode */
+	private @Nullable Trajectory current = null;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	private double[] logRatios = new double[0];
+	private double[] weights = new double[0];
+	/** Used to store the weighted sums of g^2 R, g^2, g R and g */
+	private final double[] sumG2R;
+	private final double[] sumG2;
+	private final double[] sumGR;
+	private final double[] sumG;
+
+	/**
+	 * @param pol          the policy followed during the sample episodes
+	 * @param gamma        the discount factor
+	 * @param historySize  maximum number of past episodes reused in each
+	 *                     estimation, in addition to the ones completed
+	 *                     since the last reset
+	 * @param weighting    how the past episodes are weighted
+	 */
+	public ImportanceWeightedREINFORCEEstimator(ILogDifferentiablePolicy pol,
+			DiscountFactor gamma, int historySize,
+			ImportanceWeighting weighting) {
+		if(historySize < 0) {
+			throw new IllegalArgumentException("historySize must be positive or zero");
+		}
+		this.pol = pol;
+		this.gamma = gamma;
+		this.historySize = historySize;
+		this.weighting = weighting;
+		n = pol.getParamsSize();
+		sumG2R = new double[n];
+		sumG2 = new double[n];
+		sumGR = new double[n];
+		sumG = new double[n];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#newEpisode(double[], int)
+	 */
+	public final void newEpisode(@NonNull double[] x0, int maxT) {
+		Trajectory traj = pool.poll();
+		if(traj == null) {
+			traj = new Trajectory(n);
+		}
+		traj.T = 0;
+		traj.logP = 0.;
+		current = traj;
+	}
+
+	/**
+	 * The action index is ignored, since the log-policy derivatives are
+	 * computed from the stored trajectories.
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u, int uIndex,
+									@NonNull double[] xn,
+									double r, boolean isTerminal) {
+		receiveSample(x, u, xn, r, isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
+	 */
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u,
+									@NonNull double[] xn,
+									double r, boolean isTerminal) {
+		final Trajectory traj = current;
+		if(traj == null) {
+			throw new IllegalStateException("No episode was started");
+		}
+		traj.logP += pol.logProba(x, u);
+		traj.add(x, u, r);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		final Trajectory traj = current;
+		if(traj == null) {
+			throw new IllegalStateException("No episode was started");
+		}
+		batch.add(traj);
+		current = null;
+	}
+
+	/**
+	 * The completed episodes are moved from the other estimator to this one.
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#add(com.github.didmar.jrl.evaluation.OnlineGradientEstimator)
+	 */
+	public final void add(OnlineGradientEstimator estimator) {
+		if(!(estimator instanceof ImportanceWeightedREINFORCEEstimator)) {
+			throw new IllegalArgumentException("Can only add an ImportanceWeightedREINFORCEEstimator");
+		}
+		final ImportanceWeightedREINFORCEEstimator other =
+				(ImportanceWeightedREINFORCEEstimator) estimator;
+		if(other.n != n) {
+			throw new IllegalArgumentException("The estimators must have the same number of parameters");
+		}
+		batch.addAll(other.batch);
+		other.batch.clear();
+	}
+
+	/**
+	 * The episodes completed since the last reset have a log likelihood
+	 * ratio of 0, those of the history are evaluated with the current
+	 * parameters of the policy.
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#computeGradientEstimation(double[])
+	 */
+	public final void computeGradientEstimation(double[] dJ) {
+		if(batch.isEmpty()) {
+			throw new IllegalStateException("No episode was completed");
+		}
+		final int N = batch.size() + history.size();
+		if(logRatios.length < N) {
+			logRatios = new double[N];
+			weights = new double[N];
+		}
+		int i = 0;
+		for(Trajectory traj : batch) {
+			evaluate(traj);
+			logRatios[i++] = 0.;
+		}
+		for(Trajectory traj : history) {
+			logRatios[i++] = evaluate(traj) - traj.logP;
+		}
+		weighting.computeWeights(logRatios, N, weights);
+
+		Arrays.fill(sumG2R, 0.);
+		Arrays.fill(sumG2, 0.);
+		Arrays.fill(sumGR, 0.);
+		Arrays.fill(sumG, 0.);
+		i = 0;
+		for(Trajectory traj : batch) {
+			accumulate(traj, weights[i++]);
+		}
+		for(Trajectory traj : history) {
+			accumulate(traj, weights[i++]);
+		}
+		for(int j=0; j<n; j++) {
+			// Optimal baseline
+			final double b = (sumG2[j] != 0. ? sumG2R[j] / sumG2[j] : 0.);
+			dJ[j] = sumGR[j] - b * sumG[j];
+		}
+	}
+
+	/**
+	 * Computes the sum of the log-policy derivatives and the discounted
+	 * reward of an episode, for the current policy parameters.
+	 * @return the log likelihood of the episode actions
+	 */
+	private final double evaluate(Trajectory traj) {
+		Arrays.fill(traj.g, 0.);
+		traj.R = 0.;
+		double logP = 0.;
+		double discount = 1.;
+		for(int t=0; t<traj.T; t++) {
+			logP += pol.logProba(traj.x[t], traj.u[t]);
+			final double[] dLogdTheta = pol.dLogdTheta(traj.x[t], traj.u[t]);
+			for(int j=0; j<n; j++) {
+				traj.g[j] += dLogdTheta[j];
+			}
+			traj.R += discount * traj.r[t];
+			discount *= gamma.value;
+		}
+		return logP;
+	}
+
+	/** Adds the weighted terms of an evaluated episode to the sums */
+	private final void accumulate(Trajectory traj, double w) {
+		for(int j=0; j<n; j++) {
+			final double wg = w * traj.g[j];
+			sumG2R[j] += wg * traj.g[j] * traj.R;
+			sumG2[j] += wg * traj.g[j];
+			sumGR[j] += wg * traj.R;
+			sumG[j] += wg;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#newInstance(com.github.didmar.jrl.policy.ILogDifferentiablePolicy)
+	 */
+	public final ImportanceWeightedREINFORCEEstimator newInstance(
+			ILogDifferentiablePolicy policy) {
+		return new ImportanceWeightedREINFORCEEstimator(policy, gamma,
+				historySize, weighting);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#getNbEpisodes()
+	 */
+	public final int getNbEpisodes() {
+		return batch.size();
+	}
+
+	/**
+	 * Moves the completed episodes to the history, dropping the oldest
+	 * episodes of the history if it is full.
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#reset()
+	 */
+	public final void reset() {
+		history.addAll(batch);
+		batch.clear();
+		while(history.size() > historySize) {
+			pool.add(history.poll());
+		}
+	}
+
+	/** Forgets the completed episodes and the history */
+	public final void clearHistory() {
+		reset();
+		pool.addAll(history);
+		history.clear();
+	}
+
+	/** Number of past episodes kept for the next estimations */
+	public final int getHistorySize() {
+		return history.size();
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "IW-REINFORCE";
+	}
+
+	/** States, actions and rewards of an episode */
+	private static final class Trajectory {
+		double[][] x = new double[0][];
+		double[][] u = new double[0][];
+		double[] r = new double[0];
+		/** Number of steps */
+		int T = 0;
+		/** Log likelihood of the actions under the policy they were
+		 * drawn from */
+		double logP = 0.;
+		/** Sum of the log-policy derivatives and discounted reward, for the
+		 * current policy parameters */
+		final double[] g;
+		double R = 0.;
+
+		Trajectory(int n) {
+			g = new double[n];
+		}
+
+		void add(double[] xt, double[] ut, double rt) {
+			if(T == r.length) {
+				final int capacity = Math.max(2 * T, 16);
+				x = Arrays.copyOf(x, capacity);
+				u = Arrays.copyOf(u, capacity);
+				r = Arrays.copyOf(r, capacity);
+			}
+			if(x[T] == null || x[T].length != xt.length) {
+				x[T] = new double[xt.length];
+			}
+			if(u[T] == null || u[T].length != ut.length) {
+				u[T] = new double[ut.length];
+			}
+			System.arraycopy(xt, 0, x[T], 0, xt.length);
+			System.arraycopy(ut, 0, u[T], 0, ut.length);
+			r[T] = rt;
+			T++;
+		}
+	}
+}
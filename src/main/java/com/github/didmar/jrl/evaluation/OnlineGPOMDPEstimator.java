@@ -0,0 +1,327 @@
+package com.github.didmar.jrl.evaluation;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy;
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Estimates the performance gradient with the G(PO)MDP method (Baxter and
+ * Bartlett 2001), also known as the policy gradient theorem estimator: the
+ * discounted reward of step t is only credited to the log-policy derivatives
+ * of the steps up to t, since later actions cannot have caused it. This
+ * removes the variance due to the rewards that precede each action, so that
+ * fewer episodes are needed than with REINFORCE for the same accuracy.
+ * <p>
+ * Optionally, the time-dependent optimal baseline of Peters and Schaal
+ * (2008) is subtracted from the reward of step t for each parameter j:
+ * b_tj = E[G_tj^2 r_t] / E[G_tj^2], where G_t is the sum of the log-policy
+ * derivatives up to step t and r_t the discounted reward of step t.
+ * An episode which ended before step t takes part in the baseline of step t
+ * with its final sum G and a null reward, so that the baseline term stays
+ * unbiased when the length of the episodes depends on the actions.
+ * <p>
+ * The estimation is computed online: the sum G_t is accumulated during the
+ * episode, and the sums over the episodes required by the estimation are
+ * kept for each step, so the memory is O(n maxT) with a baseline, O(n)
+ * without, whatever the number of episodes.
+ *
+ * @author Didier Marin
+ */
+public final class OnlineGPOMDPEstimator implements OnlineGradientEstimator {
+
+	/** The policy followed during the sample episodes */
+	private final ILogDifferentiablePolicy pol;
+	/** The same policy if its actions are discrete, null otherwise */
+	private final @Nullable IDiscreteLogDifferentiablePolicy discretePol;
+	private final DiscountFactor gamma;
+	/** Indicates if the time-dependent optimal baseline is used */
+	private final boolean baseline;
+	private final int n;
+
+	/** Sum of the log-policy derivatives of the current episode so far */
+	private final double[] G;
+	/** Current step of the current episode */
+	private int t;
+	/** Discount of the current step */
+	private double discount;
+
+	/** Sum over the episodes and steps of G_t r_t, without baseline */
+	private final double[] sumGR;
+	// arrays used with a baseline, allocated on first use and grown with the
+	// duration of the episodes
+	/** Sums over the episodes of G_t^2 r_t, G_t^2, G_t r_t and G_t, for
+	 * each step t */
+	private @Nullable double[][] sumG2RPerStep = null;
+	private @Nullable double[][] sumG2PerStep = null;
+	private @Nullable double[][] sumGRPerStep = null;
+	private @Nullable double[][] sumGPerStep = null;
+	/** Sums of the final G and G^2 of the episodes which ended at step t,
+	 * i.e. which take part in the steps after t with a null reward */
+	private @Nullable double[][] sumEndGPerStep = null;
+	private @Nullable double[][] sumEndG2PerStep = null;
+	/** Sums of G and G^2 over the episodes which ended so far, used when
+	 * computing the estimation */
+	private final double[] sumEndG;
+	private final double[] sumEndG2;
+	/** Number of steps for which the sums may be non-zero */
+	private int horizon = 0;
+	/** Number of completed episodes */
+	private int nEpi = 0;
+
+	/**
+	 * @param pol       the policy followed during the sample episodes
+	 * @param gamma     discount factor
+	 * @param baseline  if true, uses the time-dependent optimal baseline
+	 */
+	public OnlineGPOMDPEstimator(ILogDifferentiablePolicy pol,
+			DiscountFactor gamma, boolean baseline) {
+		this.pol = pol;
+		discretePol = (pol instanceof IDiscreteLogDifferentiablePolicy ?
+				(IDiscreteLogDifferentiablePolicy) pol : null);
+		this.gamma = gamma;
+		this.baseline = baseline;
+		n = pol.getParamsSize();
+		G = new double[n];
+		sumGR = new double[n];
+		sumEndG = new double[n];
+		sumEndG2 = new double[n];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#newEpisode(double[], int)
+	 */
+	public final void newEpisode(@NonNull double[] x0, int maxT) {
+		ArrUtils.zeros(G);
+		t = 0;
+		discount = 1.;
+		if(baseline) {
+			ensureHorizon(maxT);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
+	 */
+	@SuppressWarnings("null")
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u,
+									@NonNull double[] xn,
+									double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u, int uIndex,
+									@NonNull double[] xn,
+									double r, boolean isTerminal) {
+		final IDiscreteLogDifferentiablePolicy discretePol = this.discretePol;
+		final double[] dLogdTheta = (discretePol != null
+				&& uIndex != DiscreteActionListener.NO_ACTION_INDEX ?
+						discretePol.dLogdTheta(x, uIndex)
+						: pol.dLogdTheta(x, u));
+		final double dr = discount * r;
+		if(baseline) {
+			ensureHorizon(t + 1);
+			final double[] sumG2R = sumG2RPerStep[t];
+			final double[] sumG2 = sumG2PerStep[t];
+			final double[] sumGRt = sumGRPerStep[t];
+			final double[] sumG = sumGPerStep[t];
+			for(int j=0; j<n; j++) {
+				final double g = (G[j] += dLogdTheta[j]);
+				final double g2 = g * g;
+				sumG2R[j] += g2 * dr;
+				sumG2[j] += g2;
+				sumGRt[j] += g * dr;
+				sumG[j] += g;
+			}
+			horizon = Math.max(horizon, t + 1);
+		} else {
+			for(int j=0; j<n; j++) {
+				sumGR[j] += (G[j] += dLogdTheta[j]) * dr;
+			}
+		}
+		t++;
+		discount *= gamma.value;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#endEpisode()
+	 */
+	@SuppressWarnings("null")
+	public final void endEpisode() {
+		if(baseline) {
+			// The episode keeps its final G for the remaining steps
+			ensureHorizon(t + 1);
+			final double[] sumEndG = sumEndGPerStep[t];
+			final double[] sumEndG2 = sumEndG2PerStep[t];
+			for(int j=0; j<n; j++) {
+				sumEndG[j] += G[j];
+				sumEndG2[j] += G[j] * G[j];
+			}
+		}
+		nEpi++;
+	}
+
+	/** Grows the per step sums so that they cover at least T steps */
+	private final void ensureHorizon(int T) {
+		final double[][] old = sumG2RPerStep;
+		if(old != null && old.length >= T) {
+			return;
+		}
+		final int length = Math.max(T, old == null ? 0 : 2 * old.length);
+		sumG2RPerStep = grow(old, length);
+		sumG2PerStep = grow(sumG2PerStep, length);
+		sumGRPerStep = grow(sumGRPerStep, length);
+		sumGPerStep = grow(sumGPerStep, length);
+		sumEndGPerStep = grow(sumEndGPerStep, length);
+		sumEndG2PerStep = grow(sumEndG2PerStep, length);
+	}
+
+	private final double[][] grow(@Nullable double[][] sums, int length) {
+		final double[][] grown = new double[length][];
+		final int oldLength = (sums == null ? 0 : sums.length);
+		if(sums != null) {
+			System.arraycopy(sums, 0, grown, 0, oldLength);
+		}
+		for(int s=oldLength; s<length; s++) {
+			grown[s] = new double[n];
+		}
+		return grown;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#add(com.github.didmar.jrl.evaluation.OnlineGradientEstimator)
+	 */
+	@SuppressWarnings("null")
+	public final void add(OnlineGradientEstimator estimator) {
+		if(!(estimator instanceof OnlineGPOMDPEstimator)) {
+			throw new IllegalArgumentException("Can only add an OnlineGPOMDPEstimator");
+		}
+		final OnlineGPOMDPEstimator other = (OnlineGPOMDPEstimator) estimator;
+		if(other.n != n || other.baseline != baseline) {
+			throw new IllegalArgumentException("The estimators must have the same parameters size and baseline setting");
+		}
+		if(baseline) {
+			final int length = endLength(other);
+			ensureHorizon(length);
+			for(int s=0; s<other.horizon; s++) {
+				for(int j=0; j<n; j++) {
+					sumG2RPerStep[s][j] += other.sumG2RPerStep[s][j];
+					sumG2PerStep[s][j] += other.sumG2PerStep[s][j];
+					sumGRPerStep[s][j] += other.sumGRPerStep[s][j];
+					sumGPerStep[s][j] += other.sumGPerStep[s][j];
+				}
+			}
+			for(int s=0; s<length; s++) {
+				for(int j=0; j<n; j++) {
+					sumEndGPerStep[s][j] += other.sumEndGPerStep[s][j];
+					sumEndG2PerStep[s][j] += other.sumEndG2PerStep[s][j];
+				}
+			}
+			horizon = Math.max(horizon, other.horizon);
+		} else {
+			for(int j=0; j<n; j++) {
+				sumGR[j] += other.sumGR[j];
+			}
+		}
+		nEpi += other.nEpi;
+	}
+
+	/** Number of steps for which the sums of the ended episodes of an
+	 * estimator may be non-zero, an episode ending at most one step after
+	 * the horizon */
+	private static final int endLength(OnlineGPOMDPEstimator estimator) {
+		final double[][] sumEndGPerStep = estimator.sumEndGPerStep;
+		return (sumEndGPerStep == null ? 0
+				: Math.min(estimator.horizon + 1, sumEndGPerStep.length));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#computeGradientEstimation(double[])
+	 */
+	@SuppressWarnings("null")
+	public final void computeGradientEstimation(double[] dJ) {
+		if(nEpi == 0) {
+			throw new IllegalStateException("No episode was completed");
+		}
+		if(!baseline) {
+			for(int j=0; j<n; j++) {
+				dJ[j] = sumGR[j] / nEpi;
+			}
+			return;
+		}
+		ArrUtils.zeros(dJ);
+		ArrUtils.zeros(sumEndG);
+		ArrUtils.zeros(sumEndG2);
+		for(int s=0; s<horizon; s++) {
+			final double[] sumG2R = sumG2RPerStep[s];
+			final double[] sumG2 = sumG2PerStep[s];
+			final double[] sumGRt = sumGRPerStep[s];
+			final double[] sumG = sumGPerStep[s];
+			final double[] endG = sumEndGPerStep[s];
+			final double[] endG2 = sumEndG2PerStep[s];
+			for(int j=0; j<n; j++) {
+				// Episodes which ended before step s
+				sumEndG[j] += endG[j];
+				sumEndG2[j] += endG2[j];
+				final double g2 = sumG2[j] + sumEndG2[j];
+				// Time-dependent optimal baseline
+				final double b = (g2 != 0. ? sumG2R[j] / g2 : 0.);
+				dJ[j] += sumGRt[j] - b * (sumG[j] + sumEndG[j]);
+			}
+		}
+		for(int j=0; j<n; j++) {
+			dJ[j] /= nEpi;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#newInstance(com.github.didmar.jrl.policy.ILogDifferentiablePolicy)
+	 */
+	public final OnlineGPOMDPEstimator newInstance(
+			ILogDifferentiablePolicy policy) {
+		return new OnlineGPOMDPEstimator(policy, gamma, baseline);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#getNbEpisodes()
+	 */
+	public final int getNbEpisodes() {
+		return nEpi;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#reset()
+	 */
+	@SuppressWarnings("null")
+	public final void reset() {
+		ArrUtils.zeros(sumGR);
+		for(int s=0; s<horizon; s++) {
+			ArrUtils.zeros(sumG2RPerStep[s]);
+			ArrUtils.zeros(sumG2PerStep[s]);
+			ArrUtils.zeros(sumGRPerStep[s]);
+			ArrUtils.zeros(sumGPerStep[s]);
+		}
+		for(int s=0; s<endLength(this); s++) {
+			ArrUtils.zeros(sumEndGPerStep[s]);
+			ArrUtils.zeros(sumEndG2PerStep[s]);
+		}
+		horizon = 0;
+		nEpi = 0;
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "G(PO)MDP";
+	}
+}
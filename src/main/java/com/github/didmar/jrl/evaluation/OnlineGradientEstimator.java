@@ -0,0 +1,58 @@
+package com.github.didmar.jrl.evaluation;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+
+/**
+ * An estimator of the performance gradient of a policy that listens to
+ * sample episodes following that policy, and accumulates its estimation
+ * online instead of storing the samples.
+ * <p>
+ * Estimators of the same kind that listened to different episodes of the
+ * same policy, for instance in different threads, can be combined with
+ * {@link #add(OnlineGradientEstimator)}.
+ * <p>
+ * The agents forward the action index of the samples to their estimator,
+ * which can use it to compute the log-policy derivatives of an
+ * {@link com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy}
+ * without searching for the action.
+ *
+ * @author Didier Marin
+ */
+public interface OnlineGradientEstimator extends DiscreteActionListener {
+
+	/**
+	 * Computes the performance gradient estimation from the completed
+	 * episodes.
+	 * @param dJ [on return] the performance gradient estimation
+	 * @throws IllegalStateException if no episode was completed
+	 */
+	public void computeGradientEstimation(double[] dJ);
+
+	/**
+	 * Adds the completed episodes of another estimator to this one.
+	 * @param other an estimator of the same kind, created with
+	 *              {@link #newInstance(ILogDifferentiablePolicy)}
+	 * @throws IllegalArgumentException if the estimators are not compatible
+	 */
+	public void add(OnlineGradientEstimator other);
+
+	/**
+	 * Returns a new estimator of the same kind and with the same settings,
+	 * without any episode, for another copy of the policy.
+	 * @param pol  the policy followed during the sample episodes
+	 * @return a new estimator
+	 */
+	public OnlineGradientEstimator newInstance(ILogDifferentiablePolicy pol);
+
+	/** Number of completed episodes since the last reset */
+	public int getNbEpisodes();
+
+	/**
+	 * Ends the current batch of episodes: the completed episodes are
+	 * forgotten, unless the estimator reuses them in the next estimations,
+	 * see {@link ImportanceWeightedREINFORCEEstimator}.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,182 @@
+package com.github.didmar.jrl.evaluation;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy;
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Computes the same estimation of the performance gradient as
+ * {@link REINFORCEGradientEstimator}, the Episodic REINFORCE method with
+ * optimal baseline, but online: it listens to the sample episodes and only
+ * keeps, for each parameter j, the sums over the episodes i of
+ * g_ij^2 R_i, g_ij^2, g_ij R_i and g_ij, where g_i is the sum of the
+ * log-policy derivatives of episode i and R_i its discounted reward. Its
+ * memory is thus O(n) whatever the number and duration of the episodes.
+ * <p>
+ * Since these are sums, estimators that listened to different episodes of
+ * the same policy, for instance in different threads, can be combined.
+ *
+ * @author Didier Marin
+ */
+public final class OnlineREINFORCEEstimator implements OnlineGradientEstimator {
+
+	/** The policy followed during the sample episodes */
+	private final ILogDifferentiablePolicy pol;
+	/** The same policy if its actions are discrete, null otherwise */
+	private final @Nullable IDiscreteLogDifferentiablePolicy discretePol;
+	private final DiscountFactor gamma;
+	private final int n;
+
+	/** Sum of the log-policy derivatives of the current episode */
+	private final double[] g;
+	/** Discounted reward of the current episode */
+	private double R;
+	/** Discount of the current step */
+	private double discount;
+
+	/** Sums over the episodes of g^2 R, g^2, g R and g */
+	private final double[] sumG2R;
+	private final double[] sumG2;
+	private final double[] sumGR;
+	private final double[] sumG;
+	/** Number of completed episodes */
+	private int nEpi = 0;
+
+	public OnlineREINFORCEEstimator(ILogDifferentiablePolicy pol,
+			DiscountFactor gamma) {
+		this.pol = pol;
+		discretePol = (pol instanceof IDiscreteLogDifferentiablePolicy ?
+				(IDiscreteLogDifferentiablePolicy) pol : null);
+		this.gamma = gamma;
+		n = pol.getParamsSize();
+		g = new double[n];
+		sumG2R = new double[n];
+		sumG2 = new double[n];
+		sumGR = new double[n];
+		sumG = new double[n];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#newEpisode(double[], int)
+	 */
+	public final void newEpisode(@NonNull double[] x0, int maxT) {
+		ArrUtils.zeros(g);
+		R = 0.;
+		discount = 1.;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double, boolean)
+	 */
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u,
+									@NonNull double[] xn,
+									double r, boolean isTerminal) {
+		receiveSample(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, r,
+				isTerminal);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.DiscreteActionListener#receiveSample(double[], double[], int, double[], double, boolean)
+	 */
+	public final void receiveSample(@NonNull double[] x,
+									@NonNull double[] u, int uIndex,
+									@NonNull double[] xn,
+									double r, boolean isTerminal) {
+		final IDiscreteLogDifferentiablePolicy discretePol = this.discretePol;
+		final double[] dLogdTheta = (discretePol != null
+				&& uIndex != DiscreteActionListener.NO_ACTION_INDEX ?
+						discretePol.dLogdTheta(x, uIndex)
+						: pol.dLogdTheta(x, u));
+		for(int j=0; j<n; j++) {
+			g[j] += dLogdTheta[j];
+		}
+		R += discount * r;
+		discount *= gamma.value;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.EnvironmentListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		for(int j=0; j<n; j++) {
+			final double g2 = g[j] * g[j];
+			sumG2R[j] += g2 * R;
+			sumG2[j] += g2;
+			sumGR[j] += g[j] * R;
+			sumG[j] += g[j];
+		}
+		nEpi++;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#add(com.github.didmar.jrl.evaluation.OnlineGradientEstimator)
+	 */
+	public final void add(OnlineGradientEstimator estimator) {
+		if(!(estimator instanceof OnlineREINFORCEEstimator)) {
+			throw new IllegalArgumentException("Can only add an OnlineREINFORCEEstimator");
+		}
+		final OnlineREINFORCEEstimator other = (OnlineREINFORCEEstimator) estimator;
+		if(other.n != n) {
+			throw new IllegalArgumentException("The estimators must have the same number of parameters");
+		}
+		for(int j=0; j<n; j++) {
+			sumG2R[j] += other.sumG2R[j];
+			sumG2[j] += other.sumG2[j];
+			sumGR[j] += other.sumGR[j];
+			sumG[j] += other.sumG[j];
+		}
+		nEpi += other.nEpi;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#computeGradientEstimation(double[])
+	 */
+	public final void computeGradientEstimation(double[] dJ) {
+		if(nEpi == 0) {
+			throw new IllegalStateException("No episode was completed");
+		}
+		for(int j=0; j<n; j++) {
+			// Optimal baseline
+			final double b = (sumG2[j] != 0. ? sumG2R[j] / sumG2[j] : 0.);
+			dJ[j] = (sumGR[j] - b * sumG[j]) / nEpi;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#newInstance(com.github.didmar.jrl.policy.ILogDifferentiablePolicy)
+	 */
+	public final OnlineREINFORCEEstimator newInstance(
+			ILogDifferentiablePolicy policy) {
+		return new OnlineREINFORCEEstimator(policy, gamma);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#getNbEpisodes()
+	 */
+	public final int getNbEpisodes() {
+		return nEpi;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.OnlineGradientEstimator#reset()
+	 */
+	public final void reset() {
+		ArrUtils.zeros(sumG2R);
+		ArrUtils.zeros(sumG2);
+		ArrUtils.zeros(sumGR);
+		ArrUtils.zeros(sumG);
+		nEpi = 0;
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "REINFORCE";
+	}
+}
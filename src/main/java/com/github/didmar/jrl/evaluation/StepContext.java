@@ -0,0 +1,210 @@
+package com.github.didmar.jrl.evaluation;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.features.CompatibleFeatures;
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy;
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Computations shared by the learners of a same transition (x,u,xn): the
+ * state features phi(x) and phi(xn), and the log-policy derivative
+ * dLogdTheta(x,u). Each one is computed on first use, then memoized until
+ * the next transition, so that the actor and the critics of an actor-critic
+ * compute it once per step. Moreover, since the state of a transition is
+ * usually the next state of the previous one, phi(xn) is carried forward as
+ * the phi(x) of the next transition.
+ * <p>
+ * The context does not copy the transition, so the arrays given to
+ * {@link #set(double[], double[], double[], boolean)} must not be modified
+ * until the learners are done with it. The policy parameters must not
+ * change either, hence actors must update the policy after the critics.
+ *
+ * @author Didier Marin
+ */
+public final class StepContext {
+
+	/** Number of phi(x) taken from the phi(xn) of the previous transition,
+	 * for all the contexts */
+	private static final Counter carriedForward
+		= Metrics.counter("StepContext.carriedForward");
+
+	/** State features, null if none */
+	private final @Nullable Features stateFeatures;
+	/** Policy followed, null if none */
+	private final @Nullable ILogDifferentiablePolicy pol;
+
+	// The current transition
+	private double[] x = new double[0];
+	private @Nullable double[] u = null;
+	private int uIndex = DiscreteActionListener.NO_ACTION_INDEX;
+	private double[] xn = new double[0];
+	private boolean isTerminal = false;
+	/** Copy of the next state of the previous transition */
+	private final double[] lastXn;
+
+	private double[] phiX;
+	private double[] phiXn;
+	private final double[] dLogdTheta;
+	/** Indicate which of the above are up to date */
+	private boolean phiXValid = false;
+	private boolean phiXnValid = false;
+	private boolean dLogdThetaValid = false;
+
+	/**
+	 * @param stateFeatures  state features, or null if phi is not needed
+	 * @param pol            policy followed, or null if the log-policy
+	 *                       derivative is not needed
+	 * @param xDim           state-space dimension
+	 */
+	public StepContext(@Nullable Features stateFeatures,
+			@Nullable ILogDifferentiablePolicy pol, int xDim) {
+		if(stateFeatures != null && stateFeatures.inDim != xDim) {
+			throw new IllegalArgumentException("The state features input dimension must be xDim");
+		}
+		this.stateFeatures = stateFeatures;
+		this.pol = pol;
+		lastXn = new double[xDim];
+		final int m = (stateFeatures == null ? 0 : stateFeatures.outDim);
+		phiX = new double[m];
+		phiXn = new double[m];
+		dLogdTheta = new double[pol == null ? 0 : pol.getParamsSize()];
+	}
+
+	/**
+	 * Starts a new transition, forgetting the memoized computations except
+	 * phi(xn) if xn was the state of this transition.
+	 * @param x           the state
+	 * @param u           the action, can be null if the log-policy
+	 *                    derivative is not needed
+	 * @param xn          the next state
+	 * @param isTerminal  indicates if the transition is terminal
+	 */
+	public final void set(double[] x, @Nullable double[] u, double[] xn,
+			boolean isTerminal) {
+		set(x, u, DiscreteActionListener.NO_ACTION_INDEX, xn, isTerminal);
+	}
+
+	/**
+	 * Starts a new transition whose action index is known, see
+	 * {@link #set(double[], double[], double[], boolean)}.
+	 * @param x           the state
+	 * @param u           the action, can be null if the log-policy
+	 *                    derivative is not needed
+	 * @param uIndex      the index of u in the actions of the policy, or
+	 *                    {@link DiscreteActionListener#NO_ACTION_INDEX}
+	 * @param xn          the next state
+	 * @param isTerminal  indicates if the transition is terminal
+	 */
+	public final void set(double[] x, @Nullable double[] u, int uIndex,
+			double[] xn, boolean isTerminal) {
+		if(phiXnValid && Arrays.equals(x, lastXn)) {
+			final double[] tmp = phiX;
+			phiX = phiXn;
+			phiXn = tmp;
+			phiXValid = true;
+			carriedForward.increment();
+		} else {
+			phiXValid = false;
+		}
+		phiXnValid = false;
+		dLogdThetaValid = false;
+		System.arraycopy(xn, 0, lastXn, 0, lastXn.length);
+		this.x = x;
+		this.u = u;
+		this.uIndex = uIndex;
+		this.xn = xn;
+		this.isTerminal = isTerminal;
+	}
+
+	/** Returns phi(x), which must not be modified */
+	public final double[] phiX() {
+		if(!phiXValid) {
+			stateFeatures().phi(x, phiX);
+			phiXValid = true;
+		}
+		return phiX;
+	}
+
+	/** Returns phi(xn), which must not be modified */
+	public final double[] phiXn() {
+		if(!phiXnValid) {
+			stateFeatures().phi(xn, phiXn);
+			phiXnValid = true;
+		}
+		return phiXn;
+	}
+
+	/** Returns dLogdTheta(x,u), which must not be modified */
+	public final double[] dLogdTheta() {
+		if(!dLogdThetaValid) {
+			final ILogDifferentiablePolicy pol = this.pol;
+			final double[] u = this.u;
+			if(pol == null || u == null) {
+				throw new IllegalStateException("No policy or no action in this context");
+			}
+			final double[] der;
+			if(uIndex != DiscreteActionListener.NO_ACTION_INDEX
+					&& pol instanceof IDiscreteLogDifferentiablePolicy) {
+				der = ((IDiscreteLogDifferentiablePolicy) pol).dLogdTheta(x, uIndex);
+			} else {
+				der = pol.dLogdTheta(x, u);
+			}
+			System.arraycopy(der, 0, dLogdTheta, 0, dLogdTheta.length);
+			dLogdThetaValid = true;
+		}
+		return dLogdTheta;
+	}
+
+	/**
+	 * Indicates if the given state-action features are the compatible
+	 * features of the policy of this context, in which case phi(x,u) is
+	 * {@link #dLogdTheta()}.
+	 */
+	public final boolean isCompatible(Features stateActionFeatures) {
+		return pol != null && stateActionFeatures instanceof CompatibleFeatures
+			&& ((CompatibleFeatures) stateActionFeatures).getPolicy() == pol;
+	}
+
+	private final Features stateFeatures() {
+		final Features f = stateFeatures;
+		if(f == null) {
+			throw new IllegalStateException("No state features in this context");
+		}
+		return f;
+	}
+
+	public final @Nullable Features getStateFeatures() {
+		return stateFeatures;
+	}
+
+	public final @Nullable ILogDifferentiablePolicy getPolicy() {
+		return pol;
+	}
+
+	public final double[] getX() {
+		return x;
+	}
+
+	public final @Nullable double[] getU() {
+		return u;
+	}
+
+	public final int getUIndex() {
+		return uIndex;
+	}
+
+	public final double[] getXn() {
+		return xn;
+	}
+
+	public final boolean isTerminal() {
+		return isTerminal;
+	}
+}
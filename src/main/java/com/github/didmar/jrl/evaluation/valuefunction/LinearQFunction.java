@@ -1,11 +1,21 @@
 package com.github.didmar.jrl.evaluation.valuefunction;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.KroneckerFeatures;
+import com.github.didmar.jrl.features.OneHotActionFeatures;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
 
 /**
  * State-action value function based on a linear combination of state-action
- * features.
+ * features. When the features are {@link KroneckerFeatures}, the values and
+ * the updates are computed on their factorized form, and the values of all
+ * the actions of a state with a single state features evaluation. When they
+ * are {@link TabularStateActionFeatures}, the parameter of a state-action is
+ * accessed directly.
  * @author Didier Marin
  */
 public final class LinearQFunction extends ParametricQFunction {
@@ -16,10 +26,20 @@ public final class LinearQFunction extends ParametricQFunction {
 	private final int xDim;
 	/** Action-space dimension */
 	private final int uDim;
+	/** The features, if they are {@link KroneckerFeatures}, null else */
+	private final @Nullable KroneckerFeatures kronecker;
+	/** State-space cardinality, if the features are
+	 * {@link TabularStateActionFeatures}, 0 else */
+	private final int xCard;
 
 	// arrays for temporary storage to avoid mem. alloc.
 	private final double[] xu;
 	private final double[] deltaTmp;
+	private final double[] phixu;
+	/** Used to store the state and action features, if the features are
+	 * {@link KroneckerFeatures} */
+	private final double[] phix;
+	private final double[] psiu;
 
 	public LinearQFunction(Features features, int xDim, int uDim) {
 		super(new double[features.outDim]);
@@ -30,10 +50,19 @@ public final class LinearQFunction extends ParametricQFunction {
 		this.features = features;
 		this.xDim = xDim;
 		this.uDim = uDim;
+		kronecker = (features instanceof KroneckerFeatures
+				? (KroneckerFeatures) features : null);
+		xCard = (features instanceof TabularStateActionFeatures
+				? ((TabularStateActionFeatures) features).getXCard() : 0);
 
 		// arrays for temporary storage to avoid mem. alloc.
 		xu = new double[this.xDim + this.uDim];
 		deltaTmp = new double[n];
+		phixu = new double[n];
+		phix = new double[kronecker == null ? 0
+				: kronecker.getStateFeatures().outDim];
+		psiu = new double[kronecker == null ? 0
+				: kronecker.getActionFeatures().outDim];
 	}
 
 	public LinearQFunction(Features features, int xDim, int uDim,
@@ -50,10 +79,19 @@ public final class LinearQFunction extends ParametricQFunction {
 		this.features = features;
 		this.xDim = xDim;
 		this.uDim = uDim;
+		kronecker = (features instanceof KroneckerFeatures
+				? (KroneckerFeatures) features : null);
+		xCard = (features instanceof TabularStateActionFeatures
+				? ((TabularStateActionFeatures) features).getXCard() : 0);
 
 		// arrays for temporary storage to avoid mem. alloc.
 		xu = new double[this.xDim + this.uDim];
 		deltaTmp = new double[n];
+		phixu = new double[n];
+		phix = new double[kronecker == null ? 0
+				: kronecker.getStateFeatures().outDim];
+		psiu = new double[kronecker == null ? 0
+				: kronecker.getActionFeatures().outDim];
 	}
 
 	/* (non-Javadoc)
@@ -63,9 +101,74 @@ public final class LinearQFunction extends ParametricQFunction {
 		assert(x.length == xDim);
 		assert(u.length == uDim);
 
+		if(xCard > 0) {
+			return w[(int)x[0] + xCard*(int)u[0]];
+		}
+		final KroneckerFeatures kron = kronecker;
+		if(kron != null) {
+			kron.getStateFeatures().phi(x, phix);
+			kron.getActionFeatures().phi(u, psiu);
+			return kron.dot(w, phix, psiu);
+		}
 		System.arraycopy(x,0,xu,0,xDim);
 		System.arraycopy(u,0,xu,xDim,uDim);
-		return ArrUtils.dotProduct(features.phi(xu), getParams(), getParamsSize());
+		features.phi(xu, phixu);
+		return ArrUtils.dotProduct(phixu, getParams(), getParamsSize());
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.evaluation.valuefunction.QFunction#getActionValues(double[], double[][], double[])
+	 */
+	@Override
+	public final void getActionValues(double[] x, double[][] actions,
+			double[] values) {
+		assert x.length == xDim;
+		assert values.length >= actions.length;
+
+		if(xCard > 0) {
+			// The parameter of (x,u) is at x + xCard*u
+			final int s = (int)x[0];
+			for(int i=0; i<actions.length; i++) {
+				values[i] = w[s + xCard*(int)actions[i][0]];
+			}
+			return;
+		}
+		final KroneckerFeatures kron = kronecker;
+		if(kron == null) {
+			super.getActionValues(x, actions, values);
+			return;
+		}
+		kron.getStateFeatures().phi(x, phix);
+		final Features actionFeatures = kron.getActionFeatures();
+		if(actionFeatures instanceof OneHotActionFeatures) {
+			// The value of action a is the dot product of phi(x) with the
+			// block of a in the parameters
+			final OneHotActionFeatures oneHot
+				= (OneHotActionFeatures) actionFeatures;
+			final int m = phix.length;
+			final boolean sameActions = (actions == oneHot.getActions());
+			for(int i=0; i<actions.length; i++) {
+				final int a = (sameActions ? i : oneHot.actionIndex(actions[i]));
+				if(a < 0) {
+					throw new IllegalArgumentException("Some action is not in the set of the features");
+				}
+				values[i] = MatKernels.dot(w, a*m, phix, 0, m);
+			}
+		} else {
+			for(int i=0; i<actions.length; i++) {
+				actionFeatures.phi(actions[i], psiu);
+				values[i] = kron.dot(w, phix, psiu);
+			}
+		}
+	}
+
+	/**
+	 * Returns the state-action value for the given features vector.
+	 * @param phixu  the features vector of a state-action
+	 * @return the state-action value
+	 */
+	public final double getForFeaturesVector(double[] phixu) {
+		return ArrUtils.dotProduct(phixu, getParams(), getParamsSize());
 	}
 
 	/* (non-Javadoc)
@@ -80,9 +183,20 @@ public final class LinearQFunction extends ParametricQFunction {
 	 * @see jrl.evaluation.valuefunction.QFunction#updateForStateAction(double[], double[], double)
 	 */
 	public final void updateForStateAction(double[] x, double[] u, double delta) {
+		if(xCard > 0) {
+			w[(int)x[0] + xCard*(int)u[0]] += delta;
+			return;
+		}
+		final KroneckerFeatures kron = kronecker;
+		if(kron != null) {
+			kron.getStateFeatures().phi(x, phix);
+			kron.getActionFeatures().phi(u, psiu);
+			kron.axpy(delta, phix, psiu, w);
+			return;
+		}
 		System.arraycopy(x,0,xu,0,xDim);
 		System.arraycopy(u,0,xu,xDim,uDim);
-		final double[] phixu = features.phi(xu);
+		features.phi(xu, phixu);
 		updateForFeaturesVector(phixu, delta);
 	}
 
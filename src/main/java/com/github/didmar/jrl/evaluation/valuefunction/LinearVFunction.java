@@ -1,6 +1,8 @@
 package com.github.didmar.jrl.evaluation.valuefunction;
 
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
 
 /**
@@ -14,6 +16,7 @@ public class LinearVFunction extends ParametricVFunction {
 
 	// arrays for temporary storage to avoid mem. alloc.
 	private final double[] deltaTmp;
+	private final double[] phix;
 
 	public LinearVFunction(Features features) {
 		super(ArrUtils.zeros(features.outDim));
@@ -21,6 +24,7 @@ public class LinearVFunction extends ParametricVFunction {
 
 		// arrays for temporary storage to avoid mem. alloc.
 		deltaTmp = new double[n];
+		phix = new double[n];
 	}
 
 	public LinearVFunction(Features features, double[] params) {
@@ -33,13 +37,44 @@ public class LinearVFunction extends ParametricVFunction {
 
 		// arrays for temporary storage to avoid mem. alloc.
 		deltaTmp = new double[n];
+		phix = new double[n];
 	}
 
 	/* (non-Javadoc)
 	 * @see jrl.evaluation.VFunction#get(double[])
 	 */
 	public final double get(double[] x) {
-		return ArrUtils.dotProduct(features.phi(x), getParams(), getParamsSize());
+		features.phi(x, phix);
+		return ArrUtils.dotProduct(phix, getParams(), getParamsSize());
+	}
+
+	/**
+	 * Returns the state value for the given features vector.
+	 * @param phix  the features vector of a state
+	 * @return the state value
+	 */
+	public final double getForFeaturesVector(double[] phix) {
+		return ArrUtils.dotProduct(phix, getParams(), getParamsSize());
+	}
+
+	/**
+	 * Returns the TD error of the transition of a context, whose state
+	 * features must be the ones of this function, so that they are only
+	 * computed once for all the learners of the transition.
+	 * @throws IllegalArgumentException if the state features of the context
+	 *                                  are not the ones of this function
+	 * @see VFunction#tdError(double[], double[], double, boolean, DiscountFactor)
+	 */
+	public final double tdError(StepContext ctx, double r,
+			DiscountFactor gamma) {
+		if(ctx.getStateFeatures() != features) {
+			throw new IllegalArgumentException("The state features of the context must be the ones of the value function");
+		}
+		if(ctx.isTerminal()) {
+			return r - getForFeaturesVector(ctx.phiX());
+		}
+		return r + gamma.value * getForFeaturesVector(ctx.phiXn())
+			- getForFeaturesVector(ctx.phiX());
 	}
 
 	/* (non-Javadoc)
@@ -54,7 +89,7 @@ public class LinearVFunction extends ParametricVFunction {
 	 * @see jrl.evaluation.valuefunction.VFunction#updateForState(double[], double)
 	 */
 	public final void updateForState(double[] x, double delta) {
-		final double[] phix = features.phi(x);
+		features.phi(x, phix);
 		updateForFeaturesVector(phix, delta);
 	}
 
@@ -26,6 +26,23 @@ public abstract class QFunction {
 	 */
 	public abstract void updateForStateAction(double[] x, double[] u,
 			double delta);
+
+	/**
+	 * Computes the state-action values of all the given actions in state x.
+	 * This calls {@link #get(double[], double[])} for each action, but
+	 * subclasses may do it in a single pass.
+	 * @param x       a state
+	 * @param actions a set of actions
+	 * @param values  [on return] the value of each action, must have at least
+	 *                the length of actions
+	 */
+	public void getActionValues(double[] x, double[][] actions,
+			double[] values) {
+		assert values.length >= actions.length;
+		for(int i=0; i<actions.length; i++) {
+			values[i] = get(x, actions[i]);
+		}
+	}
 	
 	// TODO add in arguments a boolean that indicates if the sample is terminal,
 	// and if it is don't add the gamma*get(xn,un) term
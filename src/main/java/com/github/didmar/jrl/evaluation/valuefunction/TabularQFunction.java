@@ -4,7 +4,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
 
 /**
  * State action value function represented by a state card-by-action card
- * matrix.
+ * matrix. Besides the {@link QFunction} methods, it can be accessed by state
+ * and action indices, which is what the tabular learners of the discrete
+ * interaction loop use.
  * @author Didier Marin
  */
 public final class TabularQFunction extends QFunction {
@@ -35,6 +37,93 @@ public final class TabularQFunction extends QFunction {
 		Q[(int)x[0]][(int)u[0]] += delta;
 	}
 
+	/* (non-Javadoc)
+	 * @see jrl.evaluation.valuefunction.QFunction#getActionValues(double[], double[][], double[])
+	 */
+	@Override
+	public final void getActionValues(double[] x, double[][] actions,
+			double[] values) {
+		assert values.length >= actions.length;
+		// One lookup per action in the row of x
+		final double[] Qx = Q[(int)x[0]];
+		for(int i=0; i<actions.length; i++) {
+			values[i] = Qx[(int)actions[i][0]];
+		}
+	}
+
+	/**
+	 * Returns the state-action value for state x and action u.
+	 * @param x  a state index
+	 * @param u  an action index
+	 * @return the state-action value
+	 */
+	public final double get(int x, int u) {
+		return Q[x][u];
+	}
+
+	/**
+	 * Update the value for state x and action u by increment delta.
+	 * @param x      a state index
+	 * @param u      an action index
+	 * @param delta  the increment to add to the current value
+	 */
+	public final void updateForStateAction(int x, int u, double delta) {
+		Q[x][u] += delta;
+	}
+
+	/**
+	 * Returns the values of all the actions in state x, which must not be
+	 * modified.
+	 * @param x  a state index
+	 * @return the row of x in the Q-table
+	 */
+	public final double[] getActionValues(int x) {
+		return Q[x];
+	}
+
+	/**
+	 * Returns the maximum value over the actions in state x.
+	 * @param x  a state index
+	 * @return the maximum state-action value in x
+	 */
+	public final double max(int x) {
+		final double[] Qx = Q[x];
+		double max = Qx[0];
+		for(int u=1; u<Qx.length; u++) {
+			if(Qx[u] > max) {
+				max = Qx[u];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the action of maximum value in state x, the first one in case
+	 * of ties.
+	 * @param x  a state index
+	 * @return the greedy action index
+	 */
+	public final int argmax(int x) {
+		final double[] Qx = Q[x];
+		int best = 0;
+		for(int u=1; u<Qx.length; u++) {
+			if(Qx[u] > Qx[best]) {
+				best = u;
+			}
+		}
+		return best;
+	}
+
+	/** Returns the state-space cardinality */
+	public final int getXCard() {
+		return Q.length;
+	}
+
+	/** Returns the action-space cardinality */
+	public final int getUCard() {
+		return Q[0].length;
+	}
+
 	@Override
 	public final int getXDim() {
 		return 1;
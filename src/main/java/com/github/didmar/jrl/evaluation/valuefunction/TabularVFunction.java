@@ -9,9 +9,31 @@ public final class TabularVFunction extends VFunction {
 
 	private final double[] V;
 
+	public TabularVFunction(int xCard) {
+		V = new double[xCard];
+	}
+
 	public TabularVFunction(double[] V) {
 		this.V = V.clone();
 	}
+
+	/**
+	 * Returns the value of state x.
+	 * @param x  a state index
+	 * @return the state value
+	 */
+	public final double get(int x) {
+		return V[x];
+	}
+
+	/**
+	 * Update the value for state x by increment delta.
+	 * @param x      a state index
+	 * @param delta  the increment to add to the current value
+	 */
+	public final void updateForState(int x, double delta) {
+		V[x] += delta;
+	}
 	
 	@Override
 	public final double get(double[] x) {
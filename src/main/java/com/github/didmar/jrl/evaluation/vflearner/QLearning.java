@@ -37,6 +37,8 @@ public final class QLearning implements QFunctionLearner, EnvironmentListener {
 	private final double[] xu;
 	/** Used to get the state-action features of the Q-function approximator */
 	private final double[] psixu;
+	/** Used to store the Q-value of each sample action */
+	private final double[] QValues;
 	
 	public QLearning(LinearQFunction qFunction, double[][] actions,
 			DiscountFactor gamma, DiscountFactor lambda, StepSize stepSize) {
@@ -52,6 +54,7 @@ public final class QLearning implements QFunctionLearner, EnvironmentListener {
 		
 		xu = new double[xDim+uDim];
 		psixu = new double[n];
+		QValues = new double[actions.length];
 	}
 	
 	@Override
@@ -64,15 +67,9 @@ public final class QLearning implements QFunctionLearner, EnvironmentListener {
 		// Update the step-size
 		stepSize.updateStep();
 		// Get the best action for state x with respect to Q
-		int indBest = 0;
-		double QBest = qFunction.get(x, actions[0]);
-		for (int i = 0; i < actions.length; i++) {
-			double Q = qFunction.get(x, actions[i]);
-			if(Q > QBest) {
-				indBest = i;
-				QBest = Q;
-			}
-		}
+		qFunction.getActionValues(x, actions, QValues);
+		final int indBest = ArrUtils.argmax(QValues);
+		final double QBest = QValues[indBest];
 		// Does u correspond to the best action in terms of Q-value ?
 		final boolean greedyAction = u.equals(actions[indBest]);
 		double currentQ;
@@ -84,15 +81,9 @@ public final class QLearning implements QFunctionLearner, EnvironmentListener {
 		// Compute the Q-Learning TD Error
 		double tdErr = r - currentQ;
 		if(!isTerminal) {
-			// Get the best action for state xn with respect to Q
-			double nextQBest = qFunction.get(xn, actions[0]);
-			for (int i = 0; i < actions.length; i++) {
-				final double Q = qFunction.get(xn, actions[i]);
-				if(Q > nextQBest) {
-					nextQBest = Q;
-				}
-			}
-			tdErr += gamma.value*nextQBest;
+			// Get the best value for state xn with respect to Q
+			qFunction.getActionValues(xn, actions, QValues);
+			tdErr += gamma.value*ArrUtils.max(QValues);
 		}
 		// Compute the eligibility traces
 		System.arraycopy(x, 0, xu, 0, xDim);
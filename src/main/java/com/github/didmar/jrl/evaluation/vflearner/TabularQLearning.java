@@ -0,0 +1,74 @@
+package com.github.didmar.jrl.evaluation.vflearner;
+
+import com.github.didmar.jrl.environment.discrete.TabularListener;
+import com.github.didmar.jrl.evaluation.valuefunction.QFunction;
+import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
+import com.github.didmar.jrl.stepsize.StepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+
+/**
+ * One-step Q-Learning over a {@link TabularQFunction}, which listens to the
+ * tabular interaction loop of
+ * {@link com.github.didmar.jrl.environment.discrete.DiscreteEnvironment}.
+ * It computes the same updates as {@link QLearning} with lambda=0 over
+ * tabular state-action features, in O(uCard) instead of O(xCard uCard^2)
+ * per step.
+ * @author Didier Marin
+ */
+public final class TabularQLearning implements QFunctionLearner, TabularListener {
+
+	/** State action value function */
+	private final TabularQFunction qFunction;
+	/** Reward discount factor */
+	private final DiscountFactor gamma;
+	/** Learning step */
+	private final StepSize stepSize;
+
+	public TabularQLearning(TabularQFunction qFunction, DiscountFactor gamma,
+			StepSize stepSize) {
+		this.qFunction = qFunction;
+		this.gamma = gamma;
+		this.stepSize = stepSize;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.discrete.TabularListener#newEpisode(int, int)
+	 */
+	public final void newEpisode(int x0, int maxT) {
+		// Nothing to do
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.discrete.TabularListener#receiveSample(int, int, int, double, boolean)
+	 */
+	public final void receiveSample(int x, int u, int xn, double r,
+			boolean isTerminal) {
+		// Update the step-size
+		stepSize.updateStep();
+		// Compute the Q-Learning TD Error
+		double tdErr = r - qFunction.get(x, u);
+		if(!isTerminal) {
+			tdErr += gamma.value * qFunction.max(xn);
+		}
+		qFunction.updateForStateAction(x, u, stepSize.getStep()*tdErr);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.discrete.TabularListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		// Nothing to do
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.vflearner.QFunctionLearner#getQFunction()
+	 */
+	public final QFunction getQFunction() {
+		return qFunction;
+	}
+
+	@Override
+	public final String toString() {
+		return "Tabular Q-Learning";
+	}
+}
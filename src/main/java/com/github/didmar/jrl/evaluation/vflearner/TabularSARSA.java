@@ -0,0 +1,109 @@
+package com.github.didmar.jrl.evaluation.vflearner;
+
+import com.github.didmar.jrl.environment.discrete.TabularListener;
+import com.github.didmar.jrl.evaluation.valuefunction.QFunction;
+import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
+import com.github.didmar.jrl.policy.TabularPolicy;
+import com.github.didmar.jrl.stepsize.StepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+
+/**
+ * One-step SARSA over a {@link TabularQFunction}, which listens to the
+ * tabular interaction loop of
+ * {@link com.github.didmar.jrl.environment.discrete.DiscreteEnvironment}.
+ * <p>
+ * Unlike {@link SARSALambda}, which draws a next action of its own, the
+ * update of a sample (x,u,r,xn) is delayed until the next sample, so that it
+ * bootstraps on the action actually taken in xn. If the episode is
+ * interrupted before a terminal sample, the last update bootstraps on an
+ * action drawn from the policy.
+ * @author Didier Marin
+ */
+public final class TabularSARSA implements QFunctionLearner, TabularListener {
+
+	/** State action value function */
+	private final TabularQFunction qFunction;
+	/** Policy being evaluated */
+	private final TabularPolicy pol;
+	/** Reward discount factor */
+	private final DiscountFactor gamma;
+	/** Learning step */
+	private final StepSize stepSize;
+
+	/** Indicates if a sample is waiting for its next action */
+	private boolean pending = false;
+	// The sample waiting for its next action
+	private int pendingX;
+	private int pendingU;
+	private int pendingXn;
+	private double pendingR;
+
+	public TabularSARSA(TabularQFunction qFunction, TabularPolicy pol,
+			DiscountFactor gamma, StepSize stepSize) {
+		this.qFunction = qFunction;
+		this.pol = pol;
+		this.gamma = gamma;
+		this.stepSize = stepSize;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.discrete.TabularListener#newEpisode(int, int)
+	 */
+	public final void newEpisode(int x0, int maxT) {
+		pending = false;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.discrete.TabularListener#receiveSample(int, int, int, double, boolean)
+	 */
+	public final void receiveSample(int x, int u, int xn, double r,
+			boolean isTerminal) {
+		if(pending) {
+			assert x == pendingXn : "Samples are not consecutive";
+			update(pendingX, pendingU, pendingR,
+					gamma.value * qFunction.get(x, u));
+		}
+		if(isTerminal) {
+			update(x, u, r, 0.);
+			pending = false;
+		} else {
+			pending = true;
+			pendingX = x;
+			pendingU = u;
+			pendingXn = xn;
+			pendingR = r;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.environment.discrete.TabularListener#endEpisode()
+	 */
+	public final void endEpisode() {
+		if(pending) {
+			final int un = pol.drawAction(pendingXn);
+			update(pendingX, pendingU, pendingR,
+					gamma.value * qFunction.get(pendingXn, un));
+			pending = false;
+		}
+	}
+
+	/** Updates Q(x,u) toward r plus the discounted next value */
+	private final void update(int x, int u, double r, double discountedNextQ) {
+		// Update the step-size
+		stepSize.updateStep();
+		final double tdErr = r + discountedNextQ - qFunction.get(x, u);
+		qFunction.updateForStateAction(x, u, stepSize.getStep()*tdErr);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.vflearner.QFunctionLearner#getQFunction()
+	 */
+	public final QFunction getQFunction() {
+		return qFunction;
+	}
+
+	@Override
+	public final String toString() {
+		return "Tabular SARSA";
+	}
+}
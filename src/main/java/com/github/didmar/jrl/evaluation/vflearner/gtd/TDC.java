@@ -1,5 +1,6 @@
 package com.github.didmar.jrl.evaluation.vflearner.gtd;
 
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.evaluation.vflearner.td.TD;
 import com.github.didmar.jrl.stepsize.StepSize;
@@ -22,6 +23,9 @@ public final class TDC extends TD {
 	private final StepSize alphaStep;
 	private final int n;
 
+	/** Context of the samples added without one */
+	private final StepContext context;
+
 	private final double[] delta;
 
 	public TDC(LinearVFunction vFunction, DiscountFactor gamma,
@@ -32,20 +36,28 @@ public final class TDC extends TD {
 		n = vFunction.getParamsSize();
 		w = new double[n];
 
+		context = newStepContext(null);
+
 		delta = new double[n];
 	}
 
 	@Override
 	public final void addSample(double[] x, double[] xn, double r, boolean isTerminal) {
+		context.set(x, null, xn, isTerminal);
+		addSample(context, r);
+	}
+
+	@Override
+	public final void addSample(StepContext ctx, double r) {
+		// Compute the TD Error, which checks the features of the context
+		final double tdErr = ((LinearVFunction)vFunction).tdError(ctx, r, gamma);
+		final double[] phix = ctx.phiX();
+		// TODO if the sample is terminal, use phixn = zeros
+		final double[] phixn = ctx.phiXn();
 		// Update the step-size
 		alphaStep.updateStep();
 		final double alpha = alphaStep.getStep();
 		final double beta  = betaOverAlphaRatio * alpha;
-		// Compute the TD Error
-		final double[] phix = ((LinearVFunction)vFunction).getFeatures().phi(x);
-		// TODO if the sample is terminal, use phixn = zeros
-		final double[] phixn = ((LinearVFunction)vFunction).getFeatures().phi(xn);
-		final double tdErr = vFunction.tdError(x, xn, r, isTerminal, gamma);
 		// Update approximation parameters
 		double phixw = ArrUtils.dotProduct(phix,w,n);
 		for(int i=0; i<n; i++) {
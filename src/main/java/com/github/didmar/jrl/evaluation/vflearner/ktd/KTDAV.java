@@ -9,6 +9,8 @@ import com.github.didmar.jrl.evaluation.vflearner.QFunctionLearner;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Kalman Temporal Difference method for approximating both the advantage and
@@ -20,6 +22,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
 public final class KTDAV implements QFunctionLearner, VFunctionLearner,
 		EnvironmentListener {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("KTDAV.updates");
+
 	/** Advantage function approximation */
 	private final ParametricQFunction aFunction;
 	/** State value function approximation */
@@ -269,6 +274,7 @@ public final class KTDAV implements QFunctionLearner, VFunctionLearner,
     	System.arraycopy(s, m, vParams, 0, n);
     	aFunction.setParams(aParams);
     	vFunction.setParams(vParams);
+    	updatesCounter.increment();
 	}
 	
 	/* (non-Javadoc)
@@ -6,6 +6,8 @@ import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * KTD-V(lambda) is an extended KTD-V(0) with eligibility traces, as in Geist
@@ -16,6 +18,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public final class KTDLambda implements VFunctionLearner, EnvironmentListener {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("KTDLambda.updates");
+
 	/** State value function approximation */
 	private final ParametricVFunction vFunction;
 	/** Number of state value function parameters */
@@ -239,6 +244,7 @@ public final class KTDLambda implements VFunctionLearner, EnvironmentListener {
         // Update the advantage and state value approximation parameters
         System.arraycopy(s, 0, vParams, 0, n);
     	vFunction.setParams(vParams);
+    	updatesCounter.increment();
 	}
 	
 	/* (non-Javadoc)
@@ -6,6 +6,8 @@ import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * KTD-V using an unscented transform, as in Geist et al. "Differences
@@ -16,6 +18,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public final class KTDZero implements VFunctionLearner, EnvironmentListener {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("KTDZero.updates");
+
 	/** State value function approximation */
 	private final ParametricVFunction vFunction;
 	/** Number of value function parameters */
@@ -187,6 +192,7 @@ public final class KTDZero implements VFunctionLearner, EnvironmentListener {
         }
         // Update the advantage and state value approximation parameters
         vFunction.setParams(s);
+        updatesCounter.increment();
 
 	}
 
@@ -6,6 +6,8 @@ import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * An implementation of KTD-V(0) for linear state value function approximators,
@@ -15,6 +17,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public final class LinearKTDZero implements VFunctionLearner, EnvironmentListener {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("LinearKTDZero.updates");
+
 	/** Linear state value function approximation */
 	private final LinearVFunction vFunction;
 	/** Number of value function parameters */
@@ -120,6 +125,7 @@ public final class LinearKTDZero implements VFunctionLearner, EnvironmentListene
         }
         // Update the advantage and state value approximation parameters
         vFunction.setParams(s);
+        updatesCounter.increment();
 
 	}
 	
@@ -6,6 +6,10 @@ import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Incremental Least-Square Temporal Difference is an incremental variant of
@@ -16,6 +20,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public final class ILSTD implements VFunctionLearner, EnvironmentListener {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("ILSTD.updates");
+
 	/** State value function approximation */
 	private final LinearVFunction vFunction;
 	/** Number of state value function approximation parameters */
@@ -29,12 +36,16 @@ public final class ILSTD implements VFunctionLearner, EnvironmentListener {
 	/** Number of steps before the next update */
 	private int stepsBeforeUpdate;
 	
-	private final double[][] Ainv;
+	private final DenseMatrix Ainv;
 	private final double[] b;
 	private final double[] z;
 	
 	private final double[] phixMinusGammaPhixn;
 	private final double[] tmp;
+	private final double[] phix;
+	private final double[] phixn;
+	private final double[] smTmp1;
+	private final double[] smTmp2;
 
 	public ILSTD(LinearVFunction vFunction, DiscountFactor gamma,
 			DiscountFactor lambda, int nbStepsBeforeUpdate, double diagAinv0) {
@@ -49,12 +60,16 @@ public final class ILSTD implements VFunctionLearner, EnvironmentListener {
 		stepsBeforeUpdate = this.nbStepsBeforeUpdate;
 		n = vFunction.getParamsSize();
 		// Initialize the inverted statistics matrix A
-		Ainv = ArrUtils.eye(n,diagAinv0);
+		Ainv = DenseMatrix.eye(n,diagAinv0);
 		b = ArrUtils.zeros(n);
 		z = ArrUtils.zeros(n);
 		
 		phixMinusGammaPhixn = new double[n];
 		tmp = new double[n];
+		phix = new double[n];
+		phixn = new double[n];
+		smTmp1 = new double[n];
+		smTmp2 = new double[n];
 	}
 
 	/* (non-Javadoc)
@@ -71,19 +86,20 @@ public final class ILSTD implements VFunctionLearner, EnvironmentListener {
 	public final void receiveSample(double[] x, double[] u, double[] xn,
 			double r, boolean isTerminal) {
 		// Update the statistics z, Ainv and b
-		final double[] phix = vFunction.getFeatures().phi(x);
+		vFunction.getFeatures().phi(x, phix);
 		for(int i=0; i<n; i++) {
         	z[i] = lambda.value*gamma.value*z[i] + phix[i];
 		}
 		System.arraycopy(phix, 0, phixMinusGammaPhixn, 0, n);
 		if(!isTerminal) {
-			final double[] phixn = vFunction.getFeatures().phi(xn);
+			vFunction.getFeatures().phi(xn, phixn);
 			for(int i=0; i<n; i++) {
 				phixMinusGammaPhixn[i] -= gamma.value*phixn[i];
 			}
         }
 		try {
-			ArrUtils.shermanMorrisonFormula(Ainv, z, phixMinusGammaPhixn, n);
+			ParallelKernels.shermanMorrison(Ainv, z, phixMinusGammaPhixn,
+					smTmp1, smTmp2);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -110,8 +126,9 @@ public final class ILSTD implements VFunctionLearner, EnvironmentListener {
 	 * statistics.
 	 */
 	public final void computeValueParameters() {
-		ArrUtils.multiply(Ainv, b, tmp, n, n);
+		ParallelKernels.multiply(Ainv, b, tmp);
 		vFunction.setParams(tmp);
+		updatesCounter.increment();
 	}
 
 	/* (non-Javadoc)
@@ -1,14 +1,19 @@
 package com.github.didmar.jrl.evaluation.vflearner.lstd;
 
 import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.QFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.QFunctionLearner;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
+import com.github.didmar.jrl.features.CompatibleFeatures;
+import com.github.didmar.jrl.features.Features;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
 
 /**
  * An incremental LSTD method that learns both the advantage and the state-value
@@ -41,17 +46,21 @@ public final class ILSTDAV implements QFunctionLearner, VFunctionLearner,
 	/** Action-space dimension */
 	private final int uDim;
 	
-	private final double[][] Ainv;
+	/** Context of the samples received without one */
+	private final StepContext context;
+
+	private final DenseMatrix Ainv;
 	private final double[] b;
 	private final double[] z;
 	
 	private final double[] xu;
 	private final double[] phix;
-	private final double[] phixn;
 	private final double[] psixu;
 	private final double[] psiphix;
 	private final double[] psiphixMinusGammaPsiphixn;
 	private final double[] tmp;
+	private final double[] smTmp1;
+	private final double[] smTmp2;
 	
 	public ILSTDAV(LinearQFunction aFunction, LinearVFunction vFunction,
 			DiscountFactor gamma, DiscountFactor lambda, int nbStepsBeforeUpdate,
@@ -69,19 +78,25 @@ public final class ILSTDAV implements QFunctionLearner, VFunctionLearner,
 		this.diagAinv0 = diagAinv0;
 		m = aFunction.getParamsSize();
 		n = vFunction.getParamsSize();
-		Ainv = ArrUtils.eye(m+n, diagAinv0);
+		Ainv = DenseMatrix.eye(m+n, diagAinv0);
 		b = ArrUtils.zeros(m+n);
 		z = ArrUtils.zeros(m+n);
 		xDim = aFunction.getXDim();
 		uDim = aFunction.getUDim();
+		final Features aFeatures = aFunction.getFeatures();
+		context = new StepContext(vFunction.getFeatures(),
+				aFeatures instanceof CompatibleFeatures ?
+					((CompatibleFeatures) aFeatures).getPolicy() : null,
+				xDim);
 		
 		xu   = new double[xDim+uDim];
 		psixu    = new double[m];
 		phix     = new double[n];
-		phixn    = new double[n];
 		psiphix  = new double[m+n];
 		psiphixMinusGammaPsiphixn = new double[m+n];
 		tmp = new double[m+n];
+		smTmp1 = new double[m+n];
+		smTmp2 = new double[m+n];
 	}
 	
 	/* (non-Javadoc)
@@ -98,27 +113,57 @@ public final class ILSTDAV implements QFunctionLearner, VFunctionLearner,
 	 */
 	@Override
 	public final void receiveSample(double[] x, double[] u, double[] xn, double r, boolean isTerminal) {
+		context.set(x, u, xn, isTerminal);
+		receiveSample(context, r);
+	}
+
+	/**
+	 * Receives the sample of a context shared with the other learners of the
+	 * transition, whose state features must be the ones of the state value
+	 * function. If the advantage function uses the compatible features of
+	 * the policy of the context, its features are the memoized log-policy
+	 * derivative.
+	 * @param ctx  the context of the transition
+	 * @param r    the reward
+	 * @throws IllegalArgumentException if the state features of the context
+	 *                                  are not the ones of the state value
+	 *                                  function
+	 */
+	public final void receiveSample(StepContext ctx, double r) {
+		if(ctx.getStateFeatures() != vFunction.getFeatures()) {
+			throw new IllegalArgumentException("The state features of the context must be the ones of the state value function");
+		}
 		// Compute the features
-        System.arraycopy(x,  0,   xu,    0, xDim);
-        System.arraycopy(u,  0,   xu, xDim, uDim);
-        aFunction.getFeatures().phi(  xu,   psixu);
-        vFunction.getFeatures().phi(   x,    phix);
-        System.arraycopy(psixu,  0,  psiphix, 0, m);
-        System.arraycopy(phix,   0,  psiphix, m, n);
+		final double[] psi;
+		if(ctx.isCompatible(aFunction.getFeatures())) {
+			psi = ctx.dLogdTheta();
+		} else {
+			final double[] u = ctx.getU();
+			if(u == null) {
+				throw new IllegalArgumentException("The context has no action");
+			}
+			System.arraycopy(ctx.getX(), 0, xu,    0, xDim);
+			System.arraycopy(u,          0, xu, xDim, uDim);
+			aFunction.getFeatures().phi(xu, psixu);
+			psi = psixu;
+		}
+        System.arraycopy(psi,        0,  psiphix, 0, m);
+        System.arraycopy(ctx.phiX(), 0,  psiphix, m, n);
         
         // Update the statistics
         for(int i=0; i<m+n; i++) {
         	z[i] = lambda.value*gamma.value*z[i] + psiphix[i];
         }
         System.arraycopy(psiphix, 0, psiphixMinusGammaPsiphixn, 0, m+n);
-        if(!isTerminal) {
-        	vFunction.getFeatures().phi(xn, phixn);
+        if(!ctx.isTerminal()) {
+        	final double[] phixn = ctx.phiXn();
         	for(int i=0; i<n; i++) {
         		psiphixMinusGammaPsiphixn[m+i] -= gamma.value * phixn[i];
         	}
         }
         try {
-			ArrUtils.shermanMorrisonFormula(Ainv, z, psiphixMinusGammaPsiphixn, m+n);
+			ParallelKernels.shermanMorrison(Ainv, z, psiphixMinusGammaPsiphixn,
+					smTmp1, smTmp2);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -149,7 +194,7 @@ public final class ILSTDAV implements QFunctionLearner, VFunctionLearner,
 	 * based on the statistics.
 	 */
 	public void computeValueParameters() {
-		ArrUtils.multiply(Ainv, b, tmp, m+n, m+n);
+		ParallelKernels.multiply(Ainv, b, tmp);
 		// Extract the advantage function parameters and the state value
 		// function parameters, using psixu and phixu for temporary storage
 		System.arraycopy(tmp, 0, psixu, 0, m);
@@ -168,7 +213,7 @@ public final class ILSTDAV implements QFunctionLearner, VFunctionLearner,
 		for(int i=0; i<m+n; i++) {
 			z[i] *= kappa.value;
 			b[i] *= kappa.value;
-			Ainv[i][i] = kappa.mixture(Ainv[i][i], diagAinv0);
+			Ainv.set(i, i, kappa.mixture(Ainv.get(i, i), diagAinv0));
 		}
 	}
 	
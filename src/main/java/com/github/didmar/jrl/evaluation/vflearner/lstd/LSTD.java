@@ -6,8 +6,10 @@ import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
-
-import Jama.Matrix;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 // TODO add a reference to the algo
 // TODO inherit from TD ?
@@ -17,6 +19,9 @@ import Jama.Matrix;
  */
 public final class LSTD implements VFunctionLearner, EnvironmentListener {
 
+	/** Number of parameters updates performed by all the instances */
+	private static final Counter updatesCounter = Metrics.counter("LSTD.updates");
+
 	/** State value function approximation */
 	private final LinearVFunction vFunction;
 	/** Number of state value function approximation parameters */
@@ -30,13 +35,18 @@ public final class LSTD implements VFunctionLearner, EnvironmentListener {
 	/** Regularization factor */
 	private final double regFactor;
 	
-	private final double[][] A;
+	private final DenseMatrix A;
+	/** Copy of A, for the pseudo-inverse of a singular A */
+	private final DenseMatrix ACopy;
 	
 	private final double[] b;
 	
 	// used for temporary storage
 	private final double[] phixMinusGammaPhixn;
-	private final double[][] Aupdate;
+	private final double[] phix;
+	private final double[] phixn;
+	private final double[] v;
+	private final int[] piv;
 	
 
 	public LSTD(LinearVFunction vFunction, DiscountFactor gamma,
@@ -47,11 +57,15 @@ public final class LSTD implements VFunctionLearner, EnvironmentListener {
 		stepsBeforeUpdate = this.nbStepsBeforeUpdate;
 		this.regFactor = regFactor;
 		n = vFunction.getParamsSize();
-        A = ArrUtils.zeros(n, n);
+        A = new DenseMatrix(n, n);
+        ACopy = new DenseMatrix(n, n);
         b = ArrUtils.zeros(n);
         
         phixMinusGammaPhixn = new double[n];
-    	Aupdate = new double[n][n];
+    	phix = new double[n];
+    	phixn = new double[n];
+    	v = new double[n];
+    	piv = new int[n];
 	}
 
 	/* (non-Javadoc)
@@ -67,39 +81,40 @@ public final class LSTD implements VFunctionLearner, EnvironmentListener {
 
 	public final void receiveSample(double[] x, double[] u, double[] xn, double r, boolean isTerminal) {
 		// Update the statistics
-		final double[] phix  = vFunction.getFeatures().phi(x);
+		vFunction.getFeatures().phi(x, phix);
         System.arraycopy(phix, 0, phixMinusGammaPhixn, 0, n);
         if(!isTerminal) {
-        	final double[] phixn = vFunction.getFeatures().phi(xn);
+        	vFunction.getFeatures().phi(xn, phixn);
         	for(int i=0; i<n; i++) {
             	phixMinusGammaPhixn[i] -= gamma.value*phixn[i];
             }
         }
-        ArrUtils.multiply(phix, phixMinusGammaPhixn, Aupdate, n);
-        for(int i=0; i<n; i++) {
-        	for(int j=0; j<n; j++) {
-        		A[i][j] += Aupdate[i][j];
-        	}
-        }
+        // A += phix * (phix - gamma * phixn)'
+        ParallelKernels.ger(A, 1., phix, phixMinusGammaPhixn);
         for(int i=0; i<n; i++) {
         	b[i] += phix[i] * r;
         }
         // Add a L2 regularization term if a regularization factor was given
         if(regFactor > 0) {
-        	for(int i=0; i<n; i++) {
-        		A[i][i] += regFactor;
-        	}
+        	A.addDiagonal(regFactor);
         }
         // Increase the step counter
         stepsBeforeUpdate--;
         // Check if we must update now
         if(stepsBeforeUpdate == 0) {
-        	Matrix matA = new Matrix(A,n,n);
-        	Matrix matB = new Matrix(b,n);
-        	// v = A^-1 * B
-        	vFunction.setParams(matA.solve(matB).transpose().getArray()[0]);
+        	// v = A^-1 * B, A is overwritten by its LU decomposition
+        	ACopy.copyFrom(A);
+        	if(ParallelKernels.luInPlace(A, piv)) {
+        		ParallelKernels.luSolve(A, piv, b, v);
+        	} else {
+        		// Singular system, e.g. early in learning without
+        		// regularization, use the pseudo-inverse
+        		ACopy.pinvSolve(b, v);
+        	}
+        	vFunction.setParams(v);
+        	updatesCounter.increment();
             // Reset the statistics
-            ArrUtils.zeros(A);
+            A.fill(0.);
             ArrUtils.zeros(b);
             // Reset the number of steps before the next update
             stepsBeforeUpdate = nbStepsBeforeUpdate;
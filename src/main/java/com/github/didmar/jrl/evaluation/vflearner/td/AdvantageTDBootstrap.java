@@ -1,10 +1,12 @@
 package com.github.didmar.jrl.evaluation.vflearner.td;
 
 import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.evaluation.StepContext;
+import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.QFunction;
 import com.github.didmar.jrl.evaluation.vflearner.QFunctionLearner;
+import com.github.didmar.jrl.features.CompatibleFeatures;
 import com.github.didmar.jrl.stepsize.StepSize;
-import com.github.didmar.jrl.utils.DiscountFactor;
 
 // TODO Code a variant with eligibility traces (see Morimura's TDNAC)
 /**
@@ -17,7 +19,8 @@ public final class AdvantageTDBootstrap implements QFunctionLearner, Environment
 	private final TD tdLearner;
 	/** Learning step */
 	private final StepSize stepSize;
-	private final DiscountFactor gamma;
+	/** Context of the samples received without one */
+	private final StepContext context;
 
 	public AdvantageTDBootstrap(QFunction aFunction, TD tdLearner,
 			StepSize stepSize) {
@@ -25,7 +28,11 @@ public final class AdvantageTDBootstrap implements QFunctionLearner, Environment
 		this.aFunction = aFunction;
 		this.tdLearner = tdLearner;
 		this.stepSize = stepSize;
-		gamma = this.tdLearner.getDiscountFactor();
+		context = this.tdLearner.newStepContext(
+				aFunction instanceof LinearQFunction
+				&& ((LinearQFunction) aFunction).getFeatures() instanceof CompatibleFeatures ?
+						((CompatibleFeatures) ((LinearQFunction) aFunction).getFeatures()).getPolicy()
+						: null);
 	}
 
 	/* (non-Javadoc)
@@ -40,16 +47,41 @@ public final class AdvantageTDBootstrap implements QFunctionLearner, Environment
 	 * @see jrl.environment.EnvironmentListener#receiveSample(double[], double[], double[], double)
 	 */
 	public final void receiveSample(double[] x, double[] u, double[] xn, double r, boolean isTerminal) {
+		context.set(x, u, xn, isTerminal);
+		receiveSample(context, r);
+	}
+
+	/**
+	 * Receives the sample of a context shared with the other learners of the
+	 * transition, created by {@link TD#newStepContext(com.github.didmar.jrl.policy.ILogDifferentiablePolicy)}.
+	 * @param ctx  the context of the transition
+	 * @param r    the reward
+	 */
+	public final void receiveSample(StepContext ctx, double r) {
 		// Transmit to the TD Learner
-		tdLearner.receiveSample(x, u, xn, r, isTerminal);
+		tdLearner.addSample(ctx, r);
 		// Update the step-size
         stepSize.updateStep();
         // Compute the TD Error
-        final double tdErr = tdLearner.getVFunction().tdError(x, xn, r, isTerminal, gamma);
+        final double tdErr = tdLearner.tdError(ctx, r);
         // Update the advantage function using the difference between the TD
         // error and the advantage value for the current state-action
-        aFunction.updateForStateAction(x, u,
-        		stepSize.getStep()*(tdErr-aFunction.get(x,u)));
+        if(aFunction instanceof LinearQFunction
+        		&& ctx.isCompatible(((LinearQFunction) aFunction).getFeatures())) {
+        	// The features are the memoized log-policy derivative
+        	final LinearQFunction lq = (LinearQFunction) aFunction;
+        	final double[] psi = ctx.dLogdTheta();
+        	lq.updateForFeaturesVector(psi,
+        			stepSize.getStep()*(tdErr-lq.getForFeaturesVector(psi)));
+        } else {
+        	final double[] u = ctx.getU();
+        	if(u == null) {
+        		throw new IllegalArgumentException("The context has no action");
+        	}
+        	final double[] x = ctx.getX();
+        	aFunction.updateForStateAction(x, u,
+        			stepSize.getStep()*(tdErr-aFunction.get(x,u)));
+        }
 	}
 	
 	/* (non-Javadoc)
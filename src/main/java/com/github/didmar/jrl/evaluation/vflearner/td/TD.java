@@ -1,8 +1,14 @@
 package com.github.didmar.jrl.evaluation.vflearner.td;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.evaluation.StepContext;
+import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.policy.ILogDifferentiablePolicy;
 import com.github.didmar.jrl.utils.DiscountFactor;
 
 /**
@@ -30,6 +36,50 @@ public abstract class TD implements VFunctionLearner, EnvironmentListener {
 	}
 
 	public abstract void addSample(double[] x, double[] xn, double r, boolean isTerminal);
+
+	/**
+	 * Adds the sample of a context shared with the other learners of the
+	 * transition, see {@link #newStepContext(ILogDifferentiablePolicy)}. By
+	 * default, the context is only used for the sample itself.
+	 * @param ctx  the context of the transition
+	 * @param r    the reward
+	 */
+	public void addSample(StepContext ctx, double r) {
+		addSample(ctx.getX(), ctx.getXn(), r, ctx.isTerminal());
+	}
+
+	/**
+	 * Returns the TD error of the transition of a context, for the current
+	 * value function. The features of the context are used if they are the
+	 * ones of the value function.
+	 * @param ctx  the context of the transition
+	 * @param r    the reward
+	 * @return the TD error
+	 */
+	public final double tdError(StepContext ctx, double r) {
+		if(vFunction instanceof LinearVFunction
+				&& ((LinearVFunction) vFunction).getFeatures()
+					== ctx.getStateFeatures()) {
+			return ((LinearVFunction) vFunction).tdError(ctx, r, gamma);
+		}
+		return vFunction.tdError(ctx.getX(), ctx.getXn(), r, ctx.isTerminal(),
+				gamma);
+	}
+
+	/**
+	 * Returns a new context for this learner and the other learners of the
+	 * transitions, with the state features of the value function if it is a
+	 * {@link LinearVFunction}.
+	 * @param pol  the policy followed, or null if the log-policy derivative
+	 *             is not needed
+	 * @return a new context
+	 */
+	public final StepContext newStepContext(
+			@Nullable ILogDifferentiablePolicy pol) {
+		final Features features = (vFunction instanceof LinearVFunction ?
+				((LinearVFunction) vFunction).getFeatures() : null);
+		return new StepContext(features, pol, vFunction.getXDim());
+	}
 	
 	/* (non-Javadoc)
 	 * @see jrl.environment.EnvironmentListener#newEpisode(double[], int)
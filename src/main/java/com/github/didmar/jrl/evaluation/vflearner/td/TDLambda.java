@@ -1,5 +1,6 @@
 package com.github.didmar.jrl.evaluation.vflearner.td;
 
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.stepsize.StepSize;
 import com.github.didmar.jrl.utils.DiscountFactor;
@@ -35,16 +36,16 @@ public final class TDLambda extends TDZero {
 	}
 
 	/* (non-Javadoc)
-	 * @see jrl.evaluation.valuefunction.TDZeroLearner#addSample(double[], double[], double, boolean)
+	 * @see com.github.didmar.jrl.evaluation.vflearner.td.TDZero#addSample(com.github.didmar.jrl.evaluation.StepContext, double)
 	 */
 	@Override
-	public void addSample(double[] x, double[] xn, double r, boolean isTerminal) {
+	public void addSample(StepContext ctx, double r) {
+		// Compute the TD Error, which checks the features of the context
+		final double tdErr = ((LinearVFunction)vFunction).tdError(ctx, r, gamma);
 		// Update the step-size
 		stepSize.updateStep();
-		// Compute the TD Error
-		final double tdErr = vFunction.tdError(x, xn, r, isTerminal, gamma);
 		// Update the eligibility traces
-		final double[] phix =  ((LinearVFunction)vFunction).getFeatures().phi(x);
+		final double[] phix = ctx.phiX();
 		for(int i=0; i<n; i++) {
 			eligib[i] = gamma.value*lambda.value*eligib[i] + phix[i];
 		}
@@ -1,5 +1,6 @@
 package com.github.didmar.jrl.evaluation.vflearner.td;
 
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.stepsize.StepSize;
 import com.github.didmar.jrl.utils.DiscountFactor;
@@ -12,6 +13,8 @@ public class TDZero extends TD {
 
 	/** Learning step */
 	protected StepSize stepSize;
+	/** Context of the samples added without one */
+	private final StepContext context;
 	
 	/**
 	 * @param vFunction
@@ -21,19 +24,31 @@ public class TDZero extends TD {
 			DiscountFactor gamma) {
 		super(vFunction, gamma);
 		this.stepSize = stepSize;
+		context = newStepContext(null);
 	}
 
 	/* (non-Javadoc)
 	 * @see jrl.evaluation.valuefunction.VFunctionLearner#addSample(double[], double[], double, boolean)
 	 */
 	@Override
-	public void addSample(double[] x, double[] xn, double r, boolean isTerminal) {
+	public void addSample(double[] x, double[] xn, double r,
+			boolean isTerminal) {
+		context.set(x, null, xn, isTerminal);
+		addSample(context, r);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.evaluation.vflearner.td.TD#addSample(com.github.didmar.jrl.evaluation.StepContext, double)
+	 */
+	@Override
+	public void addSample(StepContext ctx, double r) {
+		// Compute the TD Error, which checks the features of the context
+		final double tdErr = ((LinearVFunction)vFunction).tdError(ctx, r, gamma);
 		// Update the step-size
 		stepSize.updateStep();
-		// Compute the TD Error
-		final double tdErr = vFunction.tdError(x, xn, r, isTerminal, gamma);
 		// Update the state value function with the TD Error
-		((LinearVFunction)vFunction).updateForState(x, stepSize.getStep()*tdErr);
+		((LinearVFunction)vFunction).updateForFeaturesVector(ctx.phiX(),
+				stepSize.getStep()*tdErr);
 	}
 
 	@Override
@@ -0,0 +1,119 @@
+package com.github.didmar.jrl.examples;
+
+import java.util.Random;
+
+import com.github.didmar.jrl.utils.cma.CMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.CMAOptions;
+import com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.LMCMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.SepCMAEvolutionStrategy;
+
+/**
+ * Benchmark of the covariance models of CMA-ES on an ill-conditioned
+ * ellipsoid: the full covariance matrix decomposed at each generation, the
+ * full covariance matrix decomposed every {@link #EIGEN_GAP} generations,
+ * the separable model and the limited memory model. Prints the average
+ * time of a generation, excluding the function evaluations, in
+ * milliseconds, and the function value of the mean after a fixed number of
+ * generations. Dimensions can be given as arguments.
+ * @author Didier Marin
+ */
+public class BenchmarkCMAES {
+
+	/** Number of generations of each run */
+	private static final int NB_GENERATIONS = 300;
+	/** Generations between two eigendecompositions of the lazy variant */
+	private static final int EIGEN_GAP = 10;
+	/** Condition number of the ellipsoid */
+	private static final double CONDITION = 1e4;
+
+	public static void main(String[] args) {
+		int[] dims = new int[]{10, 50, 200};
+		if(args.length > 0) {
+			dims = new int[args.length];
+			for(int i=0; i<args.length; i++) {
+				dims[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.println(String.format("%6s %-12s %12s %12s",
+				"n", "model", "ms/gen", "f(mean)"));
+		for(int n : dims) {
+			run(n, "full", newFull(n, 1));
+			run(n, "full-lazy"+EIGEN_GAP, newFull(n, EIGEN_GAP));
+			run(n, "separable", new SepCMAEvolutionStrategy(newOptions(),
+					lambda(n), x0(n), sigma0(n), new Random(0)));
+			run(n, "lim-memory", new LMCMAEvolutionStrategy(newOptions(),
+					lambda(n), x0(n), sigma0(n), new Random(0)));
+		}
+	}
+
+	private static void run(int n, String name, ICMAEvolutionStrategy cma) {
+		long duration = 0;
+		double[] fitness = null;
+		for(int g=0; g<NB_GENERATIONS; g++) {
+			long start = System.nanoTime();
+			final double[][] pop = cma.samplePopulation();
+			duration += System.nanoTime() - start;
+			if(fitness == null) {
+				fitness = new double[pop.length];
+			}
+			for(int k=0; k<pop.length; k++) {
+				fitness[k] = ellipsoid(pop[k]);
+			}
+			start = System.nanoTime();
+			cma.updateDistribution(fitness);
+			duration += System.nanoTime() - start;
+		}
+		System.out.println(String.format("%6d %-12s %12.4f %12.4e",
+				n, name, duration / 1e6 / NB_GENERATIONS,
+				ellipsoid(cma.getMeanX())));
+	}
+
+	private static CMAEvolutionStrategy newFull(int n, int eigenGap) {
+		final CMAEvolutionStrategy cma = new CMAEvolutionStrategy();
+		cma.options = newOptions();
+		cma.options.eigenUpdateGap = eigenGap;
+		cma.setRand(new Random(0));
+		cma.parameters.setPopulationSize(lambda(n));
+		cma.init(n, x0(n), sigma0(n));
+		return cma;
+	}
+
+	private static CMAOptions newOptions() {
+		final CMAOptions options = new CMAOptions();
+		options.verbosity = -1;
+		options.writeDisplayToFile = 0;
+		return options;
+	}
+
+	/** Default population size of CMA-ES */
+	private static int lambda(int n) {
+		return 4 + (int) (3. * Math.log(n));
+	}
+
+	private static double[] x0(int n) {
+		final double[] x0 = new double[n];
+		for(int i=0; i<n; i++) {
+			x0[i] = 1.;
+		}
+		return x0;
+	}
+
+	private static double[] sigma0(int n) {
+		final double[] sigma0 = new double[n];
+		for(int i=0; i<n; i++) {
+			sigma0[i] = 0.5;
+		}
+		return sigma0;
+	}
+
+	/** Ellipsoid whose axes lengths range from 1 to 1/sqrt(CONDITION) */
+	private static double ellipsoid(double[] x) {
+		final int n = x.length;
+		double f = 0.;
+		for(int i=0; i<n; i++) {
+			f += Math.pow(CONDITION, n > 1 ? i / (n - 1.) : 0.) * x[i] * x[i];
+		}
+		return f;
+	}
+}
@@ -0,0 +1,200 @@
+package com.github.didmar.jrl.examples;
+
+import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
+
+import Jama.CholeskyDecomposition;
+import Jama.LUDecomposition;
+import Jama.Matrix;
+
+/**
+ * Benchmark of the {@link MatKernels} dense linear algebra kernels against
+ * the textbook triple loops they replaced in ArrUtils, and against JAMA.
+ * Prints the average time of each operation, in milliseconds, for several
+ * matrix sizes. Sizes can be given as arguments.
+ * @author Didier Marin
+ */
+public class BenchmarkMatKernels {
+
+	/** Minimum duration of each measurement, in nanoseconds */
+	private static final long MIN_DURATION = 500000000L;
+
+	public static void main(String[] args) {
+		int[] sizes = new int[]{64, 128, 256, 512};
+		if(args.length > 0) {
+			sizes = new int[args.length];
+			for(int i=0; i<args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.println(String.format("%6s %-10s %12s %12s %12s",
+				"n", "op", "textbook", "MatKernels", "JAMA"));
+		for(int n : sizes) {
+			benchmark(n);
+		}
+	}
+
+	private static void benchmark(final int n) {
+		final double[][] A = randMatrix(n, n);
+		final double[][] B = randMatrix(n, n);
+		final double[][] C = new double[n][n];
+		final double[] x = randMatrix(1, n)[0];
+		final double[] y = new double[n];
+		final Matrix matA = new Matrix(A);
+		final Matrix matB = new Matrix(B);
+		// Symmetric positive definite matrix for Cholesky
+		final double[][] S = matA.times(matA.transpose())
+				.plus(Matrix.identity(n, n)).getArray();
+		final Matrix matS = new Matrix(S);
+		final double[][] work = new double[n][n];
+		final int[] piv = new int[n];
+
+		print(n, "gemm",
+			time(new Runnable() {
+				public void run() {
+					textbookMultiply(A, B, C, n);
+				}
+			}),
+			time(new Runnable() {
+				public void run() {
+					MatKernels.gemm(A, B, C, n, n, n);
+				}
+			}),
+			time(new Runnable() {
+				public void run() {
+					matA.times(matB);
+				}
+			}));
+		print(n, "gemv",
+			time(new Runnable() {
+				public void run() {
+					textbookMultiply(A, x, y, n);
+				}
+			}),
+			time(new Runnable() {
+				public void run() {
+					MatKernels.gemv(A, x, y, n, n);
+				}
+			}),
+			Double.NaN);
+		print(n, "cholesky",
+			time(new Runnable() {
+				public void run() {
+					copy(S, work, n);
+					textbookCholesky(work, n);
+				}
+			}),
+			time(new Runnable() {
+				public void run() {
+					copy(S, work, n);
+					MatKernels.cholesky(work, n);
+				}
+			}),
+			time(new Runnable() {
+				public void run() {
+					new CholeskyDecomposition(matS);
+				}
+			}));
+		print(n, "lu",
+			Double.NaN,
+			time(new Runnable() {
+				public void run() {
+					copy(A, work, n);
+					MatKernels.lu(work, piv, n);
+				}
+			}),
+			time(new Runnable() {
+				public void run() {
+					new LUDecomposition(matA);
+				}
+			}));
+	}
+
+	private static void print(int n, String op, double textbook,
+			double kernels, double jama) {
+		System.out.println(String.format("%6d %-10s %12.4f %12.4f %12.4f",
+				n, op, textbook, kernels, jama));
+	}
+
+	/**
+	 * Runs the operation until it reaches steady state, then returns its
+	 * average duration in milliseconds.
+	 */
+	private static double time(Runnable op) {
+		// Warm-up
+		long start = System.nanoTime();
+		while(System.nanoTime() - start < MIN_DURATION) {
+			op.run();
+		}
+		int nbRuns = 0;
+		start = System.nanoTime();
+		long elapsed;
+		do {
+			op.run();
+			nbRuns++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < MIN_DURATION);
+		return elapsed / 1e6 / nbRuns;
+	}
+
+	private static double[][] randMatrix(int l1, int l2) {
+		final double[][] A = new double[l1][l2];
+		for(int i=0; i<l1; i++) {
+			for(int j=0; j<l2; j++) {
+				A[i][j] = RandUtils.nextDouble();
+			}
+		}
+		return A;
+	}
+
+	private static void copy(double[][] src, double[][] dest, int n) {
+		for(int i=0; i<n; i++) {
+			System.arraycopy(src[i], 0, dest[i], 0, n);
+		}
+	}
+
+	//---[ Textbook implementations, as previously found in ArrUtils ]---------
+
+	private static void textbookMultiply(double[][] A, double[][] B,
+			double[][] dest, int n) {
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				dest[i][j] = A[i][0] * B[0][j];
+				for (int k = 1; k < n; k++) {
+					dest[i][j] += A[i][k] * B[k][j];
+				}
+			}
+		}
+	}
+
+	private static void textbookMultiply(double[][] A, double[] v,
+			double[] dest, int n) {
+		for (int i = 0; i < n; i++) {
+			dest[i] = A[i][0] * v[0];
+			for (int j = 1; j < n; j++) {
+				dest[i] += A[i][j] * v[j];
+			}
+		}
+	}
+
+	private static void textbookCholesky(double[][] A, int n) {
+		double sum;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				sum = A[i][j];
+				for (int k = 0; k < j; k++) {
+					sum -= A[i][k] * A[j][k];
+				}
+				A[i][j] = sum / A[j][j];
+			}
+			sum = A[i][i];
+			for (int k = 0; k < i; k++) {
+				sum -= A[i][k] * A[i][k];
+			}
+			if (sum <= 0) {
+				return;
+			}
+			A[i][i] = Math.sqrt(sum);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.github.didmar.jrl.examples;
+
+import java.util.Arrays;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
+import com.github.didmar.jrl.mdp.GARNETMDP;
+import com.github.didmar.jrl.policy.BoltzmannPolicy;
+import com.github.didmar.jrl.policy.DiscreteDeterministicPolicy;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.Policy;
+import com.github.didmar.jrl.policy.SnapshotPolicy;
+import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Benchmark of the latency of taking an action with a trained policy, and
+ * with the frozen policy it compiles into (see
+ * {@link LinearGaussianPolicy#freeze()}, {@link BoltzmannPolicy#freeze()}
+ * and {@link DiscreteDeterministicPolicy#freeze()}). Each call is timed
+ * separately, so that the tail of the distribution is visible, and the
+ * 50th, 99th and 99.9th percentiles are printed in nanoseconds. They
+ * include the overhead of {@link System#nanoTime()}.
+ * The number of timed calls can be given as argument.
+ * @author Didier Marin
+ */
+public class BenchmarkPolicyLatency {
+
+	/** Number of calls before the measurements, for the JIT compiler */
+	private static final int N_WARMUP = 200000;
+	/** Number of states the calls cycle through */
+	private static final int N_STATES = 1024;
+
+	public static void main(String[] args) {
+		final int nCalls = (args.length > 0 ? Integer.parseInt(args[0])
+				: 1000000);
+		System.out.println(String.format("%-24s %-8s %10s %10s %10s",
+				"policy", "variant", "p50", "p99", "p999"));
+
+		// Linear Gaussian policy over an 11x11 grid of RBF features
+		final double[] xMin = {0., 0.};
+		final double[] xMax = {1., 1.};
+		final RBFFeatures rbf = new RBFFeatures(
+				ArrUtils.buildGrid(xMin, xMax, 11),
+				ArrUtils.constvec(2, 0.01), true);
+		final LinearGaussianPolicy gaussian = new LinearGaussianPolicy(rbf,
+				new double[]{0.05}, new double[]{-1.}, new double[]{1.}, true);
+		gaussian.setParams(ArrUtils.rand(gaussian.getParamsSize()));
+		final double[][] continuousStates = new double[N_STATES][];
+		for(int i=0; i<N_STATES; i++) {
+			continuousStates[i] = ArrUtils.rand(2);
+		}
+		compare("LinearGaussian RBF 11x11", gaussian,
+				new SnapshotPolicy(gaussian.freeze()), continuousStates, nCalls);
+
+		// Boltzmann policy over the state-action pairs of a GARNET problem
+		final GARNETMDP mdp = new GARNETMDP(100, 4, 3);
+		final BoltzmannPolicy boltzmann = new BoltzmannPolicy(
+				new TabularStateActionFeatures(mdp), mdp.actionsGrid(), 0.5);
+		boltzmann.setParams(ArrUtils.rand(boltzmann.getParamsSize()));
+		final double[][] discreteStates = new double[N_STATES][];
+		for(int i=0; i<N_STATES; i++) {
+			discreteStates[i] = new double[]{RandUtils.nextInt(mdp.n)};
+		}
+		compare("Boltzmann GARNET(100,4)", boltzmann,
+				new SnapshotPolicy(boltzmann.freeze()), discreteStates, nCalls);
+
+		// Deterministic policy over the same states
+		final int[] greedy = new int[mdp.n];
+		for(int s=0; s<mdp.n; s++) {
+			greedy[s] = RandUtils.nextInt(mdp.m);
+		}
+		final DiscreteDeterministicPolicy deterministic
+			= new DiscreteDeterministicPolicy(greedy);
+		compare("Deterministic (100)", deterministic,
+				new SnapshotPolicy(deterministic.freeze()), discreteStates,
+				nCalls);
+	}
+
+	private static void compare(String name, Policy pol, Policy frozen,
+			double[][] states, int nCalls) {
+		print(name, "trained", latencies(pol, states, nCalls));
+		print(name, "frozen", latencies(frozen, states, nCalls));
+	}
+
+	/** Returns the sorted latencies of nCalls calls, in nanoseconds */
+	private static long[] latencies(Policy pol, double[][] states,
+			int nCalls) {
+		final PolicyAgent agent = new PolicyAgent(pol);
+		for(int i=0; i<N_WARMUP; i++) {
+			agent.takeAction(states[i % N_STATES]);
+		}
+		final long[] durations = new long[nCalls];
+		for(int i=0; i<nCalls; i++) {
+			final double[] x = states[i % N_STATES];
+			final long start = System.nanoTime();
+			agent.takeAction(x);
+			durations[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(durations);
+		return durations;
+	}
+
+	private static void print(String name, String variant, long[] sorted) {
+		System.out.println(String.format("%-24s %-8s %10d %10d %10d", name,
+				variant, percentile(sorted, 0.5), percentile(sorted, 0.99),
+				percentile(sorted, 0.999)));
+	}
+
+	/** Nearest-rank percentile of sorted values */
+	private static long percentile(long[] sorted, double p) {
+		final int rank = (int) Math.ceil(p * sorted.length);
+		return sorted[Math.max(rank, 1) - 1];
+	}
+}
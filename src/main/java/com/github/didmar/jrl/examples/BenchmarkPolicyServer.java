@@ -0,0 +1,103 @@
+package com.github.didmar.jrl.examples;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.server.PolicyServer;
+import com.github.didmar.jrl.policy.server.RemotePolicy;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Benchmark of a {@link PolicyServer} serving a linear Gaussian policy over
+ * a grid of RBF features to concurrent {@link RemotePolicy} clients, for
+ * several batching settings. Prints the throughput of the server, in
+ * requests per second, and the 50th and 99th percentiles of the latency
+ * seen by the clients, in microseconds. The number of clients can be given
+ * as argument.
+ * @author Didier Marin
+ */
+public class BenchmarkPolicyServer {
+
+	/** Number of requests of each client */
+	private static final int N_REQUESTS = 20000;
+	/** Maximum batch sizes and waits (in microseconds) of each setting */
+	private static final int[][] SETTINGS = {{1, 0}, {64, 0}, {64, 50}};
+
+	public static void main(String[] args) throws Exception {
+		final int nClients = (args.length > 0 ? Integer.parseInt(args[0]) : 8);
+		final RBFFeatures rbf = new RBFFeatures(
+				ArrUtils.buildGrid(new double[]{0.,0.}, new double[]{1.,1.}, 21),
+				ArrUtils.constvec(2, 0.0025), true);
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(rbf,
+				new double[]{0.05}, new double[]{-1.}, new double[]{1.}, true);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		System.out.println(String.format("%8s %8s %8s %12s %10s %10s",
+				"clients", "maxBatch", "maxWait", "requests/s", "p50(us)",
+				"p99(us)"));
+		for(int[] setting : SETTINGS) {
+			final PolicyServer server = new PolicyServer(pol, 2, 1, 0,
+					setting[0], setting[1]);
+			try {
+				// Once to warm up, then measured
+				run(server.getPort(), nClients);
+				final long start = System.nanoTime();
+				final long[] latencies = run(server.getPort(), nClients);
+				final double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.println(String.format("%8d %8d %8d %12.0f %10.1f %10.1f",
+						nClients, setting[0], setting[1],
+						latencies.length / seconds,
+						latencies[latencies.length / 2] / 1e3,
+						latencies[(int) (0.99 * latencies.length)] / 1e3));
+			} finally {
+				server.close();
+			}
+		}
+	}
+
+	/** Runs the clients and returns the sorted latencies of their requests,
+	 * in nanoseconds */
+	private static long[] run(final int port, int nClients) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(nClients);
+		try {
+			final List<Future<long[]>> futures
+				= new ArrayList<Future<long[]>>(nClients);
+			for(int t=0; t<nClients; t++) {
+				futures.add(executor.submit(new Callable<long[]>() {
+					public long[] call() throws Exception {
+						final RemotePolicy remote = new RemotePolicy(port);
+						final long[] durations = new long[N_REQUESTS];
+						try {
+							final double[] x = new double[2];
+							for(int i=0; i<N_REQUESTS; i++) {
+								x[0] = (i % 97) / 96.;
+								x[1] = (i % 89) / 88.;
+								final long start = System.nanoTime();
+								remote.computePolicyDistribution(x);
+								durations[i] = System.nanoTime() - start;
+							}
+						} finally {
+							remote.close();
+						}
+						return durations;
+					}
+				}));
+			}
+			final long[] all = new long[nClients * N_REQUESTS];
+			for(int t=0; t<nClients; t++) {
+				System.arraycopy(futures.get(t).get(), 0, all, t * N_REQUESTS,
+						N_REQUESTS);
+			}
+			Arrays.sort(all);
+			return all;
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
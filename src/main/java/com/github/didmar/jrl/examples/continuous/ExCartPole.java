@@ -3,6 +3,8 @@ package com.github.didmar.jrl.examples.continuous;
 import java.io.IOException;
 
 import com.github.didmar.jrl.agent.CEPS;
+import com.github.didmar.jrl.agent.CMAESPS;
+import com.github.didmar.jrl.agent.CMAESPS.RestartStrategy;
 import com.github.didmar.jrl.agent.LearningAgent;
 import com.github.didmar.jrl.agent.PGPE;
 import com.github.didmar.jrl.agent.REINFORCE;
@@ -41,7 +43,7 @@ public class ExCartPole {
 
 		System.out.println("Which algorithm do you want to test ?");
 		int agentChoice = Utils.chooseOne(new String[]
-				{"REINFORCE","CEPS","BasicAC","VAC","TDNAC","NAC"});
+				{"REINFORCE","CEPS","BasicAC","VAC","TDNAC","NAC","CMA-ES"});
 		System.out.println("Show state-space trajectories ?");
 		final boolean showTrajs = Utils.chooseOne(new String[]
 				{"No","Yes"})==0 ? false : true;
@@ -81,7 +83,7 @@ public class ExCartPole {
 		//---[ Choose a policy ]------------------------------------------------
 		// - Linear Gaussian with constant noise
 		double[] noiseStdDev = null;
-		if(agentChoice == 1 || agentChoice == 2) {
+		if(agentChoice == 1 || agentChoice == 2 || agentChoice == 6) {
 			// no noise for direct exploration methods
 			noiseStdDev = ArrUtils.zeros(uDim);
 		} else {
@@ -143,7 +145,7 @@ public class ExCartPole {
 			case 0 : { // +++ REINFORCE
 				final ConstantStepSize stepSize = new ConstantStepSize(0.001);
 				//final DecreasingStepSize stepSize = new DecreasingStepSize(0.01,1000);
-				agent = new REINFORCE(pol, xDim, uDim, stepSize, nEpiPerLearningStep, gamma);
+				agent = new REINFORCE(pol, stepSize, nEpiPerLearningStep, gamma);
 				}
 				break;
 			case 1 : { // +++ CEPS
@@ -182,6 +184,14 @@ public class ExCartPole {
 				vFunction = ((NAC)agent).getVFunction();
 				}
 				break;
+			case 6 : { // +++ CMAESPS
+				final int nPolEvalPerUpdate = nEpiPerLearningStep;
+				final int nEpiPerPolEval = 1;
+				agent = new CMAESPS(pol, nPolEvalPerUpdate, nEpiPerPolEval,
+						gamma, ArrUtils.constvec(pol.getParamsSize(),100.),
+						RestartStrategy.BIPOP, 9);
+				}
+				break;
 		}
 		if(agent == null) throw new RuntimeException();
 
@@ -291,6 +301,11 @@ public class ExCartPole {
 		    	double maxSigma = ArrUtils.max(paramsDist.getSigma());
 		    	double meanSigma = ArrUtils.mean(paramsDist.getSigma());
 		    	System.out.println(" PGPE sigma min="+minSigma+" mean="+meanSigma+" max="+maxSigma);
+		    } else if(agent instanceof CMAESPS) {
+		    	CMAESPS cmaes = (CMAESPS) agent;
+		    	System.out.println(" CMA-ES popSize="+cmaes.getPopulationSize()
+		    			+" axisRatio="+cmaes.getStrategy().getAxisRatio()
+		    			+" restarts="+cmaes.getNbRestarts());
 		    } else {
 		    	System.out.println();
 		    }
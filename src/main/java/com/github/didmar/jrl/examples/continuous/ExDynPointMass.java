@@ -165,7 +165,7 @@ public class ExDynPointMass {
 		// +++ REINFORCE
 //		final ConstantStepSize stepSize = new ConstantStepSize(0.001);
 //		//final DecreasingStepSize stepSize = new DecreasingStepSize(0.01,1000);
-//		final LearningAgent agent = new REINFORCE(pol, xDim, uDim, stepSize, nEpiPerLearningStep, gamma);
+//		final LearningAgent agent = new REINFORCE(pol, stepSize, nEpiPerLearningStep, gamma);
 
 		// +++ CEPS
 		final int nPolEvalPerUpdate = 100;
@@ -179,10 +179,9 @@ public class ExDynPointMass {
 //		final int nPolEvalPerUpdate = nEpiPerLearningStep;
 //		final int nEpiPerPolEval = 1;
 //		assert(nEpiPerPolEval * nPolEvalPerUpdate == nEpiPerLearningStep);
-//		final int nbSelectedPol = (int) Math.ceil(nPolEvalPerUpdate*10./100.);
-//		final LearningAgent agent = new CMAESPS(pol, xDim, uDim, nPolEvalPerUpdate,
-//				nEpiPerPolEval,	gamma,
-//				Utils.constvec(pol.getParamsSize(),0.1));
+//		final LearningAgent agent = new CMAESPS(pol, nPolEvalPerUpdate,
+//				nEpiPerPolEval,	gamma, ArrUtils.constvec(pol.getParamsSize(),0.1),
+//				RestartStrategy.BIPOP, 9);
 
 		// +++ BasicAC
 //		final DecreasingStepSize actorStepSize = twoTimescaleStepsSizes[1];
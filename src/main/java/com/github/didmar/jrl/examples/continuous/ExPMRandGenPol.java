@@ -187,8 +187,8 @@ public class ExPMRandGenPol {
 			case 2 : { // REINFORCE
 				final ConstantStepSize stepSize = new ConstantStepSize(0.001);
 				//final DecreasingStepSize stepSize = new DecreasingStepSize(0.01,1000);
-				agent = new REINFORCE((ILogDifferentiablePolicy)pol, xDim, uDim,
-							stepSize, nEpiPerLearningStep, gamma);
+				agent = new REINFORCE((ILogDifferentiablePolicy)pol, stepSize,
+							nEpiPerLearningStep, gamma);
 				break;
 			}
 			case 3 : { // BasicAC
@@ -3,6 +3,8 @@ package com.github.didmar.jrl.examples.continuous;
 import java.io.IOException;
 
 import com.github.didmar.jrl.agent.CEPS;
+import com.github.didmar.jrl.agent.CMAESPS;
+import com.github.didmar.jrl.agent.CMAESPS.RestartStrategy;
 import com.github.didmar.jrl.agent.LearningAgent;
 import com.github.didmar.jrl.agent.PGPE;
 import com.github.didmar.jrl.agent.PolicyAgent;
@@ -156,7 +158,7 @@ public class ExPointMass {
 		// +++ REINFORCE
 //		final ConstantStepSize stepSize = new ConstantStepSize(0.001);
 //		//final DecreasingStepSize stepSize = new DecreasingStepSize(0.01,1000);
-//		final LearningAgent agent = new REINFORCE(pol, xDim, uDim, stepSize, nEpiPerLearningStep, gamma);
+//		final LearningAgent agent = new REINFORCE(pol, stepSize, nEpiPerLearningStep, gamma);
 
 		// +++ PGPE
 //		final LearningAgent agent = new PGPE((ParametricPolicy)pol, gamma, nEpiPerLearningStep,
@@ -177,10 +179,10 @@ public class ExPointMass {
 //		final int nPolEvalPerUpdate = nEpiPerLearningStep;
 //		final int nEpiPerPolEval = 1;
 //		assert(nEpiPerPolEval * nPolEvalPerUpdate == nEpiPerLearningStep);
-//		final int nbSelectedPol = (int) Math.ceil(nPolEvalPerUpdate*10./100.);
 //		final LearningAgent agent = new CMAESPS((ParametricPolicy)pol,
-//				xDim, uDim, nPolEvalPerUpdate, nEpiPerPolEval, gamma,
-//				Utils.constvec(((ParametricPolicy)pol).getParamsSize(),0.1));
+//				nPolEvalPerUpdate, nEpiPerPolEval, gamma,
+//				ArrUtils.constvec(((ParametricPolicy)pol).getParamsSize(),0.1),
+//				RestartStrategy.BIPOP, 9);
 
 		// +++ BasicAC
 //		final DecreasingStepSize actorStepSize = twoTimescaleStepsSizes[1];
@@ -294,6 +296,11 @@ public class ExPointMass {
 		    	double maxSigma = ArrUtils.max(paramsDist.getSigma());
 		    	double meanSigma = ArrUtils.mean(paramsDist.getSigma());
 		    	System.out.println(" PGPE sigma min="+minSigma+" mean="+meanSigma+" max="+maxSigma);
+		    } else if(agent instanceof CMAESPS) {
+		    	CMAESPS cmaes = (CMAESPS) agent;
+		    	System.out.println(" CMA-ES popSize="+cmaes.getPopulationSize()
+		    			+" axisRatio="+cmaes.getStrategy().getAxisRatio()
+		    			+" restarts="+cmaes.getNbRestarts());
 		    } else {
 		    	System.out.println();
 		    }
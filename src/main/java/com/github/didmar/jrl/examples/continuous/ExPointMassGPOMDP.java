@@ -0,0 +1,119 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.agent.REINFORCE;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.evaluation.OnlineGPOMDPEstimator;
+import com.github.didmar.jrl.evaluation.OnlineGradientEstimator;
+import com.github.didmar.jrl.evaluation.OnlineREINFORCEEstimator;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Compares the accuracy of the REINFORCE and G(PO)MDP estimators of the
+ * performance gradient on the Point Mass problem, as a function of the
+ * number of episodes, then the policies learned by {@link REINFORCE} with
+ * each of them. The accuracy is the relative squared error with respect to
+ * a reference gradient estimated on many episodes.
+ * @author Didier Marin
+ */
+public class ExPointMassGPOMDP {
+
+	private static final double[] x0 = ArrUtils.constvec(1, 0.25);
+	private static final double[] xtarget = ArrUtils.constvec(1, 0.75);
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int nEpiReference = 20000;
+	private static final int[] nEpiPerEstimation = new int[]{5, 10, 20, 50};
+	private static final int nEstimations = 50;
+	private static final int nUpdates = 100;
+	private static final int nEpiPerUpdate = 10;
+	private static final int nEpiPerTest = 100;
+
+	public static void main(String[] args) {
+		final PointMass env = new PointMass(x0, xtarget,
+				PointMassRewardType.COST, true);
+		final LinearGaussianPolicy pol = newPolicy(env);
+		final OnlineGradientEstimator[] estimators = new OnlineGradientEstimator[] {
+				new OnlineREINFORCEEstimator(pol, gamma),
+				new OnlineGPOMDPEstimator(pol, gamma, false),
+				new OnlineGPOMDPEstimator(pol, gamma, true)};
+		final String[] names = new String[] {
+				"REINFORCE", "G(PO)MDP", "G(PO)MDP+baseline"};
+
+		final double[] reference = estimate(env, pol, estimators[2],
+				nEpiReference);
+		final double refNorm2 = squaredNorm(reference, null);
+		System.out.println(String.format("%-18s %8s %12s", "estimator",
+				"episodes", "rel. error"));
+		for(int k=0; k<estimators.length; k++) {
+			for(int nEpi : nEpiPerEstimation) {
+				double error = 0.;
+				for(int i=0; i<nEstimations; i++) {
+					error += squaredNorm(estimate(env, pol, estimators[k],
+							nEpi), reference) / refNorm2;
+				}
+				System.out.println(String.format("%-18s %8d %12.4f",
+						names[k], nEpi, error / nEstimations));
+			}
+		}
+
+		System.out.println(String.format("%-18s %8s %12s", "estimator",
+				"episodes", "J"));
+		for(int k=0; k<estimators.length; k++) {
+			final LinearGaussianPolicy learned = newPolicy(env);
+			final REINFORCE agent = new REINFORCE(learned,
+					new ConstantStepSize(0.001), nEpiPerUpdate,
+					estimators[k].newInstance(learned));
+			env.addListener(agent);
+			env.interact(agent, nUpdates * nEpiPerUpdate, maxT);
+			env.removeListener(agent);
+			final Logger log = new Logger(env.getXDim(), env.getUDim());
+			env.addListener(log);
+			env.interact(new PolicyAgent(learned), nEpiPerTest, maxT);
+			env.removeListener(log);
+			System.out.println(String.format("%-18s %8d %12.4f", names[k],
+					nUpdates * nEpiPerUpdate,
+					ArrUtils.mean(log.discountedReward(gamma))));
+		}
+	}
+
+	private static LinearGaussianPolicy newPolicy(PointMass env) {
+		final double[][] centers = ArrUtils.buildGrid(env.getXMin(),
+				env.getXMax(), 11);
+		final RBFFeatures feat = new RBFFeatures(centers,
+				ArrUtils.constvec(env.getXDim(), 0.01), true);
+		return new LinearGaussianPolicy(feat,
+				ArrUtils.constvec(env.getUDim(), 0.05),
+				env.getUMin(), env.getUMax(), true);
+	}
+
+	/** Estimates the gradient of the policy on nEpi new episodes */
+	private static double[] estimate(PointMass env, LinearGaussianPolicy pol,
+			OnlineGradientEstimator estimator, int nEpi) {
+		estimator.reset();
+		env.addListener(estimator);
+		env.interact(new PolicyAgent(pol), nEpi, maxT);
+		env.removeListener(estimator);
+		final double[] dJ = new double[pol.getParamsSize()];
+		estimator.computeGradientEstimation(dJ);
+		return dJ;
+	}
+
+	/** Squared norm of v - ref, or of v if ref is null */
+	private static double squaredNorm(double[] v, @Nullable double[] ref) {
+		double sum = 0.;
+		for(int j=0; j<v.length; j++) {
+			final double d = v[j] - (ref == null ? 0. : ref[j]);
+			sum += d * d;
+		}
+		return sum;
+	}
+}
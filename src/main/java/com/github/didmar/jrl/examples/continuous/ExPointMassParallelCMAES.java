@@ -0,0 +1,104 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import com.github.didmar.jrl.agent.CMAESPS;
+import com.github.didmar.jrl.agent.CMAESPS.RestartStrategy;
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.ParametricPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Compares the sequential {@link CMAESPS} with its parallel variant
+ * {@link CMAESPS#parallelUpdate(ParallelRollouts)} on the Point Mass problem,
+ * in terms of wall time and performance of the learned policy for the same
+ * number of episodes.
+ * @author Didier Marin
+ */
+public class ExPointMassParallelCMAES {
+
+	private static final double[] x0 = ArrUtils.constvec(1, 0.25);
+	private static final double[] xtarget = ArrUtils.constvec(1, 0.75);
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int nUpdates = 100;
+	private static final int nPolEvalPerUpdate = 20;
+	private static final int nEpiPerTest = 100;
+
+	/** Creates a new Point Mass environment, with a random start state */
+	private static final Factory<PointMass> envFactory = new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass(x0, xtarget, PointMassRewardType.COST, true);
+		}
+	};
+
+	/** Creates a new noisy linear Gaussian policy, with its own features */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final double[][] centers = ArrUtils.buildGrid(env.getXMin(),
+					env.getXMax(), 11);
+			final RBFFeatures feat = new RBFFeatures(centers,
+					ArrUtils.constvec(env.getXDim(), 0.01), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.05),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	public static void main(String[] args) {
+		final int nbThreads = (args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors());
+
+		// Sequential CMA-ES, listening to a single environment
+		final PointMass env = envFactory.newInstance();
+		CMAESPS cmaes = newCMAESPS();
+		env.addListener(cmaes);
+		long start = System.nanoTime();
+		for(int i=0; i<nUpdates; i++) {
+			env.interact(cmaes, cmaes.getPopulationSize(), maxT);
+		}
+		print("sequential", System.nanoTime() - start, cmaes);
+		env.removeListener(cmaes);
+
+		// Parallel CMA-ES
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, nbThreads);
+		cmaes = newCMAESPS();
+		start = System.nanoTime();
+		for(int i=0; i<nUpdates; i++) {
+			cmaes.parallelUpdate(rollouts);
+		}
+		print("parallel("+nbThreads+")", System.nanoTime() - start, cmaes);
+		rollouts.shutdown();
+	}
+
+	private static CMAESPS newCMAESPS() {
+		final ParametricPolicy pol = polFactory.newInstance();
+		return new CMAESPS(pol, nPolEvalPerUpdate, 1, gamma,
+				ArrUtils.constvec(pol.getParamsSize(), 0.1),
+				RestartStrategy.BIPOP, 9);
+	}
+
+	/** Prints the learning time and the performance of the mean policy */
+	private static void print(String name, long duration, CMAESPS cmaes) {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		pol.setParams(cmaes.getMean());
+		final PointMass env = envFactory.newInstance();
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		env.addListener(log);
+		env.interact(new PolicyAgent(pol), nEpiPerTest, maxT);
+		System.out.println(String.format(
+				"%-12s updates=%4d time=%8.1fms J=%.4f restarts=%d",
+				name, nUpdates, duration / 1e6,
+				ArrUtils.mean(log.discountedReward(gamma)),
+				cmaes.getNbRestarts()));
+	}
+}
@@ -0,0 +1,102 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import com.github.didmar.jrl.agent.PGPE;
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.ParametricPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Compares the sequential {@link PGPE} with its parallel, symmetric sampling
+ * variant {@link PGPE#symmetricUpdate(ParallelRollouts, boolean)} on the
+ * Point Mass problem, in terms of wall time and performance of the learned
+ * policy for the same number of episodes.
+ * @author Didier Marin
+ */
+public class ExPointMassParallelPGPE {
+
+	private static final double[] x0 = ArrUtils.constvec(1, 0.25);
+	private static final double[] xtarget = ArrUtils.constvec(1, 0.75);
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int nUpdates = 100;
+	private static final int nEpiPerUpdate = 20;
+	private static final int nEpiPerTest = 100;
+
+	/** Creates a new Point Mass environment, with a random start state */
+	private static final Factory<PointMass> envFactory = new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass(x0, xtarget, PointMassRewardType.COST, true);
+		}
+	};
+
+	/** Creates a new noisy linear Gaussian policy, with its own features */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final double[][] centers = ArrUtils.buildGrid(env.getXMin(),
+					env.getXMax(), 11);
+			final RBFFeatures feat = new RBFFeatures(centers,
+					ArrUtils.constvec(env.getXDim(), 0.01), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.05),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	public static void main(String[] args) {
+		final int nbThreads = (args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors());
+
+		// Sequential PGPE, listening to a single environment
+		final PointMass env = envFactory.newInstance();
+		PGPE pgpe = newPGPE(0.001);
+		env.addListener(pgpe);
+		long start = System.nanoTime();
+		for(int i=0; i<nUpdates; i++) {
+			env.interact(pgpe, nEpiPerUpdate, maxT);
+		}
+		print("sequential", System.nanoTime() - start, pgpe);
+		env.removeListener(pgpe);
+
+		// Parallel PGPE with symmetric sampling and normalized rewards
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, nbThreads);
+		pgpe = newPGPE(0.1);
+		start = System.nanoTime();
+		for(int i=0; i<nUpdates; i++) {
+			pgpe.symmetricUpdate(rollouts, true);
+		}
+		print("symmetric("+nbThreads+")", System.nanoTime() - start, pgpe);
+		rollouts.shutdown();
+	}
+
+	private static PGPE newPGPE(double step) {
+		final ParametricPolicy pol = polFactory.newInstance();
+		return new PGPE(pol, gamma, nEpiPerUpdate,
+				ArrUtils.constvec(pol.getParamsSize(), 0.1), 0.01,
+				new ConstantStepSize(step));
+	}
+
+	/** Prints the learning time and the performance of the mean policy */
+	private static void print(String name, long duration, PGPE pgpe) {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		pol.setParams(pgpe.getParamsDist().getMean());
+		final PointMass env = envFactory.newInstance();
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		env.addListener(log);
+		env.interact(new PolicyAgent(pol), nEpiPerTest, maxT);
+		System.out.println(String.format("%-14s episodes=%6d time=%8.1fms J=%.4f",
+				name, nUpdates*nEpiPerUpdate, duration / 1e6,
+				ArrUtils.mean(log.discountedReward(gamma))));
+	}
+}
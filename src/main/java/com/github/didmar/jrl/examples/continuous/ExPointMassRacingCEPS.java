@@ -0,0 +1,106 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import com.github.didmar.jrl.agent.CEPS;
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.ParametricPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Compares the sequential {@link CEPS} with its parallel, successive halving
+ * variant {@link CEPS#raceUpdate(ParallelRollouts, int)} on the Point Mass
+ * problem, in terms of episodes, wall time and performance of the learned
+ * policy.
+ * @author Didier Marin
+ */
+public class ExPointMassRacingCEPS {
+
+	private static final double[] x0 = ArrUtils.constvec(1, 0.25);
+	private static final double[] xtarget = ArrUtils.constvec(1, 0.75);
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int nUpdates = 20;
+	private static final int nPolEvalPerUpdate = 64;
+	private static final int nEpiPerPolEval = 8;
+	private static final int nbSelectedPol = 6;
+	private static final int nEpiPerTest = 100;
+
+	/** Creates a new Point Mass environment, with a random start state */
+	private static final Factory<PointMass> envFactory = new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass(x0, xtarget, PointMassRewardType.COST, true);
+		}
+	};
+
+	/** Creates a new noisy linear Gaussian policy, with its own features */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final double[][] centers = ArrUtils.buildGrid(env.getXMin(),
+					env.getXMax(), 11);
+			final RBFFeatures feat = new RBFFeatures(centers,
+					ArrUtils.constvec(env.getXDim(), 0.01), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.05),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	public static void main(String[] args) {
+		final int nbThreads = (args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors());
+
+		// Sequential CEPS, listening to a single environment
+		final PointMass env = envFactory.newInstance();
+		CEPS ceps = newCEPS();
+		env.addListener(ceps);
+		long start = System.nanoTime();
+		for(int i=0; i<nUpdates; i++) {
+			env.interact(ceps, nPolEvalPerUpdate*nEpiPerPolEval, maxT);
+		}
+		print("sequential", nUpdates*nPolEvalPerUpdate*nEpiPerPolEval,
+				System.nanoTime() - start, ceps);
+		env.removeListener(ceps);
+
+		// Parallel CEPS with successive halving
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, nbThreads);
+		ceps = newCEPS();
+		int nbEpi = 0;
+		start = System.nanoTime();
+		for(int i=0; i<nUpdates; i++) {
+			nbEpi += ceps.raceUpdate(rollouts, 2);
+		}
+		print("racing("+nbThreads+")", nbEpi, System.nanoTime() - start, ceps);
+		rollouts.shutdown();
+	}
+
+	private static CEPS newCEPS() {
+		final ParametricPolicy pol = polFactory.newInstance();
+		return new CEPS(pol, nPolEvalPerUpdate, nEpiPerPolEval, nbSelectedPol,
+				gamma, ArrUtils.constvec(pol.getParamsSize(), 0.1), 1e-2,
+				false, true);
+	}
+
+	/** Prints the cost of the learning and the performance of the mean policy */
+	private static void print(String name, int nbEpi, long duration,
+			CEPS ceps) {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		pol.setParams(ceps.getMean());
+		final PointMass env = envFactory.newInstance();
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		env.addListener(log);
+		env.interact(new PolicyAgent(pol), nEpiPerTest, maxT);
+		System.out.println(String.format("%-12s episodes=%6d time=%8.1fms J=%.4f",
+				name, nbEpi, duration / 1e6,
+				ArrUtils.mean(log.discountedReward(gamma))));
+	}
+}
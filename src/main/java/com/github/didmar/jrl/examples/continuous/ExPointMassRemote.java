@@ -0,0 +1,84 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import com.github.didmar.jrl.environment.IEnvironment;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.environment.remote.RemoteSimulator;
+import com.github.didmar.jrl.environment.remote.SimulatorServer;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Evaluates a policy on the Point Mass problem simulated in-process, then by
+ * a {@link SimulatorServer} through a single {@link RemoteSimulator}
+ * connection, with an increasing number of concurrent episodes whose steps
+ * are pipelined over that connection. Prints the number of steps per
+ * second.
+ * @author Didier Marin
+ */
+public class ExPointMassRemote {
+
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int nbEpi = 400;
+	private static final int[] nbThreads = new int[]{1, 4, 16};
+
+	/** Creates a new Point Mass */
+	private static final Factory<PointMass> envFactory
+		= new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass(ArrUtils.constvec(1, 0.25),
+					ArrUtils.constvec(1, 0.75), PointMassRewardType.COST, true);
+		}
+	};
+
+	/** Creates a new linear Gaussian policy, with its own features */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final RBFFeatures feat = new RBFFeatures(ArrUtils.buildGrid(
+					env.getXMin(), env.getXMax(), 11),
+					ArrUtils.constvec(env.getXDim(), 0.01), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.05),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		final double[][] thetas = new double[][]{
+				ArrUtils.rand(polFactory.newInstance().getParamsSize())};
+		final SimulatorServer server = new SimulatorServer(
+				envFactory.newInstance(), 0);
+		final RemoteSimulator sim = new RemoteSimulator(server.getPort());
+		try {
+			for(int n : nbThreads) {
+				run("local", envFactory, n, thetas);
+				run("remote", sim, n, thetas);
+			}
+		} finally {
+			sim.close();
+			server.close();
+		}
+	}
+
+	private static void run(String name,
+			Factory<? extends IEnvironment> factory, int n, double[][] thetas) {
+		final ParallelRollouts rollouts = new ParallelRollouts(factory,
+				polFactory, gamma, maxT, n);
+		final double[][] R = new double[1][nbEpi];
+		// Once to warm up, then measured
+		rollouts.evaluate(thetas, nbEpi, R);
+		final long start = System.nanoTime();
+		rollouts.evaluate(thetas, nbEpi, R);
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		rollouts.shutdown();
+		System.out.println(String.format("%-8s threads=%3d steps/s=%10.0f J=%.4f",
+				name, n, nbEpi * maxT / seconds, ArrUtils.mean(R[0])));
+	}
+}
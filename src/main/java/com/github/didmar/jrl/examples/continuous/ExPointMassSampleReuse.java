@@ -0,0 +1,136 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import com.github.didmar.jrl.agent.LearningAgent;
+import com.github.didmar.jrl.agent.PGPE;
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.agent.REINFORCE;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.evaluation.ImportanceWeightedREINFORCEEstimator;
+import com.github.didmar.jrl.evaluation.OnlineREINFORCEEstimator;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.ImportanceWeighting;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Compares {@link PGPE} and {@link REINFORCE} with and without the reuse of
+ * past episodes by importance sampling on the Point Mass problem, for the
+ * same number of episodes. With reuse, the updates are made on fewer new
+ * episodes each, and thus more often, so their step size is reduced
+ * accordingly.
+ * @author Didier Marin
+ */
+public class ExPointMassSampleReuse {
+
+	private static final double[] x0 = ArrUtils.constvec(1, 0.25);
+	private static final double[] xtarget = ArrUtils.constvec(1, 0.75);
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int nEpisodes = 1000;
+	private static final int nEpiPerUpdate = 20;
+	private static final int nEpiPerUpdateWithReuse = 5;
+	private static final int historySize = 20;
+	private static final int nRuns = 5;
+	private static final int nEpiPerTest = 100;
+
+	public static void main(String[] args) {
+		final PointMass env = new PointMass(x0, xtarget,
+				PointMassRewardType.COST, true);
+		System.out.println(String.format("%-28s %8s %8s %10s", "agent",
+				"episodes", "updates", "J"));
+		for(int k=0; k<6; k++) {
+			double J = 0.;
+			int nEpi = 0;
+			String name = "";
+			for(int run=0; run<nRuns; run++) {
+				final LinearGaussianPolicy pol = newPolicy(env);
+				final LearningAgent agent;
+				switch(k) {
+				case 0:
+					nEpi = nEpiPerUpdate;
+					agent = newPGPE(pol, nEpi, 0, ImportanceWeighting.TRUNCATED);
+					name = "PGPE";
+					break;
+				case 1:
+					nEpi = nEpiPerUpdateWithReuse;
+					agent = newPGPE(pol, nEpi, historySize,
+							ImportanceWeighting.TRUNCATED);
+					name = "PGPE truncated IS";
+					break;
+				case 2:
+					nEpi = nEpiPerUpdateWithReuse;
+					agent = newPGPE(pol, nEpi, historySize,
+							ImportanceWeighting.SELF_NORMALIZED);
+					name = "PGPE self-normalized IS";
+					break;
+				case 3:
+					nEpi = nEpiPerUpdate;
+					agent = new REINFORCE(pol, new ConstantStepSize(step(nEpi)),
+							nEpi, new OnlineREINFORCEEstimator(pol, gamma));
+					name = "REINFORCE";
+					break;
+				case 4:
+					nEpi = nEpiPerUpdateWithReuse;
+					agent = new REINFORCE(pol, new ConstantStepSize(step(nEpi)),
+							nEpi, new ImportanceWeightedREINFORCEEstimator(pol,
+									gamma, historySize,
+									ImportanceWeighting.TRUNCATED));
+					name = "REINFORCE truncated IS";
+					break;
+				default:
+					nEpi = nEpiPerUpdateWithReuse;
+					agent = new REINFORCE(pol, new ConstantStepSize(step(nEpi)),
+							nEpi, new ImportanceWeightedREINFORCEEstimator(pol,
+									gamma, historySize,
+									ImportanceWeighting.SELF_NORMALIZED));
+					name = "REINFORCE self-normalized IS";
+				}
+				env.addListener(agent);
+				env.interact(agent, nEpisodes, maxT);
+				env.removeListener(agent);
+				if(agent instanceof PGPE) {
+					pol.setParams(((PGPE) agent).getParamsDist().getMean());
+				}
+				J += test(env, pol);
+			}
+			System.out.println(String.format("%-28s %8d %8d %10.4f", name,
+					nEpisodes, nEpisodes / nEpi, J / nRuns));
+		}
+	}
+
+	private static LinearGaussianPolicy newPolicy(PointMass env) {
+		final double[][] centers = ArrUtils.buildGrid(env.getXMin(),
+				env.getXMax(), 11);
+		final RBFFeatures feat = new RBFFeatures(centers,
+				ArrUtils.constvec(env.getXDim(), 0.01), true);
+		return new LinearGaussianPolicy(feat,
+				ArrUtils.constvec(env.getUDim(), 0.05),
+				env.getUMin(), env.getUMax(), true);
+	}
+
+	private static PGPE newPGPE(LinearGaussianPolicy pol, int nEpi,
+			int history, ImportanceWeighting weighting) {
+		return new PGPE(pol, gamma, nEpi,
+				ArrUtils.constvec(pol.getParamsSize(), 0.1), 0.01,
+				new ConstantStepSize(step(nEpi)), history, weighting);
+	}
+
+	/** Step size for the given number of new episodes per update, so that
+	 * the sum of the steps is the same for all the agents */
+	private static double step(int nEpi) {
+		return 0.001 * nEpi / nEpiPerUpdate;
+	}
+
+	/** Average discounted reward of the policy */
+	private static double test(PointMass env, LinearGaussianPolicy pol) {
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		env.addListener(log);
+		env.interact(new PolicyAgent(pol), nEpiPerTest, maxT);
+		env.removeListener(log);
+		return ArrUtils.mean(log.discountedReward(gamma));
+	}
+}
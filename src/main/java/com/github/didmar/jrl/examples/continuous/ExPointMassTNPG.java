@@ -0,0 +1,94 @@
+package com.github.didmar.jrl.examples.continuous;
+
+import com.github.didmar.jrl.agent.LearningAgent;
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.agent.REINFORCE;
+import com.github.didmar.jrl.agent.TNPG;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.evaluation.OnlineGPOMDPEstimator;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Compares the vanilla policy gradient of {@link REINFORCE} with the natural
+ * policy gradient of {@link TNPG}, with a constant or a KL-constrained step,
+ * on the Point Mass problem. The policies use a coarse and a fine grid of
+ * RBF features, the latter having thousands of parameters, which would be
+ * out of reach of the actor-critics over compatible features.
+ * @author Didier Marin
+ */
+public class ExPointMassTNPG {
+
+	private static final double[] x0 = ArrUtils.constvec(1, 0.25);
+	private static final double[] xtarget = ArrUtils.constvec(1, 0.75);
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 100;
+	private static final int[] nCenters = new int[]{11, 2001};
+	private static final int nUpdates = 50;
+	private static final int nEpiPerUpdate = 10;
+	private static final int cgIterations = 10;
+	private static final double damping = 0.1;
+	private static final double maxKL = 0.05;
+	private static final int nEpiPerTest = 100;
+
+	public static void main(String[] args) {
+		final PointMass env = new PointMass(x0, xtarget,
+				PointMassRewardType.COST, true);
+		System.out.println(String.format("%-24s %8s %10s %10s", "agent",
+				"params", "time(ms)", "J"));
+		for(int c : nCenters) {
+			for(int k=0; k<3; k++) {
+				final LinearGaussianPolicy pol = newPolicy(env, c);
+				final OnlineGPOMDPEstimator estimator
+					= new OnlineGPOMDPEstimator(pol, gamma, true);
+				final LearningAgent agent;
+				final String name;
+				switch(k) {
+				case 0:
+					agent = new REINFORCE(pol, new ConstantStepSize(0.001),
+							nEpiPerUpdate, estimator);
+					name = "REINFORCE (G(PO)MDP)";
+					break;
+				case 1:
+					agent = new TNPG(pol, new ConstantStepSize(3.),
+							nEpiPerUpdate, estimator, cgIterations, damping);
+					name = "TNPG step";
+					break;
+				default:
+					agent = new TNPG(pol, maxKL, nEpiPerUpdate, estimator,
+							cgIterations, damping);
+					name = "TNPG KL";
+				}
+				env.addListener(agent);
+				final long start = System.nanoTime();
+				env.interact(agent, nUpdates * nEpiPerUpdate, maxT);
+				final long duration = System.nanoTime() - start;
+				env.removeListener(agent);
+				final Logger log = new Logger(env.getXDim(), env.getUDim());
+				env.addListener(log);
+				env.interact(new PolicyAgent(pol), nEpiPerTest, maxT);
+				env.removeListener(log);
+				System.out.println(String.format("%-24s %8d %10.1f %10.4f",
+						name, pol.getParamsSize(), duration / 1e6,
+						ArrUtils.mean(log.discountedReward(gamma))));
+			}
+		}
+	}
+
+	private static LinearGaussianPolicy newPolicy(PointMass env, int c) {
+		final double[][] centers = ArrUtils.buildGrid(env.getXMin(),
+				env.getXMax(), c);
+		// The squared width is that of the grid spacing
+		final double spacing = (env.getXMax()[0] - env.getXMin()[0]) / (c - 1);
+		final RBFFeatures feat = new RBFFeatures(centers,
+				ArrUtils.constvec(env.getXDim(), spacing * spacing), true);
+		return new LinearGaussianPolicy(feat,
+				ArrUtils.constvec(env.getUDim(), 0.05),
+				env.getUMin(), env.getUMax(), true);
+	}
+}
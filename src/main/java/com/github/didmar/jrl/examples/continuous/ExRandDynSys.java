@@ -140,7 +140,7 @@ public class ExRandDynSys {
 		// +++ REINFORCE
 //		final ConstantStepSize stepSize = new ConstantStepSize(0.001);
 //		//final DecreasingStepSize stepSize = new DecreasingStepSize(0.01,1000);
-//		final REINFORCE agent = new REINFORCE(pol, xDim, uDim, stepSize, nEpiPerLearningStep, gamma);
+//		final REINFORCE agent = new REINFORCE(pol, stepSize, nEpiPerLearningStep, gamma);
 
 		// +++ CEPS
 		final int nPolEvalPerUpdate = 100;
@@ -153,10 +153,9 @@ public class ExRandDynSys {
 		// +++ CMAESPS
 //		final int nPolEvalPerUpdate = 100;
 //		final int nEpiPerPolEval = 1;
-//		final int nbSelectedPol = (int) Math.ceil(nPolEvalPerUpdate*10./100.);
-//		final CMAESPS agent = new CMAESPS(pol, xDim, uDim, nPolEvalPerUpdate,
-//				nEpiPerPolEval,	gamma,
-//				Utils.constvec(pol.getParamsSize(),0.1));
+//		final CMAESPS agent = new CMAESPS(pol, nPolEvalPerUpdate,
+//				nEpiPerPolEval,	gamma, ArrUtils.constvec(pol.getParamsSize(),0.1),
+//				RestartStrategy.BIPOP, 9);
 
 		// +++ BasicAC
 //		final DecreasingStepSize actorStepSize = twoTimescaleStepsSizes[1];
@@ -178,7 +178,7 @@ public class ExTwoDoFArm {
 		// +++ REINFORCE
 //		final ConstantStepSize stepSize = new ConstantStepSize(0.001);
 //		//final DecreasingStepSize stepSize = new DecreasingStepSize(0.01,1000);
-//		final REINFORCE agent = new REINFORCE(pol, xDim, uDim, stepSize, nEpiPerLearningStep, gamma);
+//		final REINFORCE agent = new REINFORCE(pol, stepSize, nEpiPerLearningStep, gamma);
 
 		// +++ CEPS
 		final int nPolEvalPerUpdate = 100;
@@ -0,0 +1,125 @@
+package com.github.didmar.jrl.examples.discrete;
+
+import com.github.didmar.jrl.agent.QLearningPolicyAgent;
+import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.environment.discrete.DiscreteMDPEnvironment;
+import com.github.didmar.jrl.environment.discrete.TabularListener;
+import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
+import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
+import com.github.didmar.jrl.evaluation.vflearner.TabularQLearning;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
+import com.github.didmar.jrl.mdp.GARNETMDP;
+import com.github.didmar.jrl.policy.EpsGreedyPolicyOverQ;
+import com.github.didmar.jrl.policy.TabularEpsGreedyPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.RandUtils;
+
+/**
+ * Benchmark of the tabular interaction loop of
+ * {@link com.github.didmar.jrl.environment.discrete.DiscreteEnvironment}
+ * against the generic one, with epsilon-greedy Q-Learning on GARNETs of
+ * increasing size. The generic path uses a {@link LinearQFunction} over
+ * {@link TabularStateActionFeatures}, the tabular path a
+ * {@link TabularQFunction}. Prints the simulation speed, in steps per
+ * millisecond, and the mean reward per step of each path. Numbers of states
+ * can be given as arguments.
+ * @author Didier Marin
+ */
+public class BenchmarkTabular {
+
+	private static final int m = 5;
+	private static final int b = 3;
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final DiscountFactor lambda = new DiscountFactor(0.);
+	private static final double eps = 0.1;
+	private static final double step = 0.1;
+	private static final int maxT = 100;
+	private static final int nEpisodes = 200;
+
+	public static void main(String[] args) {
+		int[] sizes = new int[]{10, 100, 1000};
+		if(args.length > 0) {
+			sizes = new int[args.length];
+			for(int i=0; i<args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.println(String.format("%6s %-8s %12s %12s", "n", "path",
+				"steps/ms", "reward"));
+		for(int n : sizes) {
+			// Fix the random generator seed to get to same environment every time
+			RandUtils.setSeed(1);
+			final GARNETMDP mdp = new GARNETMDP(n, m, b);
+			final DiscreteMDPEnvironment env = new DiscreteMDPEnvironment(mdp);
+			// A first run of each path warms up the JIT compiler
+			runGeneric(env, mdp);
+			runTabular(env);
+			print(n, "generic", runGeneric(env, mdp));
+			print(n, "tabular", runTabular(env));
+		}
+	}
+
+	/** Returns the duration in ns and the total reward and number of steps */
+	private static double[] runGeneric(DiscreteMDPEnvironment env,
+			GARNETMDP mdp) {
+		final double[][] actions = mdp.actionsGrid();
+		final LinearQFunction qFunction = new LinearQFunction(
+				new TabularStateActionFeatures(mdp), 1, 1);
+		final EpsGreedyPolicyOverQ pol = new EpsGreedyPolicyOverQ(qFunction,
+				actions, eps);
+		final QLearningPolicyAgent agent = new QLearningPolicyAgent(pol,
+				actions, gamma, lambda, new ConstantStepSize(step));
+		final double[] res = new double[3];
+		final EnvironmentListener counter = new EnvironmentListener() {
+			public void newEpisode(double[] x0, int maxT) {}
+			public void receiveSample(double[] x, double[] u, double[] xn,
+					double r, boolean isTerminal) {
+				res[1] += r;
+				res[2]++;
+			}
+			public void endEpisode() {}
+		};
+		env.addListener(agent);
+		env.addListener(counter);
+		final long start = System.nanoTime();
+		env.interact(agent, nEpisodes, maxT);
+		res[0] = System.nanoTime() - start;
+		env.removeListener(agent);
+		env.removeListener(counter);
+		return res;
+	}
+
+	/** Returns the duration in ns and the total reward and number of steps */
+	private static double[] runTabular(DiscreteMDPEnvironment env) {
+		final TabularQFunction qFunction = new TabularQFunction(env.getXCard(),
+				env.getUCard());
+		final TabularEpsGreedyPolicy pol = new TabularEpsGreedyPolicy(qFunction,
+				eps);
+		final TabularQLearning qLearning = new TabularQLearning(qFunction,
+				gamma, new ConstantStepSize(step));
+		final double[] res = new double[3];
+		final TabularListener counter = new TabularListener() {
+			public void newEpisode(int x0, int maxT) {}
+			public void receiveSample(int x, int u, int xn, double r,
+					boolean isTerminal) {
+				res[1] += r;
+				res[2]++;
+			}
+			public void endEpisode() {}
+		};
+		env.addListener(qLearning);
+		env.addListener(counter);
+		final long start = System.nanoTime();
+		env.interactTabular(pol, nEpisodes, maxT);
+		res[0] = System.nanoTime() - start;
+		env.removeListener(qLearning);
+		env.removeListener(counter);
+		return res;
+	}
+
+	private static void print(int n, String path, double[] res) {
+		System.out.println(String.format("%6d %-8s %12.1f %12.4f", n, path,
+				res[2] / (res[0] / 1e6), res[1] / res[2]));
+	}
+}
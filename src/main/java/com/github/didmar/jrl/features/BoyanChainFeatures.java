@@ -39,7 +39,7 @@ public final class BoyanChainFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(final double[] x, final double[] y) {
+	protected final void computePhi(final double[] x, final double[] y) {
 		if(x.length != inDim ){
 			throw new IllegalArgumentException("x must have length inDim");
 		}
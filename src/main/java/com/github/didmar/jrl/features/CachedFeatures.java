@@ -8,6 +8,9 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import com.github.didmar.jrl.utils.Utils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Gauge;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Decorator to cache some features, which might speed things up
@@ -17,6 +20,19 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public final class CachedFeatures extends Features {
 
+	/** Number of cache hits, for all the cached features */
+	private static final Counter hits = Metrics.counter("CachedFeatures.hits");
+	/** Number of cache misses, for all the cached features */
+	private static final Counter misses = Metrics.counter("CachedFeatures.misses");
+	static {
+		Metrics.registerGauge("CachedFeatures.hitRate", new Gauge() {
+			public double getValue() {
+				final long total = hits.getCount() + misses.getCount();
+				return total == 0 ? 0. : ((double) hits.getCount()) / total;
+			}
+		});
+	}
+
 	/** The features to cache */
 	private final Features baseFeat;
 	/** The cache, which maps inputs to their corresponding output */ 
@@ -40,7 +56,7 @@ public final class CachedFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(@NonNull final double[] x, @NonNull final double[] y)
+	protected final void computePhi(@NonNull final double[] x, @NonNull final double[] y)
 			throws IllegalArgumentException {
 		assert x != null;
 		assert y != null;
@@ -54,9 +70,11 @@ public final class CachedFeatures extends Features {
 		
 		@Nullable final double[] cachedY = cache.get(x);
 		if(cachedY == null) {
+			misses.increment();
 			baseFeat.phi(x, y);
 			cache.put(x, y);
 		} else {
+			hits.increment();
 			System.arraycopy(cachedY, 0, y, 0, outDim);
 		}
 		
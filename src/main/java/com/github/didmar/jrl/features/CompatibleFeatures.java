@@ -43,7 +43,7 @@ public final class CompatibleFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(double[] x, double[] y) {
+	protected final void computePhi(double[] x, double[] y) {
 		if(x.length != inDim ){
 			throw new IllegalArgumentException("x must have length inDim");
 		}
@@ -60,6 +60,11 @@ public final class CompatibleFeatures extends Features {
 		System.arraycopy(pol.dLogdTheta(xTmp,uTmp),0,y,0,n);
 	}
 
+	/** Returns the policy from which the features are computed */
+	public final ILogDifferentiablePolicy getPolicy() {
+		return pol;
+	}
+
 	@Override
 	public final boolean isNormalized() {
 		return false;
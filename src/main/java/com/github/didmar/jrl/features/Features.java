@@ -4,6 +4,8 @@ import org.eclipse.jdt.annotation.NonNull;
 
 import com.github.didmar.jrl.utils.Utils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Metrics;
 
 /**
  * Features are vector functions of an real input space, which is
@@ -14,6 +16,20 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  * @author Didier Marin
  */
 public abstract class Features {
+
+	/** Number of features vectors computed, by any of the phi methods, for
+	 * all features. Features computed from other features, e.g. by
+	 * {@link NormalizedFeatures} or {@link CompatibleFeatures}, are only
+	 * counted once, at the outermost call. */
+	private static final Counter phiCalls = Metrics.counter("features.phi");
+	/** Number of nested calls to the phi methods in the current thread,
+	 * only maintained while the metrics are enabled */
+	private static final ThreadLocal<int[]> phiDepth = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
 	
 	@Override
 	public @NonNull String toString() {
@@ -72,7 +88,68 @@ public abstract class Features {
      * @param x an array containing the input
      * @param y an array to store the ouput
      */
-    public abstract void phi(final double[] x, final double[] y);
+    public final void phi(final double[] x, final double[] y) {
+    	if(!Metrics.isEnabled()) {
+    		computePhi(x, y);
+    		return;
+    	}
+    	final int[] depth = phiDepth.get();
+    	if(depth[0]++ == 0) {
+    		phiCalls.increment();
+    	}
+    	try {
+    		computePhi(x, y);
+    	} finally {
+    		depth[0]--;
+    	}
+    }
+
+    /**
+     * Compute the features vector for a given input
+     * and store the result in a given array, for {@link #phi(double[], double[])}.
+     * @param x an array containing the input
+     * @param y an array to store the ouput
+     */
+    protected abstract void computePhi(final double[] x, final double[] y);
+
+    /**
+     * Compute the features vectors of the first n given inputs, which is
+     * equivalent to calling {@link #phi(double[], double[])} for each input.
+     * @param xs  an array containing at least n inputs
+     * @param ys  an array to store the n outputs
+     * @param n   number of inputs
+     */
+    public final void phi(final double[][] xs, final double[][] ys, int n) {
+    	assert xs.length >= n && ys.length >= n;
+    	if(!Metrics.isEnabled()) {
+    		computePhi(xs, ys, n);
+    		return;
+    	}
+    	final int[] depth = phiDepth.get();
+    	if(depth[0]++ == 0) {
+    		phiCalls.add(n);
+    	}
+    	try {
+    		computePhi(xs, ys, n);
+    	} finally {
+    		depth[0]--;
+    	}
+    }
+
+    /**
+     * Compute the features vectors of the first n given inputs, for
+     * {@link #phi(double[][], double[][], int)}. Subclasses can override it
+     * with a batched kernel, which for instance reads their parameters once
+     * for all the inputs.
+     * @param xs  an array containing at least n inputs
+     * @param ys  an array to store the n outputs
+     * @param n   number of inputs
+     */
+    protected void computePhi(final double[][] xs, final double[][] ys, int n) {
+    	for(int k=0; k<n; k++) {
+    		computePhi(xs[k], ys[k]);
+    	}
+    }
     
     /**
 	 * Returns whether the output components are always positive and sums to 1.
@@ -38,7 +38,7 @@ public final class FourierRandomFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(@NonNull final double[] x,
+	protected final void computePhi(@NonNull final double[] x,
 						  @NonNull final double[] y)
 						 throws IllegalArgumentException {
 		assert x != null;
@@ -17,7 +17,7 @@ public class IdentityFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public void phi(@NonNull final double[] x, @NonNull final double[] y) {
+	protected void computePhi(@NonNull final double[] x, @NonNull final double[] y) {
 		assert x != null;
 		assert y != null;
 		
@@ -0,0 +1,147 @@
+package com.github.didmar.jrl.features;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
+
+/**
+ * State-action features that are the Kronecker product of some state
+ * features phi(x) of length m and some action features psi(u) of length k,
+ * such as {@link OneHotActionFeatures}: the component l*m+j is
+ * psi_l(u) phi_j(x). The input is the concatenation of x and u. With one-hot
+ * action features, this is the block layout of
+ * {@link StateActionIndicatorFeatures}.
+ * <p>
+ * Besides {@link #phi(double[], double[])}, which materializes the m*k
+ * vector, the dot products and the gradient updates can be done on the
+ * factorized form with {@link #dot(double[], double[], double[])} and
+ * {@link #axpy(double, double[], double[], double[])}, which skip the zero
+ * components of psi(u). For one-hot actions, they take O(m) operations
+ * instead of O(m*k), and phi(x) needs only be evaluated once per state for
+ * all the actions.
+ *
+ * @author Didier Marin
+ */
+public class KroneckerFeatures extends Features {
+
+	/** The state features */
+	private final Features stateFeatures;
+	/** The action features */
+	private final Features actionFeatures;
+	/** Number of state features, i.e. the size of a block */
+	private final int m;
+	/** Number of action features, i.e. the number of blocks */
+	private final int k;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	private final double[] x;
+	private final double[] u;
+	private final double[] phix;
+	private final double[] psiu;
+
+	/**
+	 * @param stateFeatures   the state features phi(x)
+	 * @param actionFeatures  the action features psi(u)
+	 */
+	public KroneckerFeatures(Features stateFeatures, Features actionFeatures) {
+		super(stateFeatures.inDim + actionFeatures.inDim,
+				stateFeatures.outDim * actionFeatures.outDim);
+		this.stateFeatures = stateFeatures;
+		this.actionFeatures = actionFeatures;
+		m = stateFeatures.outDim;
+		k = actionFeatures.outDim;
+
+		// arrays for temporary storage to avoid mem. alloc.
+		x = new double[stateFeatures.inDim];
+		u = new double[actionFeatures.inDim];
+		phix = new double[m];
+		psiu = new double[k];
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.features.Features#phi(double[], double[])
+	 */
+	@Override
+	protected final void computePhi(double[] xu, double[] y) {
+		assert xu != null;
+		assert y != null;
+
+		if(xu.length != inDim ){
+			throw new IllegalArgumentException("xu must have length inDim");
+		}
+		if(y.length != outDim ){
+			throw new IllegalArgumentException("y must have length outDim");
+		}
+
+		System.arraycopy(xu, 0, x, 0, x.length);
+		System.arraycopy(xu, x.length, u, 0, u.length);
+		stateFeatures.phi(x, phix);
+		actionFeatures.phi(u, psiu);
+		ArrUtils.zeros(y);
+		axpy(1., phix, psiu, y);
+	}
+
+	/**
+	 * Returns the dot product of a vector with the features of (x,u), given
+	 * in factorized form.
+	 * @param theta  a vector of length outDim
+	 * @param phix   the state features of x
+	 * @param psiu   the action features of u
+	 * @return the dot product of theta and phi(x,u)
+	 */
+	public final double dot(double[] theta, double[] phix, double[] psiu) {
+		assert theta.length == outDim;
+		assert phix.length == m && psiu.length == k;
+
+		double s = 0.;
+		for(int l=0; l<k; l++) {
+			if(psiu[l] != 0.) {
+				s += psiu[l] * MatKernels.dot(theta, l*m, phix, 0, m);
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Adds alpha times the features of (x,u), given in factorized form, to a
+	 * vector.
+	 * @param alpha  a scalar
+	 * @param phix   the state features of x
+	 * @param psiu   the action features of u
+	 * @param y      a vector of length outDim, [on return] y + alpha phi(x,u)
+	 */
+	public final void axpy(double alpha, double[] phix, double[] psiu,
+			double[] y) {
+		assert y.length == outDim;
+		assert phix.length == m && psiu.length == k;
+
+		for(int l=0; l<k; l++) {
+			if(psiu[l] != 0.) {
+				MatKernels.axpy(alpha * psiu[l], phix, 0, y, l*m, m);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.features.Features#isNormalized()
+	 */
+	@Override
+	public final boolean isNormalized() {
+		// The sum of the product is the product of the sums
+		return stateFeatures.isNormalized() && actionFeatures.isNormalized();
+	}
+
+	public final Features getStateFeatures() {
+		return stateFeatures;
+	}
+
+	public final Features getActionFeatures() {
+		return actionFeatures;
+	}
+
+	@Override
+	public @NonNull String toString() {
+		return "KroneckerFeatures("+stateFeatures+","+actionFeatures+")";
+	}
+}
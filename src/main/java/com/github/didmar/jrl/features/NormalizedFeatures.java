@@ -30,7 +30,7 @@ public final class NormalizedFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(double[] x, double[] y) {
+	protected final void computePhi(double[] x, double[] y) {
 		assert x != null;
 		assert y != null;
 		
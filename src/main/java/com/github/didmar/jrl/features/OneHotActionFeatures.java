@@ -0,0 +1,87 @@
+package com.github.didmar.jrl.features;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Action features for a finite set of actions: the indicator of the action
+ * in the set. Combined with state features by {@link KroneckerFeatures},
+ * they give a distinct linear function of the state features per action.
+ *
+ * @author Didier Marin
+ */
+public final class OneHotActionFeatures extends Features {
+
+	/** The set of actions */
+	private final double[][] actions;
+
+	/**
+	 * @param actions  the set of actions
+	 */
+	public OneHotActionFeatures(double[][] actions) {
+		super(actions[0].length, actions.length);
+		for(int i=0; i<actions.length; i++) {
+			if(actions[i].length != inDim) {
+				throw new IllegalArgumentException("All the actions must have the same dimension");
+			}
+		}
+		this.actions = actions;
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.features.Features#phi(double[], double[])
+	 */
+	@Override
+	protected final void computePhi(double[] u, double[] y) {
+		assert u != null;
+		assert y != null;
+
+		if(u.length != inDim ){
+			throw new IllegalArgumentException("u must have length inDim");
+		}
+		if(y.length != outDim ){
+			throw new IllegalArgumentException("y must have length outDim");
+		}
+
+		final int a = actionIndex(u);
+		if(a < 0) {
+			throw new IllegalArgumentException("u is not in the set of actions");
+		}
+		ArrUtils.zeros(y);
+		y[a] = 1.;
+	}
+
+	/**
+	 * Returns the index of an action in the set of actions.
+	 * @param u  an action
+	 * @return the index of u, or -1 if it is not in the set
+	 */
+	public final int actionIndex(double[] u) {
+		for(int i=0; i<actions.length; i++) {
+			if(actions[i] == u || Arrays.equals(actions[i], u)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/* (non-Javadoc)
+	 * @see jrl.features.Features#isNormalized()
+	 */
+	@Override
+	public final boolean isNormalized() {
+		return true;
+	}
+
+	public final double[][] getActions() {
+		return actions;
+	}
+
+	@Override
+	public final @NonNull String toString() {
+		return "OneHotActionFeatures("+actions.length+")";
+	}
+}
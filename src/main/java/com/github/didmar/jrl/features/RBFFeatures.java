@@ -16,6 +16,8 @@ public final class RBFFeatures extends Features {
 	private final double[] sigma;
 	/** Indicates whether to normalize the features or not */
 	private final boolean normalized;
+	/** Inverse of sigma */
+	private final double[] invSigma;
 	
 	public RBFFeatures(double[][] c, double[] sigma, boolean normalized) {
 		super(c[0].length, c.length);
@@ -25,11 +27,15 @@ public final class RBFFeatures extends Features {
 		this.c = c;
 		this.sigma = sigma;
 		this.normalized = normalized; 
+		invSigma = new double[inDim];
+		for(int j=0; j<inDim; j++) {
+			invSigma[j] = 1. / sigma[j];
+		}
 		// assert c[0].length == sigma.length
 	}
 
 	@Override
-	public final void phi(double[] x, double[] y) {
+	protected final void computePhi(double[] x, double[] y) {
 		assert x != null;
 		assert y != null;
 		
@@ -56,10 +62,54 @@ public final class RBFFeatures extends Features {
 		}
 	}
 
+	/**
+	 * Batched kernel, which iterates over the inputs for each center, so that
+	 * each center is read once for all the inputs.
+	 * @see com.github.didmar.jrl.features.Features#phi(double[][], double[][], int)
+	 */
+	@Override
+	protected final void computePhi(double[][] xs, double[][] ys, int n) {
+		assert xs.length >= n && ys.length >= n;
+
+		for(int i=0; i<outDim; i++) {
+			final double[] ci = c[i];
+			for(int k=0; k<n; k++) {
+				final double[] x = xs[k];
+				double s = 0.;
+				for(int j=0; j<inDim; j++) {
+					final double d = x[j] - ci[j];
+					s += d * d * invSigma[j];
+				}
+				ys[k][i] = Math.exp(-s);
+			}
+		}
+		if(normalized) {
+			for(int k=0; k<n; k++) {
+				final double[] y = ys[k];
+				final double invSum = 1. / ArrUtils.sum(y);
+				for(int i=0; i<outDim; i++) {
+					y[i] *= invSum;
+				}
+			}
+		}
+	}
+
 	@Override
 	public final boolean isNormalized() {
 		return normalized;
 	}
+
+	/** Returns the RBF centers (outDim-by-inDim matrix), which must not be
+	 * modified */
+	public final double[][] getCenters() {
+		return c;
+	}
+
+	/** Returns the RBF widths (inDim vector), which divide the squared
+	 * distances to the centers, and must not be modified */
+	public final double[] getSigma() {
+		return sigma;
+	}
 	
 	@Override
 	public final String toString() {
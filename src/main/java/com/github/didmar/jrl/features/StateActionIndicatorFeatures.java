@@ -0,0 +1,55 @@
+package com.github.didmar.jrl.features;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * State-action features for a finite set of actions: the state features
+ * phi(x) are placed in the block of the action, and the other blocks are
+ * zero. A linear function over these features is thus a distinct linear
+ * function of phi(x) for each action, whose parameters are the block of the
+ * action. These are the {@link KroneckerFeatures} of phi(x) and the
+ * {@link OneHotActionFeatures} of the actions, which lets
+ * {@link com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction}
+ * evaluate all the actions of a state with a single evaluation of phi(x).
+ *
+ * @author Didier Marin
+ */
+public final class StateActionIndicatorFeatures extends KroneckerFeatures {
+
+	/** The indicator of the actions */
+	private final OneHotActionFeatures actionFeatures;
+
+	/**
+	 * @param stateFeatures  the state features
+	 * @param actions        the set of actions
+	 */
+	public StateActionIndicatorFeatures(Features stateFeatures,
+			double[][] actions) {
+		this(stateFeatures, new OneHotActionFeatures(actions));
+	}
+
+	private StateActionIndicatorFeatures(Features stateFeatures,
+			OneHotActionFeatures actionFeatures) {
+		super(stateFeatures, actionFeatures);
+		this.actionFeatures = actionFeatures;
+	}
+
+	/**
+	 * Returns the index of an action in the set of actions.
+	 * @param u  an action
+	 * @return the index of u, or -1 if it is not in the set
+	 */
+	public final int actionIndex(double[] u) {
+		return actionFeatures.actionIndex(u);
+	}
+
+	public final double[][] getActions() {
+		return actionFeatures.getActions();
+	}
+
+	@Override
+	public final @NonNull String toString() {
+		return "StateActionIndicatorFeatures("+getStateFeatures()+","
+				+getActions().length+" actions)";
+	}
+}
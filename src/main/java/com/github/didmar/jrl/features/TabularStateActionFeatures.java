@@ -23,7 +23,7 @@ public final class TabularStateActionFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(double[] x, double[] y) {
+	protected final void computePhi(double[] x, double[] y) {
 		if(x==null) throw new IllegalArgumentException("x must not be null");
 		if(y==null) throw new IllegalArgumentException("y must not be null");
 		if(x.length != inDim ){
@@ -47,4 +47,9 @@ public final class TabularStateActionFeatures extends Features {
 		return true;
 	}
 
+	/** Returns the state-space cardinality */
+	public final int getXCard() {
+		return n;
+	}
+
 }
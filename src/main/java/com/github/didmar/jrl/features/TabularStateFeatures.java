@@ -20,7 +20,7 @@ public final class TabularStateFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(double[] x, double[] y) {
+	protected final void computePhi(double[] x, double[] y) {
 		if(x==null) throw new IllegalArgumentException("x must not be null");
 		if(y==null) throw new IllegalArgumentException("y must not be null");
 		if(x.length != inDim ){
@@ -73,7 +73,7 @@ public class ThreadedFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public void phi(@NonNull double[] x, @NonNull double[] y)
+	protected void computePhi(@NonNull double[] x, @NonNull double[] y)
 			throws IllegalArgumentException {
 		assert x != null;
 		assert y != null;
@@ -98,8 +98,9 @@ public class ThreadedFeatures extends Features {
 				pool.execute(job);
 			}
 
-			// farmer does computations, too
-			feats[0].phi(x, y);
+			// farmer does computations, too, without counting them apart
+			// from this features vector
+			feats[0].computePhi(x, y);
 			
 			// synchronize with workers to assure everything is done
 			synchronization.await();
@@ -138,8 +139,8 @@ public class ThreadedFeatures extends Features {
 			// FIXME avoid using a RuntimeException
 			if(sharedX != null) {
 				@NonNull final double[] x = sharedX;
-				// compute the features
-				feat.phi(x, y);
+				// compute the features, which are counted by the main thread
+				feat.computePhi(x, y);
 				// synchronize with main thread
 				try {
 					synchronization.await();
@@ -74,7 +74,7 @@ public final class TileGridFeatures extends Features {
 	 * @see jrl.features.Features#phi(double[], double[])
 	 */
 	@Override
-	public final void phi(@NonNull final double[] x, @NonNull final double[] y) {
+	protected final void computePhi(@NonNull final double[] x, @NonNull final double[] y) {
 		assert x != null;
 		assert y != null;
 		
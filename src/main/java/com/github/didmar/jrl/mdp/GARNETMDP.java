@@ -1,5 +1,7 @@
 package com.github.didmar.jrl.mdp;
 
+import java.util.Arrays;
+
 import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
 
@@ -56,6 +58,9 @@ public final class GARNETMDP extends DiscreteMDP {
                 	cut[k] = RandUtils.nextDouble();
                 }
                 cut[b] = 1.;
+                // The cut points must be in order for the differences to be
+                // probabilities
+                Arrays.sort(cut, 1, b);
                 for(int k=1; k<b+1; k++) {
                 	Px[i][ind[k-1]] = cut[k] - cut[k-1];	
                 }
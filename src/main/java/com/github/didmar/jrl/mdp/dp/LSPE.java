@@ -3,9 +3,8 @@ package com.github.didmar.jrl.mdp.dp;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
 import com.github.didmar.jrl.mdp.DiscreteMDP;
 import com.github.didmar.jrl.utils.DiscountFactor;
-import com.github.didmar.jrl.utils.array.ArrUtils;
-
-import Jama.Matrix;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
 
 /**
  * Least-Squares Policy Evaluation. See Lagoudakis and Parr 2003 "Least-squares
@@ -23,13 +22,13 @@ public final class LSPE {
 	/** The policy to evaluate */
 	private final double[][] pol;
 	/** Q-function features for each state-action */
-	private final double[][] Phi;
+	private final DenseMatrix Phi;
 	/** Reward for each state-action */
-	private final double[][] R;
-
-	private final double[][] Pi;
-
-	private final double[][] P;
+	private final double[] R;
+	/** Policy, as a state to state-action transition matrix */
+	private final DenseMatrix Pi;
+	/** State-action to state transition matrix */
+	private final DenseMatrix P;
 
 	public LSPE(DiscreteMDP mdp, double[][] pol, LinearQFunction qFunction,
 			DiscountFactor gamma) {
@@ -37,38 +36,52 @@ public final class LSPE {
 		this.gamma = gamma;
 		this.qFunction = qFunction;
 		this.pol = pol;
-		Phi = new double[mdp.n*mdp.m][qFunction.getParamsSize()];
-		P = new double[mdp.n*mdp.m][mdp.n];
-		Pi = new double[mdp.n][mdp.n*mdp.m];
-		R = new double[mdp.n*mdp.m][1];
+		Phi = new DenseMatrix(mdp.n*mdp.m, qFunction.getParamsSize());
+		P = new DenseMatrix(mdp.n*mdp.m, mdp.n);
+		Pi = new DenseMatrix(mdp.n, mdp.n*mdp.m);
+		R = new double[mdp.n*mdp.m];
 		// Perform Policy Evaluation
 		performLSPE();
 	}
 
 	public final void performLSPE() {
+		final int k = qFunction.getParamsSize();
+		final double[] phixu = new double[k];
 		for(int x=0; x<mdp.n; x++) {
 			for(int u=0; u<mdp.m; u++) {
-				qFunction.getFeatures().phi(new double[]{x,u}, Phi[x+u*mdp.n]);
-				R[x+mdp.n*u][0] = mdp.R[x][u];
-				Pi[x][x+mdp.n*u] = pol[x][u];
-				for(int xn=0; xn<mdp.n; xn++) {
-					P[x+mdp.n*u][xn] = mdp.P[x][u][xn];
-				}
+				qFunction.getFeatures().phi(new double[]{x,u}, phixu);
+				Phi.row(x+u*mdp.n).copyFrom(phixu);
+				R[x+mdp.n*u] = mdp.R[x][u];
+				Pi.set(x, x+mdp.n*u, pol[x][u]);
+				P.row(x+mdp.n*u).copyFrom(mdp.P[x][u]);
 			}
 		}
 
-		Matrix matPhi  = new Matrix(Phi);
-		// A = Phi^T ( Phi - gamma P Pi Phi )
-		Matrix A = matPhi.transpose().times(matPhi.minus(new Matrix(P).times(new Matrix(Pi)).times(matPhi).times(gamma.value)));
-		// w = A^-1 b  with b = Phi^T R
-		Matrix Ainv;
-		try {
-			Ainv = ArrUtils.pinv(A);
-		} catch (Exception e) {
-			// FIXME handle this exception properly
-			throw new RuntimeException("Could not compute pseuso-inverse of A");
+		// A = Phi^T ( Phi - gamma P Pi Phi ), with P Pi Phi computed as
+		// P (Pi Phi) to avoid the (n*m)-by-(n*m) product P Pi
+		final DenseMatrix PiPhi = new DenseMatrix(mdp.n, k);
+		ParallelKernels.multiply(Pi, Phi, PiPhi);
+		final DenseMatrix M = new DenseMatrix(mdp.n*mdp.m, k);
+		ParallelKernels.multiply(P, PiPhi, M);
+		M.scale(-gamma.value);
+		M.addInPlace(1., Phi);
+		final DenseMatrix A = new DenseMatrix(k, k);
+		ParallelKernels.transposeMultiply(Phi, M, A);
+		// b = Phi^T R
+		final double[] b = new double[k];
+		ParallelKernels.transposeMultiply(Phi, R, b);
+		// w = A^-1 b
+		final double[] w = new double[k];
+		final DenseMatrix LU = new DenseMatrix(k, k);
+		LU.copyFrom(A);
+		final int[] piv = new int[k];
+		if(ParallelKernels.luInPlace(LU, piv)) {
+			ParallelKernels.luSolve(LU, piv, b, w);
+		} else {
+			// Singular system, e.g. with redundant features, use the
+			// pseudo-inverse
+			A.pinvSolve(b, w);
 		}
-		double[] w = Ainv.times(matPhi.transpose().times(new Matrix(R))).transpose().getArray()[0];
 		qFunction.setParams(w);
 	}
 }
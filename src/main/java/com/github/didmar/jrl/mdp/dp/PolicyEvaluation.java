@@ -3,8 +3,8 @@ package com.github.didmar.jrl.mdp.dp;
 import com.github.didmar.jrl.mdp.DiscreteMDP;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.array.ArrUtils;
-
-import Jama.Matrix;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
 
 // TODO check that it works
 /**
@@ -41,29 +41,28 @@ public final class PolicyEvaluation {
 		// (Re)initialize the state-action values to zero
 		ArrUtils.zeros(Q);
 		
-		final double[][] R = ArrUtils.zeros(mdp.n,1);
-		final double[][] IminusGammaP = new double[mdp.n][mdp.n];
+		final double[] R = new double[mdp.n];
+		final DenseMatrix IminusGammaP = new DenseMatrix(mdp.n, mdp.n);
 		
 	    for(int x=0; x<mdp.n; x++) {
-	        R[x][0] = ArrUtils.dotProduct(pol[x], mdp.R[x], mdp.m);
+	        R[x] = ArrUtils.dotProduct(pol[x], mdp.R[x], mdp.m);
 	        for(int xn=0; xn<mdp.n; xn++) {
-	            double xEqualsXn = 0.;
-	            if(x==xn) {
-	            	xEqualsXn = 1.;
-	            }
-	            IminusGammaP[x][xn] = xEqualsXn - gamma.value * K[x][xn];
+	            IminusGammaP.set(x, xn, - gamma.value * K[x][xn]);
 	        }
 	    }
-	    // V = IminusGammaP^-1 R
-	    //Matrix invIminusGammaP = Utils.pinv(new Matrix(IminusGammaP));
-	    
-	    //double[][] invIminusGammaPArray = Utils.cloneMatrix(IminusGammaP);
-	    //Utils.slowInverse(IminusGammaP, invIminusGammaPArray, mdp.n);
-	    //Matrix invIminusGammaP = new Matrix(invIminusGammaPArray);
-	    
-	    Matrix invIminusGammaP = new Matrix(IminusGammaP).inverse();
-	    
-	    V = invIminusGammaP.times(new Matrix(R)).transpose().getArray()[0];
+	    IminusGammaP.addDiagonal(1.);
+	    // V = IminusGammaP^-1 R, solved by LU decomposition rather than by
+	    // computing the inverse
+	    V = new double[mdp.n];
+	    final DenseMatrix LU = new DenseMatrix(mdp.n, mdp.n);
+	    LU.copyFrom(IminusGammaP);
+	    final int[] piv = new int[mdp.n];
+	    if(ParallelKernels.luInPlace(LU, piv)) {
+	    	ParallelKernels.luSolve(LU, piv, R, V);
+	    } else {
+	    	// Singular system (e.g. gamma = 1), use the pseudo-inverse
+	    	IminusGammaP.pinvSolve(R, V);
+	    }
 	    
 	    mdp.computeQfromV(V, gamma, Q);
 	}
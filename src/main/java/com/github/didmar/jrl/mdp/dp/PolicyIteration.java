@@ -4,8 +4,8 @@ import com.github.didmar.jrl.mdp.DiscreteMDP;
 import com.github.didmar.jrl.utils.DiscountFactor;
 import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
-
-import Jama.Matrix;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
 
 /**
  * Implements Policy Iteration.
@@ -57,9 +57,14 @@ public final class PolicyIteration {
 		}
 		final int[] polOld = pol.clone();
 
-		final double[][] R = ArrUtils.zeros(mdp.n,1);
+		final double[] R = new double[mdp.n];
 
-		final double[][] IminusGammaP = new double[mdp.n][mdp.n];
+		final DenseMatrix IminusGammaP = new DenseMatrix(mdp.n, mdp.n);
+		// IminusGammaP is overwritten by its LU decomposition, we keep a copy
+		// in case we have to fall back on the pseudo-inverse
+		final DenseMatrix IminusGammaPCopy = new DenseMatrix(mdp.n, mdp.n);
+		final int[] piv = new int[mdp.n];
+		V = new double[mdp.n];
 
 		// Value iteration loop
 		boolean quit = false;
@@ -70,24 +75,21 @@ public final class PolicyIteration {
 
 		    // Evalute the current policy
 		    for(int x=0; x<mdp.n; x++) {
-		        R[x][0] = mdp.R[x][pol[x]];
+		        R[x] = mdp.R[x][pol[x]];
+		        final double[] Pxu = mdp.P[x][pol[x]];
 		        for(int xn=0; xn<mdp.n; xn++) {
-		            double xEqualsXn = 0.;
-		            if(x==xn) {
-		            	xEqualsXn = 1.;
-		            }
-		            IminusGammaP[x][xn] = xEqualsXn - gamma.value * mdp.P[x][pol[x]][xn];
+		            IminusGammaP.set(x, xn, - gamma.value * Pxu[xn]);
 		        }
 		    }
+		    IminusGammaP.addDiagonal(1.);
+		    IminusGammaPCopy.copyFrom(IminusGammaP);
 		    // V = IminusGammaP^-1 R
-		    Matrix invIminusGammaP = null;
-			try {
-				invIminusGammaP = ArrUtils.pinv(new Matrix(IminusGammaP));
-			} catch (Exception e) {
-				// FIXME handle this exception properly
-				throw new RuntimeException("Could not compute pseuso-inverse of IminusGammaP");
-			}
-		    V = invIminusGammaP.times(new Matrix(R)).transpose().getArray()[0];
+		    if(ParallelKernels.luInPlace(IminusGammaP, piv)) {
+		    	ParallelKernels.luSolve(IminusGammaP, piv, R, V);
+		    } else {
+		    	// Singular system (e.g. gamma = 1), use the pseudo-inverse
+		    	IminusGammaPCopy.pinvSolve(R, V);
+		    }
 
 		    // Perform PI update
 		    mdp.computeQfromV(V, gamma, Q);
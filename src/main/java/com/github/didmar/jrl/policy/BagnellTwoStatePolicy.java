@@ -42,6 +42,15 @@ public final class BagnellTwoStatePolicy extends LogDifferentiablePolicy {
 		return der;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.ILogDifferentiablePolicy#logProba(double[], double[])
+	 */
+	public final double logProba(@NonNull double[] x, @NonNull double[] u) {
+		computePolicyDistribution(x);
+		final double p0 = 1/(1+e);
+		return Math.log(((int)u[0])==0 ? p0 : 1 - p0);
+	}
+
 	/* (non-Javadoc)
 	 * @see jrl.policy.Policy#computePolicyDistribution(double[])
 	 */
@@ -0,0 +1,24 @@
+package com.github.didmar.jrl.policy;
+
+/**
+ * A policy which can draw the actions of many states at once, e.g. the
+ * states of the requests coalesced by a
+ * {@link com.github.didmar.jrl.policy.server.PolicyServer}, through batched
+ * feature and policy kernels.
+ *
+ * @author Didier Marin
+ */
+public interface BatchPolicy extends Policy {
+
+	/**
+	 * Draws an action for each of the first n given states, which is
+	 * equivalent to calling {@link #computePolicyDistribution(double[])} then
+	 * {@link #drawAction()} for each state, except that the current
+	 * distribution is left as it was.
+	 * @param xs  an array containing at least n states
+	 * @param us  [on return] the n actions, in arrays of length uDim
+	 * @param n   number of states
+	 */
+	public void drawActions(double[][] xs, double[][] us, int n);
+
+}
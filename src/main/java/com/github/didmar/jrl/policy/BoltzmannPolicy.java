@@ -1,24 +1,46 @@
 package com.github.didmar.jrl.policy;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
 import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.KroneckerFeatures;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
+import com.github.didmar.jrl.features.TabularStateFeatures;
 import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
 
-// FIXME when temp is too close to zeros, the actions become equiprobable !
 // TODO replace by BoltzmannPolicyOverQ ?
 /**
  * Boltzmann distribution over a set of sample actions, using a weighted sum of
  * state-action features. This policy is suitable for discrete environments,
  * using the set of all possible actions (i.e. {0, 1, ... uCard-1}).
+ * <p>
+ * The distribution is normalized with the log-sum-exp trick (see
+ * {@link MatKernels#softmax(double, double[], double[], int)}), so that any
+ * parameters and temperature give a valid distribution. The mean of the
+ * state-action features under the distribution is computed once per state,
+ * after which the log policy gradient of each action takes O(n) operations.
+ * <p>
+ * If the state-action features are {@link KroneckerFeatures}, the state
+ * features are computed once per state for all the actions, and the action
+ * features once and for all, so that the state-action features of the
+ * actions are never materialized.
  * 
  * @author Didier Marin
  */
-public final class BoltzmannPolicy extends LogDifferentiablePolicy {
+public final class BoltzmannPolicy extends LogDifferentiablePolicy
+		implements IDiscreteLogDifferentiablePolicy {
 
 	/** State-action features */
 	private final Features stateActionFeatures;
+	/** The state-action features, if they are {@link KroneckerFeatures},
+	 * null else */
+	private final @Nullable KroneckerFeatures kronecker;
+	/** Action features of each action, if the state-action features are
+	 * {@link KroneckerFeatures} */
+	private final double[][] psis;
 	/** Set of possible actions */
 	private final double[][] actions;
 	/** Number of possible actions */
@@ -26,26 +48,42 @@ public final class BoltzmannPolicy extends LogDifferentiablePolicy {
 	/** Temperature of the Boltzmann distribution. The higher the temperature,
 	 * the more equiprobable the actions */
 	private double temp;
-	/** Upper bound for the policy parameters, based on the temperature */
-	private final double thetaMax;
 	/** State-space dimension */
 	private final int xDim;
 	/** Action-space dimension */
 	private final int uDim;
 	/** Boltzmann distribution over sample actions */
 	private final double[] prob;
+	/** Logarithm of the normalizer of the distribution, i.e. of the sum of
+	 * the weights of the actions */
+	private double logNormalizer;
 	/** State for which the policy distribution was computed */
 	private final double[] distribX;
 	/** Indicates if the mean of the normal distribution might have changed
 	 * since we computed it : this flag will be raised if we change the policy
 	 * parameters. */
 	private boolean distribHasChanged;
+	/** Indicates if the mean of the features under the distribution is up
+	 * to date */
+	private boolean meanIsValid;
 	
 	// arrays for temporary storage to avoid mem. alloc.
 	/** Used to concatenate a state and an action */
 	private final double[] xu;
-	/** Used to store the state-action features ouput for each sample action */ 
+	/** Used to store the state-action features ouput for each sample action,
+	 * unless the state-action features are {@link KroneckerFeatures} */
 	private final double[][] phis;
+	/** Used to store the score theta'phi(x,u) of each sample action */
+	private final double[] logits;
+	/** Used to store the mean of phis, or of psis if the state-action
+	 * features are {@link KroneckerFeatures}, under the distribution */
+	private final double[] mean;
+	/** Used to store the state features, if the state-action features are
+	 * {@link KroneckerFeatures} */
+	private final double[] phix;
+	/** Used to store the action features of the log policy gradient, if the
+	 * state-action features are {@link KroneckerFeatures} */
+	private final double[] psiDer;
 	/** Used to store the log policy gradient */
 	private final double[] der;
 	/** Used to store the distance between a given action and each sample
@@ -81,21 +119,40 @@ public final class BoltzmannPolicy extends LogDifferentiablePolicy {
 		this.actions = actions;
 		nActions = this.actions.length;
 		this.temp = temp;
-		thetaMax = Math.log(1e20)*this.temp;
 		uDim = this.actions[0].length;
 		xDim = this.stateActionFeatures.inDim - uDim;
 		if(xDim <= 0) {
 			throw new IllegalArgumentException("State-action features input "
 					+"dimension should be greater than sample actions dimension");
 		}
+		kronecker = (stateActionFeatures instanceof KroneckerFeatures
+				? (KroneckerFeatures) stateActionFeatures : null);
 		prob = new double[nActions];
 		distribX = new double[xDim];
 		// raise the flag since the current distribX is undefined
 		distribHasChanged = true;
+		meanIsValid = false;
 		
 		// arrays for temporary storage to avoid mem. alloc.
 		xu = new double[xDim+uDim];
-		phis = new double[nActions][getParamsSize()];
+		if(kronecker == null) {
+			phis = new double[nActions][getParamsSize()];
+			psis = new double[0][0];
+			phix = new double[0];
+			psiDer = new double[0];
+			mean = new double[getParamsSize()];
+		} else {
+			final Features actionFeatures = kronecker.getActionFeatures();
+			phis = new double[0][0];
+			psis = new double[nActions][actionFeatures.outDim];
+			for(int i=0; i<nActions; i++) {
+				actionFeatures.phi(this.actions[i], psis[i]);
+			}
+			phix = new double[kronecker.getStateFeatures().outDim];
+			psiDer = new double[actionFeatures.outDim];
+			mean = new double[actionFeatures.outDim];
+		}
+		logits = new double[nActions];
 		der = new double[getParamsSize()];
 		distToSampleAction = new double[nActions]; 
 	}
@@ -103,40 +160,100 @@ public final class BoltzmannPolicy extends LogDifferentiablePolicy {
 	/* (non-Javadoc)
 	 * @see jrl.policy.ILogDifferentiablePolicy#dLogdTheta(double[], double[])
 	 */
-	@SuppressWarnings("null")
 	@NonNull
 	public final double[] dLogdTheta(@NonNull final double[] x,
 									 @NonNull final double[] u) {
+		return dLogdTheta(x, actionIndex(u));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy#dLogdTheta(double[], int)
+	 */
+	@SuppressWarnings("null")
+	@NonNull
+	public final double[] dLogdTheta(@NonNull final double[] x,
+									 final int ind) {
+		// Compute the distribution for this state, if not already done
+		if((!ArrUtils.arrayEquals(x,distribX)) || distribHasChanged) {
+			computePolicyDistribution(x);
+		}
+		// d log pi(u|x) / d theta = (phi(x,u) - E_pi[phi(x,.)]) / temp
+		if(!meanIsValid) {
+			computeMean();
+		}
+		final double invTemp = 1. / temp;
+		final KroneckerFeatures kron = kronecker;
+		if(kron != null) {
+			// phi(x,u) - E_pi[phi(x,.)] = phi(x) (x) (psi(u) - E_pi[psi])
+			for(int l=0; l<psiDer.length; l++) {
+				psiDer[l] = psis[ind][l] - mean[l];
+			}
+			ArrUtils.zeros(der);
+			kron.axpy(invTemp, phix, psiDer, der);
+			return der;
+		}
+		final double[] phi = phis[ind];
+		for(int i=0; i<der.length; i++) {
+			der[i] = invTemp * (phi[i] - mean[i]);
+		}
+		return der;
+	}
+
+	/** Computes the mean of the state-action features, or of the action
+	 * features, under the current distribution */
+	private final void computeMean() {
+		final double[][] feats = (kronecker != null ? psis : phis);
+		ArrUtils.zeros(mean);
+		for(int j=0; j<nActions; j++) {
+			MatKernels.axpy(prob[j], feats[j], 0, mean, 0, mean.length);
+		}
+		meanIsValid = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.ILogDifferentiablePolicy#logProba(double[], double[])
+	 */
+	public final double logProba(@NonNull final double[] x,
+								 @NonNull final double[] u) {
+		return logProba(x, actionIndex(u));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.IDiscreteLogDifferentiablePolicy#logProba(double[], int)
+	 */
+	public final double logProba(@NonNull final double[] x, final int uIndex) {
 		// Compute the distribution for this state, if not already done
-        if((!ArrUtils.arrayEquals(x,distribX)) || distribHasChanged) {        	
-            computePolicyDistribution(x);
-        }
-        // Find u in the sample actions
-        int ind = -1;
-        for(int i=0; i<nActions; i++) {
-        	if(ArrUtils.arrayEquals(u, actions[i])) {
-        		ind = i;
-        		break;
-        	}
-        }
-        // If u is not a sample action, get the closest sample action in L2 norm
-        if(ind == -1) {
-        	for(int i=0; i<nActions; i++) {
-        		distToSampleAction[i] = 0.;
-        		for(int j=0; j<uDim; j++) {
-        			distToSampleAction[i] += Math.pow(actions[i][j] - u[j], 2);
-        		}
-        	}
-        	ind = ArrUtils.argmin(distToSampleAction);
-        }
-        // Compute the derivative
-        for(int i=0; i<getParamsSize(); i++) {
-        	der[i] = phis[ind][i];
-        	for(int j=0; j<nActions; j++) {
-        		der[j] -= phis[j][i] * prob[j];
-        	}
-        }
-        return der;
+		if((!ArrUtils.arrayEquals(x,distribX)) || distribHasChanged) {
+			computePolicyDistribution(x);
+		}
+		// Does not underflow to log(0) for unlikely actions
+		return logits[uIndex] / temp - logNormalizer;
+	}
+
+	/**
+	 * Returns the index of u in the sample actions or, if u is not a sample
+	 * action, of the closest sample action in L2 norm.
+	 */
+	private final int actionIndex(final double[] u) {
+		// Find u in the sample actions
+		int ind = -1;
+		for(int i=0; i<nActions; i++) {
+			if(ArrUtils.arrayEquals(u, actions[i])) {
+				ind = i;
+				break;
+			}
+		}
+		// If u is not a sample action, get the closest sample action in L2 norm
+		if(ind == -1) {
+			for(int i=0; i<nActions; i++) {
+				distToSampleAction[i] = 0.;
+				for(int j=0; j<uDim; j++) {
+					distToSampleAction[i] += Math.pow(actions[i][j] - u[j], 2);
+				}
+			}
+			ind = ArrUtils.argmin(distToSampleAction);
+		}
+		return ind;
 	}
 
 	/* (non-Javadoc)
@@ -144,22 +261,38 @@ public final class BoltzmannPolicy extends LogDifferentiablePolicy {
 	 */
 	@SuppressWarnings("null")
 	public final void computePolicyDistribution(@NonNull final double[] x) {
-		// For each sample action
-        for(int i=0; i<nActions; i++){
-        	// Concatenate the state and the sample action
-        	System.arraycopy(x, 0, xu, 0, xDim);
-        	System.arraycopy(actions[i], 0, xu, xDim, uDim);
-            // Get the state-action features for this action
-            stateActionFeatures.phi(xu, phis[i]);
-            // Compute the sample action weight
-        	prob[i] = Math.exp(ArrUtils.dotProduct(phis[i], theta, phis[i].length)/temp);
-        }
-        // Normalize the weights to get a Boltzmann
-        // distribution over sample actions
-        ArrUtils.normalize(prob);
-        // Store of the associated state
+		computeLogits(x, logits);
+		// Normalize the weights to get a Boltzmann
+		// distribution over sample actions
+		logNormalizer = MatKernels.softmax(1. / temp, logits, prob, nActions);
+		// Store of the associated state
 		System.arraycopy(x, 0, distribX, 0, xDim);
 		distribHasChanged = false;
+		meanIsValid = false;
+	}
+
+	/**
+	 * Computes the score theta'phi(x,u) of each sample action u, and stores
+	 * the features in phis, or phi(x) in phix if the state-action features
+	 * are {@link KroneckerFeatures}.
+	 */
+	private final void computeLogits(final double[] x, final double[] scores) {
+		final KroneckerFeatures kron = kronecker;
+		if(kron != null) {
+			// The state features are the same for all the actions
+			kron.getStateFeatures().phi(x, phix);
+			for(int i=0; i<nActions; i++) {
+				scores[i] = kron.dot(theta, phix, psis[i]);
+			}
+		} else {
+			// Concatenate the state and each sample action
+			System.arraycopy(x, 0, xu, 0, xDim);
+			for(int i=0; i<nActions; i++) {
+				System.arraycopy(actions[i], 0, xu, xDim, uDim);
+				stateActionFeatures.phi(xu, phis[i]);
+				scores[i] = MatKernels.dot(phis[i], theta, phis[i].length);
+			}
+		}
 	}
 
 	/* (non-Javadoc)
@@ -168,18 +301,39 @@ public final class BoltzmannPolicy extends LogDifferentiablePolicy {
 	@SuppressWarnings("null")
 	@NonNull
 	public final double[] drawAction() {
+        return actions[drawActionIndex()];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#drawActionIndex()
+	 */
+	public final int drawActionIndex() {
 		// Draw an action according to the current Boltzmann distribution
-		final int ind = RandUtils.drawFromDiscreteProbTable(prob);
-        return actions[ind];
+		return RandUtils.drawFromDiscreteProbTable(prob);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#getActions()
+	 */
+	public final double[][] getActions() {
+		return actions;
 	}
 	
+	/**
+	 * Returns the distribution over the sample actions for each given state,
+	 * the scores of each state being normalized in place. The current
+	 * distribution is forgotten.
+	 */
 	@SuppressWarnings("null")
 	public final double[][] getProbaTable(final double[][] xs) {
 		@NonNull final double[][] probas = new double[xs.length][nActions];
+		final double invTemp = 1. / temp;
 		for(int x=0; x<xs.length; x++) {
-			computePolicyDistribution(xs[x]);
-			System.arraycopy(prob, 0, probas[x], 0, nActions);
+			computeLogits(xs[x], probas[x]);
+			MatKernels.softmax(invTemp, probas[x], probas[x], nActions);
 		}
+		// The features of the current distribution were overwritten
+		distribHasChanged = true;
 		return probas;
 	}
 	
@@ -201,15 +355,50 @@ public final class BoltzmannPolicy extends LogDifferentiablePolicy {
 		super.updateParams(delta);
 	}
 
-	/* (non-Javadoc)
-	 * @see jrl.policy.LogDifferentiablePolicy#boundParams(double[])
+	/**
+	 * Returns an immutable copy of this policy, from which many threads can
+	 * draw actions concurrently, see {@link PolicySnapshot}.
+	 * @return a snapshot of the current parameters and temperature
 	 */
-	@Override
-	public final boolean boundParams(final double[] params) {
-		return ArrUtils.boundVector(params, 0, thetaMax);
+	public final DiscretePolicySnapshot snapshot() {
+		return new BoltzmannSnapshot(stateActionFeatures, psis, actions, theta,
+				temp);
 	}
-	
+
+	/**
+	 * Compiles the current parameters and temperature into an immutable
+	 * policy for inference, see {@link PolicySnapshot}. Over discrete states,
+	 * i.e. with {@link TabularStateActionFeatures} or {@link KroneckerFeatures}
+	 * of {@link TabularStateFeatures}, the distribution of every state is
+	 * precomputed into an {@link com.github.didmar.jrl.utils.AliasTable}, so
+	 * that an action is drawn in O(1) without evaluating any feature. Else,
+	 * this is the same as {@link #snapshot()}. The current distribution is
+	 * forgotten.
+	 * @return the frozen policy
+	 */
+	public final DiscretePolicySnapshot freeze() {
+		final int xCard;
+		final KroneckerFeatures kronecker = this.kronecker;
+		if(stateActionFeatures instanceof TabularStateActionFeatures) {
+			xCard = ((TabularStateActionFeatures) stateActionFeatures).getXCard();
+		} else if(kronecker != null
+				&& kronecker.getStateFeatures() instanceof TabularStateFeatures) {
+			xCard = kronecker.getStateFeatures().outDim;
+		} else {
+			return snapshot();
+		}
+		final double[][] xs = new double[xCard][1];
+		for(int x=0; x<xCard; x++) {
+			xs[x][0] = x;
+		}
+		return new FrozenTabularPolicy(getProbaTable(xs), actions);
+	}
+
 	public final void setTemp(double temp) {
+		if(temp <= 0.) {
+			throw new IllegalArgumentException("temp must be greater than 0");
+		}
+		distribHasChanged = true;
 		this.temp = temp;
 	}
 }
@@ -9,7 +9,8 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  * a Q-value to weight the probability of each action.
  * @author Didier Marin
  */
-public final class BoltzmannPolicyOverQ implements QFunctionBasedPolicy {
+public final class BoltzmannPolicyOverQ implements QFunctionBasedPolicy,
+		DiscreteActionPolicy {
 
 	/** State-action value function to compute the action distribution */
 	private final QFunction qFunction;
@@ -58,9 +59,7 @@ public final class BoltzmannPolicyOverQ implements QFunctionBasedPolicy {
 	@Override
 	public final void computePolicyDistribution(double[] x) {
 		// Get the Q-value for each sample action
-        for(int i=0; i<nActions; i++){
-        	QValues[i] = qFunction.get(x, actions[i]);
-        }
+		qFunction.getActionValues(x, actions, QValues);
         // Add the min to all Q-values
         double QMin = ArrUtils.min(QValues);
         for(int i=0; i<nActions; i++){
@@ -92,9 +91,24 @@ public final class BoltzmannPolicyOverQ implements QFunctionBasedPolicy {
 	 */
 	@Override
 	public final double[] drawAction() {
+		return actions[drawActionIndex()];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#drawActionIndex()
+	 */
+	@Override
+	public final int drawActionIndex() {
 		// Draw an action according to the current Boltzmann distribution
-		final int ind = RandUtils.drawFromDiscreteProbTable(prob);
-		return actions[ind];
+		return RandUtils.drawFromDiscreteProbTable(prob);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#getActions()
+	 */
+	@Override
+	public final double[][] getActions() {
+		return actions;
 	}
 
 	@Override
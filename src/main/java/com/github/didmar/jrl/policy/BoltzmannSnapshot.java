@@ -0,0 +1,115 @@
+package com.github.didmar.jrl.policy;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.KroneckerFeatures;
+import com.github.didmar.jrl.utils.array.MatKernels;
+
+/**
+ * Snapshot of a {@link BoltzmannPolicy}, see {@link BoltzmannPolicy#snapshot()}.
+ *
+ * @author Didier Marin
+ */
+final class BoltzmannSnapshot implements DiscretePolicySnapshot {
+
+	/** State-action features */
+	private final Features stateActionFeatures;
+	/** The state-action features, if they are {@link KroneckerFeatures},
+	 * null else */
+	private final @Nullable KroneckerFeatures kronecker;
+	/** Action features of each action, if the state-action features are
+	 * {@link KroneckerFeatures} */
+	private final double[][] psis;
+	/** Set of possible actions */
+	private final double[][] actions;
+	/** Copy of the policy parameters */
+	private final double[] theta;
+	/** Inverse of the temperature */
+	private final double invTemp;
+	/** State-space dimension */
+	private final int xDim;
+	/** Action-space dimension */
+	private final int uDim;
+
+	BoltzmannSnapshot(Features stateActionFeatures, double[][] psis,
+			double[][] actions, double[] theta, double temp) {
+		this.stateActionFeatures = stateActionFeatures;
+		kronecker = (stateActionFeatures instanceof KroneckerFeatures
+				? (KroneckerFeatures) stateActionFeatures : null);
+		this.psis = psis;
+		this.actions = actions;
+		this.theta = theta.clone();
+		invTemp = 1. / temp;
+		uDim = actions[0].length;
+		xDim = stateActionFeatures.inDim - uDim;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#newSession()
+	 */
+	public final PolicySession newSession() {
+		final KroneckerFeatures kron = kronecker;
+		if(kron != null) {
+			return new PolicySession(0, kron.getStateFeatures().outDim, 0,
+					actions.length);
+		}
+		return new PolicySession(0, stateActionFeatures.outDim, xDim + uDim,
+				actions.length);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#drawAction(double[], com.github.didmar.jrl.policy.PolicySession)
+	 */
+	public final double[] drawAction(double[] x, PolicySession session) {
+		return actions[drawActionIndex(x, session)];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscretePolicySnapshot#drawActionIndex(double[], com.github.didmar.jrl.policy.PolicySession)
+	 */
+	public final int drawActionIndex(double[] x, PolicySession session) {
+		final double[] prob = session.prob;
+		final double[] phi = session.phi;
+		final int nActions = actions.length;
+		final KroneckerFeatures kron = kronecker;
+		if(kron != null) {
+			// The state features are the same for all the actions
+			kron.getStateFeatures().phi(x, phi);
+			for(int i=0; i<nActions; i++) {
+				prob[i] = kron.dot(theta, phi, psis[i]);
+			}
+		} else {
+			final double[] xu = session.xu;
+			System.arraycopy(x, 0, xu, 0, xDim);
+			for(int i=0; i<nActions; i++) {
+				System.arraycopy(actions[i], 0, xu, xDim, uDim);
+				stateActionFeatures.phi(xu, phi);
+				prob[i] = MatKernels.dot(phi, theta, phi.length);
+			}
+		}
+		MatKernels.softmax(invTemp, prob, prob, nActions);
+		return session.drawIndex(prob, nActions);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscretePolicySnapshot#getActions()
+	 */
+	public final double[][] getActions() {
+		return actions;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getXDim()
+	 */
+	public final int getXDim() {
+		return xDim;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getUDim()
+	 */
+	public final int getUDim() {
+		return uDim;
+	}
+}
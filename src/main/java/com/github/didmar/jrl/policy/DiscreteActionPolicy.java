@@ -0,0 +1,28 @@
+package com.github.didmar.jrl.policy;
+
+/**
+ * A policy over a finite set of actions. Each action is identified by its
+ * index in that set, which is propagated by
+ * {@link com.github.didmar.jrl.agent.PolicyAgent} and the environment to the
+ * {@link com.github.didmar.jrl.environment.DiscreteActionListener}s, so that
+ * they can find the action taken in constant time instead of searching it in
+ * the set.
+ *
+ * @author Didier Marin
+ */
+public interface DiscreteActionPolicy extends Policy {
+
+	/**
+	 * Returns the set of possible actions, which must not be modified.
+	 * @return the set of possible actions
+	 */
+	public double[][] getActions();
+
+	/**
+	 * Draws an action from the current policy distribution, like
+	 * {@link #drawAction()}.
+	 * @return the index of the action drawn in {@link #getActions()}
+	 */
+	public int drawActionIndex();
+
+}
@@ -36,4 +36,25 @@ public final class DiscreteDeterministicPolicy implements Policy {
 		return u;
 	}
 
+	/**
+	 * Compiles this policy into an immutable policy for inference, see
+	 * {@link PolicySnapshot}, whose actions are {0, 1, ... uMax} and which
+	 * does not allocate memory.
+	 * @return the frozen policy
+	 */
+	public final DiscretePolicySnapshot freeze() {
+		int uCard = 0;
+		for(int s=0; s<pol.length; s++) {
+			uCard = Math.max(uCard, (int) pol[s] + 1);
+		}
+		final double[][] actions = new double[uCard][1];
+		for(int a=0; a<uCard; a++) {
+			actions[a][0] = a;
+		}
+		final double[][] probas = new double[pol.length][uCard];
+		for(int s=0; s<pol.length; s++) {
+			probas[s][(int) pol[s]] = 1.;
+		}
+		return new FrozenTabularPolicy(probas, actions);
+	}
 }
@@ -0,0 +1,21 @@
+package com.github.didmar.jrl.policy;
+
+/**
+ * A {@link PolicySnapshot} over a finite set of actions, which can draw the
+ * index of an action.
+ *
+ * @author Didier Marin
+ */
+public interface DiscretePolicySnapshot extends PolicySnapshot {
+
+	/**
+	 * Draws the index of an action for a state.
+	 * @param x        a state
+	 * @param session  the session of the calling thread
+	 * @return the index of the action in {@link #getActions()}
+	 */
+	public int drawActionIndex(double[] x, PolicySession session);
+
+	/** Returns the set of actions, which must not be modified */
+	public double[][] getActions();
+}
@@ -12,7 +12,7 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  * 
  * @author Didier Marin
  */
-public class DiscreteRandomPolicy implements Policy {
+public class DiscreteRandomPolicy implements DiscreteActionPolicy {
 
 	/** Set of possible actions with equal probability */
 	final double[][] actions;
@@ -39,10 +39,24 @@ public class DiscreteRandomPolicy implements Policy {
 	 */
 	@NonNull
 	public double[] drawAction() {
-		final int i = RandUtils.nextInt(actions.length);
-		@Nullable final double[] u = actions[i];
+		@Nullable final double[] u = actions[drawActionIndex()];
 		if(u==null) throw new RuntimeException("null action within the actions set");
 		return u;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#drawActionIndex()
+	 */
+	public int drawActionIndex() {
+		return RandUtils.nextInt(actions.length);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#getActions()
+	 */
+	@SuppressWarnings("null")
+	public double[][] getActions() {
+		return actions;
+	}
+
 }
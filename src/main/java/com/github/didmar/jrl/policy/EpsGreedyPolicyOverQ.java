@@ -10,7 +10,8 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  * probability <code>1.-eps</code>, or a random action in a given set otherwise.
  * @author Didier Marin
  */
-public final class EpsGreedyPolicyOverQ implements QFunctionBasedPolicy {
+public final class EpsGreedyPolicyOverQ implements QFunctionBasedPolicy,
+		DiscreteActionPolicy {
 
 	private final static Random rand = new Random();
 
@@ -57,15 +58,9 @@ public final class EpsGreedyPolicyOverQ implements QFunctionBasedPolicy {
 	@Override
 	public final void computePolicyDistribution(double[] x) {
 		// Get the Q-value for each sample action
-		System.out.print("x="+ArrUtils.toString(x)+" Qvalues=");
-        for(int i=0; i<nActions; i++){
-        	QValues[i] = qFunction.get(x, actions[i]);
-        	System.out.print(QValues[i]+" ");
-        }
+		qFunction.getActionValues(x, actions, QValues);
         // Get the best action in terms of Q-value
         indBestAction = ArrUtils.argmax(QValues);
-        System.out.print(" indBest="+indBestAction);
-        System.out.println();
 	}
 
 	/* (non-Javadoc)
@@ -73,12 +68,28 @@ public final class EpsGreedyPolicyOverQ implements QFunctionBasedPolicy {
 	 */
 	@Override
 	public final double[] drawAction() {
+		return actions[drawActionIndex()];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#drawActionIndex()
+	 */
+	@Override
+	public final int drawActionIndex() {
 		if(Math.random() <= eps) {
 			// Draw a random action
-			return actions[rand.nextInt(nActions)];
+			return rand.nextInt(nActions);
 		}
 		// Else, take the best action
-		return actions[indBestAction];
+		return indBestAction;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscreteActionPolicy#getActions()
+	 */
+	@Override
+	public final double[][] getActions() {
+		return actions;
 	}
 
 	@Override
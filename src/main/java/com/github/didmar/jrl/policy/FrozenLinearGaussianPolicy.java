@@ -0,0 +1,144 @@
+package com.github.didmar.jrl.policy;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
+
+/**
+ * Frozen {@link LinearGaussianPolicy}, see
+ * {@link LinearGaussianPolicy#freeze()}. The normalization of the actions
+ * within [uMin,uMax] is folded into the parameters, and
+ * {@link RBFFeatures} are evaluated inline from contiguous centers and
+ * inverse widths, with their normalization applied to the mean action
+ * rather than to each feature.
+ *
+ * @author Didier Marin
+ */
+final class FrozenLinearGaussianPolicy implements PolicySnapshot {
+
+	/** State features, used if they are not {@link RBFFeatures} */
+	private final Features stateFeatures;
+	/** RBF centers, one after the other, null if the state features are not
+	 * {@link RBFFeatures} */
+	private final @Nullable double[] centers;
+	/** Inverse of the RBF widths */
+	private final double[] invSigma;
+	/** Indicates if the RBF features are normalized */
+	private final boolean normalizedRBF;
+	/** Parameters scaled by the action range if the actions are normalized,
+	 * uDim-by-nFeat */
+	private final double[] weights;
+	/** Mean action for null features, i.e. uMin if the actions are
+	 * normalized, 0 else */
+	private final double[] offset;
+	/** Std. dev. of the normal distribution */
+	private final double[] sigma;
+	/** Action-space lower bound */
+	private final double[] uMin;
+	/** Action-space upper bound */
+	private final double[] uMax;
+	/** State-space dimension */
+	private final int xDim;
+	/** Action-space dimension */
+	private final int uDim;
+	/** Number of state features */
+	private final int nFeat;
+
+	FrozenLinearGaussianPolicy(Features stateFeatures, double[] theta,
+			double[] sigma, double[] uMin, double[] uMax,
+			boolean normalizedActions) {
+		this.stateFeatures = stateFeatures;
+		this.sigma = sigma.clone();
+		this.uMin = uMin.clone();
+		this.uMax = uMax.clone();
+		xDim = stateFeatures.inDim;
+		uDim = sigma.length;
+		nFeat = stateFeatures.outDim;
+		weights = new double[uDim * nFeat];
+		offset = new double[uDim];
+		for(int i=0; i<uDim; i++) {
+			final double scale = (normalizedActions ? uMax[i] - uMin[i] : 1.);
+			offset[i] = (normalizedActions ? uMin[i] : 0.);
+			for(int j=0; j<nFeat; j++) {
+				weights[i*nFeat+j] = scale * theta[i*nFeat+j];
+			}
+		}
+		if(stateFeatures instanceof RBFFeatures) {
+			final RBFFeatures rbf = (RBFFeatures) stateFeatures;
+			final double[][] c = rbf.getCenters();
+			final double[] centers = new double[nFeat * xDim];
+			for(int i=0; i<nFeat; i++) {
+				System.arraycopy(c[i], 0, centers, i*xDim, xDim);
+			}
+			this.centers = centers;
+			invSigma = new double[xDim];
+			for(int j=0; j<xDim; j++) {
+				invSigma[j] = 1. / rbf.getSigma()[j];
+			}
+			normalizedRBF = rbf.isNormalized();
+		} else {
+			centers = null;
+			invSigma = new double[0];
+			normalizedRBF = false;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#newSession()
+	 */
+	public final PolicySession newSession() {
+		return new PolicySession(uDim, nFeat, 0, 0);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#drawAction(double[], com.github.didmar.jrl.policy.PolicySession)
+	 */
+	public final double[] drawAction(double[] x, PolicySession session) {
+		final double[] phix = session.phi;
+		final double[] u = session.u;
+		double norm = 1.;
+		final double[] centers = this.centers;
+		if(centers != null) {
+			double sum = 0.;
+			for(int i=0; i<nFeat; i++) {
+				final int base = i*xDim;
+				double s = 0.;
+				for(int j=0; j<xDim; j++) {
+					final double d = x[j] - centers[base+j];
+					s += d * d * invSigma[j];
+				}
+				phix[i] = Math.exp(-s);
+				sum += phix[i];
+			}
+			if(normalizedRBF) {
+				norm = 1. / sum;
+			}
+		} else {
+			stateFeatures.phi(x, phix);
+		}
+		for(int i=0; i<uDim; i++) {
+			final double mu = offset[i]
+				+ norm * MatKernels.dot(weights, i*nFeat, phix, 0, nFeat);
+			u[i] = mu + sigma[i] * session.rand.nextGaussian();
+		}
+		ArrUtils.boundVector(u, uMin, uMax);
+		return u;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getXDim()
+	 */
+	public final int getXDim() {
+		return xDim;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getUDim()
+	 */
+	public final int getUDim() {
+		return uDim;
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.didmar.jrl.policy;
+
+import com.github.didmar.jrl.utils.AliasTable;
+
+/**
+ * Frozen policy over discrete states, which draws the action of a state in
+ * O(1) from a precomputed {@link AliasTable} of its action distribution,
+ * see {@link BoltzmannPolicy#freeze()} and
+ * {@link DiscreteDeterministicPolicy#freeze()}. The state is the index of
+ * the state.
+ *
+ * @author Didier Marin
+ */
+final class FrozenTabularPolicy implements DiscretePolicySnapshot {
+
+	/** Action distribution of each state */
+	private final AliasTable[] tables;
+	/** Set of possible actions */
+	private final double[][] actions;
+
+	/**
+	 * @param probas   the action distribution of each state
+	 * @param actions  the set of actions
+	 */
+	FrozenTabularPolicy(double[][] probas, double[][] actions) {
+		tables = new AliasTable[probas.length];
+		for(int x=0; x<probas.length; x++) {
+			tables[x] = new AliasTable(probas[x]);
+		}
+		this.actions = actions;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#newSession()
+	 */
+	public final PolicySession newSession() {
+		return new PolicySession(0, 0, 0, 0);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#drawAction(double[], com.github.didmar.jrl.policy.PolicySession)
+	 */
+	public final double[] drawAction(double[] x, PolicySession session) {
+		return actions[drawActionIndex(x, session)];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscretePolicySnapshot#drawActionIndex(double[], com.github.didmar.jrl.policy.PolicySession)
+	 */
+	public final int drawActionIndex(double[] x, PolicySession session) {
+		return tables[(int) x[0]].draw(session.rand);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.DiscretePolicySnapshot#getActions()
+	 */
+	public final double[][] getActions() {
+		return actions;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getXDim()
+	 */
+	public final int getXDim() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getUDim()
+	 */
+	public final int getUDim() {
+		return actions[0].length;
+	}
+}
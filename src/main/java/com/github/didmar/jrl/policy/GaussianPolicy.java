@@ -14,6 +14,9 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  */
 public abstract class GaussianPolicy extends LogDifferentiablePolicy {
 
+	/** log(sqrt(2 pi)), normalization term of the log density */
+	private static final double LOG_SQRT_2PI = 0.5 * Math.log(2. * Math.PI);
+
 	/** State-space dimension */
 	protected final int xDim;
 	/** Action-space dimension */
@@ -148,6 +151,28 @@ public abstract class GaussianPolicy extends LogDifferentiablePolicy {
         }
         return der;
 	}
+
+	/**
+	 * The bounding of the actions to [uMin,uMax] is ignored, as in
+	 * {@link #dLogdTheta(double[], double[])}.
+	 * @see com.github.didmar.jrl.policy.ILogDifferentiablePolicy#logProba(double[], double[])
+	 */
+	public final double logProba(@NonNull final double[] x,
+			@NonNull final double[] u) {
+		assert x.length == xDim;
+		assert u.length == uDim;
+
+		// Compute the distribution for this state, if not already done
+		if((!ArrUtils.arrayEquals(x,distribX)) || distribHasChanged) {
+			computePolicyDistribution(x);
+		}
+		double logp = 0.;
+		for(int i=0; i<uDim; i++) {
+			final double d = (u[i] - mu[i]) / sigma[i];
+			logp -= 0.5 * d * d + Math.log(sigma[i]) + LOG_SQRT_2PI;
+		}
+		return logp;
+	}
 	
 	/**
 	 * Returns the std dev of the policy normal distribution.
@@ -0,0 +1,23 @@
+package com.github.didmar.jrl.policy;
+
+/**
+ * A log-differentiable policy over a finite set of actions, which can
+ * compute its derivatives given the index of the action instead of the
+ * action itself.
+ * @author Didier Marin
+ */
+public interface IDiscreteLogDifferentiablePolicy
+		extends ILogDifferentiablePolicy, DiscreteActionPolicy {
+
+	/**
+	 * Returns the derivative of the log policy over the parameters,
+	 * given the state and the index of the action in {@link #getActions()}.
+	 */
+	public double[] dLogdTheta(double[] x, int uIndex);
+
+	/**
+	 * Returns the log of the probability of taking the action of index
+	 * uIndex in {@link #getActions()} in state x.
+	 */
+	public double logProba(double[] x, int uIndex);
+}
@@ -14,4 +14,10 @@ public interface ILogDifferentiablePolicy extends ParametricPolicy {
 	 * given the state and the action.
 	 */
     public double[] dLogdTheta(double[] x, double[] u);
+
+	/**
+	 * Returns the log of the probability, or of the probability density for
+	 * continuous actions, of taking action u in state x.
+	 */
+	public double logProba(double[] x, double[] u);
 }
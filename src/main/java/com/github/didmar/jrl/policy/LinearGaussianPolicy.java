@@ -3,7 +3,10 @@ package com.github.didmar.jrl.policy;
 import org.eclipse.jdt.annotation.NonNull;
 
 import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
 
 /**
  * A Gaussian policy which mean is a sum of normalized state features weighted
@@ -12,7 +15,8 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
  * the minimal action and 1 to the maximal action.
  * @author Didier Marin
  */
-public final class LinearGaussianPolicy extends GaussianPolicy {
+public final class LinearGaussianPolicy extends GaussianPolicy
+		implements BatchPolicy {
 
 	/** Normalized state features */
 	private final Features stateFeatures;
@@ -22,6 +26,8 @@ public final class LinearGaussianPolicy extends GaussianPolicy {
 	// arrays for temporary storage to avoid mem. alloc.
 	/** Used to store features for a given state */
 	private final double[] phix;
+	/** Used to store the features of a batch of states, grown as needed */
+	private double[][] batchPhi = new double[0][0];
 	
 	/** If true, the policy parameters will be bounded using the boundedParams
 	 * array
@@ -93,6 +99,32 @@ public final class LinearGaussianPolicy extends GaussianPolicy {
         }
 	}
 	
+	/**
+	 * Computes the features of all the states with the batched kernel of
+	 * the state features, then the mean action of each state.
+	 * @see com.github.didmar.jrl.policy.BatchPolicy#drawActions(double[][], double[][], int)
+	 */
+	public final void drawActions(@NonNull final double[][] xs,
+								  @NonNull final double[][] us, int n) {
+		if(batchPhi.length < n) {
+			batchPhi = new double[Math.max(n, 2 * batchPhi.length)][nFeat];
+		}
+		stateFeatures.phi(xs, batchPhi, n);
+		final double[] sigma = getSigma();
+		for(int k=0; k<n; k++) {
+			final double[] u = us[k];
+			for(int i=0; i<uDim; i++) {
+				final double phixTheta = MatKernels.dot(theta, i*nFeat,
+						batchPhi[k], 0, nFeat);
+				final double mu = (normalizedActions
+						? uMin[i] + (uMax[i] - uMin[i]) * phixTheta
+						: phixTheta);
+				u[i] = mu + RandUtils.nextGaussian(sigma[i]);
+			}
+			ArrUtils.boundVector(u, uMin, uMax);
+		}
+	}
+
 	@Override
 	public final void dMeanActiondTheta(@NonNull final double[] x,
 										@NonNull final double[] dermu) {
@@ -142,6 +174,30 @@ public final class LinearGaussianPolicy extends GaussianPolicy {
 		}
 	}
 
+	/**
+	 * Returns an immutable copy of this policy, from which many threads can
+	 * draw actions concurrently, see {@link PolicySnapshot}.
+	 * @return a snapshot of the current parameters
+	 */
+	public final PolicySnapshot snapshot() {
+		return new LinearGaussianSnapshot(stateFeatures, theta, getSigma(),
+				uMin, uMax, normalizedActions);
+	}
+
+	/**
+	 * Compiles the current parameters into an immutable policy for
+	 * inference, see {@link PolicySnapshot}. The normalization of the actions
+	 * is folded into the parameters and {@link RBFFeatures} are evaluated
+	 * inline, so that drawing an action does not allocate memory and makes a
+	 * single pass over the features. Later changes of this policy are not
+	 * reflected.
+	 * @return the frozen policy
+	 */
+	public final PolicySnapshot freeze() {
+		return new FrozenLinearGaussianPolicy(stateFeatures, theta,
+				getSigma(), uMin, uMax, normalizedActions);
+	}
+
 	public final void useBoundedParams(boolean use) {
 		boundedParams = use;
 	}
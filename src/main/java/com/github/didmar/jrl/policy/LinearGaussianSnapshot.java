@@ -0,0 +1,82 @@
+package com.github.didmar.jrl.policy;
+
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.array.MatKernels;
+
+/**
+ * Snapshot of a {@link LinearGaussianPolicy}, see
+ * {@link LinearGaussianPolicy#snapshot()}.
+ *
+ * @author Didier Marin
+ */
+final class LinearGaussianSnapshot implements PolicySnapshot {
+
+	/** State features */
+	private final Features stateFeatures;
+	/** Copy of the policy parameters */
+	private final double[] theta;
+	/** Copy of the std. dev. of the normal distribution */
+	private final double[] sigma;
+	/** Copy of the action-space lower bound */
+	private final double[] uMin;
+	/** Copy of the action-space upper bound */
+	private final double[] uMax;
+	/** Indicates if the parameters are normalized within [uMin,uMax] */
+	private final boolean normalizedActions;
+	/** Number of state features */
+	private final int nFeat;
+	/** Action-space dimension */
+	private final int uDim;
+
+	LinearGaussianSnapshot(Features stateFeatures, double[] theta,
+			double[] sigma, double[] uMin, double[] uMax,
+			boolean normalizedActions) {
+		this.stateFeatures = stateFeatures;
+		this.theta = theta.clone();
+		this.sigma = sigma.clone();
+		this.uMin = uMin.clone();
+		this.uMax = uMax.clone();
+		this.normalizedActions = normalizedActions;
+		nFeat = stateFeatures.outDim;
+		uDim = sigma.length;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#newSession()
+	 */
+	public final PolicySession newSession() {
+		return new PolicySession(uDim, nFeat, 0, 0);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#drawAction(double[], com.github.didmar.jrl.policy.PolicySession)
+	 */
+	public final double[] drawAction(double[] x, PolicySession session) {
+		final double[] phix = session.phi;
+		final double[] u = session.u;
+		stateFeatures.phi(x, phix);
+		for(int i=0; i<uDim; i++) {
+			final double phixTheta = MatKernels.dot(theta, i*nFeat, phix, 0, nFeat);
+			final double mu = (normalizedActions
+					? uMin[i] + (uMax[i] - uMin[i]) * phixTheta : phixTheta);
+			u[i] = mu + sigma[i] * session.rand.nextGaussian();
+		}
+		ArrUtils.boundVector(u, uMin, uMax);
+		return u;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getXDim()
+	 */
+	public final int getXDim() {
+		return stateFeatures.inDim;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.PolicySnapshot#getUDim()
+	 */
+	public final int getUDim() {
+		return uDim;
+	}
+}
@@ -0,0 +1,56 @@
+package com.github.didmar.jrl.policy;
+
+import java.util.Random;
+
+import com.github.didmar.jrl.utils.RandUtils;
+
+/**
+ * Scratch state of one thread drawing actions from a {@link PolicySnapshot}:
+ * the buffers of the computations, the action returned, and a random number
+ * generator, so that threads neither share memory nor contend on the
+ * generator of {@link RandUtils}. A session is created by
+ * {@link PolicySnapshot#newSession()} and must not be used by more than one
+ * thread at a time.
+ *
+ * @author Didier Marin
+ */
+public final class PolicySession {
+
+	/** Used to store the action drawn */
+	final double[] u;
+	/** Used to store the features of a state, or of a state-action */
+	final double[] phi;
+	/** Used to concatenate a state and an action */
+	final double[] xu;
+	/** Used to store the score, then the probability, of each action */
+	final double[] prob;
+	/** Random number generator of this session */
+	final Random rand;
+
+	/**
+	 * @param uDim      action-space dimension
+	 * @param phiDim    length of the features
+	 * @param xuDim     length of a state-action, 0 if not needed
+	 * @param nActions  number of discrete actions, 0 if none
+	 */
+	PolicySession(int uDim, int phiDim, int xuDim, int nActions) {
+		u = new double[uDim];
+		phi = new double[phiDim];
+		xu = new double[xuDim];
+		prob = new double[nActions];
+		// Seeded from the common generator, so that RandUtils.setSeed makes
+		// the sessions reproducible
+		rand = new Random(RandUtils.nextLong());
+	}
+
+	/**
+	 * Draws an index from a discrete distribution.
+	 * @param prob  a probability table
+	 * @param n     the number of probabilities
+	 * @return an index within [0,n-1], whose probability is positive
+	 * @see RandUtils#discreteIndex(double[], int, double)
+	 */
+	final int drawIndex(double[] prob, int n) {
+		return RandUtils.discreteIndex(prob, n, rand.nextDouble());
+	}
+}
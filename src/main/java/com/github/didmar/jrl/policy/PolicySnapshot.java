@@ -0,0 +1,41 @@
+package com.github.didmar.jrl.policy;
+
+/**
+ * An immutable copy of a policy, from which many threads can draw actions
+ * concurrently, without locks or copies of the policy. The parameters are
+ * copied when the snapshot is taken, so later updates of the policy do not
+ * affect it, and all the scratch state is held by a {@link PolicySession},
+ * one per thread.
+ * <p>
+ * The features of the policy are shared by the threads, so they must be
+ * thread-safe, which is the case of features that only read their
+ * configuration, such as {@link com.github.didmar.jrl.features.RBFFeatures}
+ * or {@link com.github.didmar.jrl.features.TileGridFeatures}, but not of
+ * {@link com.github.didmar.jrl.features.CachedFeatures}.
+ *
+ * @author Didier Marin
+ */
+public interface PolicySnapshot {
+
+	/**
+	 * Creates the scratch state of a thread.
+	 * @return a new session
+	 */
+	public PolicySession newSession();
+
+	/**
+	 * Draws an action for a state.
+	 * @param x        a state
+	 * @param session  the session of the calling thread
+	 * @return the action, which belongs to the session or to the snapshot
+	 *         and must not be modified, and is valid until the next call
+	 *         with the same session
+	 */
+	public double[] drawAction(double[] x, PolicySession session);
+
+	/** Returns the state-space dimension */
+	public int getXDim();
+
+	/** Returns the action-space dimension */
+	public int getUDim();
+}
@@ -0,0 +1,59 @@
+package com.github.didmar.jrl.policy;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * A {@link Policy} view of a {@link PolicySnapshot} with its own
+ * {@link PolicySession}, for a rollout thread to run the shared snapshot
+ * through a {@link com.github.didmar.jrl.agent.PolicyAgent} and its own
+ * environment. Each thread must create its own view, which is cheap since
+ * the parameters are not copied.
+ * <p>
+ * The snapshot has no notion of a current distribution, so
+ * {@link #drawAction()} computes the distribution of the last state given
+ * to {@link #computePolicyDistribution(double[])} at each call.
+ *
+ * @author Didier Marin
+ */
+public final class SnapshotPolicy implements Policy {
+
+	/** The shared snapshot */
+	private final PolicySnapshot snapshot;
+	/** The session of this view */
+	private final PolicySession session;
+	/** Copy of the last state */
+	private final double[] x;
+
+	/**
+	 * @param snapshot  a policy snapshot
+	 */
+	public SnapshotPolicy(PolicySnapshot snapshot) {
+		this.snapshot = snapshot;
+		session = snapshot.newSession();
+		x = new double[snapshot.getXDim()];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.Policy#computePolicyDistribution(double[])
+	 */
+	public final void computePolicyDistribution(double[] x) {
+		System.arraycopy(x, 0, this.x, 0, this.x.length);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.Policy#drawAction()
+	 */
+	public final double[] drawAction() {
+		return snapshot.drawAction(x, session);
+	}
+
+	public final PolicySnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "Policy snapshot view";
+	}
+}
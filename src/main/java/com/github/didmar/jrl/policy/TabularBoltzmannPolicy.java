@@ -0,0 +1,62 @@
+package com.github.didmar.jrl.policy;
+
+import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
+import com.github.didmar.jrl.utils.RandUtils;
+
+/**
+ * Tabular policy based on a Boltzmann distribution over the actions, using
+ * the values of a {@link TabularQFunction}. The maximum value of the state is
+ * subtracted before exponentiation, so that low temperatures do not
+ * overflow.
+ * @see BoltzmannPolicyOverQ
+ * @author Didier Marin
+ */
+public final class TabularBoltzmannPolicy implements TabularPolicy {
+
+	/** State-action value function to compute the action distribution */
+	private final TabularQFunction qFunction;
+	/** Number of actions */
+	private final int uCard;
+	/** Temperature of the Boltzmann distribution. The higher the temperature,
+	 * the more equiprobable the actions */
+	private double temp;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	/** Used to store the unnormalized probability of each action */
+	private final double[] weights;
+
+	public TabularBoltzmannPolicy(TabularQFunction qFunction, double temp) {
+		this.qFunction = qFunction;
+		uCard = qFunction.getUCard();
+		setTemp(temp);
+		weights = new double[uCard];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.TabularPolicy#drawAction(int)
+	 */
+	public final int drawAction(int x) {
+		final double[] Qx = qFunction.getActionValues(x);
+		final double QMax = qFunction.max(x);
+		double sum = 0.;
+		for(int u=0; u<uCard; u++) {
+			weights[u] = Math.exp((Qx[u] - QMax) / temp);
+			sum += weights[u];
+		}
+		// The best action has a weight of 1, so sum is at least 1
+		return RandUtils.discreteIndex(weights, uCard,
+				RandUtils.nextDouble() * sum);
+	}
+
+	public final void setTemp(double temp) {
+		if(temp <= 0.) {
+			throw new IllegalArgumentException("temp must be greater than 0");
+		}
+		this.temp = temp;
+	}
+
+	@Override
+	public final String toString() {
+		return "Tabular Boltzmann policy";
+	}
+}
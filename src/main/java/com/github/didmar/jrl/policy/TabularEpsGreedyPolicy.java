@@ -0,0 +1,52 @@
+package com.github.didmar.jrl.policy;
+
+import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
+import com.github.didmar.jrl.utils.RandUtils;
+
+/**
+ * Tabular policy that chooses the best action with respect to a
+ * {@link TabularQFunction} with probability <code>1.-eps</code>, or a random
+ * action otherwise.
+ * @see EpsGreedyPolicyOverQ
+ * @author Didier Marin
+ */
+public final class TabularEpsGreedyPolicy implements TabularPolicy {
+
+	/** State-action value function to compute the action distribution */
+	private final TabularQFunction qFunction;
+	/** Number of actions */
+	private final int uCard;
+	/** Greediness of the policy, i.e. the probability to draw a random action
+	 * instead of the best in terms of Q-value. Must be within [0,1]. */
+	private double eps;
+
+	public TabularEpsGreedyPolicy(TabularQFunction qFunction, double eps) {
+		this.qFunction = qFunction;
+		uCard = qFunction.getUCard();
+		setEps(eps);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.TabularPolicy#drawAction(int)
+	 */
+	public final int drawAction(int x) {
+		if(RandUtils.nextDouble() < eps) {
+			// Draw a random action
+			return RandUtils.nextInt(uCard);
+		}
+		// Else, take the best action
+		return qFunction.argmax(x);
+	}
+
+	public final void setEps(double eps) {
+		if(eps < 0. || eps > 1.) {
+			throw new IllegalArgumentException("eps must be within [0,1]");
+		}
+		this.eps = eps;
+	}
+
+	@Override
+	public final String toString() {
+		return "Tabular epsilon-greedy policy";
+	}
+}
@@ -0,0 +1,21 @@
+package com.github.didmar.jrl.policy;
+
+/**
+ * A policy over the states and actions of a
+ * {@link com.github.didmar.jrl.environment.discrete.DiscreteEnvironment},
+ * given by their indices. Unlike {@link Policy}, the distribution is
+ * computed and sampled in a single call, since the agents of the tabular
+ * interaction loop draw exactly one action per state.
+ *
+ * @author Didier Marin
+ */
+public interface TabularPolicy {
+
+	/**
+	 * Draws an action in state x.
+	 * @param x  a state in [0,xCard[
+	 * @return an action in [0,uCard[
+	 */
+	public int drawAction(int x);
+
+}
@@ -0,0 +1,434 @@
+package com.github.didmar.jrl.policy.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.github.didmar.jrl.policy.BatchPolicy;
+import com.github.didmar.jrl.policy.Policy;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Gauge;
+import com.github.didmar.jrl.utils.metrics.Histogram;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Serves the actions of a policy to other processes, over TCP connections
+ * on the loopback interface, using the binary protocol of
+ * {@link RemotePolicy}.
+ * <p>
+ * Each connection has a reader thread, which queues the requests of its
+ * client. A single batcher thread takes the first queued request, waits at
+ * most <tt>maxWaitMicros</tt> for more requests, up to
+ * <tt>maxBatchSize</tt>, then evaluates the whole batch and sends the
+ * responses. If the policy is a {@link BatchPolicy}, the batch is evaluated
+ * at once by its batched kernels, else the states are evaluated one after
+ * the other. The policy is only used by the batcher thread, so it does not
+ * need to be thread-safe.
+ * <p>
+ * A <tt>maxWaitMicros</tt> of 0 only batches the requests which queued up
+ * while the previous batch was evaluated, which adds no latency: batches
+ * then grow with the load. A positive value trades some latency for larger
+ * batches under light load.
+ * <p>
+ * The queue holds at most <tt>queueCapacity</tt> requests : when it is
+ * full, the requests are rejected at once, and {@link RemotePolicy} throws
+ * an {@link IllegalStateException}, instead of letting the latency and the
+ * memory grow without bound under overload.
+ * <p>
+ * The server records the number of requests, batches, errors and rejected
+ * requests, the size of the batches, the latency of the requests from their
+ * arrival to their response, in nanoseconds, under the <tt>PolicyServer</tt>
+ * metrics (see {@link Metrics}), and the length of its queue under the
+ * <tt>PolicyServer.&lt;port&gt;.queueLength</tt> gauge, until it is closed.
+ * The throughput is the rate of the requests counter, as printed by a
+ * {@link com.github.didmar.jrl.utils.metrics.MetricsReporter}.
+ *
+ * @author Didier Marin
+ */
+public final class PolicyServer implements Closeable {
+
+	/** Default maximum number of queued requests */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/** Number of requests served by all the instances */
+	private static final Counter requestsCounter = Metrics.counter("PolicyServer.requests");
+	/** Number of batches evaluated by all the instances */
+	private static final Counter batchesCounter = Metrics.counter("PolicyServer.batches");
+	/** Number of requests which the policy failed on */
+	private static final Counter errorsCounter = Metrics.counter("PolicyServer.errors");
+	/** Maximum pause after repeated failures to accept a connection, in
+	 * milliseconds */
+	private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+	/** Number of requests rejected because the queue was full */
+	private static final Counter rejectedCounter = Metrics.counter("PolicyServer.rejected");
+	/** Number of requests of each batch */
+	private static final Histogram batchSizes = Metrics.histogram("PolicyServer.batchSize");
+	/** Time between the arrival of a request and its response */
+	private static final Histogram latencies = Metrics.histogram("PolicyServer.latency");
+
+	/** The served policy */
+	private final Policy pol;
+	/** The served policy, if it is a {@link BatchPolicy}, null else */
+	private final @Nullable BatchPolicy batchPol;
+	/** State-space dimension */
+	private final int xDim;
+	/** Action-space dimension */
+	private final int uDim;
+	/** Maximum number of requests per batch */
+	private final int maxBatchSize;
+	/** Maximum time to wait for more requests, in nanoseconds */
+	private final long maxWaitNanos;
+	private final ServerSocket serverSocket;
+	/** Requests waiting for the batcher */
+	private final BlockingQueue<Request> queue;
+	/** Name of the queue length gauge of this instance */
+	private final String queueGaugeName;
+	/** Open connections */
+	private final List<Connection> connections;
+	private final Thread acceptor;
+	private final Thread batcher;
+	private volatile boolean closed = false;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	/** Used to store the requests of the current batch */
+	private final List<Request> batch;
+	/** Used to store the states of the current batch */
+	private final double[][] xs;
+	/** Used to store the actions of the current batch */
+	private final double[][] us;
+
+	/**
+	 * Starts a server on the loopback interface, which queues at most
+	 * {@link #DEFAULT_QUEUE_CAPACITY} requests.
+	 * @see #PolicyServer(Policy, int, int, int, int, long, int)
+	 */
+	public PolicyServer(Policy pol, int xDim, int uDim, int port,
+			int maxBatchSize, long maxWaitMicros) throws IOException {
+		this(pol, xDim, uDim, port, maxBatchSize, maxWaitMicros,
+				DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Starts a server on the loopback interface.
+	 * @param pol            the served policy
+	 * @param xDim           state-space dimension
+	 * @param uDim           action-space dimension
+	 * @param port           the port to listen on, or 0 for any free port
+	 *                       (see {@link #getPort()})
+	 * @param maxBatchSize   maximum number of requests per batch
+	 * @param maxWaitMicros  maximum time to wait for more requests once a
+	 *                       request is queued, in microseconds
+	 * @param queueCapacity  maximum number of queued requests, beyond which
+	 *                       the requests are rejected
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public PolicyServer(Policy pol, int xDim, int uDim, int port,
+			int maxBatchSize, long maxWaitMicros, int queueCapacity)
+			throws IOException {
+		if(xDim <= 0) {
+			throw new IllegalArgumentException("xDim must be greater than 0");
+		}
+		if(uDim <= 0) {
+			throw new IllegalArgumentException("uDim must be greater than 0");
+		}
+		if(maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize must be greater than 0");
+		}
+		if(maxWaitMicros < 0) {
+			throw new IllegalArgumentException("maxWaitMicros must be positive or zero");
+		}
+		if(queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be greater than 0");
+		}
+		this.pol = pol;
+		batchPol = (pol instanceof BatchPolicy ? (BatchPolicy) pol : null);
+		this.xDim = xDim;
+		this.uDim = uDim;
+		this.maxBatchSize = maxBatchSize;
+		maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+		queue = new ArrayBlockingQueue<Request>(queueCapacity);
+		connections = new CopyOnWriteArrayList<Connection>();
+		batch = new ArrayList<Request>(maxBatchSize);
+		xs = new double[maxBatchSize][];
+		us = new double[maxBatchSize][uDim];
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+		queueGaugeName = "PolicyServer." + serverSocket.getLocalPort()
+				+ ".queueLength";
+		Metrics.registerGauge(queueGaugeName, new Gauge() {
+			public double getValue() {
+				return queue.size();
+			}
+		});
+		acceptor = new Thread(new Runnable() {
+			public void run() {
+				acceptConnections();
+			}
+		}, "PolicyServer-acceptor");
+		acceptor.setDaemon(true);
+		batcher = new Thread(new Runnable() {
+			public void run() {
+				processBatches();
+			}
+		}, "PolicyServer-batcher");
+		batcher.setDaemon(true);
+		acceptor.start();
+		batcher.start();
+	}
+
+	/** Accepts connections until the server is closed. After each failure
+	 * to accept a connection, e.g. when no more file descriptors are
+	 * available, the pause before the next attempt doubles, up to
+	 * {@link #MAX_ACCEPT_BACKOFF_MILLIS}. */
+	private final void acceptConnections() {
+		long backoffMillis = 0;
+		while(!closed) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				// The server socket was closed, or accept failed
+				if(closed) {
+					return;
+				}
+				backoffMillis = Math.min(MAX_ACCEPT_BACKOFF_MILLIS,
+						Math.max(1, 2 * backoffMillis));
+				try {
+					Thread.sleep(backoffMillis);
+				} catch (InterruptedException ie) {
+					return;
+				}
+				continue;
+			}
+			backoffMillis = 0;
+			try {
+				final Connection conn = new Connection(socket);
+				connections.add(conn);
+				conn.start();
+			} catch (IOException e) {
+				// The connection failed before its header was sent
+				try {
+					socket.close();
+				} catch (IOException ce) {
+					// Nothing more to do
+				}
+			}
+		}
+	}
+
+	/** Evaluates batches of requests until the server is closed */
+	private final void processBatches() {
+		try {
+			while(!closed) {
+				batch.add(queue.take());
+				final long deadline = System.nanoTime() + maxWaitNanos;
+				while(batch.size() < maxBatchSize) {
+					queue.drainTo(batch, maxBatchSize - batch.size());
+					final long remaining = deadline - System.nanoTime();
+					if(batch.size() == maxBatchSize || remaining <= 0) {
+						break;
+					}
+					final Request r = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if(r == null) {
+						break;
+					}
+					batch.add(r);
+				}
+				process();
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// The server was closed
+		}
+	}
+
+	/** Evaluates the current batch and sends the responses */
+	private final void process() {
+		final int n = batch.size();
+		for(int k=0; k<n; k++) {
+			xs[k] = batch.get(k).x;
+		}
+		byte status = Protocol.STATUS_OK;
+		try {
+			final BatchPolicy batchPol = this.batchPol;
+			if(batchPol != null) {
+				batchPol.drawActions(xs, us, n);
+			} else {
+				for(int k=0; k<n; k++) {
+					pol.computePolicyDistribution(xs[k]);
+					System.arraycopy(pol.drawAction(), 0, us[k], 0, uDim);
+				}
+			}
+		} catch (RuntimeException e) {
+			status = Protocol.STATUS_ERROR;
+			errorsCounter.add(n);
+		}
+		for(int k=0; k<n; k++) {
+			final Request r = batch.get(k);
+			r.conn.send(r.id, status, us[k]);
+		}
+		// Flush each connection once, after all its responses are written
+		for(int k=0; k<n; k++) {
+			final Request r = batch.get(k);
+			r.conn.flush();
+			latencies.recordSince(r.start);
+			xs[k] = null;
+		}
+		requestsCounter.add(n);
+		batchesCounter.increment();
+		batchSizes.record(n);
+	}
+
+	/** Port the server listens on */
+	public final int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** Number of open connections */
+	public final int getNbConnections() {
+		return connections.size();
+	}
+
+	/** Number of requests waiting for the batcher */
+	public final int getQueueLength() {
+		return queue.size();
+	}
+
+	/**
+	 * Stops the server and closes all its connections. Queued requests are
+	 * dropped.
+	 */
+	public final void close() {
+		closed = true;
+		Metrics.unregisterGauge(queueGaugeName);
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// Nothing more to do
+		}
+		batcher.interrupt();
+		for(Connection conn : connections) {
+			conn.close();
+		}
+	}
+
+	/** A request of a client */
+	private static final class Request {
+
+		final Connection conn;
+		/** Identifier chosen by the client */
+		final int id;
+		final double[] x;
+		/** Arrival time, as returned by {@link Metrics#startTimer()} */
+		final long start;
+
+		Request(Connection conn, int id, double[] x, long start) {
+			this.conn = conn;
+			this.id = id;
+			this.x = x;
+			this.start = start;
+		}
+	}
+
+	/** The connection of a client, whose requests are read by its own
+	 * thread, and whose responses are written by the batcher thread, or by
+	 * the reader thread for the rejected requests */
+	private final class Connection implements Runnable {
+
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		/** Indicates if responses were written since the last flush */
+		private boolean dirty = false;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(
+					socket.getOutputStream()));
+			out.writeInt(Protocol.MAGIC);
+			out.writeInt(xDim);
+			out.writeInt(uDim);
+			out.flush();
+		}
+
+		final void start() {
+			final Thread reader = new Thread(this, "PolicyServer-reader");
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/** Queues the requests of the client until the connection ends */
+		public final void run() {
+			try {
+				while(true) {
+					final int id = in.readInt();
+					final double[] x = new double[xDim];
+					for(int i=0; i<xDim; i++) {
+						x[i] = in.readDouble();
+					}
+					if(!queue.offer(new Request(this, id, x, Metrics.startTimer()))) {
+						rejectedCounter.increment();
+						send(id, Protocol.STATUS_REJECTED, x);
+						flush();
+					}
+				}
+			} catch (IOException e) {
+				// The client closed the connection, or the server was closed
+			} finally {
+				close();
+			}
+		}
+
+		/** Writes a response, without flushing it */
+		final synchronized void send(int id, byte status, double[] u) {
+			try {
+				out.writeInt(id);
+				out.writeByte(status);
+				if(status == Protocol.STATUS_OK) {
+					for(int i=0; i<uDim; i++) {
+						out.writeDouble(u[i]);
+					}
+				}
+				dirty = true;
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		final synchronized void flush() {
+			if(dirty) {
+				dirty = false;
+				try {
+					out.flush();
+				} catch (IOException e) {
+					close();
+				}
+			}
+		}
+
+		final void close() {
+			connections.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing more to do
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.github.didmar.jrl.policy.server;
+
+/**
+ * Binary protocol between a {@link PolicyServer} and its clients. All the
+ * values are big-endian, as written by {@link java.io.DataOutputStream}.
+ * <ul>
+ * <li>On connection, the server sends the header : {@link #MAGIC} (int),
+ * then the state and action dimensions (int, int).</li>
+ * <li>A request is an identifier (int) chosen by the client, followed by
+ * the xDim components of the state (double).</li>
+ * <li>The response to a request is its identifier (int), a status (byte),
+ * then the uDim components of the action (double) if the status is
+ * {@link #STATUS_OK}.</li>
+ * </ul>
+ * A client may send several requests before reading the responses, which
+ * can come in any order.
+ *
+ * @author Didier Marin
+ */
+final class Protocol {
+
+	/** First int sent by the server, "JRLP" in ASCII */
+	static final int MAGIC = 0x4A524C50;
+	/** Status of a response carrying an action */
+	static final byte STATUS_OK = 0;
+	/** Status of a response to a request which the policy failed on */
+	static final byte STATUS_ERROR = 1;
+	/** Status of a response to a request which was rejected because the
+	 * queue of the server was full */
+	static final byte STATUS_REJECTED = 2;
+
+	private Protocol() {
+		// Static class
+	}
+}
@@ -0,0 +1,132 @@
+package com.github.didmar.jrl.policy.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import com.github.didmar.jrl.policy.Policy;
+
+/**
+ * A policy served by a {@link PolicyServer} of the same host, which can be
+ * used by a {@link com.github.didmar.jrl.agent.PolicyAgent} as any other
+ * policy. {@link #computePolicyDistribution(double[])} sends the state to
+ * the server and waits for the action drawn by the served policy, which is
+ * then returned by {@link #drawAction()}.
+ * <p>
+ * Like most policies, a remote policy is not thread-safe : each thread
+ * should have its own connection.
+ *
+ * @author Didier Marin
+ */
+public final class RemotePolicy implements Policy, Closeable {
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	/** State-space dimension of the served policy */
+	private final int xDim;
+	/** Action-space dimension of the served policy */
+	private final int uDim;
+	/** Identifier of the last request */
+	private int id = 0;
+	/** Action received for the last state */
+	private final double[] u;
+
+	/**
+	 * Connects to a {@link PolicyServer} on the loopback interface.
+	 * @param port  the port of the server
+	 * @throws IOException if the connection fails, or if this is not a
+	 *                     policy server
+	 */
+	public RemotePolicy(int port) throws IOException {
+		socket = new Socket(InetAddress.getByName(null), port);
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(
+				socket.getOutputStream()));
+		if(in.readInt() != Protocol.MAGIC) {
+			socket.close();
+			throw new IOException("Not a policy server on port "+port);
+		}
+		xDim = in.readInt();
+		uDim = in.readInt();
+		u = new double[uDim];
+	}
+
+	/**
+	 * Sends the state to the server and receives the action of the served
+	 * policy.
+	 * @see com.github.didmar.jrl.policy.Policy#computePolicyDistribution(double[])
+	 * @throws IllegalStateException if the connection failed, if the
+	 *                               served policy failed on that state, or
+	 *                               if the server rejected the request
+	 */
+	public final void computePolicyDistribution(@NonNull final double[] x) {
+		if(x.length != xDim) {
+			throw new IllegalArgumentException("x must have length xDim");
+		}
+		id++;
+		final byte status;
+		try {
+			out.writeInt(id);
+			for(int i=0; i<xDim; i++) {
+				out.writeDouble(x[i]);
+			}
+			out.flush();
+			if(in.readInt() != id) {
+				throw new IOException("Unexpected response identifier");
+			}
+			status = in.readByte();
+			if(status == Protocol.STATUS_OK) {
+				for(int i=0; i<uDim; i++) {
+					u[i] = in.readDouble();
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Connection to the policy server failed", e);
+		}
+		if(status == Protocol.STATUS_REJECTED) {
+			throw new IllegalStateException("The policy server is overloaded");
+		}
+		if(status != Protocol.STATUS_OK) {
+			throw new IllegalStateException("The served policy failed on this state");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.policy.Policy#drawAction()
+	 */
+	@NonNull
+	public final double[] drawAction() {
+		return u;
+	}
+
+	/** State-space dimension of the served policy */
+	public final int getXDim() {
+		return xDim;
+	}
+
+	/** Action-space dimension of the served policy */
+	public final int getUDim() {
+		return uDim;
+	}
+
+	/** Closes the connection to the server */
+	public final void close() throws IOException {
+		socket.close();
+	}
+
+	@Override
+	@NonNull
+	public final String toString() {
+		return "RemotePolicy(port "+socket.getPort()+")";
+	}
+}
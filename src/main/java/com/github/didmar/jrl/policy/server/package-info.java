@@ -0,0 +1,9 @@
+/**
+ * Serving a policy to other processes over a loopback TCP connection: a
+ * {@link com.github.didmar.jrl.policy.server.PolicyServer} coalesces the
+ * concurrent requests of its clients into micro-batches, and a
+ * {@link com.github.didmar.jrl.policy.server.RemotePolicy} is a client which
+ * can be used as any other policy.
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package com.github.didmar.jrl.policy.server;
@@ -0,0 +1,136 @@
+package com.github.didmar.jrl.utils;
+
+import java.util.Random;
+
+/**
+ * Walker's alias table for drawing from a discrete distribution in O(1),
+ * built in O(n) by Vose's method, see Vose 1991 "A linear algorithm for
+ * generating random numbers with a given distribution".
+ * <p>
+ * Only the outcomes of non-zero probability are kept, so the table of a
+ * sparse distribution over many outcomes, such as a row of the transition
+ * table of a large MDP, takes the memory of its support. Drawing uses a
+ * single random number, of {@link RandUtils} or of a given generator, and
+ * does not allocate memory.
+ *
+ * @author Didier Marin
+ */
+public final class AliasTable {
+
+	/** Outcomes of non-zero probability, one per column */
+	private final int[] outcomes;
+	/** Probability of drawing the outcome of a column rather than its
+	 * alias, given that the column is drawn */
+	private final double[] threshold;
+	/** Alias outcome of each column */
+	private final int[] alias;
+	/** Number of columns, i.e. of outcomes of non-zero probability */
+	private final int k;
+
+	/**
+	 * @param prob  the probability of each outcome, which must be positive or
+	 *              zero, and is normalized by its sum to absorb rounding
+	 *              errors
+	 * @throws IllegalArgumentException if a probability is negative or all
+	 *                                  of them are zero
+	 */
+	public AliasTable(double[] prob) throws IllegalArgumentException {
+		double sum = 0.;
+		int nonZero = 0;
+		for(int i=0; i<prob.length; i++) {
+			if(prob[i] < 0.) {
+				throw new IllegalArgumentException("prob must not have negative values");
+			}
+			if(prob[i] > 0.) {
+				sum += prob[i];
+				nonZero++;
+			}
+		}
+		if(nonZero == 0) {
+			throw new IllegalArgumentException("prob must have a non-zero value");
+		}
+		k = nonZero;
+		outcomes = new int[k];
+		threshold = new double[k];
+		alias = new int[k];
+		// Probabilities scaled so that their mean is 1
+		final double[] scaled = new double[k];
+		int c = 0;
+		for(int i=0; i<prob.length; i++) {
+			if(prob[i] > 0.) {
+				outcomes[c] = i;
+				scaled[c] = prob[i] * k / sum;
+				c++;
+			}
+		}
+		// Work lists of the columns below and above the mean, as stacks
+		final int[] small = new int[k];
+		final int[] large = new int[k];
+		int nSmall = 0;
+		int nLarge = 0;
+		for(int j=0; j<k; j++) {
+			if(scaled[j] < 1.) {
+				small[nSmall++] = j;
+			} else {
+				large[nLarge++] = j;
+			}
+		}
+		// Fill each small column with a large one, which loses what it gives
+		while(nSmall > 0 && nLarge > 0) {
+			final int s = small[--nSmall];
+			final int l = large[--nLarge];
+			threshold[s] = scaled[s];
+			alias[s] = outcomes[l];
+			scaled[l] = (scaled[l] + scaled[s]) - 1.;
+			if(scaled[l] < 1.) {
+				small[nSmall++] = l;
+			} else {
+				large[nLarge++] = l;
+			}
+		}
+		// The remaining columns are full, up to rounding errors
+		while(nLarge > 0) {
+			final int l = large[--nLarge];
+			threshold[l] = 1.;
+			alias[l] = outcomes[l];
+		}
+		while(nSmall > 0) {
+			final int s = small[--nSmall];
+			threshold[s] = 1.;
+			alias[s] = outcomes[s];
+		}
+	}
+
+	/**
+	 * Draws an outcome.
+	 * @return the index of the outcome in the probability table
+	 */
+	public final int draw() {
+		return (k == 1 ? outcomes[0] : select(RandUtils.nextDouble()));
+	}
+
+	/**
+	 * Draws an outcome with a given random number generator, e.g. one per
+	 * thread.
+	 * @param rand  a random number generator
+	 * @return the index of the outcome in the probability table
+	 */
+	public final int draw(Random rand) {
+		return (k == 1 ? outcomes[0] : select(rand.nextDouble()));
+	}
+
+	/** Returns the outcome for a uniform random number r within [0,1[ */
+	private final int select(double r) {
+		// The integer part picks the column, the fractional part decides
+		// between the column and its alias
+		final double rk = r * k;
+		final int j = Math.min((int) rk, k-1);
+		return (rk - j < threshold[j] ? outcomes[j] : alias[j]);
+	}
+
+	/** Number of outcomes of non-zero probability, i.e. the size of the
+	 * table */
+	public final int size() {
+		return k;
+	}
+}
@@ -10,6 +10,11 @@ import com.github.didmar.jrl.utils.array.ArrUtils;
 public final class CEParametersDistribution
 		extends GaussianParametersDistribution {
 	
+	// arrays for temporary storage to avoid mem. alloc., reallocated only
+	// when the number of parameter vectors or selected vectors changes
+	private int[] index = new int[0];
+	private double[] tmp = new double[0];
+	
 	public CEParametersDistribution(double[] mean, double[] sigma) {
 		super(mean, sigma);
 	}
@@ -51,7 +56,9 @@ public final class CEParametersDistribution
         	}
 		}
 		// Sort the parameters vector by their performance
-        final int[] index = new int[nParams];
+        if(index.length != nParams) {
+        	index = new int[nParams];
+        }
         Utils.quicksort(R, index);
         if(greedy) {
         	if(params[index[nParams-1]].length != n) {
@@ -61,7 +68,9 @@ public final class CEParametersDistribution
         	ArrUtils.constvec(sigma, noise);
         } else {
 	        // Compute the mean and std dev of the nSelected best parameters
-	        double[] tmp = new double[nSelected];
+	        if(tmp.length != nSelected) {
+	        	tmp = new double[nSelected];
+	        }
 	        for(int i=0; i<n; i++) {
 	        	for(int j=0; j<nSelected; j++) {
 	        		tmp[j] = params[index[nParams-1-j]][i];
@@ -0,0 +1,19 @@
+package com.github.didmar.jrl.utils;
+
+/**
+ * Creates new, independent instances of some object, for instance an
+ * environment or a policy for each thread that needs its own copy.
+ *
+ * @param <T> the type of the created objects
+ * @author Didier Marin
+ */
+public interface Factory<T> {
+
+	/**
+	 * Returns a new instance, which shares no mutable state with the
+	 * previously created ones.
+	 * @return a new instance
+	 */
+	public T newInstance();
+
+}
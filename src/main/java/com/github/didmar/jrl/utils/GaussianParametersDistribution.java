@@ -49,6 +49,22 @@ public class GaussianParametersDistribution {
 		return params;
 	}
 	
+	/**
+	 * Returns the log of the probability density of the given parameters
+	 * under the current distribution.
+	 * @param params  a parameter vector
+	 * @return the log density of params
+	 */
+	public final double logDensity(double[] params) {
+		assert params.length == n;
+		double logp = 0.;
+		for(int j=0; j<n; j++) {
+			final double d = (params[j] - mean[j]) / sigma[j];
+			logp -= 0.5 * d * d + Math.log(sigma[j]);
+		}
+		return logp - 0.5 * n * Math.log(2. * Math.PI);
+	}
+
 	/**
 	 * Returns the mean of the parameters distribution
 	 * @return mean of the parameters distribution
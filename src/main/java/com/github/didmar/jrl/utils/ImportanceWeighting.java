@@ -0,0 +1,67 @@
+package com.github.didmar.jrl.utils;
+
+/**
+ * How importance weights are computed when samples drawn from older
+ * distributions are reused to estimate an expectation under the current
+ * one. Both variants trade a small bias for a much lower variance than the
+ * plain likelihood ratios.
+ *
+ * @author Didier Marin
+ */
+public enum ImportanceWeighting {
+
+	/** The likelihood ratios are truncated at sqrt(N) times their mean
+	 * (Ionides 2008), and the estimate is their weighted sum divided by N */
+	TRUNCATED,
+	/** The likelihood ratios are divided by their sum */
+	SELF_NORMALIZED;
+
+	/** Log likelihood ratios above this are truncated before exponentiation */
+	private static final double MAX_LOG_RATIO = 700.;
+
+	/**
+	 * Computes the weights of N samples, so that the estimate of the
+	 * expectation of f is the sum of <tt>weights[i] * f(sample i)</tt>.
+	 * @param logRatios  log of the likelihood ratio of each sample, the log
+	 *                   probability under the current distribution minus the
+	 *                   log probability under the distribution it was drawn
+	 *                   from
+	 * @param N          number of samples, the first N elements of the
+	 *                   arrays are used
+	 * @param weights    [on return] the weights
+	 */
+	public final void computeWeights(double[] logRatios, int N,
+			double[] weights) {
+		if(N <= 0) {
+			throw new IllegalArgumentException("N must be greater than 0");
+		}
+		switch(this) {
+		case TRUNCATED:
+			double mean = 0.;
+			for(int i=0; i<N; i++) {
+				weights[i] = Math.exp(Math.min(logRatios[i], MAX_LOG_RATIO));
+				mean += weights[i];
+			}
+			mean /= N;
+			final double max = mean * Math.sqrt(N);
+			for(int i=0; i<N; i++) {
+				weights[i] = Math.min(weights[i], max) / N;
+			}
+			break;
+		default:
+			// The largest ratio is factored out, for numerical stability
+			double maxLog = Double.NEGATIVE_INFINITY;
+			for(int i=0; i<N; i++) {
+				maxLog = Math.max(maxLog, logRatios[i]);
+			}
+			double sum = 0.;
+			for(int i=0; i<N; i++) {
+				weights[i] = Math.exp(logRatios[i] - maxLog);
+				sum += weights[i];
+			}
+			for(int i=0; i<N; i++) {
+				weights[i] /= sum;
+			}
+		}
+	}
+}
@@ -35,7 +35,8 @@ public final class PGPEParametersDistribution
 	
 	/**
 	 * Update the distribution according to the gradient of its estimated
-	 * performance.
+	 * performance : the mean and std dev take a step along the gradient,
+	 * the std dev being kept above its minimum.
 	 * @param R      performance of each sample parameters
 	 * @param params sample parameters
 	 */
@@ -66,11 +67,127 @@ public final class PGPEParametersDistribution
 		
 		// Update the distribution with this gradient
 		for(int j=0; j<n; j++) {
-			mean[j]  = alpha * dJdMean[j] / params.length;
-			sigma[j] = Math.max(alpha * dJdSigma[j] / params.length, minSigma);
+			mean[j]  += alpha * dJdMean[j] / params.length;
+			sigma[j] = Math.max(sigma[j] + alpha * dJdSigma[j] / params.length,
+					minSigma);
 		}
 		
 		//System.out.println("mean="+Utils.toString(mean));
 		//System.out.println("sigma="+Utils.toString(sigma));
 	}
+
+	/**
+	 * Update the distribution according to the gradient of its estimated
+	 * performance, from weighted sample parameters. This is used to reuse
+	 * parameters drawn from previous distributions, weighted by importance
+	 * sampling. With all the weights equal to 1/N, this is the same update as
+	 * {@link #updateParamsDistribution(double[], double[][])}.
+	 * @param R        performance of each sample parameters
+	 * @param params   sample parameters
+	 * @param weights  weight of each sample parameters
+	 * @param N        number of samples, the first N elements of the arrays
+	 *                 are used
+	 * @see ImportanceWeighting#computeWeights(double[], int, double[])
+	 */
+	public final void updateParamsDistribution(double[] R, double[][] params,
+			double[] weights, int N) {
+		assert R.length >= N && params.length >= N && weights.length >= N;
+
+		stepSize.updateStep();
+		final double alpha = stepSize.getStep();
+
+		ArrUtils.zeros(dJdMean);
+		ArrUtils.zeros(dJdSigma);
+		for(int i=0; i<N; i++) {
+			final double wr = weights[i] * R[i];
+			for(int j=0; j<n; j++) {
+				final double paramsMinusMean = params[i][j]-mean[j];
+				final double sigmaSqu = sigma[j] * sigma[j];
+				dJdMean[j] += wr * (paramsMinusMean / sigmaSqu);
+				dJdSigma[j] += wr * ((paramsMinusMean*paramsMinusMean - sigmaSqu)
+						/ (sigma[j]*sigmaSqu));
+			}
+		}
+		for(int j=0; j<n; j++) {
+			mean[j]  += alpha * dJdMean[j];
+			sigma[j] = Math.max(sigma[j] + alpha * dJdSigma[j], minSigma);
+		}
+	}
+
+	/**
+	 * Draws perturbations of the mean, according to the current std dev.
+	 * The sample parameters of the i-th symmetric pair are then
+	 * <tt>mean + eps[i]</tt> and <tt>mean - eps[i]</tt>.
+	 * @param eps  [on return] the perturbations
+	 */
+	public final void drawPerturbations(double[][] eps) {
+		assert ArrUtils.hasShape(eps, eps.length, n);
+		for(int i=0; i<eps.length; i++) {
+			for(int j=0; j<n; j++) {
+				eps[i][j] = RandUtils.nextGaussian(sigma[j]);
+			}
+		}
+	}
+
+	/**
+	 * Update the distribution according to the gradient of its estimated
+	 * performance, from symmetric pairs of sample parameters. The mean is
+	 * moved along the perturbations in proportion to the performance
+	 * difference within each pair, which cancels the noise that is common to
+	 * both samples, and the std dev according to the mean performance of each
+	 * pair compared to the mean over all the pairs (the baseline). As in
+	 * Sehnke et al. (2010), the gradient is multiplied by the variance of
+	 * each parameter, so that the steps scale with the exploration.
+	 * @param RPlus      performance of the parameters <tt>mean + eps[i]</tt>
+	 * @param RMinus     performance of the parameters <tt>mean - eps[i]</tt>
+	 * @param eps        the perturbations
+	 * @param normalize  if true, the performances are divided by their std
+	 *                   dev, which makes the step size independent of the
+	 *                   scale of the rewards
+	 */
+	public final void updateParamsDistributionSymmetric(double[] RPlus,
+			double[] RMinus, double[][] eps, boolean normalize) {
+		assert RPlus.length == eps.length && RMinus.length == eps.length;
+
+		stepSize.updateStep();
+		final double alpha = stepSize.getStep();
+		final int nPairs = eps.length;
+
+		// Baseline and scale of the performances
+		double baseline = 0.;
+		for(int i=0; i<nPairs; i++) {
+			baseline += RPlus[i] + RMinus[i];
+		}
+		baseline /= 2*nPairs;
+		double scale = 1.;
+		if(normalize) {
+			double var = 0.;
+			for(int i=0; i<nPairs; i++) {
+				var += Math.pow(RPlus[i]-baseline, 2)
+				     + Math.pow(RMinus[i]-baseline, 2);
+			}
+			final double std = Math.sqrt(var / (2*nPairs));
+			if(std > 0.) {
+				scale = 1. / std;
+			}
+		}
+
+		ArrUtils.zeros(dJdMean);
+		ArrUtils.zeros(dJdSigma);
+		for(int i=0; i<nPairs; i++) {
+			final double rDiff = scale * (RPlus[i] - RMinus[i]) / 2.;
+			final double rMean = scale * ((RPlus[i] + RMinus[i]) / 2. - baseline);
+			for(int j=0; j<n; j++) {
+				final double sigmaSqu = sigma[j] * sigma[j];
+				dJdMean[j] += rDiff * eps[i][j];
+				dJdSigma[j] += rMean * (eps[i][j]*eps[i][j] - sigmaSqu)
+						/ sigma[j];
+			}
+		}
+		for(int j=0; j<n; j++) {
+			mean[j]  += alpha * dJdMean[j] / nPairs;
+			sigma[j] = Math.max(sigma[j] + alpha * dJdSigma[j] / nPairs,
+					minSigma);
+		}
+	}
 }
@@ -70,6 +70,17 @@ public final class RandUtils {
 		return rnd.nextDouble();
 	}
 
+	/**
+	 * Returns the next pseudorandom, uniformly distributed {@code long} value
+	 * from the random number generator's sequence, for instance to seed
+	 * another generator.
+	 * 
+	 * @return the next pseudorandom, uniformly distributed {@code long} value
+	 */
+	public static long nextLong() {
+		return rnd.nextLong();
+	}
+
 	/**
 	 * Returns the next pseudorandom, Gaussian ("normally") distributed
 	 * {@code double} value with mean {@code 0.0} and standard deviation
@@ -169,16 +180,38 @@ public final class RandUtils {
 		assert prob != null;
 		assert Utils.allClose(ArrUtils.sum(prob),1.,Utils.getMacheps());
 		
-		final double[] cumprob = ArrUtils.cumSum(prob);
-	    final double r = nextDouble();
-	    // Go through prob cumulative sum
-	    int i=0;
-	    for(; i<prob.length; i++) {
-	        if(r < cumprob[i]) {
-	        	break;
+		return discreteIndex(prob, prob.length, nextDouble());
+	}
+
+	/**
+	 * Returns the event of a discrete distribution which a uniform draw
+	 * falls in.
+	 * @param prob  a table of probabilities, or of weights
+	 * @param n     the number of events
+	 * @param r     a uniform draw in [0,s), where s is the sum of the first
+	 *              n probabilities
+	 * @return the first index whose cumulative probability is greater than
+	 *         r, or the last index with a positive probability if rounding
+	 *         errors leave the cumulative sum below r, so that an event of
+	 *         probability zero is never drawn
+	 */
+	public static int discreteIndex(double[] prob, int n, double r) {
+	    // Go through prob cumulative sum, accumulated on the fly so that no
+	    // array is allocated
+	    double cumprob = 0.;
+	    for(int i=0; i<n; i++) {
+	    	cumprob += prob[i];
+	        if(r < cumprob) {
+	        	return i;
 	        }
 	    }
-	    return i;
+	    // Rounding errors may leave the cumulative sum slightly below r
+	    for(int i=n-1; i>0; i--) {
+	    	if(prob[i] > 0.) {
+	    		return i;
+	    	}
+	    }
+	    return 0;
 	}
 
 	/**
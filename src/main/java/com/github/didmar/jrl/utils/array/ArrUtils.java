@@ -746,18 +746,22 @@ public final class ArrUtils {
 	* @return whether some components were bounded or not
 	*/
 	public static boolean boundVector(final double[] vec,
-								   final double[] min,
-								   final double[] max) {
-		assert vec.length == min.length;
-		assert vec.length == max.length;
+								   @Nullable final double[] min,
+								   @Nullable final double[] max) {
+		assert min == null || vec.length == min.length;
+		assert max == null || vec.length == max.length;
 
-		// Build Nx2 bounds array where bounds[i] = {min[i], max[i]}
-		double[][] bounds = new double[vec.length][2];
+		boolean bounded = false;
 		for (int i = 0; i < vec.length; i++) {
-			bounds[i][0] = min[i];
-			bounds[i][1] = max[i];
+			if(min != null && vec[i] < min[i]) {
+				vec[i] = min[i];
+				bounded = true;
+			} else if(max != null && vec[i] > max[i]) {
+				vec[i] = max[i];
+				bounded = true;
+			}
 		}
-		return boundVector(vec, bounds);
+		return bounded;
 	}
 
 	/**
@@ -770,13 +774,18 @@ public final class ArrUtils {
 	public static boolean boundVector(final double[] vec,
 								   	  double min, double max) {
 		assert min < max;
-		// Build Nx2 bounds array where bounds[i] = {min, max}
-		double[][] bounds = new double[vec.length][2];
+
+		boolean bounded = false;
 		for (int i = 0; i < vec.length; i++) {
-			bounds[i][0] = min;
-			bounds[i][1] = max;
+			if(vec[i] < min) {
+				vec[i] = min;
+				bounded = true;
+			} else if(vec[i] > max) {
+				vec[i] = max;
+				bounded = true;
+			}
 		}
-		return boundVector(vec, bounds);
+		return bounded;
 	}
 		
 	
@@ -1092,14 +1101,7 @@ public final class ArrUtils {
 		assert hasShape(B,n,n);
 		assert hasShape(dest,n,n);
 		
-		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < n; j++) {
-				dest[i][j] = A[i][0] * B[0][j];
-				for (int k = 1; k < n; k++) {
-					dest[i][j] += A[i][k] * B[k][j];
-				}
-			}
-		}
+		MatKernels.gemm(A, B, dest, n, n, n);
 	}
 
 	/**
@@ -1134,14 +1136,7 @@ public final class ArrUtils {
 		assert hasShape(B,l2,l3);
 		assert hasShape(dest,l1,l3);
 		
-		for (int i = 0; i < l1; i++) {
-			for (int j = 0; j < l3; j++) {
-				dest[i][j] = A[i][0] * B[0][j];
-				for (int k = 1; k < l2; k++) {
-					dest[i][j] += A[i][k] * B[k][j];
-				}
-			}
-		}
+		MatKernels.gemm(A, B, dest, l1, l2, l3);
 	}
 
 	/**
@@ -1175,12 +1170,7 @@ public final class ArrUtils {
 		assert v.length >= n;
 		assert dest.length >= n;
 		
-		for (int i = 0; i < n; i++) {
-			dest[i] = A[i][0] * v[0];
-			for (int j = 1; j < n; j++) {
-				dest[i] += A[i][j] * v[j];
-			}
-		}
+		MatKernels.gemv(A, v, dest, n, n);
 	}
 
 	/**
@@ -1216,12 +1206,7 @@ public final class ArrUtils {
 		assert v.length >= l2;
 		assert dest.length >= l1;
 		
-		for (int i = 0; i < l1; i++) {
-			dest[i] = A[i][0] * v[0];
-			for (int j = 1; j < l2; j++) {
-				dest[i] += A[i][j] * v[j];
-			}
-		}
+		MatKernels.gemv(A, v, dest, l1, l2);
 	}
 
 	/**
@@ -1255,12 +1240,7 @@ public final class ArrUtils {
 		assert destTransposed.length >= n;
 		assert hasShape(A,n,n);
 		
-		for (int j = 0; j < n; j++) {
-			destTransposed[j] = vTransposed[0] * A[0][j];
-			for (int i = 1; i < n; i++) {
-				destTransposed[j] += vTransposed[i] * A[i][j];
-			}
-		}
+		MatKernels.gemvTransposed(vTransposed, A, destTransposed, n, n);
 	}
 
 	/**
@@ -1296,12 +1276,7 @@ public final class ArrUtils {
 		assert destTransposed.length >= l2;
 		assert hasShape(A,l1,l2);
 		
-		for (int j = 0; j < l2; j++) {
-			destTransposed[j] = vTransposed[0] * A[0][j];
-			for (int i = 1; i < l1; i++) {
-				destTransposed[j] += vTransposed[i] * A[i][j];
-			}
-		}
+		MatKernels.gemvTransposed(vTransposed, A, destTransposed, l1, l2);
 	}
 
 	/**
@@ -2036,11 +2011,7 @@ public final class ArrUtils {
 		assert hasShape(src, l1, l2);
 		assert hasShape(dest, l2, l1);
 		
-		for (int i = 0; i < l1; i++) {
-			for (int j = 0; j < l2; j++) {
-				dest[j][i] = src[i][j];
-			}
-		}
+		MatKernels.transpose(src, dest, l1, l2);
 	}
 
 	/**
@@ -2086,11 +2057,7 @@ public final class ArrUtils {
 		assert hasShape(src, l1, l2);
 		
 		final double[][] dest = new double[l2][l1];
-		for (int i = 0; i < l1; i++) {
-			for (int j = 0; j < l2; j++) {
-				dest[j][i] = src[i][j];
-			}
-		}
+		MatKernels.transpose(src, dest, l1, l2);
 		return dest;
 	}
 	
@@ -2256,24 +2223,7 @@ public final class ArrUtils {
 		assert A.length == n;
 		assert isQuadratic(A);
 	
-		double sum;
-		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < i; j++) {
-				sum = A[i][j];
-				for (int k = 0; k < j; k++) {
-					sum -= A[i][k] * A[j][k];
-				}
-				A[i][j] = sum / A[j][j];
-			}
-			sum = A[i][i];
-			for (int k = 0; k < i; k++) {
-				sum -= A[i][k] * A[i][k];
-			}
-			if (sum <= 0) {
-				return;
-			}
-			A[i][i] = Math.sqrt(sum);
-		}
+		MatKernels.cholesky(A, n);
 	}
 
 	/**
@@ -2599,26 +2549,51 @@ public final class ArrUtils {
 											  final double[] v,
 											  int n)
 											  throws Exception {
+		shermanMorrisonFormula(Ainv, u, v, n, new double[n], new double[n]);
+	}
+
+	/**
+	 * Same as {@link #shermanMorrisonFormula(double[][], double[], double[], int)},
+	 * but uses the given arrays for temporary storage so that no memory is
+	 * allocated. The update is computed as the outer product of
+	 * <tt>Ainv * u</tt> and <tt>v^T * Ainv</tt>, which costs O(n^2).
+	 * 
+	 * @param Ainv   a <tt>n</tt>-by-<tt>n</tt> matrix, updated in place
+	 * @param u      a vector of length <tt>n</tt>
+	 * @param v      a vector of length <tt>n</tt>
+	 * @param n      size of the problem
+	 * @param tmp1   a vector of length <tt>n</tt> used for temporary storage
+	 * @param tmp2   a vector of length <tt>n</tt> used for temporary storage
+	 */
+	public static void shermanMorrisonFormula(final double[][] Ainv,
+											  final double[] u,
+											  final double[] v,
+											  int n,
+											  final double[] tmp1,
+											  final double[] tmp2)
+											  throws Exception {
 		assert hasShape(Ainv,n,n);
 		assert u != null;
 		assert v != null;
 		assert u.length == n;
 		assert v.length == n;
+		assert tmp1.length == n;
+		assert tmp2.length == n;
 		
-		final double[] tmp1 = new double[n];
-		final double[][] tmp2 = new double[n][n];
-		final double[][] tmp3 = new double[n][n];
+		// tmp1 = Ainv * u
 		multiplyQuad(Ainv, u, tmp1, n);
-	    multiply(tmp1, v, tmp2, n);
-	    multiplyQuad(tmp2, Ainv, tmp3, n);
-	    multiplyQuad(v, Ainv, tmp1, n);
-	    final double tmpScal = dotProduct(tmp1, u, n);
+		// tmp2 = v^T * Ainv
+	    multiplyQuad(v, Ainv, tmp2, n);
+	    final double tmpScal = dotProduct(tmp2, u, n);
 	    if(tmpScal == 0.) {
 	    	throw new Exception("Division by zero");
 	    }
+	    final double denom = 1.+tmpScal;
 	    for(int i=0; i<n; i++) {
+	    	final double[] AinvI = Ainv[i];
+	    	final double tmp1I = tmp1[i] / denom;
 	    	for(int j=0; j<n; j++) {
-	    		Ainv[i][j] -= tmp3[i][j] / (1.+tmpScal);
+	    		AinvI[j] -= tmp1I * tmp2[j];
 	    	}
 	    }
 	}
@@ -0,0 +1,102 @@
+package com.github.didmar.jrl.utils.array;
+
+/**
+ * Conjugate gradient solver for the linear system <tt>A x = b</tt>, where
+ * <tt>A</tt> is symmetric positive definite. The matrix is never formed: it
+ * is only accessed through its products with vectors, so that large systems
+ * with a structured matrix, such as a Fisher information matrix estimated
+ * from samples, can be solved in the memory of a few vectors.
+ * <p>
+ * The solver keeps its work vectors between calls, so it does not allocate
+ * memory, and is not thread-safe.
+ *
+ * @author Didier Marin
+ */
+public final class ConjugateGradient {
+
+	/** A symmetric positive definite matrix, given by its products */
+	public interface LinearOperator {
+		/**
+		 * Computes the product of the matrix with a vector.
+		 * @param v       a vector
+		 * @param result  [on return] the product, must not be v
+		 */
+		public void apply(double[] v, double[] result);
+	}
+
+	/** Dimension of the system */
+	private final int n;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	/** Residual b - A x */
+	private final double[] r;
+	/** Search direction */
+	private final double[] p;
+	/** Product of the matrix and the search direction */
+	private final double[] Ap;
+
+	/**
+	 * @param n  dimension of the system
+	 */
+	public ConjugateGradient(int n) {
+		if(n <= 0) {
+			throw new IllegalArgumentException("n must be greater than 0");
+		}
+		this.n = n;
+		r = new double[n];
+		p = new double[n];
+		Ap = new double[n];
+	}
+
+	/**
+	 * Solves <tt>A x = b</tt>, starting from the given guess. The iterations
+	 * stop when the norm of the residual is below <tt>tol</tt> times the norm
+	 * of <tt>b</tt>, after <tt>maxIter</tt> iterations, or if a direction of
+	 * non-positive curvature is met, which happens when A is only positive
+	 * semi-definite. Stopping early gives the minimizer of the quadratic form
+	 * over the explored subspace, which is what truncated Newton methods use.
+	 * @param A        the matrix
+	 * @param b        the right-hand side
+	 * @param x        the initial guess, [on return] the solution
+	 * @param maxIter  maximum number of iterations, at most n are needed in
+	 *                 exact arithmetic
+	 * @param tol      relative tolerance on the residual
+	 * @return the number of iterations performed
+	 */
+	public final int solve(LinearOperator A, double[] b, double[] x,
+			int maxIter, double tol) {
+		assert b.length == n && x.length == n;
+
+		A.apply(x, Ap);
+		for(int i=0; i<n; i++) {
+			r[i] = b[i] - Ap[i];
+			p[i] = r[i];
+		}
+		double rs = MatKernels.dot(r, r, n);
+		final double threshold = tol * tol * MatKernels.dot(b, b, n);
+		int k = 0;
+		while(k < maxIter && rs > threshold) {
+			A.apply(p, Ap);
+			final double pAp = MatKernels.dot(p, Ap, n);
+			if(pAp <= 0.) {
+				break;
+			}
+			final double alpha = rs / pAp;
+			MatKernels.axpy(alpha, p, x, 0, n);
+			MatKernels.axpy(-alpha, Ap, r, 0, n);
+			final double rsNew = MatKernels.dot(r, r, n);
+			final double beta = rsNew / rs;
+			for(int i=0; i<n; i++) {
+				p[i] = r[i] + beta * p[i];
+			}
+			rs = rsNew;
+			k++;
+		}
+		return k;
+	}
+
+	/** Dimension of the system */
+	public final int getDimension() {
+		return n;
+	}
+}
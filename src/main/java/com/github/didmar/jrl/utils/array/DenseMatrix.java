@@ -0,0 +1,631 @@
+package com.github.didmar.jrl.utils.array;
+
+import com.github.didmar.jrl.utils.Utils;
+
+import Jama.Matrix;
+
+/**
+ * A dense matrix stored in row-major order in a single flat <tt>double[]</tt>:
+ * the entry (i,j) is at index <tt>offset + i*stride + j</tt>. Unlike
+ * <tt>double[][]</tt>, all the rows are contiguous in memory, so that matrix
+ * loops do not have to dereference a new row object (and check its bounds)
+ * for each row.
+ * <p>
+ * A matrix can own its storage or be a view over a block of another matrix,
+ * in which case modifications are visible in both. Adapters are provided to
+ * convert from and to <tt>double[][]</tt> and JAMA {@link Matrix}.
+ * <p>
+ * All the operations are done in place and do not allocate memory, unless
+ * stated otherwise. As in {@link ArrUtils}, dimensions are only checked when
+ * assertions are enabled.
+ *
+ * @author Didier Marin
+ */
+public final class DenseMatrix {
+
+	/** Storage of the entries, in row-major order */
+	private final double[] data;
+	/** Index of the entry (0,0) in data */
+	private final int offset;
+	/** Number of rows */
+	private final int rows;
+	/** Number of columns */
+	private final int cols;
+	/** Distance in data between two consecutive rows */
+	private final int stride;
+
+	/**
+	 * Creates a zero matrix.
+	 */
+	public DenseMatrix(int rows, int cols) {
+		this(new double[rows*cols], 0, rows, cols, cols);
+	}
+
+	/**
+	 * Creates a matrix over a part of the given array, without copy.
+	 * @param data    storage of the entries, in row-major order
+	 * @param offset  index of the entry (0,0) in data
+	 * @param rows    number of rows
+	 * @param cols    number of columns
+	 * @param stride  distance in data between two consecutive rows
+	 */
+	public DenseMatrix(double[] data, int offset, int rows, int cols,
+			int stride) {
+		if(rows < 0 || cols < 0 || offset < 0 || stride < cols
+				|| (rows > 0 && cols > 0
+					&& offset + (rows-1)*stride + cols > data.length)) {
+			throw new IllegalArgumentException("Invalid matrix layout");
+		}
+		this.data = data;
+		this.offset = offset;
+		this.rows = rows;
+		this.cols = cols;
+		this.stride = stride;
+	}
+
+	/**
+	 * Creates a new <tt>n</tt>-by-<tt>n</tt> diagonal matrix, with all the
+	 * diagonal entries set to <tt>diag</tt>.
+	 */
+	public static DenseMatrix eye(int n, double diag) {
+		final DenseMatrix mat = new DenseMatrix(n, n);
+		mat.addDiagonal(diag);
+		return mat;
+	}
+
+	/**
+	 * Creates a new <tt>n</tt>-by-<tt>n</tt> identity matrix.
+	 */
+	public static DenseMatrix identity(int n) {
+		return eye(n, 1.);
+	}
+
+	/**
+	 * Creates a new matrix holding a copy of the given array of arrays.
+	 */
+	public static DenseMatrix fromArray(final double[][] src) {
+		final int cols = src.length > 0 ? src[0].length : 0;
+		assert ArrUtils.hasShape(src, src.length, cols);
+
+		final DenseMatrix mat = new DenseMatrix(src.length, cols);
+		mat.copyFrom(src);
+		return mat;
+	}
+
+	/**
+	 * Creates a new matrix holding a copy of the given JAMA matrix.
+	 */
+	public static DenseMatrix fromJama(final Matrix src) {
+		final int rows = src.getRowDimension();
+		final int cols = src.getColumnDimension();
+		return new DenseMatrix(src.getRowPackedCopy(), 0, rows, cols, cols);
+	}
+
+	/**
+	 * Returns a new array of arrays holding a copy of the entries.
+	 */
+	public final double[][] toArray() {
+		final double[][] dest = new double[rows][cols];
+		copyTo(dest);
+		return dest;
+	}
+
+	/**
+	 * Returns a new JAMA matrix holding a copy of the entries.
+	 */
+	public final Matrix toJama() {
+		return new Matrix(toArray(), rows, cols);
+	}
+
+	/**
+	 * Copies the entries in the given <tt>rows</tt>-by-<tt>cols</tt> array.
+	 */
+	public final void copyTo(final double[][] dest) {
+		assert ArrUtils.hasShape(dest, rows, cols);
+
+		for(int i=0; i<rows; i++) {
+			System.arraycopy(data, offset + i*stride, dest[i], 0, cols);
+		}
+	}
+
+	/**
+	 * Copies the given <tt>rows</tt>-by-<tt>cols</tt> array in the entries.
+	 */
+	public final void copyFrom(final double[][] src) {
+		assert ArrUtils.hasShape(src, rows, cols);
+
+		for(int i=0; i<rows; i++) {
+			System.arraycopy(src[i], 0, data, offset + i*stride, cols);
+		}
+	}
+
+	/**
+	 * Copies the entries of the given matrix in this one.
+	 */
+	public final void copyFrom(final DenseMatrix src) {
+		assert src.rows == rows && src.cols == cols;
+
+		for(int i=0; i<rows; i++) {
+			System.arraycopy(src.data, src.offset + i*src.stride,
+					data, offset + i*stride, cols);
+		}
+	}
+
+	/**
+	 * Returns a view over the <tt>nRows</tt>-by-<tt>nCols</tt> block of this
+	 * matrix whose upper-left entry is (<tt>row</tt>,<tt>col</tt>).
+	 */
+	public final DenseMatrix view(int row, int col, int nRows, int nCols) {
+		assert row >= 0 && row + nRows <= rows;
+		assert col >= 0 && col + nCols <= cols;
+
+		return new DenseMatrix(data, offset + row*stride + col, nRows, nCols,
+				stride);
+	}
+
+	/**
+	 * Returns a view over the i-th row of this matrix.
+	 */
+	public final DenseVector row(int i) {
+		assert i >= 0 && i < rows;
+
+		return new DenseVector(data, offset + i*stride, cols, 1);
+	}
+
+	/**
+	 * Returns a view over the j-th column of this matrix.
+	 */
+	public final DenseVector column(int j) {
+		assert j >= 0 && j < cols;
+
+		return new DenseVector(data, offset + j, rows, stride);
+	}
+
+	public final double get(int i, int j) {
+		assert i >= 0 && i < rows && j >= 0 && j < cols;
+		return data[offset + i*stride + j];
+	}
+
+	public final void set(int i, int j, double value) {
+		assert i >= 0 && i < rows && j >= 0 && j < cols;
+		data[offset + i*stride + j] = value;
+	}
+
+	public final void add(int i, int j, double value) {
+		assert i >= 0 && i < rows && j >= 0 && j < cols;
+		data[offset + i*stride + j] += value;
+	}
+
+	/**
+	 * Sets all the entries to the given value.
+	 */
+	public final void fill(double value) {
+		for(int i=0; i<rows; i++) {
+			final int start = offset + i*stride;
+			for(int k=start; k<start+cols; k++) {
+				data[k] = value;
+			}
+		}
+	}
+
+	/**
+	 * Multiplies all the entries by <tt>alpha</tt>.
+	 */
+	public final void scale(double alpha) {
+		for(int i=0; i<rows; i++) {
+			final int start = offset + i*stride;
+			for(int k=start; k<start+cols; k++) {
+				data[k] *= alpha;
+			}
+		}
+	}
+
+	/**
+	 * Adds <tt>alpha * B</tt> to this matrix.
+	 */
+	public final void addInPlace(double alpha, final DenseMatrix B) {
+		assert B.rows == rows && B.cols == cols;
+
+		for(int i=0; i<rows; i++) {
+			DenseVector.axpy(alpha, B.data, B.offset + i*B.stride,
+					data, offset + i*stride, cols);
+		}
+	}
+
+	/**
+	 * Adds <tt>value</tt> to all the diagonal entries.
+	 */
+	public final void addDiagonal(double value) {
+		final int n = Math.min(rows, cols);
+		for(int i=0, k=offset; i<n; i++, k+=stride+1) {
+			data[k] += value;
+		}
+	}
+
+	/**
+	 * Rank-one update
+	 * <pre>
+	 * this = this + alpha * x * y'
+	 * </pre>
+	 * @param x  a vector of length <tt>rows</tt>
+	 * @param y  a vector of length <tt>cols</tt>
+	 */
+	public final void ger(double alpha, final double[] x, final double[] y) {
+		assert x.length >= rows && y.length >= cols;
+
+		for(int i=0; i<rows; i++) {
+			final double a = alpha * x[i];
+			if(a != 0.) {
+				DenseVector.axpy(a, y, 0, data, offset + i*stride, cols);
+			}
+		}
+	}
+
+	/**
+	 * Matrix-vector product <tt>y = this * x</tt>.
+	 * @param x  a vector of length <tt>cols</tt>
+	 * @param y  [on return] a vector of length <tt>rows</tt>, must not be
+	 *           <tt>x</tt>
+	 */
+	public final void multiply(final double[] x, final double[] y) {
+		assert x.length >= cols && y.length >= rows;
+		assert x != y;
+
+		for(int i=0; i<rows; i++) {
+			y[i] = MatKernels.dot(data, offset + i*stride, x, 0, cols);
+		}
+	}
+
+	/**
+	 * Matrix-vector product <tt>y = this * x</tt>.
+	 */
+	public final void multiply(final DenseVector x, final DenseVector y) {
+		assert x.length() == cols && y.length() == rows;
+
+		final double[] xData = x.data();
+		for(int i=0; i<rows; i++) {
+			final int rowI = offset + i*stride;
+			double sum = 0.;
+			for(int j=0, k=x.offset(); j<cols; j++, k+=x.stride()) {
+				sum += data[rowI+j] * xData[k];
+			}
+			y.set(i, sum);
+		}
+	}
+
+	/**
+	 * Transposed matrix-vector product <tt>y' = x' * this</tt>, computed row
+	 * by row.
+	 * @param x  a vector of length <tt>rows</tt>
+	 * @param y  [on return] a vector of length <tt>cols</tt>, must not be
+	 *           <tt>x</tt>
+	 */
+	public final void transposeMultiply(final double[] x, final double[] y) {
+		assert x.length >= rows && y.length >= cols;
+		assert x != y;
+
+		for(int j=0; j<cols; j++) {
+			y[j] = 0.;
+		}
+		for(int i=0; i<rows; i++) {
+			DenseVector.axpy(x[i], data, offset + i*stride, y, 0, cols);
+		}
+	}
+
+	/**
+	 * Matrix-matrix product <tt>C = this * B</tt>, computed by blocks of
+	 * {@link MatKernels#BLOCK_SIZE} in the i-k-j order.
+	 * @param B  a <tt>cols</tt>-by-<tt>l3</tt> matrix
+	 * @param C  [on return] a <tt>rows</tt>-by-<tt>l3</tt> matrix, must not
+	 *           share its storage with this matrix or <tt>B</tt>
+	 */
+	public final void multiply(final DenseMatrix B, final DenseMatrix C) {
+		assert B.rows == cols && C.rows == rows && C.cols == B.cols;
+		assert C.data != data && C.data != B.data;
+
+		final int l3 = B.cols;
+		final int bs = MatKernels.BLOCK_SIZE;
+		C.fill(0.);
+		for(int ii=0; ii<rows; ii+=bs) {
+			final int iEnd = Math.min(ii+bs, rows);
+			for(int kk=0; kk<cols; kk+=bs) {
+				final int kEnd = Math.min(kk+bs, cols);
+				for(int jj=0; jj<l3; jj+=bs) {
+					final int len = Math.min(jj+bs, l3) - jj;
+					for(int i=ii; i<iEnd; i++) {
+						final int rowA = offset + i*stride;
+						final int rowC = C.offset + i*C.stride + jj;
+						for(int k=kk; k<kEnd; k++) {
+							final double a = data[rowA + k];
+							if(a != 0.) {
+								DenseVector.axpy(a, B.data,
+										B.offset + k*B.stride + jj,
+										C.data, rowC, len);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Transposed matrix-matrix product <tt>C = this' * B</tt>, computed as a
+	 * sum of rank-one updates with the rows of this matrix and <tt>B</tt>.
+	 * @param B  a <tt>rows</tt>-by-<tt>l3</tt> matrix
+	 * @param C  [on return] a <tt>cols</tt>-by-<tt>l3</tt> matrix, must not
+	 *           share its storage with this matrix or <tt>B</tt>
+	 */
+	public final void transposeMultiply(final DenseMatrix B,
+			final DenseMatrix C) {
+		assert B.rows == rows && C.rows == cols && C.cols == B.cols;
+		assert C.data != data && C.data != B.data;
+
+		final int l3 = B.cols;
+		C.fill(0.);
+		for(int k=0; k<rows; k++) {
+			final int rowA = offset + k*stride;
+			final int rowB = B.offset + k*B.stride;
+			for(int i=0; i<cols; i++) {
+				final double a = data[rowA + i];
+				if(a != 0.) {
+					DenseVector.axpy(a, B.data, rowB, C.data,
+							C.offset + i*C.stride, l3);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cholesky decomposition in place, blocked as in
+	 * {@link MatKernels#cholesky(double[][], int)}. On return the lower
+	 * triangle holds the factor <tt>G</tt> such that <tt>this = G * G'</tt>,
+	 * the upper triangle is not touched.
+	 * @return false if the matrix is not positive definite
+	 */
+	public final boolean choleskyInPlace() {
+		assert rows == cols;
+
+		final int n = rows;
+		final int bs = MatKernels.BLOCK_SIZE;
+		for(int kb=0; kb<n; kb+=bs) {
+			final int kEnd = Math.min(kb+bs, n);
+			for(int i=kb; i<n; i++) {
+				final int rowI = offset + i*stride;
+				final int jMax = Math.min(i, kEnd-1);
+				for(int j=kb; j<=jMax; j++) {
+					final int rowJ = offset + j*stride;
+					final double s = data[rowI+j]
+							- MatKernels.dot(data, rowI+kb, data, rowJ+kb, j-kb);
+					if(i == j) {
+						if(s <= 0.) {
+							return false;
+						}
+						data[rowI+i] = Math.sqrt(s);
+					} else {
+						data[rowI+j] = s / data[rowJ+j];
+					}
+				}
+			}
+			// Update the trailing lower triangle with the panel
+			for(int i=kEnd; i<n; i++) {
+				final int rowI = offset + i*stride;
+				for(int j=kEnd; j<=i; j++) {
+					data[rowI+j] -= MatKernels.dot(data, rowI+kb,
+							data, offset + j*stride + kb, kEnd-kb);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the infinity norm of this matrix, i.e. its maximum absolute row
+	 * sum.
+	 */
+	public final double normInf() {
+		double norm = 0.;
+		for(int i=0; i<rows; i++) {
+			final int rowI = offset + i*stride;
+			double s = 0.;
+			for(int j=0; j<cols; j++) {
+				s += Math.abs(data[rowI+j]);
+			}
+			if(s > norm) {
+				norm = s;
+			}
+		}
+		return norm;
+	}
+
+	/**
+	 * Returns the magnitude below which a pivot of the LU decomposition of
+	 * this square matrix is considered zero, <tt>n * eps * ||A||_inf</tt> :
+	 * the pivots of a singular matrix are rarely exactly zero, because of
+	 * rounding errors.
+	 */
+	final double pivotTolerance() {
+		return rows * Utils.MACHEPS * normInf();
+	}
+
+	/**
+	 * LU decomposition with partial pivoting, in place. Rows are swapped
+	 * physically. On return the strict lower triangle holds the unit lower
+	 * triangular factor <tt>L</tt> and the upper triangle the factor
+	 * <tt>U</tt>, such that <tt>this(piv,:) = L * U</tt>.
+	 * @param piv  [on return] the row permutation, of length <tt>rows</tt>
+	 * @return false if the matrix is singular, or numerically singular, i.e.
+	 *         a pivot is not greater than {@link #pivotTolerance()} in
+	 *         magnitude, in which case the decomposition must not be used
+	 */
+	public final boolean luInPlace(final int[] piv) {
+		assert rows == cols;
+		assert piv.length == rows;
+
+		final int n = rows;
+		final double tol = pivotTolerance();
+		for(int i=0; i<n; i++) {
+			piv[i] = i;
+		}
+		boolean nonsingular = true;
+		for(int k=0; k<n; k++) {
+			int p = k;
+			for(int i=k+1; i<n; i++) {
+				if(Math.abs(data[offset + i*stride + k])
+						> Math.abs(data[offset + p*stride + k])) {
+					p = i;
+				}
+			}
+			final int rowK = offset + k*stride;
+			if(p != k) {
+				final int rowP = offset + p*stride;
+				for(int j=0; j<n; j++) {
+					final double tmp = data[rowP+j];
+					data[rowP+j] = data[rowK+j];
+					data[rowK+j] = tmp;
+				}
+				final int pivTmp = piv[p]; piv[p] = piv[k]; piv[k] = pivTmp;
+			}
+			final double pivot = data[rowK+k];
+			if(Math.abs(pivot) <= tol) {
+				nonsingular = false;
+				continue;
+			}
+			for(int i=k+1; i<n; i++) {
+				final int rowI = offset + i*stride;
+				final double l = data[rowI+k] / pivot;
+				data[rowI+k] = l;
+				if(l != 0.) {
+					DenseVector.axpy(-l, data, rowK+k+1, data, rowI+k+1, n-k-1);
+				}
+			}
+		}
+		return nonsingular;
+	}
+
+	/**
+	 * Solves <tt>A * x = b</tt>, where this matrix holds the LU
+	 * decomposition of <tt>A</tt> computed by {@link #luInPlace(int[])}.
+	 * @param piv  the row permutation
+	 * @param b    a vector of length <tt>rows</tt>
+	 * @param x    [on return] a vector of length <tt>rows</tt>, must not be
+	 *             <tt>b</tt>
+	 */
+	public final void luSolve(final int[] piv, final double[] b,
+			final double[] x) {
+		assert rows == cols;
+		assert b != x;
+
+		final int n = rows;
+		for(int i=0; i<n; i++) {
+			x[i] = b[piv[i]];
+		}
+		for(int i=0; i<n; i++) {
+			x[i] -= MatKernels.dot(data, offset + i*stride, x, 0, i);
+		}
+		for(int i=n-1; i>=0; i--) {
+			final int rowI = offset + i*stride;
+			x[i] = (x[i] - MatKernels.dot(data, rowI+i+1, x, i+1, n-i-1))
+					/ data[rowI+i];
+		}
+	}
+
+	/**
+	 * Solves <tt>this * x = b</tt> by LU decomposition. The matrix is
+	 * overwritten by its decomposition.
+	 * @param piv  array of length <tt>rows</tt> for temporary storage
+	 * @param b    a vector of length <tt>rows</tt>
+	 * @param x    [on return] a vector of length <tt>rows</tt>, must not be
+	 *             <tt>b</tt>
+	 * @throws ArithmeticException if the matrix is singular
+	 */
+	public final void solveInPlace(final int[] piv, final double[] b,
+			final double[] x) {
+		if(!luInPlace(piv)) {
+			throw new ArithmeticException("Matrix is singular.");
+		}
+		luSolve(piv, b, x);
+	}
+
+	/**
+	 * Computes the minimum-norm least-squares solution of
+	 * <tt>this * x = b</tt>, using the pseudo-inverse of this matrix, for the
+	 * systems which are singular. Allocates memory.
+	 * @param b    a vector of length <tt>rows</tt>
+	 * @param x    [on return] a vector of length <tt>cols</tt>
+	 * @throws ArithmeticException if the pseudo-inverse can not be computed,
+	 *                             e.g. if the matrix is zero
+	 */
+	public final void pinvSolve(final double[] b, final double[] x) {
+		assert b.length == rows;
+		assert x.length == cols;
+
+		final Matrix pinv;
+		try {
+			pinv = ArrUtils.pinv(toJama());
+		} catch (Exception e) {
+			final ArithmeticException ae = new ArithmeticException(
+					"Could not compute the pseudo-inverse");
+			ae.initCause(e);
+			throw ae;
+		}
+		final double[][] p = pinv.getArray();
+		for(int j=0; j<cols; j++) {
+			x[j] = MatKernels.dot(p[j], b, rows);
+		}
+	}
+
+	/**
+	 * Applies the Sherman-Morrison formula to this matrix, which holds the
+	 * inverse of some matrix <tt>A</tt>, so that it becomes the inverse of
+	 * <tt>A + u * v'</tt>:
+	 * <pre>
+	 * this -= (this * u) * (v' * this) / (1 + v' * this * u)
+	 * </pre>
+	 * @param tmp1  a vector of length <tt>rows</tt> for temporary storage
+	 * @param tmp2  a vector of length <tt>rows</tt> for temporary storage
+	 * @throws ArithmeticException if <tt>v' * this * u</tt> is zero
+	 */
+	public final void shermanMorrison(final double[] u, final double[] v,
+			final double[] tmp1, final double[] tmp2) {
+		assert rows == cols;
+
+		multiply(u, tmp1);
+		transposeMultiply(v, tmp2);
+		final double tmpScal = MatKernels.dot(tmp2, u, rows);
+		if(tmpScal == 0.) {
+			throw new ArithmeticException("Division by zero");
+		}
+		ger(-1. / (1. + tmpScal), tmp1, tmp2);
+	}
+
+	/** Number of rows */
+	public final int rows() {
+		return rows;
+	}
+
+	/** Number of columns */
+	public final int cols() {
+		return cols;
+	}
+
+	/** Underlying storage, shared with the views of this matrix */
+	public final double[] data() {
+		return data;
+	}
+
+	/** Index of the entry (0,0) in {@link #data()} */
+	public final int offset() {
+		return offset;
+	}
+
+	/** Distance in {@link #data()} between two consecutive rows */
+	public final int stride() {
+		return stride;
+	}
+
+	@Override
+	public final String toString() {
+		return ArrUtils.toString(toArray());
+	}
+}
@@ -0,0 +1,249 @@
+package com.github.didmar.jrl.utils.array;
+
+/**
+ * A dense vector stored in a flat <tt>double[]</tt>, starting at a given
+ * offset and with a given stride between consecutive components. A vector can
+ * own its storage or be a view over a part of another vector or over a row or
+ * column of a {@link DenseMatrix}, in which case modifications are visible in
+ * both.
+ * <p>
+ * All the operations are done in place and do not allocate memory, unless
+ * stated otherwise. As in {@link ArrUtils}, dimensions are only checked when
+ * assertions are enabled.
+ *
+ * @author Didier Marin
+ */
+public final class DenseVector {
+
+	/** Storage of the components */
+	private final double[] data;
+	/** Index of the first component in data */
+	private final int offset;
+	/** Number of components */
+	private final int length;
+	/** Distance in data between two consecutive components */
+	private final int stride;
+
+	/**
+	 * Creates a zero vector.
+	 * @param length  number of components
+	 */
+	public DenseVector(int length) {
+		this(new double[length], 0, length, 1);
+	}
+
+	/**
+	 * Creates a vector that wraps the given array, without copy.
+	 * @param data  components of the vector
+	 */
+	public DenseVector(double[] data) {
+		this(data, 0, data.length, 1);
+	}
+
+	/**
+	 * Creates a vector over a part of the given array, without copy.
+	 * @param data    storage of the components
+	 * @param offset  index of the first component in data
+	 * @param length  number of components
+	 * @param stride  distance in data between two consecutive components
+	 */
+	public DenseVector(double[] data, int offset, int length, int stride) {
+		if(length < 0 || stride <= 0 || offset < 0
+				|| (length > 0 && offset + (length-1)*stride >= data.length)) {
+			throw new IllegalArgumentException("Invalid vector layout");
+		}
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		this.stride = stride;
+	}
+
+	/**
+	 * Creates a new vector holding a copy of the given array.
+	 */
+	public static DenseVector fromArray(final double[] src) {
+		return new DenseVector(src.clone());
+	}
+
+	/**
+	 * Returns a new array holding a copy of the components.
+	 */
+	public final double[] toArray() {
+		final double[] dest = new double[length];
+		copyTo(dest);
+		return dest;
+	}
+
+	/**
+	 * Copies the components in the given array.
+	 */
+	public final void copyTo(final double[] dest) {
+		assert dest.length >= length;
+
+		if(stride == 1) {
+			System.arraycopy(data, offset, dest, 0, length);
+		} else {
+			for(int i=0, k=offset; i<length; i++, k+=stride) {
+				dest[i] = data[k];
+			}
+		}
+	}
+
+	/**
+	 * Copies the given array in the components.
+	 */
+	public final void copyFrom(final double[] src) {
+		assert src.length >= length;
+
+		if(stride == 1) {
+			System.arraycopy(src, 0, data, offset, length);
+		} else {
+			for(int i=0, k=offset; i<length; i++, k+=stride) {
+				data[k] = src[i];
+			}
+		}
+	}
+
+	/**
+	 * Copies the components of the given vector in this one.
+	 */
+	public final void copyFrom(final DenseVector src) {
+		assert src.length == length;
+
+		if(stride == 1 && src.stride == 1) {
+			System.arraycopy(src.data, src.offset, data, offset, length);
+		} else {
+			for(int i=0, k=offset, l=src.offset; i<length;
+					i++, k+=stride, l+=src.stride) {
+				data[k] = src.data[l];
+			}
+		}
+	}
+
+	/**
+	 * Returns a view over <tt>len</tt> components of this vector, starting
+	 * at component <tt>start</tt>.
+	 */
+	public final DenseVector view(int start, int len) {
+		assert start >= 0 && start + len <= length;
+
+		return new DenseVector(data, offset + start*stride, len, stride);
+	}
+
+	public final double get(int i) {
+		assert i >= 0 && i < length;
+		return data[offset + i*stride];
+	}
+
+	public final void set(int i, double value) {
+		assert i >= 0 && i < length;
+		data[offset + i*stride] = value;
+	}
+
+	public final void add(int i, double value) {
+		assert i >= 0 && i < length;
+		data[offset + i*stride] += value;
+	}
+
+	/**
+	 * Sets all the components to the given value.
+	 */
+	public final void fill(double value) {
+		for(int i=0, k=offset; i<length; i++, k+=stride) {
+			data[k] = value;
+		}
+	}
+
+	/**
+	 * Multiplies all the components by <tt>alpha</tt>.
+	 */
+	public final void scale(double alpha) {
+		for(int i=0, k=offset; i<length; i++, k+=stride) {
+			data[k] *= alpha;
+		}
+	}
+
+	/**
+	 * Adds <tt>alpha * x</tt> to this vector.
+	 */
+	public final void axpy(double alpha, final DenseVector x) {
+		assert x.length == length;
+
+		if(stride == 1 && x.stride == 1) {
+			axpy(alpha, x.data, x.offset, data, offset, length);
+		} else {
+			for(int i=0, k=offset, l=x.offset; i<length;
+					i++, k+=stride, l+=x.stride) {
+				data[k] += alpha * x.data[l];
+			}
+		}
+	}
+
+	/**
+	 * Returns the dot product of this vector with <tt>x</tt>.
+	 */
+	public final double dot(final DenseVector x) {
+		assert x.length == length;
+
+		if(stride == 1 && x.stride == 1) {
+			return MatKernels.dot(data, offset, x.data, x.offset, length);
+		}
+		double sum = 0.;
+		for(int i=0, k=offset, l=x.offset; i<length;
+				i++, k+=stride, l+=x.stride) {
+			sum += data[k] * x.data[l];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the dot product of this vector with the array <tt>x</tt>.
+	 */
+	public final double dot(final double[] x) {
+		assert x.length >= length;
+
+		if(stride == 1) {
+			return MatKernels.dot(data, offset, x, 0, length);
+		}
+		double sum = 0.;
+		for(int i=0, k=offset; i<length; i++, k+=stride) {
+			sum += data[k] * x[i];
+		}
+		return sum;
+	}
+
+	/** Number of components */
+	public final int length() {
+		return length;
+	}
+
+	/** Underlying storage, shared with the views of this vector */
+	public final double[] data() {
+		return data;
+	}
+
+	/** Index of the first component in {@link #data()} */
+	public final int offset() {
+		return offset;
+	}
+
+	/** Distance in {@link #data()} between two consecutive components */
+	public final int stride() {
+		return stride;
+	}
+
+	@Override
+	public final String toString() {
+		return ArrUtils.toString(toArray());
+	}
+
+	/**
+	 * Adds <tt>alpha * x[xOff..xOff+len-1]</tt> to
+	 * <tt>y[yOff..yOff+len-1]</tt>.
+	 * @see MatKernels#axpy(double, double[], int, double[], int, int)
+	 */
+	static void axpy(double alpha, final double[] x, int xOff,
+					 final double[] y, int yOff, int len) {
+		MatKernels.axpy(alpha, x, xOff, y, yOff, len);
+	}
+}
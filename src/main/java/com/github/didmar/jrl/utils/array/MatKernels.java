@@ -0,0 +1,619 @@
+package com.github.didmar.jrl.utils.array;
+
+import com.github.didmar.jrl.utils.Utils;
+
+/**
+ * Dense linear algebra kernels on row-major <tt>double[][]</tt> matrices.
+ * <p>
+ * Matrix products and factorizations are cache-blocked, with blocks of
+ * {@link #BLOCK_SIZE} rows and columns, and loops are arranged so that the
+ * innermost one always walks along a row, i.e. a contiguous array. Innermost
+ * loops are unrolled with independent accumulators, a form that HotSpot's
+ * superword optimization turns into SIMD instructions when the processor
+ * supports them (the JDK Vector API is not used, as jrl targets Java 6).
+ * <p>
+ * As in {@link ArrUtils}, no safety checks are done, unless assertions are
+ * enabled (run java with the <tt>-enableassertions</tt> or <tt>-ea</tt>
+ * switch).
+ *
+ * @author Didier Marin
+ */
+public final class MatKernels {
+
+	/** Number of rows and columns of the blocks used for cache blocking,
+	 * three such blocks of doubles fit in a 128KB cache */
+	public static final int BLOCK_SIZE = 64;
+
+	private MatKernels() {
+		// Static methods only
+	}
+
+	/**
+	 * Computes the dot product of the first <tt>n</tt> components of
+	 * <tt>x</tt> and <tt>y</tt>.
+	 */
+	public static double dot(final double[] x, final double[] y, int n) {
+		return dot(x, 0, y, 0, n);
+	}
+
+	/**
+	 * Computes the dot product of <tt>x[xOff..xOff+len-1]</tt> and
+	 * <tt>y[yOff..yOff+len-1]</tt>.
+	 */
+	public static double dot(final double[] x, int xOff,
+							 final double[] y, int yOff, int len) {
+		assert x.length >= xOff + len;
+		assert y.length >= yOff + len;
+
+		double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+		int i = 0;
+		for (; i < len - 3; i += 4) {
+			s0 += x[xOff+i]   * y[yOff+i];
+			s1 += x[xOff+i+1] * y[yOff+i+1];
+			s2 += x[xOff+i+2] * y[yOff+i+2];
+			s3 += x[xOff+i+3] * y[yOff+i+3];
+		}
+		for (; i < len; i++) {
+			s0 += x[xOff+i] * y[yOff+i];
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Adds <tt>alpha * x[off..off+len-1]</tt> to <tt>y[off..off+len-1]</tt>.
+	 */
+	public static void axpy(double alpha, final double[] x,
+							final double[] y, int off, int len) {
+		axpy(alpha, x, off, y, off, len);
+	}
+
+	/**
+	 * Adds <tt>alpha * x[xOff..xOff+len-1]</tt> to
+	 * <tt>y[yOff..yOff+len-1]</tt>.
+	 */
+	public static void axpy(double alpha, final double[] x, int xOff,
+							final double[] y, int yOff, int len) {
+		assert x.length >= xOff + len;
+		assert y.length >= yOff + len;
+
+		int i = 0;
+		for (; i < len - 3; i += 4) {
+			y[yOff+i]   += alpha * x[xOff+i];
+			y[yOff+i+1] += alpha * x[xOff+i+1];
+			y[yOff+i+2] += alpha * x[xOff+i+2];
+			y[yOff+i+3] += alpha * x[xOff+i+3];
+		}
+		for (; i < len; i++) {
+			y[yOff+i] += alpha * x[xOff+i];
+		}
+	}
+
+	/**
+	 * Matrix-vector product
+	 * <pre>
+	 * y = A * x
+	 * </pre>
+	 * @param A   a <tt>l1</tt>-by-<tt>l2</tt> matrix
+	 * @param x   a vector of length <tt>l2</tt>
+	 * @param y   [on return] a vector of length <tt>l1</tt>
+	 */
+	public static void gemv(final double[][] A, final double[] x,
+							final double[] y, int l1, int l2) {
+		assert ArrUtils.hasShape(A, l1, l2);
+		assert x != y;
+
+		for (int i = 0; i < l1; i++) {
+			y[i] = dot(A[i], 0, x, 0, l2);
+		}
+	}
+
+	/**
+	 * Transposed matrix-vector product
+	 * <pre>
+	 * y' = x' * A
+	 * </pre>
+	 * computed row by row of <tt>A</tt>.
+	 * @param x   a vector of length <tt>l1</tt>
+	 * @param A   a <tt>l1</tt>-by-<tt>l2</tt> matrix
+	 * @param y   [on return] a vector of length <tt>l2</tt>
+	 */
+	public static void gemvTransposed(final double[] x, final double[][] A,
+									  final double[] y, int l1, int l2) {
+		assert ArrUtils.hasShape(A, l1, l2);
+		assert x != y;
+
+		for (int j = 0; j < l2; j++) {
+			y[j] = 0.;
+		}
+		for (int i = 0; i < l1; i++) {
+			axpy(x[i], A[i], y, 0, l2);
+		}
+	}
+
+	/**
+	 * Matrix-matrix product
+	 * <pre>
+	 * C = A * B
+	 * </pre>
+	 * @param A   a <tt>l1</tt>-by-<tt>l2</tt> matrix
+	 * @param B   a <tt>l2</tt>-by-<tt>l3</tt> matrix
+	 * @param C   [on return] a <tt>l1</tt>-by-<tt>l3</tt> matrix, must not be
+	 *            <tt>A</tt> or <tt>B</tt>
+	 */
+	public static void gemm(final double[][] A, final double[][] B,
+							final double[][] C, int l1, int l2, int l3) {
+		gemm(1., A, B, 0., C, l1, l2, l3);
+	}
+
+	/**
+	 * General matrix-matrix product
+	 * <pre>
+	 * C = alpha * A * B + beta * C
+	 * </pre>
+	 * The product is computed by blocks of {@link #BLOCK_SIZE}, in the
+	 * i-k-j order so that the innermost loop is an axpy on rows of
+	 * <tt>B</tt> and <tt>C</tt>.
+	 * @param alpha  scalar factor of the product
+	 * @param A      a <tt>l1</tt>-by-<tt>l2</tt> matrix
+	 * @param B      a <tt>l2</tt>-by-<tt>l3</tt> matrix
+	 * @param beta   scalar factor of <tt>C</tt>
+	 * @param C      a <tt>l1</tt>-by-<tt>l3</tt> matrix, must not be
+	 *               <tt>A</tt> or <tt>B</tt>
+	 */
+	public static void gemm(double alpha, final double[][] A,
+							final double[][] B, double beta,
+							final double[][] C, int l1, int l2, int l3) {
+		assert ArrUtils.hasShape(A, l1, l2);
+		assert ArrUtils.hasShape(B, l2, l3);
+		assert ArrUtils.hasShape(C, l1, l3);
+		assert C != A && C != B;
+
+		scale(beta, C, l1, l3);
+		for (int ii = 0; ii < l1; ii += BLOCK_SIZE) {
+			final int iEnd = Math.min(ii + BLOCK_SIZE, l1);
+			for (int kk = 0; kk < l2; kk += BLOCK_SIZE) {
+				final int kEnd = Math.min(kk + BLOCK_SIZE, l2);
+				for (int jj = 0; jj < l3; jj += BLOCK_SIZE) {
+					final int len = Math.min(jj + BLOCK_SIZE, l3) - jj;
+					for (int i = ii; i < iEnd; i++) {
+						final double[] Ai = A[i];
+						final double[] Ci = C[i];
+						for (int k = kk; k < kEnd; k++) {
+							final double a = alpha * Ai[k];
+							if (a != 0.) {
+								axpy(a, B[k], Ci, jj, len);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rank-one update
+	 * <pre>
+	 * A = A + alpha * x * y'
+	 * </pre>
+	 * @param alpha  scalar factor
+	 * @param x      a vector of length <tt>l1</tt>
+	 * @param y      a vector of length <tt>l2</tt>
+	 * @param A      a <tt>l1</tt>-by-<tt>l2</tt> matrix, updated in place
+	 */
+	public static void ger(double alpha, final double[] x, final double[] y,
+						   final double[][] A, int l1, int l2) {
+		assert ArrUtils.hasShape(A, l1, l2);
+
+		for (int i = 0; i < l1; i++) {
+			final double a = alpha * x[i];
+			if (a != 0.) {
+				axpy(a, y, A[i], 0, l2);
+			}
+		}
+	}
+
+	/**
+	 * Symmetric rank-k update
+	 * <pre>
+	 * C = alpha * A * A' + beta * C
+	 * </pre>
+	 * Only the lower triangle is computed, by blocks, then mirrored in the
+	 * upper triangle. Each entry is a dot product of two rows of <tt>A</tt>.
+	 * @param alpha  scalar factor of the product
+	 * @param A      a <tt>n</tt>-by-<tt>k</tt> matrix
+	 * @param beta   scalar factor of <tt>C</tt>
+	 * @param C      a symmetric <tt>n</tt>-by-<tt>n</tt> matrix, updated in
+	 *               place
+	 */
+	public static void syrk(double alpha, final double[][] A, double beta,
+							final double[][] C, int n, int k) {
+		assert ArrUtils.hasShape(A, n, k);
+		assert ArrUtils.hasShape(C, n, n);
+		assert C != A;
+
+		for (int ii = 0; ii < n; ii += BLOCK_SIZE) {
+			final int iEnd = Math.min(ii + BLOCK_SIZE, n);
+			for (int jj = 0; jj <= ii; jj += BLOCK_SIZE) {
+				final int jEnd = Math.min(jj + BLOCK_SIZE, n);
+				for (int i = ii; i < iEnd; i++) {
+					final double[] Ai = A[i];
+					final double[] Ci = C[i];
+					final int jMax = Math.min(jEnd, i + 1);
+					for (int j = jj; j < jMax; j++) {
+						Ci[j] = beta * Ci[j] + alpha * dot(Ai, 0, A[j], 0, k);
+					}
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				C[i][j] = C[j][i];
+			}
+		}
+	}
+
+	/**
+	 * Transposes a matrix by blocks, so that both <tt>src</tt> and
+	 * <tt>dest</tt> stay in cache.
+	 * @param src   a <tt>l1</tt>-by-<tt>l2</tt> matrix
+	 * @param dest  [on return] the <tt>l2</tt>-by-<tt>l1</tt> transpose of
+	 *              <tt>src</tt>, must not be <tt>src</tt>
+	 */
+	public static void transpose(final double[][] src, final double[][] dest,
+								 int l1, int l2) {
+		assert ArrUtils.hasShape(src, l1, l2);
+		assert ArrUtils.hasShape(dest, l2, l1);
+		assert src != dest;
+
+		final int bs = BLOCK_SIZE / 2;
+		for (int ii = 0; ii < l1; ii += bs) {
+			final int iEnd = Math.min(ii + bs, l1);
+			for (int jj = 0; jj < l2; jj += bs) {
+				final int jEnd = Math.min(jj + bs, l2);
+				for (int i = ii; i < iEnd; i++) {
+					final double[] srcI = src[i];
+					for (int j = jj; j < jEnd; j++) {
+						dest[j][i] = srcI[j];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Blocked Cholesky decomposition in place. On call, the diagonal and the
+	 * lower triangle of <tt>A</tt> hold those of a symmetric positive definite
+	 * matrix, on return they hold the lower triangular factor <tt>G</tt> such
+	 * that
+	 * <pre>
+	 * A = G * G'
+	 * </pre>
+	 * The upper triangle is not touched. If the matrix is not positive
+	 * definite, the method stops at the first non positive pivot and returns
+	 * false, leaving <tt>A</tt> partially decomposed.
+	 * @param A  a <tt>n</tt>-by-<tt>n</tt> matrix
+	 * @param n  the dimension of the matrix
+	 * @return true if the matrix was positive definite
+	 */
+	public static boolean cholesky(final double[][] A, int n) {
+		assert ArrUtils.hasShape(A, n, n);
+
+		for (int kb = 0; kb < n; kb += BLOCK_SIZE) {
+			final int kEnd = Math.min(kb + BLOCK_SIZE, n);
+			// Factorize the diagonal block
+			for (int i = kb; i < kEnd; i++) {
+				final double[] Ai = A[i];
+				for (int j = kb; j < i; j++) {
+					Ai[j] = (Ai[j] - dot(Ai, kb, A[j], kb, j - kb)) / A[j][j];
+				}
+				final double d = Ai[i] - dot(Ai, kb, Ai, kb, i - kb);
+				if (d <= 0.) {
+					return false;
+				}
+				Ai[i] = Math.sqrt(d);
+			}
+			// Solve the panel below the diagonal block
+			for (int i = kEnd; i < n; i++) {
+				final double[] Ai = A[i];
+				for (int j = kb; j < kEnd; j++) {
+					Ai[j] = (Ai[j] - dot(Ai, kb, A[j], kb, j - kb)) / A[j][j];
+				}
+			}
+			// Update the trailing lower triangle with the panel
+			for (int i = kEnd; i < n; i++) {
+				final double[] Ai = A[i];
+				for (int j = kEnd; j <= i; j++) {
+					Ai[j] -= dot(Ai, kb, A[j], kb, kEnd - kb);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Blocked LU decomposition with partial pivoting, in place. On return,
+	 * the rows of <tt>A</tt> have been permuted (the row arrays are swapped,
+	 * not copied) and hold the unit lower triangular factor <tt>L</tt> below
+	 * the diagonal and the upper triangular factor <tt>U</tt> on and above it,
+	 * so that
+	 * <pre>
+	 * A(piv,:) = L * U
+	 * </pre>
+	 * @param A    a <tt>n</tt>-by-<tt>n</tt> matrix, decomposed in place
+	 * @param piv  [on return] the row permutation, of length <tt>n</tt>
+	 * @param n    the dimension of the matrix
+	 * @return false if the matrix is singular, or numerically singular, i.e.
+	 *         a pivot is not greater than <tt>n * eps * ||A||_inf</tt> in
+	 *         magnitude, as for {@link DenseMatrix#luInPlace(int[])}, in
+	 *         which case the decomposition must not be used
+	 */
+	public static boolean lu(final double[][] A, final int[] piv, int n) {
+		assert ArrUtils.hasShape(A, n, n);
+		assert piv.length == n;
+
+		double norm = 0.;
+		for (int i = 0; i < n; i++) {
+			double s = 0.;
+			for (int j = 0; j < n; j++) {
+				s += Math.abs(A[i][j]);
+			}
+			norm = Math.max(norm, s);
+		}
+		final double tol = n * Utils.MACHEPS * norm;
+		for (int i = 0; i < n; i++) {
+			piv[i] = i;
+		}
+		boolean nonsingular = true;
+		for (int kb = 0; kb < n; kb += BLOCK_SIZE) {
+			final int kEnd = Math.min(kb + BLOCK_SIZE, n);
+			// Factorize the panel made of columns kb..kEnd-1
+			for (int k = kb; k < kEnd; k++) {
+				int p = k;
+				for (int i = k + 1; i < n; i++) {
+					if (Math.abs(A[i][k]) > Math.abs(A[p][k])) {
+						p = i;
+					}
+				}
+				if (p != k) {
+					final double[] rowTmp = A[p]; A[p] = A[k]; A[k] = rowTmp;
+					final int pivTmp = piv[p]; piv[p] = piv[k]; piv[k] = pivTmp;
+				}
+				final double[] Ak = A[k];
+				if (Math.abs(Ak[k]) <= tol) {
+					nonsingular = false;
+					continue;
+				}
+				for (int i = k + 1; i < n; i++) {
+					final double[] Ai = A[i];
+					final double l = Ai[k] / Ak[k];
+					Ai[k] = l;
+					for (int j = k + 1; j < kEnd; j++) {
+						Ai[j] -= l * Ak[j];
+					}
+				}
+			}
+			if (kEnd == n) {
+				break;
+			}
+			// Compute the block row of U : U12 = L11^-1 * A12
+			for (int k = kb; k < kEnd; k++) {
+				final double[] Ak = A[k];
+				for (int i = k + 1; i < kEnd; i++) {
+					axpy(-A[i][k], Ak, A[i], kEnd, n - kEnd);
+				}
+			}
+			// Update the trailing matrix : A22 -= L21 * U12
+			for (int i = kEnd; i < n; i++) {
+				final double[] Ai = A[i];
+				for (int k = kb; k < kEnd; k++) {
+					final double l = Ai[k];
+					if (l != 0.) {
+						axpy(-l, A[k], Ai, kEnd, n - kEnd);
+					}
+				}
+			}
+		}
+		return nonsingular;
+	}
+
+	/**
+	 * Solves <tt>A * X = B</tt> given the LU decomposition of <tt>A</tt>
+	 * computed by {@link #lu(double[][], int[], int)}.
+	 * @param LU    the decomposed <tt>n</tt>-by-<tt>n</tt> matrix
+	 * @param piv   the row permutation
+	 * @param B     a <tt>n</tt>-by-<tt>nrhs</tt> matrix
+	 * @param X     [on return] a <tt>n</tt>-by-<tt>nrhs</tt> matrix, may
+	 *              not be <tt>B</tt>
+	 */
+	public static void luSolve(final double[][] LU, final int[] piv,
+							   final double[][] B, final double[][] X,
+							   int n, int nrhs) {
+		assert ArrUtils.hasShape(LU, n, n);
+		assert ArrUtils.hasShape(B, n, nrhs);
+		assert ArrUtils.hasShape(X, n, nrhs);
+		assert B != X;
+
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(B[piv[i]], 0, X[i], 0, nrhs);
+		}
+		// Solve L * Y = B(piv,:)
+		for (int i = 0; i < n; i++) {
+			final double[] LUi = LU[i];
+			final double[] Xi = X[i];
+			for (int k = 0; k < i; k++) {
+				if (LUi[k] != 0.) {
+					axpy(-LUi[k], X[k], Xi, 0, nrhs);
+				}
+			}
+		}
+		// Solve U * X = Y
+		for (int i = n - 1; i >= 0; i--) {
+			final double[] LUi = LU[i];
+			final double[] Xi = X[i];
+			for (int k = i + 1; k < n; k++) {
+				if (LUi[k] != 0.) {
+					axpy(-LUi[k], X[k], Xi, 0, nrhs);
+				}
+			}
+			final double invDiag = 1. / LUi[i];
+			for (int j = 0; j < nrhs; j++) {
+				Xi[j] *= invDiag;
+			}
+		}
+	}
+
+	/**
+	 * Solves <tt>A * x = b</tt> given the LU decomposition of <tt>A</tt>
+	 * computed by {@link #lu(double[][], int[], int)}.
+	 * @param LU    the decomposed <tt>n</tt>-by-<tt>n</tt> matrix
+	 * @param piv   the row permutation
+	 * @param b     a vector of length <tt>n</tt>
+	 * @param x     [on return] a vector of length <tt>n</tt>, may not be
+	 *              <tt>b</tt>
+	 */
+	public static void luSolve(final double[][] LU, final int[] piv,
+							   final double[] b, final double[] x, int n) {
+		assert ArrUtils.hasShape(LU, n, n);
+		assert b != x;
+
+		for (int i = 0; i < n; i++) {
+			x[i] = b[piv[i]];
+		}
+		for (int i = 0; i < n; i++) {
+			x[i] -= dot(LU[i], 0, x, 0, i);
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			x[i] = (x[i] - dot(LU[i], i + 1, x, i + 1, n - i - 1)) / LU[i][i];
+		}
+	}
+
+	/**
+	 * Solves <tt>L * x = b</tt> by forward substitution, where <tt>L</tt> is
+	 * lower triangular (its upper triangle is ignored).
+	 * @param L   a <tt>n</tt>-by-<tt>n</tt> lower triangular matrix
+	 * @param b   a vector of length <tt>n</tt>
+	 * @param x   [on return] a vector of length <tt>n</tt>, may be <tt>b</tt>
+	 */
+	public static void solveLower(final double[][] L, final double[] b,
+								  final double[] x, int n) {
+		assert ArrUtils.hasShape(L, n, n);
+
+		for (int i = 0; i < n; i++) {
+			x[i] = (b[i] - dot(L[i], 0, x, 0, i)) / L[i][i];
+		}
+	}
+
+	/**
+	 * Solves <tt>L' * x = b</tt> by back substitution, where <tt>L</tt> is
+	 * lower triangular (its upper triangle is ignored). The columns of
+	 * <tt>L'</tt> are accessed as rows of <tt>L</tt>.
+	 * @param L   a <tt>n</tt>-by-<tt>n</tt> lower triangular matrix
+	 * @param b   a vector of length <tt>n</tt>
+	 * @param x   [on return] a vector of length <tt>n</tt>, may be <tt>b</tt>
+	 */
+	public static void solveLowerTransposed(final double[][] L,
+											final double[] b,
+											final double[] x, int n) {
+		assert ArrUtils.hasShape(L, n, n);
+
+		if (x != b) {
+			System.arraycopy(b, 0, x, 0, n);
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			final double[] Li = L[i];
+			x[i] /= Li[i];
+			axpy(-x[i], Li, x, 0, i);
+		}
+	}
+
+	/**
+	 * Solves <tt>U * x = b</tt> by back substitution, where <tt>U</tt> is
+	 * upper triangular (its lower triangle is ignored).
+	 * @param U   a <tt>n</tt>-by-<tt>n</tt> upper triangular matrix
+	 * @param b   a vector of length <tt>n</tt>
+	 * @param x   [on return] a vector of length <tt>n</tt>, may be <tt>b</tt>
+	 */
+	public static void solveUpper(final double[][] U, final double[] b,
+								  final double[] x, int n) {
+		assert ArrUtils.hasShape(U, n, n);
+
+		for (int i = n - 1; i >= 0; i--) {
+			x[i] = (b[i] - dot(U[i], i + 1, x, i + 1, n - i - 1)) / U[i][i];
+		}
+	}
+
+	/**
+	 * Solves <tt>A * x = b</tt> given the Cholesky factor <tt>G</tt> of the
+	 * symmetric positive definite matrix <tt>A</tt>, as computed by
+	 * {@link #cholesky(double[][], int)}.
+	 * @param G   the lower triangular <tt>n</tt>-by-<tt>n</tt> factor
+	 * @param b   a vector of length <tt>n</tt>
+	 * @param x   [on return] a vector of length <tt>n</tt>, may be <tt>b</tt>
+	 */
+	public static void choleskySolve(final double[][] G, final double[] b,
+									 final double[] x, int n) {
+		solveLower(G, b, x, n);
+		solveLowerTransposed(G, x, x, n);
+	}
+
+	/**
+	 * Multiplies all the entries of a <tt>l1</tt>-by-<tt>l2</tt> matrix by
+	 * <tt>alpha</tt>, in place.
+	 */
+	public static void scale(double alpha, final double[][] A, int l1, int l2) {
+		assert ArrUtils.hasShape(A, l1, l2);
+
+		if (alpha == 1.) {
+			return;
+		}
+		for (int i = 0; i < l1; i++) {
+			final double[] Ai = A[i];
+			if (alpha == 0.) {
+				for (int j = 0; j < l2; j++) {
+					Ai[j] = 0.;
+				}
+			} else {
+				for (int j = 0; j < l2; j++) {
+					Ai[j] *= alpha;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the softmax <tt>p_i = exp(alpha a_i) / sum_j exp(alpha a_j)</tt>
+	 * of the first <tt>n</tt> components of <tt>a</tt>. The maximum of
+	 * <tt>alpha a</tt> is subtracted before exponentiating, so that the
+	 * exponentials neither overflow nor all underflow to 0, whatever the scale
+	 * of <tt>a</tt>.
+	 * @param alpha  a positive scale, such as an inverse temperature
+	 * @param a      the logits
+	 * @param p      [on return] the softmax of alpha a, may be a
+	 * @param n      the number of components
+	 * @return the log normalizer <tt>log sum_j exp(alpha a_j)</tt>, so that
+	 *         <tt>log p_i = alpha a_i - </tt> the returned value
+	 */
+	public static double softmax(double alpha, final double[] a,
+								 final double[] p, int n) {
+		assert alpha > 0.;
+		assert a.length >= n && p.length >= n && n > 0;
+
+		double max = alpha * a[0];
+		for (int i = 1; i < n; i++) {
+			if (alpha * a[i] > max) {
+				max = alpha * a[i];
+			}
+		}
+		// The largest term is exp(0) = 1, so sum is within [1,n]
+		double sum = 0.;
+		for (int i = 0; i < n; i++) {
+			p[i] = Math.exp(alpha * a[i] - max);
+			sum += p[i];
+		}
+		final double invSum = 1. / sum;
+		for (int i = 0; i < n; i++) {
+			p[i] *= invSum;
+		}
+		return max + Math.log(sum);
+	}
+}
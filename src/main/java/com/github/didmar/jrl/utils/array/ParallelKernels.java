@@ -0,0 +1,561 @@
+package com.github.didmar.jrl.utils.array;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Multi-threaded variants of the {@link DenseMatrix} operations, run on a
+ * fixed pool of daemon threads shared by all the callers. Each operation
+ * falls back on the sequential {@link DenseMatrix} code when the problem is
+ * too small for the parallelism to pay off, that is when the dimension is
+ * below {@link #MIN_CUBIC_SIZE} for the O(n^3) operations (products and
+ * factorizations), or when the number of entries is below
+ * {@link #MIN_QUADRATIC_ENTRIES} for the O(n^2) ones (matrix-vector
+ * products, rank-one updates and triangular solves).
+ * <p>
+ * Both thresholds can be set with the <tt>jrl.parallel.minCubicSize</tt> and
+ * <tt>jrl.parallel.minQuadraticEntries</tt> system properties, and the
+ * number of threads, including the calling one, with
+ * <tt>jrl.parallel.threads</tt>.
+ *
+ * @author Didier Marin
+ */
+public final class ParallelKernels {
+
+	/** Minimum dimension for the O(n^3) operations to run in parallel */
+	public static final int MIN_CUBIC_SIZE
+		= Integer.getInteger("jrl.parallel.minCubicSize", 128);
+	/** Minimum number of entries for the O(n^2) operations to run in
+	 * parallel */
+	public static final int MIN_QUADRATIC_ENTRIES
+		= Integer.getInteger("jrl.parallel.minQuadraticEntries", 1 << 18);
+	/** Number of threads which run an operation, including the calling
+	 * thread */
+	public static final int NB_THREADS = Math.max(1, Integer.getInteger(
+			"jrl.parallel.threads", Runtime.getRuntime().availableProcessors()));
+
+	/** Block size of the factorizations and triangular solves */
+	private static final int BS = MatKernels.BLOCK_SIZE;
+
+	/** Shared pool of NB_THREADS-1 threads, created on first use */
+	private static volatile @Nullable ExecutorService pool = null;
+
+	private ParallelKernels() {
+		// Static methods only
+	}
+
+	/**
+	 * Returns the pool shared by the parallel kernels, whose threads are
+	 * daemon threads.
+	 */
+	private static ExecutorService getPool() {
+		ExecutorService p = pool;
+		if(p == null) {
+			synchronized (ParallelKernels.class) {
+				p = pool;
+				if(p == null) {
+					p = Executors.newFixedThreadPool(NB_THREADS - 1,
+							new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r,
+									"ParallelKernels-"+count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+					pool = p;
+				}
+			}
+		}
+		return p;
+	}
+
+	//---[ Parallel loop ]------------------------------------------------------
+
+	/** Body of a parallel loop over a range of indices */
+	private interface RangeBody {
+		/** Runs the iterations lo (inclusive) to hi (exclusive) */
+		void run(int lo, int hi);
+	}
+
+	/**
+	 * A loop over a range split in chunks, which the calling thread and the
+	 * pool threads claim one at a time until none is left. Since the calling
+	 * thread runs the chunks that no pool thread claimed, the loop completes
+	 * even when the pool is busy, e.g. when called from one of its threads.
+	 */
+	private static final class RangeLoop implements Runnable {
+		private final RangeBody body;
+		private final int lo;
+		private final int hi;
+		private final int chunk;
+		private final int nbChunks;
+		/** Next chunk to claim */
+		private final AtomicInteger next = new AtomicInteger();
+		/** Counts down the chunks which are done */
+		private final CountDownLatch done;
+		/** First exception thrown by the body, if any */
+		private volatile @Nullable Throwable failure = null;
+
+		RangeLoop(RangeBody body, int lo, int hi, int chunk) {
+			this.body = body;
+			this.lo = lo;
+			this.hi = hi;
+			this.chunk = chunk;
+			nbChunks = (hi - lo + chunk - 1) / chunk;
+			done = new CountDownLatch(nbChunks);
+		}
+
+		public void run() {
+			int c;
+			while((c = next.getAndIncrement()) < nbChunks) {
+				try {
+					if(failure == null) {
+						final int start = lo + c * chunk;
+						body.run(start, Math.min(start + chunk, hi));
+					}
+				} catch (Throwable t) {
+					failure = t;
+				} finally {
+					done.countDown();
+				}
+			}
+		}
+
+		/** Waits for all the chunks, then rethrows the exception of the body,
+		 * if any */
+		void await() {
+			boolean interrupted = false;
+			while(true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					// The pool threads may still write the result
+					interrupted = true;
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			final Throwable t = failure;
+			if(t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if(t instanceof Error) {
+				throw (Error) t;
+			}
+		}
+	}
+
+	/**
+	 * Runs the body over [lo,hi) split in chunks, so that each thread gets a
+	 * few of them to balance uneven iterations.
+	 */
+	private static void parallelFor(int lo, int hi, RangeBody body) {
+		if(hi <= lo) {
+			return;
+		}
+		final int chunk = Math.max(1, (hi - lo) / (4 * NB_THREADS));
+		if(hi - lo <= chunk) {
+			body.run(lo, hi);
+			return;
+		}
+		final RangeLoop loop = new RangeLoop(body, lo, hi, chunk);
+		final ExecutorService p = getPool();
+		for(int i=Math.min(NB_THREADS, loop.nbChunks)-1; i>0; i--) {
+			p.execute(loop);
+		}
+		loop.run();
+		loop.await();
+	}
+
+	private static boolean isCubicParallel(int n) {
+		return n >= MIN_CUBIC_SIZE && NB_THREADS > 1;
+	}
+
+	private static boolean isQuadraticParallel(int rows, int cols) {
+		return (long) rows * cols >= MIN_QUADRATIC_ENTRIES && NB_THREADS > 1;
+	}
+
+	//---[ Products ]-----------------------------------------------------------
+
+	/**
+	 * Matrix-matrix product <tt>C = A * B</tt>, with rows of <tt>C</tt>
+	 * computed in parallel.
+	 * @see DenseMatrix#multiply(DenseMatrix, DenseMatrix)
+	 */
+	public static void multiply(final DenseMatrix A, final DenseMatrix B,
+			final DenseMatrix C) {
+		if(!isCubicParallel(Math.max(A.rows(), Math.max(A.cols(), B.cols())))) {
+			A.multiply(B, C);
+			return;
+		}
+		parallelFor(0, (A.rows() + BS - 1) / BS, new RangeBody() {
+			public void run(int lo, int hi) {
+				final int i0 = lo * BS;
+				final int nRows = Math.min(hi * BS, A.rows()) - i0;
+				A.view(i0, 0, nRows, A.cols()).multiply(B,
+						C.view(i0, 0, nRows, C.cols()));
+			}
+		});
+	}
+
+	/**
+	 * Transposed matrix-matrix product <tt>C = A' * B</tt>, with rows of
+	 * <tt>C</tt> computed in parallel.
+	 * @see DenseMatrix#transposeMultiply(DenseMatrix, DenseMatrix)
+	 */
+	public static void transposeMultiply(final DenseMatrix A,
+			final DenseMatrix B, final DenseMatrix C) {
+		if(!isCubicParallel(Math.max(A.rows(), Math.max(A.cols(), B.cols())))) {
+			A.transposeMultiply(B, C);
+			return;
+		}
+		parallelFor(0, (A.cols() + BS - 1) / BS, new RangeBody() {
+			public void run(int lo, int hi) {
+				final int j0 = lo * BS;
+				final int nCols = Math.min(hi * BS, A.cols()) - j0;
+				A.view(0, j0, A.rows(), nCols).transposeMultiply(B,
+						C.view(j0, 0, nCols, C.cols()));
+			}
+		});
+	}
+
+	/**
+	 * Matrix-vector product <tt>y = A * x</tt>.
+	 * @see DenseMatrix#multiply(double[], double[])
+	 */
+	public static void multiply(final DenseMatrix A, final double[] x,
+			final double[] y) {
+		if(!isQuadraticParallel(A.rows(), A.cols())) {
+			A.multiply(x, y);
+			return;
+		}
+		final double[] data = A.data();
+		final int offset = A.offset();
+		final int stride = A.stride();
+		final int cols = A.cols();
+		parallelFor(0, A.rows(), new RangeBody() {
+			public void run(int lo, int hi) {
+				for(int i=lo; i<hi; i++) {
+					y[i] = MatKernels.dot(data, offset + i*stride, x, 0, cols);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Transposed matrix-vector product <tt>y' = x' * A</tt>, with ranges of
+	 * columns computed in parallel.
+	 * @see DenseMatrix#transposeMultiply(double[], double[])
+	 */
+	public static void transposeMultiply(final DenseMatrix A,
+			final double[] x, final double[] y) {
+		if(!isQuadraticParallel(A.rows(), A.cols())) {
+			A.transposeMultiply(x, y);
+			return;
+		}
+		final double[] data = A.data();
+		final int offset = A.offset();
+		final int stride = A.stride();
+		final int rows = A.rows();
+		parallelFor(0, (A.cols() + BS - 1) / BS, new RangeBody() {
+			public void run(int lo, int hi) {
+				final int j0 = lo * BS;
+				final int j1 = Math.min(hi * BS, A.cols());
+				for(int j=j0; j<j1; j++) {
+					y[j] = 0.;
+				}
+				for(int i=0; i<rows; i++) {
+					DenseVector.axpy(x[i], data, offset + i*stride + j0,
+							y, j0, j1 - j0);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Rank-one update <tt>A = A + alpha * x * y'</tt>, with rows updated in
+	 * parallel.
+	 * @see DenseMatrix#ger(double, double[], double[])
+	 */
+	public static void ger(final DenseMatrix A, final double alpha,
+			final double[] x, final double[] y) {
+		if(!isQuadraticParallel(A.rows(), A.cols())) {
+			A.ger(alpha, x, y);
+			return;
+		}
+		final double[] data = A.data();
+		final int offset = A.offset();
+		final int stride = A.stride();
+		final int cols = A.cols();
+		parallelFor(0, A.rows(), new RangeBody() {
+			public void run(int lo, int hi) {
+				for(int i=lo; i<hi; i++) {
+					final double a = alpha * x[i];
+					if(a != 0.) {
+						DenseVector.axpy(a, y, 0, data, offset + i*stride, cols);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sherman-Morrison update of the inverse matrix <tt>Ainv</tt>, so that it
+	 * becomes the inverse of <tt>A + u * v'</tt>.
+	 * @see DenseMatrix#shermanMorrison(double[], double[], double[], double[])
+	 */
+	public static void shermanMorrison(final DenseMatrix Ainv,
+			final double[] u, final double[] v,
+			final double[] tmp1, final double[] tmp2) {
+		if(!isQuadraticParallel(Ainv.rows(), Ainv.cols())) {
+			Ainv.shermanMorrison(u, v, tmp1, tmp2);
+			return;
+		}
+		multiply(Ainv, u, tmp1);
+		transposeMultiply(Ainv, v, tmp2);
+		final double tmpScal = MatKernels.dot(tmp2, u, Ainv.rows());
+		if(tmpScal == 0.) {
+			throw new ArithmeticException("Division by zero");
+		}
+		ger(Ainv, -1. / (1. + tmpScal), tmp1, tmp2);
+	}
+
+	//---[ Factorizations ]-----------------------------------------------------
+
+	/**
+	 * Blocked Cholesky decomposition in place, where the panel solve and the
+	 * trailing update of each block column are done in parallel.
+	 * @see DenseMatrix#choleskyInPlace()
+	 */
+	public static boolean choleskyInPlace(final DenseMatrix A) {
+		assert A.rows() == A.cols();
+
+		final int n = A.rows();
+		if(!isCubicParallel(n)) {
+			return A.choleskyInPlace();
+		}
+		final double[] data = A.data();
+		final int offset = A.offset();
+		final int stride = A.stride();
+		for(int kb=0; kb<n; kb+=BS) {
+			final int k0 = kb;
+			final int kEnd = Math.min(kb+BS, n);
+			// Factorize the diagonal block
+			final boolean positive = A.view(kb, kb, kEnd-kb, kEnd-kb)
+					.choleskyInPlace();
+			if(!positive) {
+				return false;
+			}
+			// Solve the panel below the diagonal block, row by row
+			parallelFor(kEnd, n, new RangeBody() {
+				public void run(int lo, int hi) {
+					for(int i=lo; i<hi; i++) {
+						final int rowI = offset + i*stride;
+						for(int j=k0; j<kEnd; j++) {
+							final int rowJ = offset + j*stride;
+							data[rowI+j] = (data[rowI+j] - MatKernels.dot(data,
+									rowI+k0, data, rowJ+k0, j-k0))
+									/ data[rowJ+j];
+						}
+					}
+				}
+			});
+			// Update the trailing lower triangle with the panel
+			parallelFor(kEnd, n, new RangeBody() {
+				public void run(int lo, int hi) {
+					for(int i=lo; i<hi; i++) {
+						final int rowI = offset + i*stride;
+						for(int j=kEnd; j<=i; j++) {
+							data[rowI+j] -= MatKernels.dot(data, rowI+k0,
+									data, offset + j*stride + k0, kEnd-k0);
+						}
+					}
+				}
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Blocked LU decomposition with partial pivoting in place, where the
+	 * block row of <tt>U</tt> and the trailing update of each block column
+	 * are computed in parallel. The result is the same as
+	 * {@link DenseMatrix#luInPlace(int[])}.
+	 */
+	public static boolean luInPlace(final DenseMatrix A, final int[] piv) {
+		assert A.rows() == A.cols();
+		assert piv.length == A.rows();
+
+		final int n = A.rows();
+		if(!isCubicParallel(n)) {
+			return A.luInPlace(piv);
+		}
+		final double[] data = A.data();
+		final int offset = A.offset();
+		final int stride = A.stride();
+		final double tol = A.pivotTolerance();
+		for(int i=0; i<n; i++) {
+			piv[i] = i;
+		}
+		boolean nonsingular = true;
+		for(int kb=0; kb<n; kb+=BS) {
+			final int k0 = kb;
+			final int kEnd = Math.min(kb+BS, n);
+			// Factorize the panel made of columns kb..kEnd-1, sequentially
+			for(int k=kb; k<kEnd; k++) {
+				int p = k;
+				for(int i=k+1; i<n; i++) {
+					if(Math.abs(data[offset + i*stride + k])
+							> Math.abs(data[offset + p*stride + k])) {
+						p = i;
+					}
+				}
+				final int rowK = offset + k*stride;
+				if(p != k) {
+					final int rowP = offset + p*stride;
+					for(int j=0; j<n; j++) {
+						final double tmp = data[rowP+j];
+						data[rowP+j] = data[rowK+j];
+						data[rowK+j] = tmp;
+					}
+					final int pivTmp = piv[p]; piv[p] = piv[k]; piv[k] = pivTmp;
+				}
+				final double pivot = data[rowK+k];
+				if(Math.abs(pivot) <= tol) {
+					nonsingular = false;
+					continue;
+				}
+				for(int i=k+1; i<n; i++) {
+					final int rowI = offset + i*stride;
+					final double l = data[rowI+k] / pivot;
+					data[rowI+k] = l;
+					if(l != 0.) {
+						DenseVector.axpy(-l, data, rowK+k+1, data, rowI+k+1,
+								kEnd-k-1);
+					}
+				}
+			}
+			if(kEnd == n) {
+				break;
+			}
+			// Compute the block row of U : U12 = L11^-1 * A12, by ranges of
+			// columns
+			parallelFor(0, (n - kEnd + BS - 1) / BS, new RangeBody() {
+				public void run(int lo, int hi) {
+					final int j0 = kEnd + lo * BS;
+					final int len = Math.min(kEnd + hi * BS, n) - j0;
+					for(int k=k0; k<kEnd; k++) {
+						final int rowK = offset + k*stride;
+						for(int i=k+1; i<kEnd; i++) {
+							final int rowI = offset + i*stride;
+							final double l = data[rowI+k];
+							if(l != 0.) {
+								DenseVector.axpy(-l, data, rowK+j0,
+										data, rowI+j0, len);
+							}
+						}
+					}
+				}
+			});
+			// Update the trailing matrix : A22 -= L21 * U12, by rows
+			parallelFor(kEnd, n, new RangeBody() {
+				public void run(int lo, int hi) {
+					for(int i=lo; i<hi; i++) {
+						final int rowI = offset + i*stride;
+						for(int k=k0; k<kEnd; k++) {
+							final double l = data[rowI+k];
+							if(l != 0.) {
+								DenseVector.axpy(-l, data, offset + k*stride + kEnd,
+										data, rowI+kEnd, n-kEnd);
+							}
+						}
+					}
+				}
+			});
+		}
+		return nonsingular;
+	}
+
+	//---[ Triangular solves ]--------------------------------------------------
+
+	/**
+	 * Solves <tt>A * x = b</tt>, where <tt>LU</tt> holds the LU decomposition
+	 * of <tt>A</tt>. Both triangular solves proceed by blocks of rows : once
+	 * a block of unknowns is solved, its contribution is removed from all
+	 * the remaining rows in parallel.
+	 * @see DenseMatrix#luSolve(int[], double[], double[])
+	 */
+	public static void luSolve(final DenseMatrix LU, final int[] piv,
+			final double[] b, final double[] x) {
+		assert LU.rows() == LU.cols();
+		assert b != x;
+
+		final int n = LU.rows();
+		if(!isQuadraticParallel(n, n)) {
+			LU.luSolve(piv, b, x);
+			return;
+		}
+		final double[] data = LU.data();
+		final int offset = LU.offset();
+		final int stride = LU.stride();
+		for(int i=0; i<n; i++) {
+			x[i] = b[piv[i]];
+		}
+		// Forward substitution with the unit lower triangular factor
+		for(int ib=0; ib<n; ib+=BS) {
+			final int i0 = ib;
+			final int iEnd = Math.min(ib+BS, n);
+			for(int i=ib; i<iEnd; i++) {
+				x[i] -= MatKernels.dot(data, offset + i*stride + ib, x, ib, i-ib);
+			}
+			parallelFor(iEnd, n, new RangeBody() {
+				public void run(int lo, int hi) {
+					for(int i=lo; i<hi; i++) {
+						x[i] -= MatKernels.dot(data, offset + i*stride + i0,
+								x, i0, iEnd-i0);
+					}
+				}
+			});
+		}
+		// Back substitution with the upper triangular factor
+		for(int iEnd=n; iEnd>0; iEnd-=BS) {
+			final int i0 = Math.max(iEnd-BS, 0);
+			final int i1 = iEnd;
+			for(int i=i1-1; i>=i0; i--) {
+				final int rowI = offset + i*stride;
+				x[i] = (x[i] - MatKernels.dot(data, rowI+i+1, x, i+1, i1-i-1))
+						/ data[rowI+i];
+			}
+			parallelFor(0, i0, new RangeBody() {
+				public void run(int lo, int hi) {
+					for(int i=lo; i<hi; i++) {
+						x[i] -= MatKernels.dot(data, offset + i*stride + i0,
+								x, i0, i1-i0);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Solves <tt>A * x = b</tt> by LU decomposition, overwriting <tt>A</tt>.
+	 * @throws ArithmeticException if the matrix is singular
+	 * @see DenseMatrix#solveInPlace(int[], double[], double[])
+	 */
+	public static void solveInPlace(final DenseMatrix A, final int[] piv,
+			final double[] b, final double[] x) {
+		if(!luInPlace(A, piv)) {
+			throw new ArithmeticException("Matrix is singular.");
+		}
+		luSolve(A, piv, b, x);
+	}
+}
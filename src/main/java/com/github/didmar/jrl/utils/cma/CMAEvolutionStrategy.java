@@ -191,7 +191,7 @@ Proceedings</I>, pp. 296-305, Springer.
  * @see #updateDistribution(double[])
  * @author Nikolaus Hansen, 1996, 2003, 2005, 2007
  */
-public class CMAEvolutionStrategy implements java.io.Serializable {
+public class CMAEvolutionStrategy implements ICMAEvolutionStrategy, java.io.Serializable {
     /**
 	 * 
 	 */
@@ -1067,8 +1067,13 @@ public class CMAEvolutionStrategy implements java.io.Serializable {
         if (countCupdatesSinceEigenupdate == 0 && flgforce < 2)
         	return;
 
+    	// fixed gap between two decompositions, reproducible
+    	if (!flgdiag && flgforce <= 0 && options.eigenUpdateGap > 0) {
+    		if (countCupdatesSinceEigenupdate < options.eigenUpdateGap)
+    			return;
+    	}
     	//           20% is usually better in terms of running *time* (only on fast to evaluate functions)
-    	if (!flgdiag && flgforce <= 0 && 
+    	else if (!flgdiag && flgforce <= 0 && 
     			(timings.eigendecomposition > 1000 + options.maxTimeFractionForEigendecomposition 
     					* (System.currentTimeMillis() - timings.starteigen)
     					|| countCupdatesSinceEigenupdate < 1. / sp.getCcov() / N / 5.)) 
@@ -1822,6 +1827,14 @@ public class CMAEvolutionStrategy implements java.io.Serializable {
         }
     }
     
+    /** evaluates to true whenever a termination criterion is met,
+     * same as <code>stopConditions.isTrue()</code>
+     * @see StopCondition#isTrue()
+     */
+    public boolean isStopConditionMet() {
+        return stopConditions.isTrue();
+    }
+
     /** ratio between length of longest and shortest axis 
      * of the distribution ellipsoid, which is the square root
      * of the largest divided by the smallest eigenvalue of the covariance matrix 
@@ -127,6 +127,37 @@ public class CMAOptions implements java.io.Serializable {
         /** only for >= 1 results are always exactly reproducible, as otherwise the update of the 
          * eigensystem is conducted depending on time measurements, defaut is 0.2 */
         public double maxTimeFractionForEigendecomposition = 0.2;
+        /** if chosen > 0, the eigendecomposition of the covariance matrix is
+         * updated exactly every eigenUpdateGap updates of the covariance matrix,
+         * instead of depending on time measurements. The sampling then costs
+         * O(N^2) per offspring while the O(N^3) decomposition is amortized over
+         * eigenUpdateGap iterations, and results are exactly reproducible.
+         * Default is 0. */
+        public long eigenUpdateGap = 0;
+
+        /** model of the covariance matrix, see {@link CovarianceModel}.
+         * Only {@link CovarianceModel#FULL} is implemented by
+         * {@link CMAEvolutionStrategy}, the other models are implemented by
+         * {@link SepCMAEvolutionStrategy} and {@link LMCMAEvolutionStrategy}.
+         * Default is FULL. */
+        public CovarianceModel covarianceModel = CovarianceModel.FULL;
+
+        /** number of direction vectors stored by the limited memory model,
+         * 0 means the default min(N, 4 + floor(3 ln N)). */
+        public int limitedMemoryVectors = 0;
+
+        /** Models of the covariance matrix of the search distribution */
+        public enum CovarianceModel {
+            /** full covariance matrix, O(N^2) memory and time per offspring */
+            FULL,
+            /** diagonal covariance matrix (sep-CMA-ES), O(N) memory and
+             * time per offspring */
+            SEPARABLE,
+            /** covariance matrix implicitly represented by a few direction
+             * vectors (LM-MA-ES), O(N m) memory and time per offspring */
+            LIMITED_MEMORY
+        }
+
         /** default is 0.1 
          */
         public double maxTimeFractionForWriteToDefaultFiles = 0.1;
@@ -160,6 +191,10 @@ public class CMAOptions implements java.io.Serializable {
             maxTimeFractionForEigendecomposition = 
                 getFirstToken(properties.getProperty("maxTimeFractionForEigendecomposition"), 
                         maxTimeFractionForEigendecomposition);
+            eigenUpdateGap = getFirstToken(properties.getProperty("eigenUpdateGap"), eigenUpdateGap);
+            if ((s = properties.getProperty("covarianceModel")) != null && !getFirstToken(s).equals(""))
+                covarianceModel = CovarianceModel.valueOf(getFirstToken(s));
+            limitedMemoryVectors = getFirstToken(properties.getProperty("limitedMemoryVectors"), limitedMemoryVectors);
             maxTimeFractionForWriteToDefaultFiles = 
                 getFirstToken(properties.getProperty("maxTimeFractionForWriteToDefaultFiles"), 
                         maxTimeFractionForWriteToDefaultFiles);
@@ -163,7 +163,6 @@ public class CMAParameters implements java.io.Serializable {
 			error("dimension must be greater than zero");
 
 		supplemented = 1;
-		locked = 1;
 
 		chiN = Math.sqrt(N)
 		* (1.0 - 1.0 / (4.0 * N) + 1.0 / (21.0 * N * N));
@@ -212,6 +211,7 @@ public class CMAParameters implements java.io.Serializable {
 		else
 			error(s); // if any prior setting does not work
 
+		locked = 1;
 	} // supplementRemainders
 
 	/**
@@ -0,0 +1,53 @@
+package com.github.didmar.jrl.utils.cma;
+
+/**
+ * Ask-and-tell interface of the CMA evolution strategies, which minimize an
+ * objective function. It is implemented by the full covariance
+ * {@link CMAEvolutionStrategy} and by the linear time variants
+ * {@link SepCMAEvolutionStrategy} and {@link LMCMAEvolutionStrategy}, so
+ * that a user can pick one through {@link CMAOptions#covarianceModel}.
+ *
+ * @author Didier Marin
+ */
+public interface ICMAEvolutionStrategy {
+
+	/**
+	 * Samples the current search distribution.
+	 * @return lambda times dimension array of sampled solutions, which may be
+	 *         overwritten by the next call
+	 */
+	public double[][] samplePopulation();
+
+	/**
+	 * Updates the search distribution with the function values of the last
+	 * sampled population.
+	 * @param functionValues function value of each sampled solution, the
+	 *                       lower the better
+	 */
+	public void updateDistribution(double[] functionValues);
+
+	/**
+	 * Returns a copy of the mean of the search distribution.
+	 * @return a copy of the mean of the search distribution
+	 */
+	public double[] getMeanX();
+
+	/** Dimension of the search space */
+	public int getDimension();
+
+	/** Number of iterations conducted so far */
+	public long getCountIter();
+
+	/** Number of objective function evaluations counted so far */
+	public long getCountEval();
+
+	/**
+	 * Ratio between the length of the longest and shortest axis of the
+	 * distribution ellipsoid, or NaN if the model does not provide it.
+	 */
+	public double getAxisRatio();
+
+	/** Indicates if a termination criterion is met */
+	public boolean isStopConditionMet();
+
+}
@@ -0,0 +1,128 @@
+package com.github.didmar.jrl.utils.cma;
+
+import java.util.Random;
+
+/**
+ * Limited memory matrix adaptation evolution strategy (LM-MA-ES, Loshchilov,
+ * Glasmachers and Beyer 2017). The covariance matrix is never stored: a
+ * standard normal vector is transformed by m successive rank-one updates
+ * along direction vectors, which are evolution paths learned with
+ * exponentially decreasing rates so that they capture several time scales.
+ * Memory and time per offspring are O(N m), with m = 4 + floor(3 ln N) by
+ * default, so that the strategy scales to a large number of parameters
+ * while still learning correlations between them.
+ * <p>
+ * The learning rates of the paper are meant for large dimensions: they are
+ * bounded by 1/2, and the default number of vectors by N, so that the
+ * strategy remains usable for small ones.
+ *
+ * @author Didier Marin
+ */
+public final class LMCMAEvolutionStrategy extends ReducedCMAEvolutionStrategy {
+
+	/** Number of direction vectors */
+	private final int m;
+	/** Direction vectors */
+	private final double[][] M;
+	/** Learning rates of the direction vectors */
+	private final double[] cc;
+	/** Weights of the rank-one transformations */
+	private final double[] cd;
+	/** Learning rate of the conjugate evolution path */
+	private final double cs;
+	/** Conjugate evolution path */
+	private final double[] ps;
+
+	/**
+	 * @param options  options, including the termination criteria and the
+	 *                 number of direction vectors
+	 * @param lambda   population size, at least 2
+	 * @param x0       initial mean
+	 * @param sigma0   initial standard deviation of each coordinate
+	 * @param rand     source of randomness
+	 */
+	public LMCMAEvolutionStrategy(CMAOptions options, int lambda,
+			double[] x0, double[] sigma0, Random rand) {
+		super(options, lambda, x0, sigma0, rand);
+		if(options.limitedMemoryVectors < 0) {
+			throw new IllegalArgumentException("limitedMemoryVectors must be positive");
+		}
+		m = (options.limitedMemoryVectors > 0 ? options.limitedMemoryVectors
+				: Math.min(N, 4 + (int) Math.floor(3. * Math.log(N))));
+		M = new double[m][N];
+		cc = new double[m];
+		cd = new double[m];
+		for(int j=0; j<m; j++) {
+			cc[j] = Math.min(0.5, lambda / (Math.pow(4., j) * N));
+			cd[j] = 1. / (Math.pow(1.5, j) * N);
+		}
+		cs = Math.min(0.5, 2. * lambda / N);
+		ps = new double[N];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ReducedCMAEvolutionStrategy#transform(double[], double[])
+	 */
+	@Override
+	final void transform(double[] z, double[] d) {
+		System.arraycopy(z, 0, d, 0, N);
+		// The direction vectors are zero until their first update
+		final int nUsed = (int) Math.min(countiter, m);
+		for(int j=0; j<nUsed; j++) {
+			final double[] v = M[j];
+			double dot = 0.;
+			for(int i=0; i<N; i++) {
+				dot += v[i] * d[i];
+			}
+			final double a = 1. - cd[j];
+			final double b = cd[j] * dot;
+			for(int i=0; i<N; i++) {
+				d[i] = a * d[i] + b * v[i];
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ReducedCMAEvolutionStrategy#adapt(double[], double[])
+	 */
+	@Override
+	final void adapt(double[] zmean, double[] dmean) {
+		final double csn = Math.sqrt(cs * (2. - cs) * mueff);
+		double psNorm2 = 0.;
+		for(int i=0; i<N; i++) {
+			ps[i] = (1. - cs) * ps[i] + csn * zmean[i];
+			psNorm2 += ps[i] * ps[i];
+		}
+		for(int j=0; j<m; j++) {
+			final double[] v = M[j];
+			final double a = 1. - cc[j];
+			final double b = Math.sqrt(cc[j] * (2. - cc[j]) * mueff);
+			for(int i=0; i<N; i++) {
+				v[i] = a * v[i] + b * zmean[i];
+			}
+		}
+		sigma *= Math.exp(0.5 * cs * (psNorm2 / N - 1.));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ReducedCMAEvolutionStrategy#stdDev(int)
+	 */
+	@Override
+	final double stdDev(int i) {
+		// The diagonal of the implicit covariance matrix is not available,
+		// the transformations are close to the identity on average
+		return 1.;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#getAxisRatio()
+	 */
+	public final double getAxisRatio() {
+		return Double.NaN;
+	}
+
+	/** Number of direction vectors */
+	public final int getNbVectors() {
+		return m;
+	}
+}
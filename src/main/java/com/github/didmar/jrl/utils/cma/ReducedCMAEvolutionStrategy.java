@@ -0,0 +1,279 @@
+package com.github.didmar.jrl.utils.cma;
+
+import java.util.Random;
+
+import com.github.didmar.jrl.utils.Utils;
+
+/**
+ * Common part of the evolution strategies whose covariance matrix is never
+ * stored, so that their memory and time per offspring are linear in the
+ * dimension: sampling, weighted recombination, ranking and termination
+ * criteria. A subclass defines how a standard normal vector is transformed
+ * into a step, and how the model is adapted after each iteration.
+ * <p>
+ * The initial standard deviations define a fixed diagonal scaling of the
+ * search space, the adapted model and step size live in the scaled space.
+ * The termination criteria are those of {@link CMAEvolutionStrategy}
+ * expressed for this model, driven by the same {@link CMAOptions}.
+ *
+ * @author Didier Marin
+ */
+abstract class ReducedCMAEvolutionStrategy implements ICMAEvolutionStrategy {
+
+	/** Options, including the termination criteria */
+	final CMAOptions options;
+	/** Dimension of the search space */
+	final int N;
+	/** Population size */
+	final int lambda;
+	/** Number of selected solutions */
+	final int mu;
+	/** Recombination weights of the mu best solutions */
+	final double[] weights;
+	/** Variance effective selection mass */
+	final double mueff;
+	/** Expectation of the norm of a N-dimensional standard normal vector */
+	final double chiN;
+	/** Mean of the search distribution */
+	final double[] xmean;
+	/** Fixed scaling of each coordinate, the initial standard deviations
+	 * divided by the initial step size */
+	final double[] scale;
+	/** Step size */
+	double sigma;
+	/** Smallest and largest initial standard deviations */
+	private final double minSigma0;
+	private final double maxSigma0;
+	/** Source of randomness */
+	private final Random rand;
+
+	/** Standard normal vectors of the current population */
+	final double[][] arz;
+	/** Steps of the current population, before the step size and scaling */
+	final double[][] ard;
+	/** Current population */
+	private final double[][] population;
+	/** Indices of the population sorted by increasing function values */
+	final int[] index;
+	/** Sorted function values of the current population */
+	private final double[] sortedFit;
+	/** Weighted means of the selected arz and ard */
+	private final double[] zmean;
+	private final double[] dmean;
+	/** Best function value of the recent iterations */
+	private final double[] history;
+	/** Best function value found so far */
+	private double bestFit = Double.MAX_VALUE;
+
+	long countiter = 0;
+	long counteval = 0;
+
+	/**
+	 * @param options  options, including the termination criteria
+	 * @param lambda   population size, at least 2
+	 * @param x0       initial mean
+	 * @param sigma0   initial standard deviation of each coordinate
+	 * @param rand     source of randomness
+	 */
+	ReducedCMAEvolutionStrategy(CMAOptions options, int lambda, double[] x0,
+			double[] sigma0, Random rand) {
+		if(lambda < 2) {
+			throw new IllegalArgumentException("lambda must be at least 2");
+		}
+		if(sigma0.length != x0.length) {
+			throw new IllegalArgumentException("x0 and sigma0 must have the same length");
+		}
+		this.options = options;
+		this.rand = rand;
+		this.lambda = lambda;
+		N = x0.length;
+		xmean = x0.clone();
+		double min = Double.MAX_VALUE;
+		double max = 0.;
+		for(int i=0; i<N; i++) {
+			if(!(sigma0[i] > 0.)) {
+				throw new IllegalArgumentException("sigma0 must be greater than 0");
+			}
+			min = Math.min(min, sigma0[i]);
+			max = Math.max(max, sigma0[i]);
+		}
+		minSigma0 = min;
+		maxSigma0 = max;
+		sigma = max;
+		scale = new double[N];
+		for(int i=0; i<N; i++) {
+			scale[i] = sigma0[i] / sigma;
+		}
+		chiN = Math.sqrt(N) * (1. - 1./(4.*N) + 1./(21.*N*N));
+
+		// Log-linear weights, as the default of CMAParameters
+		mu = lambda / 2;
+		weights = new double[mu];
+		double sum = 0.;
+		for(int k=0; k<mu; k++) {
+			weights[k] = Math.log(mu + 1.) - Math.log(k + 1.);
+			sum += weights[k];
+		}
+		double sumSq = 0.;
+		for(int k=0; k<mu; k++) {
+			weights[k] /= sum;
+			sumSq += weights[k] * weights[k];
+		}
+		mueff = 1. / sumSq;
+
+		arz = new double[lambda][N];
+		ard = new double[lambda][N];
+		population = new double[lambda][N];
+		index = new int[lambda];
+		sortedFit = new double[lambda];
+		zmean = new double[N];
+		dmean = new double[N];
+		history = new double[10 + (int) (30. * N / lambda)];
+	}
+
+	/**
+	 * Transforms a standard normal vector into a step of the model.
+	 * @param z  a standard normal vector
+	 * @param d  [on return] the step
+	 */
+	abstract void transform(double[] z, double[] d);
+
+	/**
+	 * Adapts the model and the step size, once the mean has moved.
+	 * @param zmean  weighted mean of the selected standard normal vectors
+	 * @param dmean  weighted mean of the selected steps
+	 */
+	abstract void adapt(double[] zmean, double[] dmean);
+
+	/**
+	 * Standard deviation of a coordinate in the scaled space, before the
+	 * step size.
+	 */
+	abstract double stdDev(int i);
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#samplePopulation()
+	 */
+	public final double[][] samplePopulation() {
+		for(int k=0; k<lambda; k++) {
+			final double[] z = arz[k];
+			final double[] d = ard[k];
+			final double[] x = population[k];
+			for(int i=0; i<N; i++) {
+				z[i] = rand.nextGaussian();
+			}
+			transform(z, d);
+			for(int i=0; i<N; i++) {
+				x[i] = xmean[i] + sigma * scale[i] * d[i];
+			}
+		}
+		return population;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#updateDistribution(double[])
+	 */
+	public final void updateDistribution(double[] functionValues) {
+		if(functionValues.length != lambda) {
+			throw new IllegalArgumentException("functionValues must have a length of lambda");
+		}
+		System.arraycopy(functionValues, 0, sortedFit, 0, lambda);
+		Utils.quicksort(sortedFit, index);
+		history[(int) (countiter % history.length)] = sortedFit[0];
+		bestFit = Math.min(bestFit, sortedFit[0]);
+		countiter++;
+		counteval += lambda;
+
+		// Weighted recombination of the mu best solutions
+		for(int i=0; i<N; i++) {
+			double z = 0.;
+			double d = 0.;
+			for(int k=0; k<mu; k++) {
+				z += weights[k] * arz[index[k]][i];
+				d += weights[k] * ard[index[k]][i];
+			}
+			zmean[i] = z;
+			dmean[i] = d;
+			xmean[i] += sigma * scale[i] * d;
+		}
+		adapt(zmean, dmean);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#isStopConditionMet()
+	 */
+	public final boolean isStopConditionMet() {
+		if(countiter == 0) {
+			return false;
+		}
+		if(bestFit <= options.stopFitness
+				|| counteval >= options.stopMaxFunEvals
+				|| countiter >= options.stopMaxIter
+				|| options.stopnow) {
+			return true;
+		}
+		// Range of the recent best function values
+		final int nHist = (int) Math.min(countiter, history.length);
+		double histMin = Double.MAX_VALUE;
+		double histMax = -Double.MAX_VALUE;
+		for(int t=0; t<nHist; t++) {
+			histMin = Math.min(histMin, history[t]);
+			histMax = Math.max(histMax, history[t]);
+		}
+		if(countiter > 1 && Math.max(histMax, sortedFit[lambda-1])
+				- Math.min(histMin, sortedFit[0]) <= options.stopTolFun) {
+			return true;
+		}
+		if(options.stopTolFunHist >= 0 && countiter > history.length
+				&& histMax - histMin <= options.stopTolFunHist) {
+			return true;
+		}
+		// Standard deviations too small, too large, or without effect
+		double maxStd = 0.;
+		for(int i=0; i<N; i++) {
+			final double std = sigma * scale[i] * stdDev(i);
+			if(xmean[i] == xmean[i] + 0.2 * std) {
+				return true;
+			}
+			maxStd = Math.max(maxStd, std);
+		}
+		if(maxStd < Math.max(options.stopTolX, options.stopTolXFactor * minSigma0)
+				|| maxStd > options.stopTolUpXFactor * maxSigma0) {
+			return true;
+		}
+		return getAxisRatio() > 1e7;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#getMeanX()
+	 */
+	public final double[] getMeanX() {
+		return xmean.clone();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#getDimension()
+	 */
+	public final int getDimension() {
+		return N;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#getCountIter()
+	 */
+	public final long getCountIter() {
+		return countiter;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#getCountEval()
+	 */
+	public final long getCountEval() {
+		return counteval;
+	}
+
+	/** Current step size */
+	public final double getSigma() {
+		return sigma;
+	}
+}
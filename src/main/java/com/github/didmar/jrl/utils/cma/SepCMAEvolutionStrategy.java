@@ -0,0 +1,132 @@
+package com.github.didmar.jrl.utils.cma;
+
+import java.util.Random;
+
+/**
+ * Separable CMA-ES (Ros and Hansen 2008): the covariance matrix is restricted
+ * to its diagonal, which is learned with a learning rate increased by a
+ * factor (N+1.5)/3. Memory and time per offspring are O(N), and the
+ * strategy is invariant to a rescaling of the coordinates, but not to a
+ * rotation of the search space.
+ *
+ * @author Didier Marin
+ */
+public final class SepCMAEvolutionStrategy extends ReducedCMAEvolutionStrategy {
+
+	/** Learning rate of the conjugate evolution path */
+	private final double cs;
+	/** Damping of the step size */
+	private final double damps;
+	/** Learning rate of the evolution path */
+	private final double cc;
+	/** Learning rate of the covariance matrix */
+	private final double ccov;
+	/** Diagonal of the covariance matrix */
+	private final double[] diagC;
+	/** Evolution path */
+	private final double[] pc;
+	/** Conjugate evolution path */
+	private final double[] ps;
+
+	/**
+	 * @param options  options, including the termination criteria
+	 * @param lambda   population size, at least 2
+	 * @param x0       initial mean
+	 * @param sigma0   initial standard deviation of each coordinate
+	 * @param rand     source of randomness
+	 */
+	public SepCMAEvolutionStrategy(CMAOptions options, int lambda,
+			double[] x0, double[] sigma0, Random rand) {
+		super(options, lambda, x0, sigma0, rand);
+		cs = (mueff + 2.) / (N + mueff + 3.);
+		damps = 1. + 2. * Math.max(0., Math.sqrt((mueff - 1.) / (N + 1.)) - 1.)
+				+ cs;
+		cc = 4. / (N + 4.);
+		final double ccovFull = 2. / ((N + 1.41) * (N + 1.41)) / mueff
+				+ (1. - 1. / mueff) * Math.min(1., (2. * mueff - 1.)
+						/ ((N + 2.) * (N + 2.) + mueff));
+		ccov = Math.min(1., ccovFull * (N + 1.5) / 3.);
+		diagC = new double[N];
+		for(int i=0; i<N; i++) {
+			diagC[i] = 1.;
+		}
+		pc = new double[N];
+		ps = new double[N];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ReducedCMAEvolutionStrategy#transform(double[], double[])
+	 */
+	@Override
+	final void transform(double[] z, double[] d) {
+		for(int i=0; i<N; i++) {
+			d[i] = Math.sqrt(diagC[i]) * z[i];
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ReducedCMAEvolutionStrategy#adapt(double[], double[])
+	 */
+	@Override
+	final void adapt(double[] zmean, double[] dmean) {
+		// Evolution paths
+		final double csn = Math.sqrt(cs * (2. - cs) * mueff);
+		double psNorm2 = 0.;
+		for(int i=0; i<N; i++) {
+			ps[i] = (1. - cs) * ps[i] + csn * zmean[i];
+			psNorm2 += ps[i] * ps[i];
+		}
+		final double psNorm = Math.sqrt(psNorm2);
+		final boolean hsig = psNorm
+				/ Math.sqrt(1. - Math.pow(1. - cs, 2. * countiter)) / chiN
+				< 1.4 + 2. / (N + 1.);
+		final double ccn = hsig ? Math.sqrt(cc * (2. - cc) * mueff) : 0.;
+		for(int i=0; i<N; i++) {
+			pc[i] = (1. - cc) * pc[i] + ccn * dmean[i];
+		}
+
+		// Diagonal covariance matrix, rank-one and rank-mu updates
+		final double c1 = ccov / mueff;
+		final double cmu = ccov * (1. - 1. / mueff);
+		final double corr = hsig ? 0. : cc * (2. - cc);
+		for(int i=0; i<N; i++) {
+			double rankMu = 0.;
+			for(int k=0; k<mu; k++) {
+				final double d = ard[index[k]][i];
+				rankMu += weights[k] * d * d;
+			}
+			diagC[i] = (1. - ccov) * diagC[i]
+					+ c1 * (pc[i] * pc[i] + corr * diagC[i])
+					+ cmu * rankMu;
+		}
+
+		// Cumulative step size adaptation
+		sigma *= Math.exp((cs / damps) * (psNorm / chiN - 1.));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ReducedCMAEvolutionStrategy#stdDev(int)
+	 */
+	@Override
+	final double stdDev(int i) {
+		return Math.sqrt(diagC[i]);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy#getAxisRatio()
+	 */
+	public final double getAxisRatio() {
+		double min = Double.MAX_VALUE;
+		double max = 0.;
+		for(int i=0; i<N; i++) {
+			min = Math.min(min, diagC[i]);
+			max = Math.max(max, diagC[i]);
+		}
+		return Math.sqrt(max / min);
+	}
+
+	/** Diagonal of the covariance matrix, in the scaled space */
+	public final double[] getDiagC() {
+		return diagC;
+	}
+}
@@ -0,0 +1,64 @@
+package com.github.didmar.jrl.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonic counter, e.g. the number of environment steps or the number of
+ * parameters updates of a learner. Increments are ignored while the metrics
+ * are disabled (see {@link Metrics#setEnabled(boolean)}).
+ * @author Didier Marin
+ */
+public final class Counter implements CounterMBean {
+
+	/** Name of the counter */
+	private final String name;
+	/** Current value */
+	private final AtomicLong count;
+
+	Counter(String name) {
+		this.name = name;
+		count = new AtomicLong();
+	}
+
+	/**
+	 * Increment the counter by one.
+	 */
+	public final void increment() {
+		if(Metrics.enabled) {
+			count.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Increment the counter by a given amount.
+	 * @param delta the amount to add to the counter
+	 */
+	public final void add(long delta) {
+		if(Metrics.enabled) {
+			count.addAndGet(delta);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.CounterMBean#getCount()
+	 */
+	public final long getCount() {
+		return count.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.CounterMBean#reset()
+	 */
+	public final void reset() {
+		count.set(0L);
+	}
+
+	public final String getName() {
+		return name;
+	}
+
+	@Override
+	public final String toString() {
+		return name+"="+getCount();
+	}
+}
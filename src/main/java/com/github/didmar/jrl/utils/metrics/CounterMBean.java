@@ -0,0 +1,19 @@
+package com.github.didmar.jrl.utils.metrics;
+
+/**
+ * JMX management interface of a {@link Counter}.
+ * @author Didier Marin
+ */
+public interface CounterMBean {
+
+	/**
+	 * Returns the current value of the counter.
+	 * @return the current value of the counter
+	 */
+	public long getCount();
+
+	/**
+	 * Set the counter back to zero.
+	 */
+	public void reset();
+}
@@ -0,0 +1,16 @@
+package com.github.didmar.jrl.utils.metrics;
+
+/**
+ * A gauge samples an instantaneous value, such as the size of a cache, each
+ * time it is read.
+ * @see Metrics#registerGauge(String, Gauge)
+ * @author Didier Marin
+ */
+public interface Gauge {
+
+	/**
+	 * Returns the current value of the gauge.
+	 * @return the current value of the gauge
+	 */
+	public double getValue();
+}
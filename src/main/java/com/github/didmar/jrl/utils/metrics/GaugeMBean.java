@@ -0,0 +1,14 @@
+package com.github.didmar.jrl.utils.metrics;
+
+/**
+ * JMX management interface of a {@link Gauge}.
+ * @author Didier Marin
+ */
+public interface GaugeMBean {
+
+	/**
+	 * Returns the current value of the gauge.
+	 * @return the current value of the gauge
+	 */
+	public double getValue();
+}
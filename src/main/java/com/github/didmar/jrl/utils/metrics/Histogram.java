@@ -0,0 +1,192 @@
+package com.github.didmar.jrl.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, typically latencies in
+ * nanoseconds or episode lengths. Values are stored in log-linear buckets
+ * (8 sub-buckets per power of two), so that percentiles are estimated with a
+ * relative error below 12.5% using a fixed amount of memory. Values are
+ * ignored while the metrics are disabled
+ * (see {@link Metrics#setEnabled(boolean)}).
+ * @author Didier Marin
+ */
+public final class Histogram implements HistogramMBean {
+
+	/** Values below this one get their own bucket */
+	private static final int LINEAR_LIMIT = 16;
+	/** Number of sub-buckets per power of two, as a power of two */
+	private static final int SUB_BITS = 3;
+	/** Total number of buckets */
+	static final int NB_BUCKETS = LINEAR_LIMIT + (63-4) * (1 << SUB_BITS);
+
+	/** Name of the histogram */
+	private final String name;
+	/** Number of values in each bucket */
+	private final AtomicLongArray buckets;
+	/** Number of recorded values */
+	private final AtomicLong count;
+	/** Sum of the recorded values */
+	private final AtomicLong sum;
+	/** Largest recorded value */
+	private final AtomicLong max;
+
+	Histogram(String name) {
+		this.name = name;
+		buckets = new AtomicLongArray(NB_BUCKETS);
+		count = new AtomicLong();
+		sum = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Record a value.
+	 * @param value a non-negative value (negative values are recorded as 0)
+	 */
+	public final void record(long value) {
+		if(!Metrics.enabled) {
+			return;
+		}
+		if(value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long m = max.get();
+		while(value > m && !max.compareAndSet(m, value)) {
+			m = max.get();
+		}
+	}
+
+	/**
+	 * Record the time elapsed since a given {@link System#nanoTime()}.
+	 * @param startNanos the start time, as returned by {@link Metrics#startTimer()}
+	 */
+	public final void recordSince(long startNanos) {
+		if(Metrics.enabled && startNanos != 0L) {
+			record(System.nanoTime() - startNanos);
+		}
+	}
+
+	/**
+	 * Returns the bucket of a value.
+	 * @param value a non-negative value
+	 * @return the index of the bucket the value falls in
+	 */
+	public static final int bucketIndex(long value) {
+		if(value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		final int e = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (e - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+		return LINEAR_LIMIT + ((e - 4) << SUB_BITS) + sub;
+	}
+
+	/**
+	 * Returns the largest value that falls in a given bucket.
+	 * @param index the index of a bucket
+	 * @return the largest value of the bucket
+	 */
+	public static final long bucketUpperBound(int index) {
+		if(index < LINEAR_LIMIT) {
+			return index;
+		}
+		final int e = ((index - LINEAR_LIMIT) >>> SUB_BITS) + 4;
+		final long sub = (index - LINEAR_LIMIT) & ((1 << SUB_BITS) - 1);
+		final long lower = ((1L << SUB_BITS) + sub) << (e - SUB_BITS);
+		return lower + (1L << (e - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Returns an estimate of a given quantile of the recorded values.
+	 * @param q a quantile in [0,1]
+	 * @return the upper bound of the bucket containing the quantile, or 0 if
+	 *         no value was recorded
+	 */
+	public final long getQuantile(double q) {
+		if(q < 0. || q > 1.) {
+			throw new IllegalArgumentException("q must be in [0,1]");
+		}
+		final long total = count.get();
+		if(total == 0) {
+			return 0L;
+		}
+		final long rank = Math.max(1L, (long) Math.ceil(q * total));
+		long seen = 0;
+		for(int i=0; i<NB_BUCKETS; i++) {
+			seen += buckets.get(i);
+			if(seen >= rank) {
+				return Math.min(bucketUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#getCount()
+	 */
+	public final long getCount() {
+		return count.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#getMean()
+	 */
+	public final double getMean() {
+		final long c = count.get();
+		return c == 0 ? 0. : ((double) sum.get()) / c;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#getMax()
+	 */
+	public final long getMax() {
+		return max.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#get50thPercentile()
+	 */
+	public final long get50thPercentile() {
+		return getQuantile(0.5);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#get99thPercentile()
+	 */
+	public final long get99thPercentile() {
+		return getQuantile(0.99);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#get999thPercentile()
+	 */
+	public final long get999thPercentile() {
+		return getQuantile(0.999);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.didmar.jrl.utils.metrics.HistogramMBean#reset()
+	 */
+	public final void reset() {
+		for(int i=0; i<NB_BUCKETS; i++) {
+			buckets.set(i, 0L);
+		}
+		count.set(0L);
+		sum.set(0L);
+		max.set(0L);
+	}
+
+	public final String getName() {
+		return name;
+	}
+
+	@Override
+	public final String toString() {
+		return name+" count="+getCount()+" mean="+getMean()
+				+" p50="+get50thPercentile()+" p99="+get99thPercentile()
+				+" p999="+get999thPercentile()+" max="+getMax();
+	}
+}
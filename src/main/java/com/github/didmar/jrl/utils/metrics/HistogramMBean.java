@@ -0,0 +1,29 @@
+package com.github.didmar.jrl.utils.metrics;
+
+/**
+ * JMX management interface of a {@link Histogram}.
+ * @author Didier Marin
+ */
+public interface HistogramMBean {
+
+	/** Returns the number of recorded values */
+	public long getCount();
+
+	/** Returns the mean of the recorded values */
+	public double getMean();
+
+	/** Returns the largest recorded value */
+	public long getMax();
+
+	/** Returns an estimate of the median */
+	public long get50thPercentile();
+
+	/** Returns an estimate of the 99th percentile */
+	public long get99thPercentile();
+
+	/** Returns an estimate of the 99.9th percentile */
+	public long get999thPercentile();
+
+	/** Forget all the recorded values */
+	public void reset();
+}
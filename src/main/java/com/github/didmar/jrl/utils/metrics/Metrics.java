@@ -0,0 +1,224 @@
+package com.github.didmar.jrl.utils.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Registry of the runtime metrics of jrl. Metrics are disabled by default :
+ * instrumented code then only pays for a static boolean check. Once enabled
+ * with {@link #setEnabled(boolean)}, the metrics are recorded and every
+ * metric is registered as an MBean in the platform MBean server, under the
+ * domain {@value #JMX_DOMAIN}. A text snapshot of all the metrics can be
+ * obtained with {@link #snapshot()}, or printed periodically with a
+ * {@link MetricsReporter}.
+ * <p>
+ * Metric names are dot-separated, starting with the instrumented component,
+ * e.g. <tt>environment.steps</tt> or <tt>LSTD.updates</tt>.
+ * @author Didier Marin
+ */
+public final class Metrics {
+
+	/** JMX domain under which the metrics are registered */
+	public static final String JMX_DOMAIN = "com.github.didmar.jrl";
+
+	/** Indicates if the metrics are recorded. Read directly by the metrics
+	 * classes of this package to keep the disabled path cheap. */
+	static volatile boolean enabled = false;
+
+	private static final ConcurrentMap<String,Counter> counters
+		= new ConcurrentHashMap<String,Counter>();
+	private static final ConcurrentMap<String,Histogram> histograms
+		= new ConcurrentHashMap<String,Histogram>();
+	private static final ConcurrentMap<String,Gauge> gauges
+		= new ConcurrentHashMap<String,Gauge>();
+
+	private Metrics() {
+		// Static class
+	}
+
+	/**
+	 * Returns whether the metrics are currently recorded.
+	 * @return true if the metrics are enabled, false else
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enable or disable the recording of the metrics. Enabling the metrics
+	 * also registers all the known metrics with JMX.
+	 * @param enable true to record the metrics, false to stop recording them
+	 */
+	public static synchronized void setEnabled(boolean enable) {
+		if(enable && !enabled) {
+			for(Counter c : counters.values()) {
+				registerMBean("Counter", c.getName(), c, CounterMBean.class);
+			}
+			for(Histogram h : histograms.values()) {
+				registerMBean("Histogram", h.getName(), h, HistogramMBean.class);
+			}
+			for(Map.Entry<String,Gauge> e : gauges.entrySet()) {
+				registerGaugeMBean(e.getKey(), e.getValue());
+			}
+		}
+		enabled = enable;
+	}
+
+	/**
+	 * Returns the current time for latency measurements, or 0 if the metrics
+	 * are disabled so that the call to {@link System#nanoTime()} is skipped.
+	 * @return the current time in nanoseconds, or 0 if metrics are disabled
+	 * @see Histogram#recordSince(long)
+	 */
+	public static long startTimer() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Returns the counter with the given name, creating it if necessary.
+	 * @param name name of the counter
+	 * @return the counter with the given name
+	 */
+	public static Counter counter(String name) {
+		@Nullable Counter c = counters.get(name);
+		if(c == null) {
+			final Counter newCounter = new Counter(name);
+			c = counters.putIfAbsent(name, newCounter);
+			if(c == null) {
+				c = newCounter;
+				if(enabled) {
+					registerMBean("Counter", name, c, CounterMBean.class);
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the histogram with the given name, creating it if necessary.
+	 * @param name name of the histogram
+	 * @return the histogram with the given name
+	 */
+	public static Histogram histogram(String name) {
+		@Nullable Histogram h = histograms.get(name);
+		if(h == null) {
+			final Histogram newHistogram = new Histogram(name);
+			h = histograms.putIfAbsent(name, newHistogram);
+			if(h == null) {
+				h = newHistogram;
+				if(enabled) {
+					registerMBean("Histogram", name, h, HistogramMBean.class);
+				}
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Register a gauge under a given name, replacing any previous gauge with
+	 * the same name.
+	 * @param name  name of the gauge
+	 * @param gauge the gauge
+	 */
+	public static synchronized void registerGauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+		if(enabled) {
+			registerGaugeMBean(name, gauge);
+		}
+	}
+
+	/**
+	 * Unregister the gauge with the given name, if any.
+	 * @param name name of the gauge
+	 */
+	public static synchronized void unregisterGauge(String name) {
+		gauges.remove(name);
+		if(enabled) {
+			unregisterMBean("Gauge", name);
+		}
+	}
+
+	/**
+	 * Reset all the counters and histograms to zero.
+	 */
+	public static void resetAll() {
+		for(Counter c : counters.values()) {
+			c.reset();
+		}
+		for(Histogram h : histograms.values()) {
+			h.reset();
+		}
+	}
+
+	/**
+	 * Returns a text snapshot of all the metrics, one metric per line,
+	 * sorted by name.
+	 * @return a text snapshot of all the metrics
+	 */
+	public static String snapshot() {
+		final StringBuilder sb = new StringBuilder();
+		for(Counter c : new TreeMap<String,Counter>(counters).values()) {
+			sb.append(c.toString()).append('\n');
+		}
+		for(Map.Entry<String,Gauge> e : new TreeMap<String,Gauge>(gauges).entrySet()) {
+			sb.append(e.getKey()).append('=').append(e.getValue().getValue()).append('\n');
+		}
+		for(Histogram h : new TreeMap<String,Histogram>(histograms).values()) {
+			sb.append(h.toString()).append('\n');
+		}
+		final String s = sb.toString();
+		if(s == null) return "";
+		return s;
+	}
+
+	/** Returns the registered counters, by name */
+	static Map<String,Counter> getCounters() {
+		return counters;
+	}
+
+	private static void registerGaugeMBean(final String name, final Gauge gauge) {
+		registerMBean("Gauge", name, new GaugeMBean() {
+			public double getValue() {
+				return gauge.getValue();
+			}
+		}, GaugeMBean.class);
+	}
+
+	private static void unregisterMBean(String type, String name) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final ObjectName objName = new ObjectName(JMX_DOMAIN+":type="+type
+					+",name="+ObjectName.quote(name));
+			if(server.isRegistered(objName)) {
+				server.unregisterMBean(objName);
+			}
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static <T> void registerMBean(String type, String name,
+			T impl, Class<T> mbeanInterface) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final ObjectName objName = new ObjectName(JMX_DOMAIN+":type="+type
+					+",name="+ObjectName.quote(name));
+			if(server.isRegistered(objName)) {
+				server.unregisterMBean(objName);
+			}
+			server.registerMBean(new StandardMBean(impl, mbeanInterface), objName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.github.didmar.jrl.utils.metrics;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Periodically prints a text snapshot of the metrics (see
+ * {@link Metrics#snapshot()}), followed by the rate per second of each
+ * counter since the previous snapshot, e.g. the number of environment steps
+ * per second.
+ * @author Didier Marin
+ */
+public final class MetricsReporter {
+
+	/** Where the snapshots are printed */
+	private final PrintStream out;
+	/** Period between two snapshots, in milliseconds */
+	private final long periodMillis;
+	/** Value of each counter at the previous snapshot */
+	private final Map<String,Long> previousCounts;
+	/** Time of the previous snapshot, in nanoseconds */
+	private long previousNanos;
+	/** Timer running the report task, or null when stopped */
+	@Nullable private Timer timer = null;
+
+	/**
+	 * @param out          where the snapshots are printed
+	 * @param periodMillis period between two snapshots, in milliseconds
+	 */
+	public MetricsReporter(PrintStream out, long periodMillis) {
+		if(periodMillis <= 0) {
+			throw new IllegalArgumentException("periodMillis must be greater than 0");
+		}
+		this.out = out;
+		this.periodMillis = periodMillis;
+		previousCounts = new HashMap<String,Long>();
+		previousNanos = System.nanoTime();
+	}
+
+	/**
+	 * Start printing snapshots periodically, in a daemon thread.
+	 */
+	public final synchronized void start() {
+		if(timer != null) {
+			return;
+		}
+		final Timer t = new Timer("jrl-metrics-reporter", true);
+		t.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				report();
+			}
+		}, periodMillis, periodMillis);
+		timer = t;
+	}
+
+	/**
+	 * Stop printing snapshots.
+	 */
+	public final synchronized void stop() {
+		@Nullable final Timer t = timer;
+		if(t != null) {
+			t.cancel();
+			timer = null;
+		}
+	}
+
+	/**
+	 * Print a snapshot now.
+	 */
+	public final synchronized void report() {
+		final long now = System.nanoTime();
+		final double elapsedSec = (now - previousNanos) / 1e9;
+		final StringBuilder sb = new StringBuilder();
+		sb.append("--- jrl metrics ---\n");
+		sb.append(Metrics.snapshot());
+		for(Counter c : Metrics.getCounters().values()) {
+			final long count = c.getCount();
+			final Long prev = previousCounts.put(c.getName(), Long.valueOf(count));
+			if(prev != null && elapsedSec > 0.) {
+				sb.append(c.getName()).append(".perSec=")
+				  .append((count - prev.longValue()) / elapsedSec).append('\n');
+			}
+		}
+		previousNanos = now;
+		out.print(sb.toString());
+		out.flush();
+	}
+}
@@ -0,0 +1,7 @@
+/**
+ * Runtime metrics (counters, gauges and histograms) for environments,
+ * learners and features, exposed through JMX and as text snapshots.
+ * @see Metrics
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package com.github.didmar.jrl.utils.metrics;
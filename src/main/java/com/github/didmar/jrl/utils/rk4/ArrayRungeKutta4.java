@@ -0,0 +1,80 @@
+package com.github.didmar.jrl.utils.rk4;
+
+/**
+ * Fourth-order Runge-Kutta integration step for vector states, that stores
+ * all its intermediate results in preallocated arrays so that no memory is
+ * allocated once constructed. Unlike {@link RungeKutta4}, the array returned by
+ * the {@link RkRoutine} is copied at each stage, so the routine may safely
+ * reuse the same array for all its results.
+ * @author Didier Marin
+ */
+public final class ArrayRungeKutta4 {
+
+	/** Dimension of the state */
+	private final int dim;
+
+	// arrays for temporary storage to avoid mem. alloc.
+	private final double[] dydx;
+	private final double[] dyt;
+	private final double[] dym;
+	private final double[] yt;
+
+	public ArrayRungeKutta4(int dim) {
+		if(dim <= 0) {
+			throw new IllegalArgumentException("dim must be greater than 0");
+		}
+		this.dim = dim;
+		dydx = new double[dim];
+		dyt = new double[dim];
+		dym = new double[dim];
+		yt = new double[dim];
+	}
+
+	/**
+	 * Perform a single integration step.
+	 * @param y          the current state, of length <tt>dim</tt>
+	 * @param t          the current time
+	 * @param dt         the integration time-step
+	 * @param dir        the integration direction (1 forward, -1 backward)
+	 * @param rkRoutine  computes the time derivative of the state
+	 * @param res        [on return] the state after the step. May be the same
+	 *                   array as <tt>y</tt>
+	 */
+	public final void rk4(double[] y, double t, double dt, int dir,
+			RkRoutine<double[]> rkRoutine, double[] res) {
+		assert y.length == dim;
+		assert res.length == dim;
+
+		final double h = dt * dir;
+		final double hh = h * 0.5;
+		final double h6 = h / 6.0;
+		final double th = t + hh;
+
+		System.arraycopy(rkRoutine.rkRoutine(y, t, dt), 0, dydx, 0, dim);
+		// yt = y + hh * dydx
+		for (int i = 0; i < dim; i++) {
+			yt[i] = y[i] + hh * dydx[i];
+		}
+		System.arraycopy(rkRoutine.rkRoutine(yt, th, dt), 0, dyt, 0, dim);
+		// yt = y + hh * dyt
+		for (int i = 0; i < dim; i++) {
+			yt[i] = y[i] + hh * dyt[i];
+		}
+		System.arraycopy(rkRoutine.rkRoutine(yt, th, dt), 0, dym, 0, dim);
+		// yt = y + h * dym
+		// dym += dyt
+		for (int i = 0; i < dim; i++) {
+			yt[i] = y[i] + h * dym[i];
+			dym[i] += dyt[i];
+		}
+		System.arraycopy(rkRoutine.rkRoutine(yt, t + h, dt), 0, dyt, 0, dim);
+		// res = y + h6 * (dydx + dyt + 2 * dym)
+		for (int i = 0; i < dim; i++) {
+			res[i] = y[i] + h6 * (dydx[i] + dyt[i] + 2. * dym[i]);
+		}
+	}
+
+	public final int getDim() {
+		return dim;
+	}
+}
@@ -0,0 +1,280 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.ac.NAC;
+import com.github.didmar.jrl.environment.discrete.DiscreteMDPEnvironment;
+import com.github.didmar.jrl.environment.dynsys.DynPointMass;
+import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
+import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
+import com.github.didmar.jrl.evaluation.vflearner.TabularQLearning;
+import com.github.didmar.jrl.evaluation.vflearner.lstd.ILSTD;
+import com.github.didmar.jrl.evaluation.vflearner.lstd.LSTD;
+import com.github.didmar.jrl.evaluation.vflearner.td.TDLambda;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
+import com.github.didmar.jrl.mdp.GARNETMDP;
+import com.github.didmar.jrl.policy.BoltzmannPolicy;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.PolicySession;
+import com.github.didmar.jrl.policy.PolicySnapshot;
+import com.github.didmar.jrl.policy.TabularBoltzmannPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.CEParametersDistribution;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Allocation-regression tests : the steady-state steps of the training loops
+ * below are designed not to allocate any memory, so they fail as soon as one
+ * of them starts allocating again. Allocations are measured with the
+ * per-thread allocated bytes counter of the HotSpot
+ * {@link com.sun.management.ThreadMXBean}, the
+ * tests are skipped on JVMs that do not support it.
+ * @author Didier Marin
+ */
+public class TestAllocations {
+
+	/** Number of steps performed before measuring, to reach steady state */
+	private static final int WARMUP_STEPS = 20000;
+	/** Number of steps over which allocations are measured */
+	private static final int MEASURED_STEPS = 10000;
+	/** Maximum number of bytes allocated over all the measured steps, to
+	 * absorb the noise of the measurement itself */
+	private static final long MAX_ALLOCATED_BYTES = 1024;
+
+	private com.sun.management.ThreadMXBean threadBean;
+
+	@Before
+	public void setUp() {
+		final java.lang.management.ThreadMXBean bean =
+				ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threadBean = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Run the step WARMUP_STEPS times, then check that running it
+	 * MEASURED_STEPS more times does not allocate memory.
+	 */
+	private void assertNoAllocation(String name, Runnable step) {
+		for(int i=0; i<WARMUP_STEPS; i++) {
+			step.run();
+		}
+		final long threadId = Thread.currentThread().getId();
+		final long before = threadBean.getThreadAllocatedBytes(threadId);
+		for(int i=0; i<MEASURED_STEPS; i++) {
+			step.run();
+		}
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId)
+				- before;
+		assertTrue(name+" allocated "+allocated+" bytes over "+MEASURED_STEPS
+				+" steps", allocated <= MAX_ALLOCATED_BYTES);
+	}
+
+	private static RBFFeatures pointMassFeatures(boolean normalized) {
+		final double[][] centers = ArrUtils.buildGrid(new double[]{0.,-1.},
+				new double[]{1.,1.}, 5);
+		return new RBFFeatures(centers, new double[]{0.05,0.1}, normalized);
+	}
+
+	private static DynPointMass pointMass() {
+		return new DynPointMass(new double[]{0.25, 0.}, 0.75, 0.01, 1., true,
+				0.01, 0.1, 1., 0.01, false);
+	}
+
+	@Test
+	public void featuresPhi() {
+		final RBFFeatures feat = pointMassFeatures(true);
+		final double[] x = new double[]{0.3,0.2};
+		final double[] y = new double[feat.outDim];
+		assertNoAllocation("Features.phi", new Runnable() {
+			public void run() {
+				feat.phi(x, y);
+			}
+		});
+	}
+
+	@Test
+	public void drawFromDiscreteProbTable() {
+		final double[] prob = new double[]{0.1,0.2,0.3,0.4};
+		assertNoAllocation("RandUtils.drawFromDiscreteProbTable", new Runnable() {
+			public void run() {
+				RandUtils.drawFromDiscreteProbTable(prob);
+			}
+		});
+	}
+
+	@Test
+	public void boltzmannPolicy() {
+		final GARNETMDP mdp = new GARNETMDP(64, 4, 3);
+		final BoltzmannPolicy pol = new BoltzmannPolicy(
+				new TabularStateActionFeatures(mdp), mdp.actionsGrid(), 0.5);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		final double[] x = new double[1];
+		assertNoAllocation("BoltzmannPolicy", new Runnable() {
+			public void run() {
+				x[0] = RandUtils.nextInt(64);
+				pol.computePolicyDistribution(x);
+				pol.dLogdTheta(x, pol.drawActionIndex());
+			}
+		});
+	}
+
+	@Test
+	public void policySnapshot() {
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(
+				pointMassFeatures(true), new double[]{0.1}, new double[]{-1.},
+				new double[]{1.}, true);
+		final PolicySnapshot snapshot = pol.snapshot();
+		final PolicySession session = snapshot.newSession();
+		final double[] x = new double[]{0.3,0.2};
+		assertNoAllocation("PolicySnapshot.drawAction", new Runnable() {
+			public void run() {
+				snapshot.drawAction(x, session);
+			}
+		});
+	}
+
+	@Test
+	public void frozenPolicy() {
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(
+				pointMassFeatures(true), new double[]{0.1}, new double[]{-1.},
+				new double[]{1.}, true);
+		final PolicySnapshot frozen = pol.freeze();
+		final PolicySession session = frozen.newSession();
+		final double[] x = new double[]{0.3,0.2};
+		assertNoAllocation("FrozenLinearGaussianPolicy.drawAction", new Runnable() {
+			public void run() {
+				frozen.drawAction(x, session);
+			}
+		});
+	}
+
+	@Test
+	public void dynSysNextState() {
+		final DynPointMass env = pointMass();
+		final double[] x = env.startState().clone();
+		final double[] u = new double[]{0.1};
+		assertNoAllocation("DynSysEnvironment.nextState", new Runnable() {
+			public void run() {
+				env.nextState(x, u);
+			}
+		});
+	}
+
+	@Test
+	public void lstd() {
+		final LinearVFunction vFunction = new LinearVFunction(
+				pointMassFeatures(false));
+		final LSTD lstd = new LSTD(vFunction, new DiscountFactor(0.9),
+				Integer.MAX_VALUE, 0.);
+		final double[] x  = new double[]{0.3,0.2};
+		final double[] u  = new double[]{0.};
+		final double[] xn = new double[]{0.4,0.1};
+		assertNoAllocation("LSTD.receiveSample", new Runnable() {
+			public void run() {
+				lstd.receiveSample(x, u, xn, 1., false);
+			}
+		});
+	}
+
+	@Test
+	public void ilstd() {
+		final LinearVFunction vFunction = new LinearVFunction(
+				pointMassFeatures(false));
+		final ILSTD ilstd = new ILSTD(vFunction, new DiscountFactor(0.9),
+				new DiscountFactor(0.5), 10, 1.);
+		final double[] x  = new double[]{0.3,0.2};
+		final double[] u  = new double[]{0.};
+		final double[] xn = new double[]{0.4,0.1};
+		assertNoAllocation("ILSTD.receiveSample", new Runnable() {
+			public void run() {
+				ilstd.receiveSample(x, u, xn, 1., false);
+			}
+		});
+	}
+
+	@Test
+	public void tdLambda() {
+		final LinearVFunction vFunction = new LinearVFunction(
+				pointMassFeatures(false));
+		final TDLambda td = new TDLambda(vFunction, new ConstantStepSize(0.01),
+				new DiscountFactor(0.9), new DiscountFactor(0.5));
+		final double[] x  = new double[]{0.3,0.2};
+		final double[] xn = new double[]{0.4,0.1};
+		assertNoAllocation("TDLambda.addSample", new Runnable() {
+			public void run() {
+				td.addSample(x, xn, 0., false);
+			}
+		});
+	}
+
+	@Test
+	public void nac() throws Exception {
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(
+				pointMassFeatures(true), new double[]{0.3},
+				new double[]{-1.}, new double[]{1.}, true);
+		final NAC nac = new NAC(pol, pointMassFeatures(false),
+				new ConstantStepSize(1e-6), new DiscountFactor(0.9),
+				new DiscountFactor(0.5), new DiscountFactor(1.), 10, 0.001, 2, 1);
+		final double[] x  = new double[]{0.3,0.2};
+		final double[] u  = new double[]{0.1};
+		final double[] xn = new double[]{0.4,0.1};
+		assertNoAllocation("NAC.receiveSample", new Runnable() {
+			public void run() {
+				nac.receiveSample(x, u, xn, 0., false);
+			}
+		});
+	}
+
+	@Test
+	public void tabularInteraction() {
+		// GARNET start probabilities are floats, which only sum exactly to 1
+		// for a power of two number of states
+		final DiscreteMDPEnvironment env = new DiscreteMDPEnvironment(
+				new GARNETMDP(64, 4, 3));
+		final TabularQFunction qFunction = new TabularQFunction(64, 4);
+		final TabularBoltzmannPolicy pol = new TabularBoltzmannPolicy(
+				qFunction, 1.);
+		env.addListener(new TabularQLearning(qFunction,
+				new DiscountFactor(0.9), new ConstantStepSize(0.1)));
+		assertNoAllocation("DiscreteEnvironment.interactTabular", new Runnable() {
+			public void run() {
+				env.interactTabular(pol, 1, 10);
+			}
+		});
+	}
+
+	@Test
+	public void ceParamsDistribution() {
+		final int nParams = 20;
+		final double[][] params = new double[nParams][3];
+		for(int i=0; i<nParams; i++) {
+			for(int j=0; j<3; j++) {
+				params[i][j] = RandUtils.nextDouble();
+			}
+		}
+		final double[] R = new double[nParams];
+		final CEParametersDistribution distrib = new CEParametersDistribution(
+				new double[3], new double[3]);
+		assertNoAllocation("CEParametersDistribution.computeParamsDistribution",
+				new Runnable() {
+			public void run() {
+				for(int i=0; i<nParams; i++) {
+					R[i] = RandUtils.nextDouble();
+				}
+				distrib.computeParamsDistribution(R, params, 5, 0.01, false);
+			}
+		});
+	}
+}
@@ -0,0 +1,233 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.CMAESPS;
+import com.github.didmar.jrl.agent.CMAESPS.RestartStrategy;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.cma.CMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.CMAOptions;
+import com.github.didmar.jrl.utils.cma.CMAOptions.CovarianceModel;
+import com.github.didmar.jrl.utils.cma.ICMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.LMCMAEvolutionStrategy;
+import com.github.didmar.jrl.utils.cma.SepCMAEvolutionStrategy;
+
+/**
+ * Unit test class for the CMA evolution strategies and the CMA-ES policy
+ * search agent.
+ * @author Didier Marin
+ */
+public class TestCMAES {
+
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 20;
+
+	/** Creates a Point Mass with a fixed start state */
+	private static final Factory<PointMass> envFactory
+		= new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass();
+		}
+	};
+
+	/** Creates a linear Gaussian policy with a null std. dev. */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final RBFFeatures feat = new RBFFeatures(ArrUtils.buildGrid(
+					env.getXMin(), env.getXMax(), 5),
+					ArrUtils.constvec(env.getXDim(), 0.05), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	/** Options with no output */
+	static CMAOptions quietOptions() {
+		final CMAOptions options = new CMAOptions();
+		options.verbosity = -1;
+		options.writeDisplayToFile = 0;
+		return options;
+	}
+
+	/** A full covariance strategy started at the origin */
+	static CMAEvolutionStrategy newFullStrategy(CMAOptions options, int n,
+			long seed) {
+		final CMAEvolutionStrategy cma = new CMAEvolutionStrategy();
+		cma.options = options;
+		cma.setRand(new Random(seed));
+		cma.init(n, new double[n], ArrUtils.constvec(n, 0.5));
+		return cma;
+	}
+
+	/** Ill-conditioned quadratic sum_i 10^(i/(n-1)) (x_i - 1)^2 */
+	static double quadratic(double[] x) {
+		double f = 0.;
+		for(int i=0; i<x.length; i++) {
+			final double d = x[i] - 1.;
+			f += Math.pow(10., (double) i / (x.length - 1)) * d * d;
+		}
+		return f;
+	}
+
+	/** Minimizes the quadratic for a number of generations, and returns
+	 * the distance of the mean to the optimum */
+	static double minimizeQuadratic(ICMAEvolutionStrategy cma, int nbGen) {
+		for(int g=0; g<nbGen; g++) {
+			final double[][] pop = cma.samplePopulation();
+			final double[] fitness = new double[pop.length];
+			for(int k=0; k<pop.length; k++) {
+				fitness[k] = quadratic(pop[k]);
+			}
+			cma.updateDistribution(fitness);
+		}
+		final double[] mean = cma.getMeanX();
+		double d = 0.;
+		for(int i=0; i<mean.length; i++) {
+			d += (mean[i] - 1.) * (mean[i] - 1.);
+		}
+		return Math.sqrt(d);
+	}
+
+	@Test
+	public void fullCMAConvergesOnQuadratic() {
+		final CMAEvolutionStrategy cma = newFullStrategy(quietOptions(), 5, 1);
+		assertEquals(Math.sqrt(5.), minimizeQuadratic(cma, 0), 1e-12);
+		assertEquals(0., minimizeQuadratic(cma, 300), 1e-6);
+	}
+
+	@Test
+	public void sepCMAConvergesOnQuadratic() {
+		final int n = 5;
+		final SepCMAEvolutionStrategy cma = new SepCMAEvolutionStrategy(
+				quietOptions(), 8, new double[n], ArrUtils.constvec(n, 0.5),
+				new Random(1));
+		assertEquals(0., minimizeQuadratic(cma, 150), 1e-6);
+		// The quadratic is separable, the std dev is larger along the
+		// coordinates of lower curvature
+		final double[] diagC = cma.getDiagC();
+		assertTrue(diagC[0] > 2. * diagC[n-1]);
+	}
+
+	@Test
+	public void lmCMAConvergesOnQuadratic() {
+		final int n = 5;
+		final CMAOptions options = quietOptions();
+		options.limitedMemoryVectors = 2;
+		final LMCMAEvolutionStrategy cma = new LMCMAEvolutionStrategy(
+				options, 8, new double[n], ArrUtils.constvec(n, 0.5),
+				new Random(1));
+		assertEquals(2, cma.getNbVectors());
+		assertEquals(0., minimizeQuadratic(cma, 300), 1e-6);
+		// min(N, 4 + floor(3 ln N)) vectors by default
+		assertEquals(n, new LMCMAEvolutionStrategy(quietOptions(), 8,
+				new double[n], ArrUtils.constvec(n, 0.5), new Random(1))
+				.getNbVectors());
+	}
+
+	@Test
+	public void eigenUpdateGap() {
+		final int n = 5;
+		// A gap larger than the run keeps the initial eigendecomposition,
+		// hence the initial axis ratio
+		CMAOptions options = quietOptions();
+		options.eigenUpdateGap = Long.MAX_VALUE;
+		CMAEvolutionStrategy cma = newFullStrategy(options, n, 1);
+		minimizeQuadratic(cma, 100);
+		assertEquals(1., cma.getAxisRatio(), 0.);
+		// Decomposing after each update learns the conditioning of the
+		// quadratic, and does not depend on time measurements
+		options = quietOptions();
+		options.eigenUpdateGap = 1;
+		cma = newFullStrategy(options, n, 1);
+		final double d = minimizeQuadratic(cma, 100);
+		assertTrue(cma.getAxisRatio() > 2.);
+		options = quietOptions();
+		options.eigenUpdateGap = 1;
+		final CMAEvolutionStrategy same = newFullStrategy(options, n, 1);
+		assertEquals(d, minimizeQuadratic(same, 100), 0.);
+		assertArrayEquals(cma.getMeanX(), same.getMeanX(), 0.);
+	}
+
+	@Test
+	public void covarianceModelSelectsTheStrategy() {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		final double[] sigma = ArrUtils.constvec(pol.getParamsSize(), 0.3);
+		final CMAOptions options = quietOptions();
+		assertTrue(new CMAESPS(pol, 4, 1, gamma, sigma, RestartStrategy.NONE,
+				0, options).getStrategy() instanceof CMAEvolutionStrategy);
+		options.covarianceModel = CovarianceModel.SEPARABLE;
+		assertTrue(new CMAESPS(pol, 4, 1, gamma, sigma, RestartStrategy.NONE,
+				0, options).getStrategy() instanceof SepCMAEvolutionStrategy);
+		options.covarianceModel = CovarianceModel.LIMITED_MEMORY;
+		options.limitedMemoryVectors = 3;
+		final ICMAEvolutionStrategy lm = new CMAESPS(pol, 4, 1, gamma, sigma,
+				RestartStrategy.NONE, 0, options).getStrategy();
+		assertTrue(lm instanceof LMCMAEvolutionStrategy);
+		assertEquals(3, ((LMCMAEvolutionStrategy)lm).getNbVectors());
+	}
+
+	/** Mean return of the parameters over one episode */
+	private static double evaluate(ParallelRollouts rollouts, double[] theta) {
+		final double[][] J = new double[1][1];
+		rollouts.evaluate(new double[][]{theta}, 1, J);
+		return J[0][0];
+	}
+
+	@Test
+	public void cmaesPSImprovesReturn() {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		final CMAESPS cmaes = new CMAESPS(pol, 8, 1, gamma,
+				ArrUtils.constvec(pol.getParamsSize(), 0.3));
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, 2);
+		try {
+			final double J0 = evaluate(rollouts, cmaes.getMean());
+			for(int i=0; i<30; i++) {
+				cmaes.parallelUpdate(rollouts);
+			}
+			final double J = evaluate(rollouts, cmaes.getMean());
+			assertTrue("J0=" + J0 + " J=" + J, J > J0 + 1.);
+			// The policy follows the mean of the search distribution
+			assertArrayEquals(cmaes.getMean(), pol.getParams(), 0.);
+		} finally {
+			rollouts.shutdown();
+		}
+	}
+
+	@Test
+	public void ipopRestartsDoubleThePopulation() {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		final CMAOptions options = quietOptions();
+		options.stopMaxIter = 2;
+		final CMAESPS cmaes = new CMAESPS(pol, 4, 1, gamma,
+				ArrUtils.constvec(pol.getParamsSize(), 0.3),
+				RestartStrategy.IPOP, 2, options);
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, 2);
+		try {
+			final int[] popSizes = {4, 4, 8, 8, 16, 16, 16};
+			for(int i=0; i<popSizes.length; i++) {
+				assertEquals(popSizes[i], cmaes.getPopulationSize());
+				assertEquals(popSizes[i], cmaes.getThetas().length);
+				cmaes.parallelUpdate(rollouts);
+			}
+			// No more than maxRestarts restarts
+			assertEquals(2, cmaes.getNbRestarts());
+		} finally {
+			rollouts.shutdown();
+		}
+	}
+}
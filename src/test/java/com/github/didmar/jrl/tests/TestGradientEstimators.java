@@ -0,0 +1,378 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.environment.DiscreteActionListener;
+import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.environment.discrete.DiscreteMDPEnvironment;
+import com.github.didmar.jrl.evaluation.ImportanceWeightedREINFORCEEstimator;
+import com.github.didmar.jrl.evaluation.OnlineGPOMDPEstimator;
+import com.github.didmar.jrl.evaluation.OnlineREINFORCEEstimator;
+import com.github.didmar.jrl.evaluation.REINFORCEGradientEstimator;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
+import com.github.didmar.jrl.mdp.TwoStateMDP;
+import com.github.didmar.jrl.policy.BoltzmannPolicy;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Episode;
+import com.github.didmar.jrl.utils.ImportanceWeighting;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+public class TestGradientEstimators {
+
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 50;
+	private static final int nbEpisodes = 20;
+
+	private static PointMass newEnv() {
+		return new PointMass(ArrUtils.constvec(1, 0.25),
+				ArrUtils.constvec(1, 0.75), PointMassRewardType.COST, true);
+	}
+
+	private static LinearGaussianPolicy newPolicy(PointMass env) {
+		final RBFFeatures feat = new RBFFeatures(
+				ArrUtils.buildGrid(env.getXMin(), env.getXMax(), 5),
+				ArrUtils.constvec(env.getXDim(), 0.05), true);
+		return new LinearGaussianPolicy(feat,
+				ArrUtils.constvec(env.getUDim(), 0.1),
+				env.getUMin(), env.getUMax(), true);
+	}
+
+	@Test
+	public void onlineREINFORCE() throws Exception {
+		final PointMass env = newEnv();
+		final LinearGaussianPolicy pol = newPolicy(env);
+		final int n = pol.getParamsSize();
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		final OnlineREINFORCEEstimator online
+			= new OnlineREINFORCEEstimator(pol, gamma);
+		final OnlineREINFORCEEstimator first
+			= new OnlineREINFORCEEstimator(pol, gamma);
+		final OnlineREINFORCEEstimator second
+			= new OnlineREINFORCEEstimator(pol, gamma);
+		env.addListener(log);
+		env.addListener(online);
+		// The two halves of the episodes are listened separately
+		env.addListener(first);
+		env.interact(new PolicyAgent(pol), nbEpisodes / 2, maxT);
+		env.removeListener(first);
+		env.addListener(second);
+		env.interact(new PolicyAgent(pol), nbEpisodes - nbEpisodes / 2, maxT);
+
+		final double[] expected = new REINFORCEGradientEstimator(pol, gamma,
+				nbEpisodes).computeGradientEstimation(log.getEpisodes());
+		final double[] dJ = new double[n];
+		online.computeGradientEstimation(dJ);
+		assertEquals(nbEpisodes, online.getNbEpisodes());
+		assertArrayEquals(expected, dJ, tolerance(expected));
+
+		first.add(second);
+		first.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, tolerance(expected));
+	}
+
+	@Test
+	public void onlineGPOMDP() {
+		final PointMass env = newEnv();
+		final LinearGaussianPolicy pol = newPolicy(env);
+		final int n = pol.getParamsSize();
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		final OnlineGPOMDPEstimator withBaseline
+			= new OnlineGPOMDPEstimator(pol, gamma, true);
+		final OnlineGPOMDPEstimator withoutBaseline
+			= new OnlineGPOMDPEstimator(pol, gamma, false);
+		final OnlineGPOMDPEstimator first
+			= new OnlineGPOMDPEstimator(pol, gamma, true);
+		final OnlineGPOMDPEstimator second
+			= new OnlineGPOMDPEstimator(pol, gamma, true);
+		env.addListener(log);
+		env.addListener(withBaseline);
+		env.addListener(withoutBaseline);
+		env.addListener(first);
+		env.interact(new PolicyAgent(pol), nbEpisodes / 2, maxT);
+		env.removeListener(first);
+		env.addListener(second);
+		env.interact(new PolicyAgent(pol), nbEpisodes - nbEpisodes / 2, maxT);
+
+		// Reference computation from the stored episodes
+		final double[][][] G = new double[nbEpisodes][maxT][];
+		final double[][] r = new double[nbEpisodes][maxT];
+		for(int i=0; i<nbEpisodes; i++) {
+			final Episode epi = log.getEpisodes().get(i);
+			final double[] sum = new double[n];
+			for(int t=0; t<epi.getT(); t++) {
+				final double[] der = pol.dLogdTheta(epi.getX()[t], epi.getU()[t]);
+				for(int j=0; j<n; j++) {
+					sum[j] += der[j];
+				}
+				G[i][t] = sum.clone();
+				r[i][t] = Math.pow(gamma.value, t) * epi.getR()[t];
+			}
+		}
+		final double[] expectedWithout = new double[n];
+		final double[] expectedWith = new double[n];
+		for(int j=0; j<n; j++) {
+			for(int t=0; t<maxT; t++) {
+				double bNum = 0.;
+				double bDenum = 0.;
+				for(int i=0; i<nbEpisodes; i++) {
+					bNum += G[i][t][j] * G[i][t][j] * r[i][t];
+					bDenum += G[i][t][j] * G[i][t][j];
+				}
+				final double b = (bDenum != 0. ? bNum / bDenum : 0.);
+				for(int i=0; i<nbEpisodes; i++) {
+					expectedWithout[j] += G[i][t][j] * r[i][t] / nbEpisodes;
+					expectedWith[j] += G[i][t][j] * (r[i][t] - b) / nbEpisodes;
+				}
+			}
+		}
+
+		final double[] dJ = new double[n];
+		withoutBaseline.computeGradientEstimation(dJ);
+		assertArrayEquals(expectedWithout, dJ, tolerance(expectedWithout));
+		withBaseline.computeGradientEstimation(dJ);
+		assertArrayEquals(expectedWith, dJ, tolerance(expectedWith));
+		first.add(second);
+		first.computeGradientEstimation(dJ);
+		assertArrayEquals(expectedWith, dJ, tolerance(expectedWith));
+	}
+
+	/** Rewards of the chain used with variable length episodes, for
+	 * stopping (action 0) and going to the other state (action 1) */
+	private static final double[][] chainRewards = {{1., -0.5}, {2., 0.3}};
+
+	/** Exact discounted return from state x at step t of the chain, whose
+	 * episodes end when action 0 is chosen or after H steps */
+	private static double chainValue(BoltzmannPolicy pol, int x, int t,
+			int H) {
+		double v = 0.;
+		for(int u=0; u<2; u++) {
+			double q = chainRewards[x][u];
+			if(u == 1 && t + 1 < H) {
+				q += gamma.value * chainValue(pol, 1 - x, t + 1, H);
+			}
+			v += Math.exp(pol.logProba(new double[]{x}, u)) * q;
+		}
+		return v;
+	}
+
+	@Test
+	public void onlineGPOMDPVariableLength() {
+		final TwoStateMDP mdp = new TwoStateMDP();
+		final double[][] actions = mdp.actionsGrid();
+		final BoltzmannPolicy pol = new BoltzmannPolicy(
+				new TabularStateActionFeatures(mdp), actions, 1.);
+		final int n = pol.getParamsSize();
+		final int H = 4;
+		final OnlineGPOMDPEstimator withBaseline
+			= new OnlineGPOMDPEstimator(pol, gamma, true);
+		final OnlineGPOMDPEstimator first
+			= new OnlineGPOMDPEstimator(pol, gamma, true);
+		final OnlineGPOMDPEstimator second
+			= new OnlineGPOMDPEstimator(pol, gamma, true);
+		// Both actions have a probability 1/2, so the 2^H action sequences,
+		// each cut at its first stop, are exactly distributed as the episodes
+		for(int seq=0; seq<(1<<H); seq++) {
+			final OnlineGPOMDPEstimator half = (seq < (1<<H) / 2 ? first
+					: second);
+			withBaseline.newEpisode(new double[]{0.}, H);
+			half.newEpisode(new double[]{0.}, H);
+			int x = 0;
+			for(int t=0; t<H; t++) {
+				final int u = (seq >> t) & 1;
+				final int xn = (u == 1 ? 1 - x : x);
+				final double[] xs = {x};
+				final double[] xns = {xn};
+				withBaseline.receiveSample(xs, actions[u], u, xns,
+						chainRewards[x][u], u == 0);
+				half.receiveSample(xs, actions[u], u, xns,
+						chainRewards[x][u], u == 0);
+				if(u == 0) {
+					break;
+				}
+				x = xn;
+			}
+			withBaseline.endEpisode();
+			half.endEpisode();
+		}
+
+		// Exact gradient, by finite differences of the exact return
+		final double[] theta = new double[n];
+		final double[] expected = new double[n];
+		final double eps = 1e-6;
+		for(int i=0; i<n; i++) {
+			theta[i] = eps;
+			pol.setParams(theta);
+			final double Jp = chainValue(pol, 0, 0, H);
+			theta[i] = -eps;
+			pol.setParams(theta);
+			final double Jm = chainValue(pol, 0, 0, H);
+			theta[i] = 0.;
+			expected[i] = (Jp - Jm) / (2. * eps);
+		}
+		pol.setParams(theta);
+
+		// The baseline does not bias the estimation, even though the
+		// episodes which stopped early do not visit the last steps
+		final double[] dJ = new double[n];
+		withBaseline.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, 1e-8);
+		first.add(second);
+		first.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, 1e-8);
+	}
+
+	@Test
+	public void importanceWeightedREINFORCE() {
+		final PointMass env = newEnv();
+		final LinearGaussianPolicy pol = newPolicy(env);
+		final int n = pol.getParamsSize();
+		final OnlineREINFORCEEstimator online
+			= new OnlineREINFORCEEstimator(pol, gamma);
+		final ImportanceWeightedREINFORCEEstimator selfNormalized
+			= new ImportanceWeightedREINFORCEEstimator(pol, gamma, nbEpisodes,
+					ImportanceWeighting.SELF_NORMALIZED);
+		final ImportanceWeightedREINFORCEEstimator truncated
+			= new ImportanceWeightedREINFORCEEstimator(pol, gamma, nbEpisodes,
+					ImportanceWeighting.TRUNCATED);
+		env.addListener(online);
+		env.addListener(selfNormalized);
+		env.addListener(truncated);
+		env.interact(new PolicyAgent(pol), nbEpisodes / 2, maxT);
+		final double[] expected = new double[n];
+		final double[] dJ = new double[n];
+		online.computeGradientEstimation(expected);
+		selfNormalized.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, tolerance(expected));
+
+		// The policy did not change, so the reused episodes have the same
+		// weight as the new ones
+		selfNormalized.reset();
+		truncated.reset();
+		assertEquals(nbEpisodes / 2, selfNormalized.getHistorySize());
+		env.interact(new PolicyAgent(pol), nbEpisodes - nbEpisodes / 2, maxT);
+		assertEquals(nbEpisodes - nbEpisodes / 2, selfNormalized.getNbEpisodes());
+		online.computeGradientEstimation(expected);
+		selfNormalized.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, tolerance(expected));
+		truncated.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, tolerance(expected));
+
+		// The history is bounded
+		selfNormalized.reset();
+		env.interact(new PolicyAgent(pol), nbEpisodes, maxT);
+		selfNormalized.reset();
+		assertEquals(nbEpisodes, selfNormalized.getHistorySize());
+	}
+
+	@Test
+	public void discreteActionIndex() {
+		final TwoStateMDP mdp = new TwoStateMDP();
+		final DiscreteMDPEnvironment env = new DiscreteMDPEnvironment(mdp);
+		final BoltzmannPolicy pol = new BoltzmannPolicy(
+				new TabularStateActionFeatures(mdp), mdp.actionsGrid(), 1.);
+		pol.setParams(new double[]{0.5, -0.2, 0.1, 0.3});
+		final int n = pol.getParamsSize();
+		// This estimator is notified of the action indices
+		final OnlineREINFORCEEstimator indexed
+			= new OnlineREINFORCEEstimator(pol, gamma);
+		// while this one has to search the actions
+		final OnlineREINFORCEEstimator searched
+			= new OnlineREINFORCEEstimator(pol, gamma);
+		final int[] nbIndexed = {0};
+		env.addListener(indexed);
+		env.addListener(new EnvironmentListener() {
+			public void newEpisode(double[] x0, int maxT) {
+				searched.newEpisode(x0, maxT);
+			}
+			public void receiveSample(double[] x, double[] u, double[] xn,
+					double r, boolean isTerminal) {
+				searched.receiveSample(x, u, xn, r, isTerminal);
+			}
+			public void endEpisode() {
+				searched.endEpisode();
+			}
+		});
+		env.addListener(new DiscreteActionListenerStub() {
+			@Override
+			public void receiveSample(double[] x, double[] u, int uIndex,
+					double[] xn, double r, boolean isTerminal) {
+				assertSame(pol.getActions()[uIndex], u);
+				nbIndexed[0]++;
+			}
+		});
+		env.interact(new PolicyAgent(pol), nbEpisodes, maxT);
+		assertEquals(nbEpisodes * maxT, nbIndexed[0]);
+		final double[] expected = new double[n];
+		final double[] dJ = new double[n];
+		searched.computeGradientEstimation(expected);
+		indexed.computeGradientEstimation(dJ);
+		assertArrayEquals(expected, dJ, tolerance(expected));
+	}
+
+	@Test
+	public void boltzmannLogGradient() {
+		final TwoStateMDP mdp = new TwoStateMDP();
+		final double[][] actions = mdp.actionsGrid();
+		final BoltzmannPolicy pol = new BoltzmannPolicy(
+				new TabularStateActionFeatures(mdp), actions, 0.5);
+		final double[] theta = {0.5, -0.2, 0.1, 0.3};
+		final int n = theta.length;
+		final double eps = 1e-6;
+		for(int x=0; x<mdp.n; x++) {
+			final double[] xs = {x};
+			for(int u=0; u<actions.length; u++) {
+				pol.setParams(theta);
+				final double[] der = pol.dLogdTheta(xs, u).clone();
+				// Central finite differences of the log probability
+				for(int i=0; i<n; i++) {
+					final double[] t = theta.clone();
+					t[i] += eps;
+					pol.setParams(t);
+					final double lp = pol.logProba(xs, u);
+					t[i] -= 2. * eps;
+					pol.setParams(t);
+					final double lm = pol.logProba(xs, u);
+					assertEquals((lp - lm) / (2. * eps), der[i], 1e-6);
+				}
+			}
+		}
+		// Parameters whose weights overflow without the log-sum-exp trick
+		pol.setParams(new double[]{1000., 0., 0., 0.});
+		final double[][] probas = pol.getProbaTable(new double[][]{{0.}, {1.}});
+		assertEquals(1., probas[0][0], 1e-12);
+		assertEquals(0.5, probas[1][0], 1e-12);
+		final double logProba = pol.logProba(new double[]{0.}, 1);
+		assertEquals(-2000., logProba, 1e-9);
+		for(double d : pol.dLogdTheta(new double[]{0.}, 0)) {
+			assertFalse(Double.isNaN(d));
+		}
+	}
+
+	/** A listener that ignores everything but the indexed samples */
+	private static abstract class DiscreteActionListenerStub
+			implements DiscreteActionListener {
+		public void newEpisode(double[] x0, int maxT) {}
+		public void receiveSample(double[] x, double[] u, double[] xn,
+				double r, boolean isTerminal) {
+			fail("The sample should be notified with its action index");
+		}
+		public void endEpisode() {}
+	}
+
+	/** Relative tolerance for the comparison with a reference gradient */
+	private static double tolerance(double[] expected) {
+		double max = 0.;
+		for(double v : expected) {
+			max = Math.max(max, Math.abs(v));
+		}
+		return 1e-9 * (1. + max);
+	}
+}
@@ -0,0 +1,352 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.array.ConjugateGradient;
+import com.github.didmar.jrl.utils.array.DenseMatrix;
+import com.github.didmar.jrl.utils.array.DenseVector;
+import com.github.didmar.jrl.utils.array.MatKernels;
+import com.github.didmar.jrl.utils.array.ParallelKernels;
+
+import Jama.Matrix;
+
+/**
+ * Unit test class for {@link MatKernels} and {@link DenseMatrix}. Matrix
+ * sizes are chosen so that they are not a multiple of the block size, to
+ * exercise partial blocks, and large enough for {@link ParallelKernels} to
+ * run in parallel.
+ * @author Didier Marin
+ */
+public class TestMatKernels {
+
+	private static final int N = MatKernels.BLOCK_SIZE * 2 + 13;
+	private static final double TOL = 1e-9;
+
+	private static double[][] randMatrix(int l1, int l2) {
+		final double[][] A = new double[l1][l2];
+		for (int i = 0; i < l1; i++) {
+			for (int j = 0; j < l2; j++) {
+				A[i][j] = RandUtils.nextDouble() - 0.5;
+			}
+		}
+		return A;
+	}
+
+	/** Returns a random symmetric positive definite matrix */
+	private static double[][] randSPDMatrix(int n) {
+		final Matrix X = new Matrix(randMatrix(n, n));
+		return X.times(X.transpose()).plus(Matrix.identity(n, n)).getArray();
+	}
+
+	private static void assertMatrixEquals(double[][] expected,
+			double[][] actual, int l1, int l2) {
+		for (int i = 0; i < l1; i++) {
+			for (int j = 0; j < l2; j++) {
+				assertEquals(expected[i][j], actual[i][j], TOL);
+			}
+		}
+	}
+
+	@Test
+	public void testGemm() {
+		final int l1 = N, l2 = N + 7, l3 = N - 5;
+		final double[][] A = randMatrix(l1, l2);
+		final double[][] B = randMatrix(l2, l3);
+		final double[][] C = randMatrix(l1, l3);
+		final double[][] expected = new Matrix(A).times(new Matrix(B))
+				.times(2.).plus(new Matrix(C).times(0.5)).getArray();
+		MatKernels.gemm(2., A, B, 0.5, C, l1, l2, l3);
+		assertMatrixEquals(expected, C, l1, l3);
+	}
+
+	@Test
+	public void testGemv() {
+		final double[][] A = randMatrix(N, N + 3);
+		final double[] x = randMatrix(1, N + 3)[0];
+		final double[] y = new double[N];
+		MatKernels.gemv(A, x, y, N, N + 3);
+		final double[][] expected = new Matrix(A).times(
+				new Matrix(x, N + 3)).getArray();
+		for (int i = 0; i < N; i++) {
+			assertEquals(expected[i][0], y[i], TOL);
+		}
+		final double[] z = new double[N + 3];
+		MatKernels.gemvTransposed(y, A, z, N, N + 3);
+		final double[][] expectedT = new Matrix(y, 1).times(
+				new Matrix(A)).getArray();
+		assertMatrixEquals(expectedT, new double[][]{z}, 1, N + 3);
+	}
+
+	@Test
+	public void testSyrkAndGer() {
+		final double[][] A = randMatrix(N, 17);
+		final double[][] C = randSPDMatrix(N);
+		final double[][] expected = new Matrix(A).times(
+				new Matrix(A).transpose()).plus(new Matrix(C)).getArray();
+		MatKernels.syrk(1., A, 1., C, N, 17);
+		assertMatrixEquals(expected, C, N, N);
+
+		final double[] x = randMatrix(1, N)[0];
+		final double[] y = randMatrix(1, N)[0];
+		final double[][] expectedGer = new Matrix(x, N).times(
+				new Matrix(y, 1)).times(-3.).plus(new Matrix(C)).getArray();
+		MatKernels.ger(-3., x, y, C, N, N);
+		assertMatrixEquals(expectedGer, C, N, N);
+	}
+
+	@Test
+	public void testCholesky() {
+		final double[][] A = randSPDMatrix(N);
+		final double[][] expected = new Jama.CholeskyDecomposition(
+				new Matrix(A)).getL().getArray();
+		final double[][] G = new Matrix(A).getArrayCopy();
+		assertTrue(MatKernels.cholesky(G, N));
+		for (int i = 0; i < N; i++) {
+			for (int j = 0; j <= i; j++) {
+				assertEquals(expected[i][j], G[i][j], TOL);
+			}
+			// The upper triangle must not be touched
+			for (int j = i + 1; j < N; j++) {
+				assertEquals(A[i][j], G[i][j], 0.);
+			}
+		}
+		final double[] b = randMatrix(1, N)[0];
+		final double[] x = new double[N];
+		MatKernels.choleskySolve(G, b, x, N);
+		final double[][] expectedX = new Matrix(A).solve(
+				new Matrix(b, N)).getArray();
+		for (int i = 0; i < N; i++) {
+			assertEquals(expectedX[i][0], x[i], TOL);
+		}
+		// Not positive definite
+		final double[][] notSPD = randSPDMatrix(N);
+		notSPD[N-1][N-1] = -1.;
+		assertFalse(MatKernels.cholesky(notSPD, N));
+	}
+
+	@Test
+	public void testConjugateGradient() {
+		final double[][] A = randSPDMatrix(N);
+		final ConjugateGradient.LinearOperator op
+			= new ConjugateGradient.LinearOperator() {
+			public void apply(double[] v, double[] result) {
+				MatKernels.gemv(A, v, result, N, N);
+			}
+		};
+		final double[] b = randMatrix(1, N)[0];
+		final double[] x = new double[N];
+		final int iter = new ConjugateGradient(N).solve(op, b, x, 10 * N,
+				1e-12);
+		assertTrue(iter <= 10 * N);
+		final double[][] expectedX = new Matrix(A).solve(
+				new Matrix(b, N)).getArray();
+		for (int i = 0; i < N; i++) {
+			assertEquals(expectedX[i][0], x[i], TOL);
+		}
+		// Starting from the solution, no iteration is needed
+		assertEquals(0, new ConjugateGradient(N).solve(op, b, x, N, 1e-6));
+	}
+
+	@Test
+	public void testLU() {
+		final double[][] A = randMatrix(N, N);
+		final double[][] B = randMatrix(N, 5);
+		final double[][] expected = new Matrix(A).solve(
+				new Matrix(B)).getArray();
+		final double[][] LU = new Matrix(A).getArrayCopy();
+		final int[] piv = new int[N];
+		assertTrue(MatKernels.lu(LU, piv, N));
+		final double[][] X = new double[N][5];
+		MatKernels.luSolve(LU, piv, B, X, N, 5);
+		assertMatrixEquals(expected, X, N, 5);
+		final double[] x = new double[N];
+		MatKernels.luSolve(LU, piv, new Matrix(B).transpose().getArray()[0],
+				x, N);
+		for (int i = 0; i < N; i++) {
+			assertEquals(expected[i][0], x[i], TOL);
+		}
+		// Singular
+		final double[][] singular = randMatrix(N, N);
+		singular[3] = singular[7].clone();
+		assertFalse(MatKernels.lu(singular, piv, N));
+		// Singular up to rounding, as for DenseMatrix
+		final double[][] nearlySingular = randMatrix(N, N);
+		for (int j = 0; j < N; j++) {
+			nearlySingular[3][j] = nearlySingular[7][j] * (1. + 1e-15);
+		}
+		final DenseMatrix dense = DenseMatrix.fromArray(nearlySingular);
+		assertFalse(MatKernels.lu(nearlySingular, piv, N));
+		assertFalse(dense.luInPlace(piv));
+	}
+
+	@Test
+	public void testTranspose() {
+		final double[][] A = randMatrix(N, N + 9);
+		final double[][] At = new double[N + 9][N];
+		MatKernels.transpose(A, At, N, N + 9);
+		assertMatrixEquals(new Matrix(A).transpose().getArray(), At, N + 9, N);
+	}
+
+	@Test
+	public void testDenseMatrixViews() {
+		final double[][] A = randMatrix(N, N + 2);
+		final DenseMatrix mat = DenseMatrix.fromArray(A);
+		assertMatrixEquals(A, mat.toArray(), N, N + 2);
+		assertMatrixEquals(A, DenseMatrix.fromJama(new Matrix(A)).toArray(),
+				N, N + 2);
+		// Views share the storage of the matrix
+		final DenseMatrix block = mat.view(2, 3, 4, 5);
+		block.set(1, 1, 42.);
+		assertEquals(42., mat.get(3, 4), 0.);
+		final DenseVector column = mat.column(4);
+		assertEquals(N, column.length());
+		column.scale(2.);
+		assertEquals(84., mat.get(3, 4), 0.);
+		assertEquals(2. * A[0][4], mat.get(0, 4), 0.);
+		final DenseVector row = mat.row(5).view(1, 3);
+		assertEquals(mat.get(5, 2), row.get(1), 0.);
+	}
+
+	@Test
+	public void testDenseMatrixProductsAndSolve() {
+		final double[][] A = randMatrix(N, N);
+		final double[][] B = randMatrix(N, N - 3);
+		final DenseMatrix matA = DenseMatrix.fromArray(A);
+		final DenseMatrix C = new DenseMatrix(N, N - 3);
+		matA.multiply(DenseMatrix.fromArray(B), C);
+		assertMatrixEquals(new Matrix(A).times(new Matrix(B)).getArray(),
+				C.toArray(), N, N - 3);
+		final DenseMatrix Ct = new DenseMatrix(N, N - 3);
+		matA.transposeMultiply(DenseMatrix.fromArray(B), Ct);
+		assertMatrixEquals(new Matrix(A).transpose().times(new Matrix(B))
+				.getArray(), Ct.toArray(), N, N - 3);
+
+		final double[] b = randMatrix(1, N)[0];
+		final double[] x = new double[N];
+		final DenseMatrix LU = DenseMatrix.fromArray(A);
+		LU.solveInPlace(new int[N], b, x);
+		final double[][] expected = new Matrix(A).solve(new Matrix(b, N))
+				.getArray();
+		for (int i = 0; i < N; i++) {
+			assertEquals(expected[i][0], x[i], TOL);
+		}
+
+		final DenseMatrix G = DenseMatrix.fromArray(randSPDMatrix(N));
+		final double[][] expectedL = new Jama.CholeskyDecomposition(
+				G.toJama()).getL().getArray();
+		assertTrue(G.choleskyInPlace());
+		for (int i = 0; i < N; i++) {
+			for (int j = 0; j <= i; j++) {
+				assertEquals(expectedL[i][j], G.get(i, j), TOL);
+			}
+		}
+	}
+
+	@Test
+	public void testDenseMatrixShermanMorrison() {
+		final double[][] A = randSPDMatrix(N);
+		final double[] u = randMatrix(1, N)[0];
+		final double[] v = randMatrix(1, N)[0];
+		final DenseMatrix Ainv = DenseMatrix.fromJama(new Matrix(A).inverse());
+		Ainv.shermanMorrison(u, v, new double[N], new double[N]);
+		final double[][] expected = new Matrix(A).plus(
+				new Matrix(u, N).times(new Matrix(v, 1))).inverse().getArray();
+		assertMatrixEquals(expected, Ainv.toArray(), N, N);
+	}
+
+	@Test
+	public void testSoftmax() {
+		final double[] a = {0.5, -1., 2., 0.};
+		final double[] p = new double[a.length];
+		double sum = 0.;
+		for (int i = 0; i < a.length; i++) {
+			sum += Math.exp(2. * a[i]);
+		}
+		final double logNormalizer = MatKernels.softmax(2., a, p, a.length);
+		assertEquals(Math.log(sum), logNormalizer, TOL);
+		for (int i = 0; i < a.length; i++) {
+			assertEquals(Math.exp(2. * a[i]) / sum, p[i], TOL);
+		}
+		// Scores whose exponentials overflow, in place
+		final double[] b = {1000., 1001., -1000.};
+		final double logNormalizerB = MatKernels.softmax(1., b, b, b.length);
+		final double z = 1. + Math.exp(1.);
+		assertEquals(1. / z, b[0], TOL);
+		assertEquals(Math.exp(1.) / z, b[1], TOL);
+		assertEquals(0., b[2], TOL);
+		assertEquals(1001. + Math.log(1. + Math.exp(-1.)), logNormalizerB, TOL);
+	}
+
+	@Test
+	public void testParallelKernels() {
+		// Large enough for the O(n^2) operations to run in parallel
+		final int n = (int) Math.sqrt(ParallelKernels.MIN_QUADRATIC_ENTRIES) + 13;
+		final double[][] A = randMatrix(n, n);
+		final double[][] B = randMatrix(n, 21);
+		final DenseMatrix matA = DenseMatrix.fromArray(A);
+		final DenseMatrix matB = DenseMatrix.fromArray(B);
+		final DenseMatrix expected = new DenseMatrix(n, 21);
+		final DenseMatrix C = new DenseMatrix(n, 21);
+		matA.multiply(matB, expected);
+		ParallelKernels.multiply(matA, matB, C);
+		assertMatrixEquals(expected.toArray(), C.toArray(), n, 21);
+		matA.transposeMultiply(matB, expected);
+		ParallelKernels.transposeMultiply(matA, matB, C);
+		assertMatrixEquals(expected.toArray(), C.toArray(), n, 21);
+
+		final double[] u = randMatrix(1, n)[0];
+		final double[] v = randMatrix(1, n)[0];
+		final double[] y = new double[n];
+		final double[] z = new double[n];
+		matA.multiply(u, y);
+		ParallelKernels.multiply(matA, u, z);
+		assertMatrixEquals(new double[][]{y}, new double[][]{z}, 1, n);
+		matA.transposeMultiply(u, y);
+		ParallelKernels.transposeMultiply(matA, u, z);
+		assertMatrixEquals(new double[][]{y}, new double[][]{z}, 1, n);
+		final DenseMatrix G = DenseMatrix.fromArray(A);
+		G.ger(-2., u, v);
+		ParallelKernels.ger(matA, -2., u, v);
+		assertMatrixEquals(G.toArray(), matA.toArray(), n, n);
+
+		// Solve, compared with the sequential LU decomposition
+		final double[] x = new double[n];
+		final DenseMatrix LU = DenseMatrix.fromArray(A);
+		LU.solveInPlace(new int[n], u, y);
+		ParallelKernels.solveInPlace(DenseMatrix.fromArray(A), new int[n], u, x);
+		for (int i = 0; i < n; i++) {
+			assertEquals(y[i], x[i], TOL);
+		}
+		final double[][] singular = randMatrix(n, n);
+		singular[3] = singular[7].clone();
+		assertFalse(ParallelKernels.luInPlace(DenseMatrix.fromArray(singular),
+				new int[n]));
+		// A product of rank n-1, whose pivots are only zero up to rounding
+		final double[][] rankDeficient = new Matrix(randMatrix(n, n-1)).times(
+				new Matrix(randMatrix(n-1, n))).getArray();
+		assertFalse(DenseMatrix.fromArray(rankDeficient).luInPlace(new int[n]));
+		assertFalse(ParallelKernels.luInPlace(
+				DenseMatrix.fromArray(rankDeficient), new int[n]));
+
+		// Cholesky
+		final double[][] S = randSPDMatrix(n);
+		final DenseMatrix L = DenseMatrix.fromArray(S);
+		final DenseMatrix parL = DenseMatrix.fromArray(S);
+		assertTrue(L.choleskyInPlace());
+		assertTrue(ParallelKernels.choleskyInPlace(parL));
+		assertMatrixEquals(L.toArray(), parL.toArray(), n, n);
+		S[n-1][n-1] = -1.;
+		assertFalse(ParallelKernels.choleskyInPlace(DenseMatrix.fromArray(S)));
+
+		// Sherman-Morrison
+		final DenseMatrix Ainv = DenseMatrix.fromArray(A);
+		final DenseMatrix parAinv = DenseMatrix.fromArray(A);
+		Ainv.shermanMorrison(u, v, new double[n], new double[n]);
+		ParallelKernels.shermanMorrison(parAinv, u, v, new double[n],
+				new double[n]);
+		assertMatrixEquals(Ainv.toArray(), parAinv.toArray(), n, n);
+	}
+}
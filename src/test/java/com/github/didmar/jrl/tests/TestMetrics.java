@@ -0,0 +1,240 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.features.CachedFeatures;
+import com.github.didmar.jrl.features.CompatibleFeatures;
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.KroneckerFeatures;
+import com.github.didmar.jrl.features.NormalizedFeatures;
+import com.github.didmar.jrl.features.OneHotActionFeatures;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.ConstantActionPolicy;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Counter;
+import com.github.didmar.jrl.utils.metrics.Histogram;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+import com.github.didmar.jrl.utils.metrics.MetricsReporter;
+
+/**
+ * Unit test class for the runtime metrics.
+ * @author Didier Marin
+ */
+public class TestMetrics {
+
+	@Before
+	public void enable() {
+		Metrics.setEnabled(true);
+	}
+
+	@After
+	public void disable() {
+		Metrics.setEnabled(false);
+	}
+
+	@Test
+	public void counter() {
+		final Counter c = Metrics.counter("TestMetrics.counter");
+		c.reset();
+		assertSame(c, Metrics.counter("TestMetrics.counter"));
+		c.increment();
+		c.add(41);
+		assertEquals(42, c.getCount());
+		// Increments are ignored while the metrics are disabled
+		Metrics.setEnabled(false);
+		c.increment();
+		c.add(10);
+		assertEquals(42, c.getCount());
+		assertTrue(Metrics.snapshot().contains("TestMetrics.counter=42\n"));
+		c.reset();
+		assertEquals(0, c.getCount());
+	}
+
+	@Test
+	public void histogramBuckets() {
+		// One bucket per value below 16
+		for(long v=0; v<16; v++) {
+			assertEquals(v, Histogram.bucketIndex(v));
+			assertEquals(v, Histogram.bucketUpperBound((int) v));
+		}
+		// 8 buckets per power of two above
+		assertEquals(16, Histogram.bucketIndex(16));
+		assertEquals(16, Histogram.bucketIndex(17));
+		assertEquals(17, Histogram.bucketIndex(18));
+		assertEquals(17, Histogram.bucketUpperBound(16));
+		// The last bucket holds the largest value
+		final int last = Histogram.bucketIndex(Long.MAX_VALUE);
+		assertEquals(16 + 59 * 8 - 1, last);
+		assertEquals(Long.MAX_VALUE, Histogram.bucketUpperBound(last));
+		// Each value is in the bucket whose upper bound follows it, with a
+		// relative error below 1/8
+		for(int e=4; e<63; e++) {
+			for(long v : new long[]{(1L << e) - 1, 1L << e, (1L << e) + 1,
+					(1L << e) + (1L << (e-1)) + 3}) {
+				final int i = Histogram.bucketIndex(v);
+				assertTrue(Histogram.bucketUpperBound(i) >= v);
+				assertTrue(Histogram.bucketUpperBound(i-1) < v);
+				assertTrue(Histogram.bucketUpperBound(i) - v <= v / 8);
+			}
+		}
+	}
+
+	@Test
+	public void histogramQuantiles() {
+		final Histogram h = Metrics.histogram("TestMetrics.histogram");
+		h.reset();
+		// Empty histogram
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getQuantile(0.));
+		assertEquals(0, h.getQuantile(1.));
+		assertEquals(0., h.getMean(), 0.);
+		try {
+			h.getQuantile(1.5);
+			fail("A quantile must be in [0,1]");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		// Zero, and negative values recorded as zero
+		h.record(0);
+		h.record(-5);
+		assertEquals(0, h.getQuantile(0.));
+		assertEquals(0, h.getQuantile(1.));
+		assertEquals(0, h.getMax());
+		// The largest value
+		h.record(Long.MAX_VALUE);
+		assertEquals(0, h.get50thPercentile());
+		assertEquals(Long.MAX_VALUE, h.getQuantile(1.));
+		assertEquals(Long.MAX_VALUE, h.getMax());
+		// Quantiles of 1..1000, within the bucket resolution
+		h.reset();
+		for(long v=1; v<=1000; v++) {
+			h.record(v);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(500.5, h.getMean(), 1e-12);
+		assertEquals(1, h.getQuantile(0.));
+		assertTrue(h.get50thPercentile() >= 500);
+		assertTrue(h.get50thPercentile() <= 500 * 9 / 8);
+		assertTrue(h.get99thPercentile() >= 990);
+		// Never above the largest recorded value
+		assertEquals(1000, h.getQuantile(1.));
+		// Values are ignored while the metrics are disabled
+		Metrics.setEnabled(false);
+		h.record(3);
+		assertEquals(1000, h.getCount());
+	}
+
+	@Test
+	public void reporterRate() throws Exception {
+		final Counter c = Metrics.counter("TestMetrics.reporter");
+		c.reset();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final MetricsReporter reporter = new MetricsReporter(
+				new PrintStream(bytes), 1000);
+		// No rate at the first report
+		final long start = System.nanoTime();
+		reporter.report();
+		assertFalse(bytes.toString().contains("TestMetrics.reporter.perSec="));
+		c.add(500);
+		Thread.sleep(50);
+		bytes.reset();
+		reporter.report();
+		final double elapsed = (System.nanoTime() - start) / 1e9;
+		final String report = bytes.toString();
+		assertTrue(report.contains("TestMetrics.reporter=500\n"));
+		final String key = "TestMetrics.reporter.perSec=";
+		final int i = report.indexOf(key);
+		assertTrue(i >= 0);
+		final double rate = Double.parseDouble(report.substring(
+				i + key.length(), report.indexOf('\n', i)));
+		// 500 increments over at least 50ms, and at most the elapsed time
+		assertTrue("rate=" + rate, rate >= 500 / elapsed);
+		assertTrue("rate=" + rate, rate <= 500 / 0.05);
+	}
+
+	/** Counts the samples and episodes it is notified of */
+	private static final class StepCounter implements EnvironmentListener {
+		int nbSteps = 0;
+		int nbEpisodes = 0;
+
+		public void newEpisode(double[] x0, int maxT) {
+			nbEpisodes++;
+		}
+
+		public void receiveSample(double[] x, double[] u, double[] xn,
+				double r, boolean isTerminal) {
+			nbSteps++;
+		}
+
+		public void endEpisode() {
+			// Nothing to do
+		}
+	}
+
+	@Test
+	public void environmentCounters() {
+		final Counter steps = Metrics.counter("environment.steps");
+		final Counter episodes = Metrics.counter("environment.episodes");
+		final Histogram lengths = Metrics.histogram("environment.episodeLength");
+		final Histogram latency = Metrics.histogram("StepCounter.receiveSample");
+		steps.reset();
+		episodes.reset();
+		lengths.reset();
+		latency.reset();
+		final PointMass env = new PointMass();
+		final StepCounter counter = new StepCounter();
+		env.addListener(counter);
+		env.interact(new PolicyAgent(new ConstantActionPolicy(
+				new double[]{0.})), 7, 20);
+		assertEquals(7, counter.nbEpisodes);
+		assertEquals(counter.nbSteps, steps.getCount());
+		assertEquals(7, episodes.getCount());
+		assertEquals(7, lengths.getCount());
+		assertEquals((double) counter.nbSteps / 7, lengths.getMean(), 1e-12);
+		assertEquals(counter.nbSteps, latency.getCount());
+	}
+
+	/** Number of features vectors counted for one call to phi */
+	private static long phiCount(Features feat, double[] x) {
+		final Counter phi = Metrics.counter("features.phi");
+		final long before = phi.getCount();
+		feat.phi(x, new double[feat.outDim]);
+		return phi.getCount() - before;
+	}
+
+	@Test
+	public void featuresCountedOnce() {
+		final RBFFeatures rbf = new RBFFeatures(ArrUtils.buildGrid(
+				new double[]{0.}, new double[]{1.}, 5), new double[]{0.1}, false);
+		final double[] x = {0.3};
+		final double[] xu = {0.3, 1.};
+		assertEquals(1, phiCount(rbf, x));
+		assertEquals(1, phiCount(new NormalizedFeatures(rbf), x));
+		final CachedFeatures cached = new CachedFeatures(
+				new NormalizedFeatures(rbf), 16);
+		assertEquals(1, phiCount(cached, x));
+		assertEquals(1, phiCount(cached, x));
+		assertEquals(1, phiCount(new KroneckerFeatures(rbf,
+				new OneHotActionFeatures(new double[][]{{0.}, {1.}})), xu));
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(rbf,
+				new double[]{0.1}, new double[]{-1.}, new double[]{1.}, false);
+		assertEquals(1, phiCount(new CompatibleFeatures(pol, 1, 1), xu));
+		// Batches count their inputs
+		final Counter phi = Metrics.counter("features.phi");
+		final long before = phi.getCount();
+		new NormalizedFeatures(rbf).phi(new double[][]{x, x, x},
+				new double[3][rbf.outDim], 3);
+		assertEquals(3, phi.getCount() - before);
+	}
+}
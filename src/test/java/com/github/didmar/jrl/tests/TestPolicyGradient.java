@@ -0,0 +1,141 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.agent.TNPG;
+import com.github.didmar.jrl.environment.Logger;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.PointMass.PointMassRewardType;
+import com.github.didmar.jrl.evaluation.OnlineGPOMDPEstimator;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Episode;
+import com.github.didmar.jrl.utils.RandUtils;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Unit test class for the policy gradient agents, on the Point Mass problem.
+ * @author Didier Marin
+ */
+public class TestPolicyGradient {
+
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 50;
+	private static final int nEpiPerUpdate = 10;
+	private static final int cgIterations = 10;
+	private static final double damping = 0.1;
+	private static final double maxKL = 0.05;
+	private static final double sigma = 0.05;
+
+	private static PointMass newEnv() {
+		return new PointMass(ArrUtils.constvec(1, 0.25),
+				ArrUtils.constvec(1, 0.75), PointMassRewardType.COST, true);
+	}
+
+	private static LinearGaussianPolicy newPolicy(PointMass env) {
+		final RBFFeatures feat = new RBFFeatures(
+				ArrUtils.buildGrid(env.getXMin(), env.getXMax(), 11),
+				ArrUtils.constvec(env.getXDim(), 0.01), true);
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(feat,
+				ArrUtils.constvec(env.getUDim(), sigma), env.getUMin(),
+				env.getUMax(), false);
+		// The updates are not modified by the parameters bounds, and the
+		// log-policy derivatives are those of the unnormalized mean action
+		pol.useBoundedParams(false);
+		return pol;
+	}
+
+	/** Mean discounted return of the policy */
+	private static double evaluate(PointMass env, LinearGaussianPolicy pol,
+			int nbEpi) {
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		env.addListener(log);
+		env.interact(new PolicyAgent(pol), nbEpi, maxT);
+		env.removeListener(log);
+		return ArrUtils.mean(log.discountedReward(gamma));
+	}
+
+	@Test
+	public void tnpgImprovesReturn() {
+		RandUtils.setSeed(0);
+		final PointMass env = newEnv();
+		final LinearGaussianPolicy pol = newPolicy(env);
+		final double J0 = evaluate(env, pol, 100);
+		final TNPG agent = new TNPG(pol, maxKL, nEpiPerUpdate,
+				new OnlineGPOMDPEstimator(pol, gamma, true), cgIterations,
+				damping);
+		env.addListener(agent);
+		env.interact(agent, 20 * nEpiPerUpdate, maxT);
+		env.removeListener(agent);
+		final double J = evaluate(env, pol, 100);
+		assertTrue("J0=" + J0 + " J=" + J, J > J0 + 0.3);
+	}
+
+	@Test
+	public void tnpgStepRespectsTrustRegion() {
+		RandUtils.setSeed(0);
+		final PointMass env = newEnv();
+		final LinearGaussianPolicy pol = newPolicy(env);
+		final int n = pol.getParamsSize();
+		final double[] theta = pol.getParams().clone();
+		final TNPG agent = new TNPG(pol, maxKL, nEpiPerUpdate,
+				new OnlineGPOMDPEstimator(pol, gamma, true), cgIterations,
+				damping);
+		final Logger log = new Logger(env.getXDim(), env.getUDim());
+		env.addListener(log);
+		env.addListener(agent);
+		env.interact(agent, nEpiPerUpdate, maxT);
+		final double[] delta = pol.getParams().clone();
+		for(int j=0; j<n; j++) {
+			delta[j] -= theta[j];
+		}
+		assertTrue(agent.getLastCGIterations() > 0);
+
+		// Damped Fisher matrix estimated from the scores of the update, at
+		// the parameters before the update
+		final LinearGaussianPolicy old = newPolicy(env);
+		old.setParams(theta);
+		final double[][] F = new double[n][n];
+		double trace = 0.;
+		for(Episode epi : log.getEpisodes()) {
+			for(int t=0; t<epi.getT(); t++) {
+				final double[] psi = old.dLogdTheta(epi.getX()[t],
+						epi.getU()[t]);
+				for(int i=0; i<n; i++) {
+					trace += psi[i] * psi[i];
+					for(int j=0; j<n; j++) {
+						F[i][j] += psi[i] * psi[j] / nEpiPerUpdate;
+					}
+				}
+			}
+		}
+		final double lambda = damping * trace / (nEpiPerUpdate * n);
+		double dFd = 0.;
+		for(int i=0; i<n; i++) {
+			for(int j=0; j<n; j++) {
+				dFd += delta[i] * (F[i][j] + (i == j ? lambda : 0.)) * delta[j];
+			}
+		}
+		// The step is on the border of the trust region
+		assertEquals(maxKL, 0.5 * dFd, 1e-9 * maxKL);
+
+		// The KL divergence between the trajectory distributions, on the
+		// states of the update, stays of the order of maxKL
+		final double[] muOld = new double[env.getUDim()];
+		final double[] muNew = new double[env.getUDim()];
+		double kl = 0.;
+		for(Episode epi : log.getEpisodes()) {
+			for(int t=0; t<epi.getT(); t++) {
+				old.meanAction(epi.getX()[t], muOld);
+				pol.meanAction(epi.getX()[t], muNew);
+				final double d = muNew[0] - muOld[0];
+				kl += d * d / (2. * sigma * sigma) / nEpiPerUpdate;
+			}
+		}
+		assertTrue("KL=" + kl, kl > 0.5 * maxKL && kl < 2. * maxKL);
+	}
+}
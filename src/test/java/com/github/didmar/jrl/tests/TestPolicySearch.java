@@ -0,0 +1,189 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.CEPS;
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.stepsize.ConstantStepSize;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.PGPEParametersDistribution;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Unit test class for the policy search agents, on a deterministic Point
+ * Mass with a deterministic policy, so that the performance of some
+ * parameters does not depend on the episode.
+ * @author Didier Marin
+ */
+public class TestPolicySearch {
+
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 20;
+
+	/** Creates a Point Mass with a fixed start state */
+	private static final Factory<PointMass> envFactory
+		= new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass();
+		}
+	};
+
+	/** Creates a linear Gaussian policy with a null std. dev. */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final RBFFeatures feat = new RBFFeatures(ArrUtils.buildGrid(
+					env.getXMin(), env.getXMax(), 5),
+					ArrUtils.constvec(env.getXDim(), 0.05), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	/** Sets the candidates of a CEPS to constant parameters */
+	private static void setThetas(CEPS ceps, double[] values) {
+		final double[][] thetas = ceps.getThetas();
+		for(int i=0; i<thetas.length; i++) {
+			ArrUtils.constvec(thetas[i], values[i]);
+		}
+	}
+
+	private static CEPS newCEPS(int nPolEvalPerUpdate, int nEpiPerPolEval,
+			int nSelectedPol) {
+		final LinearGaussianPolicy pol = polFactory.newInstance();
+		return new CEPS(pol, nPolEvalPerUpdate, nEpiPerPolEval, nSelectedPol,
+				gamma, ArrUtils.constvec(pol.getParamsSize(), 0.1), 0.,
+				false, false);
+	}
+
+	@Test
+	public void cepsRaceEliminatesDominatedCandidates() {
+		final double[] values = {0.75, 0.7, 0.6, 0.};
+		final CEPS ceps = newCEPS(values.length, 4, 2);
+		setThetas(ceps, values);
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, 2);
+		try {
+			// Performance of each candidate, on a single episode
+			final double[][] J = new double[values.length][1];
+			rollouts.evaluate(ceps.getThetas(), 1, J);
+			// The last candidate is dominated, find the best two
+			int best = 0;
+			int second = 1;
+			for(int i=0; i<values.length; i++) {
+				if(i != values.length-1) {
+					assertTrue(J[i][0] > J[values.length-1][0] + 1.);
+				}
+				if(J[i][0] > J[best][0]) {
+					second = best;
+					best = i;
+				} else if(i != best && J[i][0] > J[second][0]) {
+					second = i;
+				}
+			}
+			// The 4 candidates get 2 episodes, then the best 2 get 2 more,
+			// instead of 4 episodes each
+			assertEquals(4 * 2 + 2 * 2, ceps.raceUpdate(rollouts, 2));
+			for(int i=0; i<values.length; i++) {
+				assertEquals(J[i][0], ceps.getMeanR()[i], 1e-12);
+			}
+			// The new distribution is made of the 2 best candidates only
+			final double[] mean = ceps.getMean();
+			for(int j=0; j<mean.length; j++) {
+				assertEquals((values[best] + values[second]) / 2., mean[j],
+						1e-12);
+			}
+		} finally {
+			rollouts.shutdown();
+		}
+	}
+
+	@Test
+	public void cepsRaceWithoutEliminationMatchesCE() {
+		final double[] values = {0.2, 0.75, 0.5, 0.65};
+		// Less episodes per candidate than eta, so nothing is eliminated
+		final CEPS racing = newCEPS(values.length, 1, 2);
+		setThetas(racing, values);
+		final CEPS sequential = newCEPS(values.length, 1, 2);
+		setThetas(sequential, values);
+		final ParallelRollouts rollouts = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, 2);
+		try {
+			assertEquals(values.length, racing.raceUpdate(rollouts, 2));
+		} finally {
+			rollouts.shutdown();
+		}
+		final PointMass env = envFactory.newInstance();
+		env.addListener(sequential);
+		env.interact(sequential, values.length, maxT);
+		assertArrayEquals(sequential.getMeanR(), racing.getMeanR(), 1e-12);
+		assertArrayEquals(sequential.getMean(), racing.getMean(), 1e-12);
+		assertArrayEquals(sequential.getSigma(), racing.getSigma(), 1e-12);
+	}
+
+	@Test
+	public void pgpeUpdateIsAGradientStep() {
+		final PGPEParametersDistribution dist = new PGPEParametersDistribution(
+				new double[]{1.}, new double[]{0.5}, 0.01,
+				new ConstantStepSize(0.1));
+		// dJ/dmean = R (theta - mean) / sigma^2 = 2 * 0.5 / 0.25 = 4
+		// dJ/dsigma = R ((theta - mean)^2 - sigma^2) / sigma^3 = 0
+		dist.updateParamsDistribution(new double[]{2.},
+				new double[][]{{1.5}});
+		assertEquals(1. + 0.1 * 4., dist.getMean()[0], 1e-12);
+		assertEquals(0.5, dist.getSigma()[0], 1e-12);
+	}
+
+	@Test
+	public void pgpeSymmetricUpdate() {
+		final double[][] eps = {{0.2, -1.}, {-0.4, 3.}};
+		final double[] RPlus = {3., 1.};
+		final double[] RMinus = {1., 2.};
+		// Baseline (3+1+1+2)/4 = 1.75, half differences 1 and -0.5, and mean
+		// performances relative to the baseline 0.25 and -0.25
+		final double[] dJdMean = {
+				1. * 0.2 - 0.5 * -0.4,
+				1. * -1. - 0.5 * 3.};
+		final double[] dJdSigma = {
+				0.25 * (0.2*0.2 - 0.5*0.5) / 0.5 - 0.25 * (0.4*0.4 - 0.5*0.5) / 0.5,
+				0.25 * (1. - 2.*2.) / 2. - 0.25 * (3.*3. - 2.*2.) / 2.};
+		final double alpha = 0.1;
+
+		PGPEParametersDistribution dist = new PGPEParametersDistribution(
+				new double[]{1., -1.}, new double[]{0.5, 2.}, 0.01,
+				new ConstantStepSize(alpha));
+		dist.updateParamsDistributionSymmetric(RPlus, RMinus, eps, false);
+		assertArrayEquals(new double[]{
+				1. + alpha * dJdMean[0] / 2., -1. + alpha * dJdMean[1] / 2.},
+				dist.getMean(), 1e-12);
+		assertArrayEquals(new double[]{
+				0.5 + alpha * dJdSigma[0] / 2., 2. + alpha * dJdSigma[1] / 2.},
+				dist.getSigma(), 1e-12);
+
+		// Normalized by the std dev of the performances
+		final double std = Math.sqrt((1.25*1.25 + 0.75*0.75 + 0.75*0.75
+				+ 0.25*0.25) / 4.);
+		dist = new PGPEParametersDistribution(new double[]{1., -1.},
+				new double[]{0.5, 2.}, 0.01, new ConstantStepSize(alpha));
+		dist.updateParamsDistributionSymmetric(RPlus, RMinus, eps, true);
+		assertArrayEquals(new double[]{
+				1. + alpha * dJdMean[0] / 2. / std,
+				-1. + alpha * dJdMean[1] / 2. / std},
+				dist.getMean(), 1e-12);
+
+		// A step larger than sigma leaves it at its minimum
+		dist = new PGPEParametersDistribution(new double[]{1., -1.},
+				new double[]{0.5, 2.}, 0.01, new ConstantStepSize(100.));
+		dist.updateParamsDistributionSymmetric(RPlus, RMinus, eps, false);
+		assertEquals(0.01, dist.getSigma()[0], 0.);
+		assertEquals(0.01, dist.getSigma()[1], 0.);
+	}
+}
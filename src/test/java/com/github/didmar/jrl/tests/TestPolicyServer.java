@@ -0,0 +1,210 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.DiscreteDeterministicPolicy;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.Policy;
+import com.github.didmar.jrl.policy.PolicySession;
+import com.github.didmar.jrl.policy.PolicySnapshot;
+import com.github.didmar.jrl.policy.server.PolicyServer;
+import com.github.didmar.jrl.policy.server.RemotePolicy;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+import com.github.didmar.jrl.utils.metrics.Metrics;
+
+/**
+ * Serves policies with a {@link PolicyServer} to {@link RemotePolicy}
+ * clients, and checks the batched kernels of the served policies.
+ * @author Didier Marin
+ */
+public class TestPolicyServer {
+
+	private static final int N_CLIENTS = 4;
+	private static final int N_REQUESTS = 500;
+
+	/** A linear Gaussian policy with a negligible std. dev., so that its
+	 * actions are its mean actions */
+	private static LinearGaussianPolicy linearGaussian() {
+		final RBFFeatures feat = new RBFFeatures(
+				ArrUtils.buildGrid(new double[]{0.,0.}, new double[]{1.,1.}, 5),
+				new double[]{0.05,0.1}, true);
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(feat,
+				new double[]{1e-12,1e-12}, new double[]{-10.,-5.},
+				new double[]{10.,5.}, true);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		return pol;
+	}
+
+	@Test
+	public void batchPolicy() {
+		final LinearGaussianPolicy pol = linearGaussian();
+		final int n = 7;
+		final double[][] xs = ArrUtils.rand(n, 2);
+		final double[][] us = new double[n][2];
+		pol.drawActions(xs, us, n);
+		final double[] mu = new double[2];
+		for(int k=0; k<n; k++) {
+			pol.meanAction(xs[k], mu);
+			assertArrayEquals(mu, us[k], 1e-9);
+		}
+	}
+
+	@Test
+	public void concurrentClients() throws Exception {
+		final LinearGaussianPolicy pol = linearGaussian();
+		final PolicySnapshot expected = pol.snapshot();
+		final PolicyServer server = new PolicyServer(pol, 2, 2, 0, 8, 200);
+		final ExecutorService executor = Executors.newFixedThreadPool(N_CLIENTS);
+		try {
+			final List<Future<Double>> futures
+				= new ArrayList<Future<Double>>(N_CLIENTS);
+			for(int t=0; t<N_CLIENTS; t++) {
+				futures.add(executor.submit(new Callable<Double>() {
+					public Double call() throws Exception {
+						final RemotePolicy remote = new RemotePolicy(server.getPort());
+						final PolicySession session = expected.newSession();
+						double maxError = 0.;
+						try {
+							assertEquals(2, remote.getXDim());
+							assertEquals(2, remote.getUDim());
+							for(int i=0; i<N_REQUESTS; i++) {
+								final double[] x = ArrUtils.rand(2);
+								remote.computePolicyDistribution(x);
+								final double[] u = remote.drawAction();
+								final double[] mu = expected.drawAction(x, session);
+								for(int j=0; j<2; j++) {
+									maxError = Math.max(maxError, Math.abs(u[j] - mu[j]));
+								}
+							}
+						} finally {
+							remote.close();
+						}
+						return maxError;
+					}
+				}));
+			}
+			for(int t=0; t<N_CLIENTS; t++) {
+				assertEquals(0., futures.get(t).get(), 1e-9);
+			}
+		} finally {
+			executor.shutdown();
+			server.close();
+		}
+	}
+
+	@Test
+	public void anyPolicy() throws Exception {
+		final int[] greedy = {2, 0, 1, 2};
+		final PolicyServer server = new PolicyServer(
+				new DiscreteDeterministicPolicy(greedy), 1, 1, 0, 4, 0);
+		final RemotePolicy remote = new RemotePolicy(server.getPort());
+		try {
+			for(int s=0; s<greedy.length; s++) {
+				remote.computePolicyDistribution(new double[]{s});
+				assertEquals(greedy[s], remote.drawAction()[0], 0.);
+			}
+			// The policy fails on an unknown state, but the connection remains
+			try {
+				remote.computePolicyDistribution(new double[]{greedy.length});
+				fail("The served policy should have failed");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+			remote.computePolicyDistribution(new double[]{1.});
+			assertEquals(greedy[1], remote.drawAction()[0], 0.);
+		} finally {
+			remote.close();
+			server.close();
+		}
+	}
+
+	/** Returns the state as action, once released */
+	private static final class BlockingPolicy implements Policy {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch released = new CountDownLatch(1);
+		private final double[] u = new double[1];
+
+		public void computePolicyDistribution(double[] x) {
+			entered.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			u[0] = x[0];
+		}
+
+		public double[] drawAction() {
+			return u;
+		}
+	}
+
+	/** Sends a request from another thread, and returns its action */
+	private static Future<Double> request(ExecutorService executor,
+			final int port, final double x) {
+		return executor.submit(new Callable<Double>() {
+			public Double call() throws Exception {
+				final RemotePolicy remote = new RemotePolicy(port);
+				try {
+					remote.computePolicyDistribution(new double[]{x});
+					return remote.drawAction()[0];
+				} finally {
+					remote.close();
+				}
+			}
+		});
+	}
+
+	@Test
+	public void fullQueueRejectsRequests() throws Exception {
+		final BlockingPolicy pol = new BlockingPolicy();
+		final PolicyServer server = new PolicyServer(pol, 1, 1, 0, 1, 0, 1);
+		final String gauge = "PolicyServer." + server.getPort() + ".queueLength";
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		final RemotePolicy remote = new RemotePolicy(server.getPort());
+		try {
+			assertTrue(Metrics.snapshot().contains(gauge + "="));
+			// The first request holds the batcher, the second fills the queue
+			final Future<Double> first = request(executor, server.getPort(), 1.);
+			assertTrue(pol.entered.await(10, TimeUnit.SECONDS));
+			final Future<Double> second = request(executor, server.getPort(), 2.);
+			final long deadline = System.currentTimeMillis() + 10000;
+			while(server.getQueueLength() < 1
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertEquals(1, server.getQueueLength());
+			try {
+				remote.computePolicyDistribution(new double[]{3.});
+				fail("The request should have been rejected");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+			// The queued requests are still served, and so are the next ones
+			pol.released.countDown();
+			assertEquals(1., first.get(), 0.);
+			assertEquals(2., second.get(), 0.);
+			remote.computePolicyDistribution(new double[]{4.});
+			assertEquals(4., remote.drawAction()[0], 0.);
+		} finally {
+			pol.released.countDown();
+			remote.close();
+			executor.shutdown();
+			server.close();
+		}
+		// The gauge of the closed server is unregistered
+		assertFalse(Metrics.snapshot().contains(gauge + "="));
+	}
+}
@@ -0,0 +1,170 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.features.KroneckerFeatures;
+import com.github.didmar.jrl.features.OneHotActionFeatures;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.features.TabularStateActionFeatures;
+import com.github.didmar.jrl.features.TabularStateFeatures;
+import com.github.didmar.jrl.mdp.GARNETMDP;
+import com.github.didmar.jrl.policy.BoltzmannPolicy;
+import com.github.didmar.jrl.policy.DiscreteDeterministicPolicy;
+import com.github.didmar.jrl.policy.DiscretePolicySnapshot;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.policy.PolicySession;
+import com.github.didmar.jrl.policy.PolicySnapshot;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Draws actions from a shared {@link PolicySnapshot} in several threads, and
+ * checks that frozen policies draw from the distribution of the policy they
+ * were compiled from.
+ * @author Didier Marin
+ */
+public class TestPolicySnapshot {
+
+	private static final int N_THREADS = 4;
+	private static final int N_DRAWS = 20000;
+
+	@Test
+	public void linearGaussian() throws Exception {
+		final RBFFeatures feat = new RBFFeatures(
+				ArrUtils.buildGrid(new double[]{0.}, new double[]{1.}, 5),
+				new double[]{0.05}, true);
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(feat,
+				new double[]{0.1}, new double[]{-10.}, new double[]{10.}, true);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		final double[] x = {0.3};
+		final double[] mu = new double[1];
+		pol.meanAction(x, mu);
+		final PolicySnapshot snapshot = pol.snapshot();
+		// Updating the policy does not affect the snapshot
+		pol.setParams(ArrUtils.zeros(pol.getParamsSize()));
+		final double[] means = runThreads(new Callable<Double>() {
+			public Double call() {
+				final PolicySession session = snapshot.newSession();
+				double sum = 0.;
+				for(int i=0; i<N_DRAWS; i++) {
+					sum += snapshot.drawAction(x, session)[0];
+				}
+				return sum / N_DRAWS;
+			}
+		});
+		for(double m : means) {
+			assertEquals(mu[0], m, 0.01);
+		}
+	}
+
+	@Test
+	public void boltzmann() throws Exception {
+		final GARNETMDP mdp = new GARNETMDP(8, 3, 2);
+		final double[][] actions = mdp.actionsGrid();
+		final BoltzmannPolicy pol = new BoltzmannPolicy(
+				new KroneckerFeatures(new TabularStateFeatures(mdp),
+						new OneHotActionFeatures(actions)), actions, 0.5);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		final double[] x = {5.};
+		final double[] probas = pol.getProbaTable(new double[][]{x})[0];
+		final DiscretePolicySnapshot snapshot = pol.snapshot();
+		pol.setTemp(100.);
+		final double[] freqs = runThreads(new Callable<Double>() {
+			public Double call() {
+				final PolicySession session = snapshot.newSession();
+				int n0 = 0;
+				for(int i=0; i<N_DRAWS; i++) {
+					if(snapshot.drawActionIndex(x, session) == 0) {
+						n0++;
+					}
+				}
+				return ((double) n0) / N_DRAWS;
+			}
+		});
+		for(double f : freqs) {
+			assertEquals(probas[0], f, 0.02);
+		}
+	}
+
+	@Test
+	public void frozenLinearGaussian() {
+		final RBFFeatures feat = new RBFFeatures(
+				ArrUtils.buildGrid(new double[]{0.,0.}, new double[]{1.,1.}, 4),
+				new double[]{0.05,0.1}, true);
+		final LinearGaussianPolicy pol = new LinearGaussianPolicy(feat,
+				new double[]{1e-12,1e-12}, new double[]{-10.,-5.},
+				new double[]{10.,5.}, true);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		final PolicySnapshot frozen = pol.freeze();
+		final PolicySession session = frozen.newSession();
+		final double[] mu = new double[2];
+		for(int i=0; i<10; i++) {
+			final double[] x = ArrUtils.rand(2);
+			pol.meanAction(x, mu);
+			assertArrayEquals(mu, frozen.drawAction(x, session), 1e-9);
+		}
+	}
+
+	@Test
+	public void frozenBoltzmann() {
+		final GARNETMDP mdp = new GARNETMDP(8, 3, 2);
+		final double[][] actions = mdp.actionsGrid();
+		final BoltzmannPolicy pol = new BoltzmannPolicy(
+				new TabularStateActionFeatures(mdp), actions, 0.5);
+		pol.setParams(ArrUtils.rand(pol.getParamsSize()));
+		final double[][] xs = {{2.},{5.}};
+		final double[][] probas = pol.getProbaTable(xs);
+		final DiscretePolicySnapshot frozen = pol.freeze();
+		assertSame(actions, frozen.getActions());
+		final PolicySession session = frozen.newSession();
+		for(int s=0; s<xs.length; s++) {
+			final int[] counts = new int[actions.length];
+			for(int i=0; i<N_DRAWS; i++) {
+				counts[frozen.drawActionIndex(xs[s], session)]++;
+			}
+			for(int a=0; a<actions.length; a++) {
+				assertEquals(probas[s][a], ((double) counts[a]) / N_DRAWS, 0.02);
+			}
+		}
+	}
+
+	@Test
+	public void frozenDeterministic() {
+		final int[] greedy = {2, 0, 1, 2};
+		final DiscretePolicySnapshot frozen
+			= new DiscreteDeterministicPolicy(greedy).freeze();
+		final PolicySession session = frozen.newSession();
+		for(int s=0; s<greedy.length; s++) {
+			final double[] u = frozen.drawAction(new double[]{s}, session);
+			assertEquals(greedy[s], u[0], 0.);
+		}
+	}
+
+	/** Runs the task in N_THREADS threads at once and returns the results */
+	private static double[] runThreads(Callable<Double> task)
+			throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
+		try {
+			final List<Future<Double>> futures
+				= new ArrayList<Future<Double>>(N_THREADS);
+			for(int t=0; t<N_THREADS; t++) {
+				futures.add(executor.submit(task));
+			}
+			final double[] results = new double[N_THREADS];
+			for(int t=0; t<N_THREADS; t++) {
+				results[t] = futures.get(t).get();
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import com.github.didmar.jrl.utils.AliasTable;
 import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
 
@@ -26,4 +27,45 @@ public class TestRandUtils {
 		assertTrue(Math.abs( ArrUtils.mean(samples) - mu[0]) < 0.1);
 		assertTrue(Math.abs( ArrUtils.std(samples) - sigma[0]) < 0.1);
 	}
+
+	/**
+	 * Test method for {@link com.github.didmar.jrl.utils.RandUtils#discreteIndex(double[], int, double)}.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void testDiscreteIndex() {
+		final double[] prob = {0.2, 0., 0.5, 0.3, 0., 0.};
+		assertEquals(0, RandUtils.discreteIndex(prob, prob.length, 0.));
+		assertEquals(2, RandUtils.discreteIndex(prob, prob.length, 0.2));
+		assertEquals(3, RandUtils.discreteIndex(prob, prob.length, 0.7));
+		// A draw beyond the cumulative sum, as left by rounding errors, gives
+		// the last event with a positive probability
+		assertEquals(3, RandUtils.discreteIndex(prob, prob.length, 1.));
+		assertEquals(2, RandUtils.discreteIndex(prob, 3, 1.));
+		assertEquals(0, RandUtils.discreteIndex(new double[]{0., 0.}, 2, 0.5));
+	}
+
+	/**
+	 * Test method for {@link com.github.didmar.jrl.utils.AliasTable#draw()}.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void testAliasTable() {
+		final double[] prob = {0.5, 0., 0.05, 0.3, 0., 0.15};
+		final AliasTable table = new AliasTable(prob);
+		assertEquals(4, table.size());
+		final int nbDraws = 100000;
+		final double[] freq = new double[prob.length];
+		for(int i=0; i<nbDraws; i++) {
+			freq[table.draw()] += 1. / nbDraws;
+		}
+		for(int i=0; i<prob.length; i++) {
+			if(prob[i] == 0.) {
+				assertEquals(0., freq[i], 0.);
+			} else {
+				assertEquals(prob[i], freq[i], 0.01);
+			}
+		}
+		assertEquals(2, new AliasTable(new double[]{0., 0., 1.}).draw());
+	}
 }
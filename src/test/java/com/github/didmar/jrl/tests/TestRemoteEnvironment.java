@@ -0,0 +1,178 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.didmar.jrl.environment.ParallelRollouts;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.remote.RemoteEnvironment;
+import com.github.didmar.jrl.environment.remote.RemoteSimulator;
+import com.github.didmar.jrl.environment.remote.SimulatorServer;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.Factory;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Simulates environments in a {@link SimulatorServer}, and runs them through
+ * {@link RemoteEnvironment}s.
+ * @author Didier Marin
+ */
+public class TestRemoteEnvironment {
+
+	private static final DiscountFactor gamma = new DiscountFactor(0.95);
+	private static final int maxT = 50;
+
+	/** Creates a deterministic Point Mass */
+	private static final Factory<PointMass> envFactory
+		= new Factory<PointMass>() {
+		public PointMass newInstance() {
+			return new PointMass();
+		}
+	};
+
+	/** Creates a linear Gaussian policy with a null std. dev., so that the
+	 * episodes are deterministic */
+	private static final Factory<LinearGaussianPolicy> polFactory
+		= new Factory<LinearGaussianPolicy>() {
+		public LinearGaussianPolicy newInstance() {
+			final PointMass env = envFactory.newInstance();
+			final RBFFeatures feat = new RBFFeatures(ArrUtils.buildGrid(
+					env.getXMin(), env.getXMax(), 5),
+					ArrUtils.constvec(env.getXDim(), 0.05), true);
+			return new LinearGaussianPolicy(feat,
+					ArrUtils.constvec(env.getUDim(), 0.),
+					env.getUMin(), env.getUMax(), true);
+		}
+	};
+
+	@Test
+	public void sameTransitions() throws Exception {
+		final PointMass local = envFactory.newInstance();
+		final SimulatorServer server = new SimulatorServer(
+				envFactory.newInstance(), 0);
+		final RemoteSimulator sim = new RemoteSimulator(server.getPort());
+		try {
+			final RemoteEnvironment remote = sim.newInstance();
+			assertEquals(local.getXDim(), remote.getXDim());
+			assertEquals(local.getUDim(), remote.getUDim());
+			assertArrayEquals(local.getUMax(), remote.getUMax(), 0.);
+			double[] x = remote.startState().clone();
+			assertArrayEquals(local.startState(), x, 0.);
+			for(int t=0; t<20; t++) {
+				final double[] u = ArrUtils.rand(local.getUDim());
+				final double[] xn = remote.nextState(x, u);
+				final double[] expected = local.nextState(x, u).clone();
+				assertArrayEquals(expected, xn, 0.);
+				assertEquals(local.reward(x, u, expected), remote.reward(x, u, xn), 0.);
+				assertEquals(local.isTerminal(x, u, expected),
+						remote.isTerminal(x, u, xn));
+				x = xn.clone();
+			}
+			// Only the last transition is known
+			try {
+				remote.reward(x, x, x);
+				fail("The reward of an unknown transition should not be known");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+		} finally {
+			sim.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void concurrentEpisodes() throws Exception {
+		final int nThreads = 4;
+		final double[][] thetas = new double[3][];
+		for(int i=0; i<thetas.length; i++) {
+			thetas[i] = ArrUtils.rand(polFactory.newInstance().getParamsSize());
+		}
+		final int nbEpi = 8;
+		final double[][] expected = new double[thetas.length][nbEpi];
+		final ParallelRollouts local = new ParallelRollouts(envFactory,
+				polFactory, gamma, maxT, nThreads);
+		local.evaluate(thetas, nbEpi, expected);
+		local.shutdown();
+
+		final SimulatorServer server = new SimulatorServer(
+				envFactory.newInstance(), 0);
+		final RemoteSimulator sim = new RemoteSimulator(server.getPort());
+		try {
+			final double[][] R = new double[thetas.length][nbEpi];
+			final ParallelRollouts remote = new ParallelRollouts(sim,
+					polFactory, gamma, maxT, nThreads);
+			remote.evaluate(thetas, nbEpi, R);
+			remote.shutdown();
+			// All the workers share the connection
+			assertEquals(nThreads, sim.getNbChannels());
+			for(int i=0; i<thetas.length; i++) {
+				assertArrayEquals(expected[i], R[i], 1e-9);
+			}
+		} finally {
+			sim.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void closedChannelsAreReused() throws Exception {
+		final SimulatorServer server = new SimulatorServer(
+				envFactory.newInstance(), 0);
+		final RemoteSimulator sim = new RemoteSimulator(server.getPort());
+		try {
+			final RemoteEnvironment[] envs = new RemoteEnvironment[3];
+			for(int i=0; i<envs.length; i++) {
+				envs[i] = sim.newInstance();
+				assertEquals(i, envs[i].getChannel());
+				envs[i].startState();
+			}
+			envs[1].close();
+			assertEquals(2, sim.getNbChannels());
+			try {
+				envs[1].startState();
+				fail("A closed remote environment should not be usable");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+			// The lowest free number is reused, and the channel works
+			final RemoteEnvironment reused = sim.newInstance();
+			assertEquals(1, reused.getChannel());
+			assertArrayEquals(envFactory.newInstance().startState(),
+					reused.startState(), 0.);
+			assertEquals(3, sim.newInstance().getChannel());
+			// Channels which come and go do not grow the table
+			for(int i=0; i<100; i++) {
+				final RemoteEnvironment env = sim.newInstance();
+				assertEquals(4, env.getChannel());
+				env.startState();
+				env.close();
+			}
+			assertEquals(4, sim.getNbChannels());
+			envs[0].startState();
+			envs[2].startState();
+		} finally {
+			sim.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void simulatorFailure() throws Exception {
+		final SimulatorServer server = new SimulatorServer(
+				envFactory.newInstance(), 0);
+		final RemoteSimulator sim = new RemoteSimulator(server.getPort());
+		final RemoteEnvironment remote = sim.newInstance();
+		remote.startState();
+		server.close();
+		try {
+			remote.startState();
+			fail("The connection to the simulator should have failed");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package com.github.didmar.jrl.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+
+import com.github.didmar.jrl.agent.PolicyAgent;
+import com.github.didmar.jrl.environment.EnvironmentListener;
+import com.github.didmar.jrl.environment.PointMass;
+import com.github.didmar.jrl.environment.stream.ListenerSubscriber;
+import com.github.didmar.jrl.environment.stream.Sample;
+import com.github.didmar.jrl.environment.stream.SamplePublisher;
+import com.github.didmar.jrl.environment.stream.Subscriber;
+import com.github.didmar.jrl.environment.stream.Subscription;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.policy.LinearGaussianPolicy;
+import com.github.didmar.jrl.utils.array.ArrUtils;
+
+/**
+ * Subscribes to the samples of an environment through a
+ * {@link SamplePublisher}.
+ * @author Didier Marin
+ */
+public class TestSamplePublisher {
+
+	private static final int nbEpi = 5;
+	private static final int maxT = 20;
+
+	private static PolicyAgent agent(PointMass env) {
+		final RBFFeatures feat = new RBFFeatures(ArrUtils.buildGrid(
+				env.getXMin(), env.getXMax(), 5),
+				ArrUtils.constvec(env.getXDim(), 0.05), true);
+		return new PolicyAgent(new LinearGaussianPolicy(feat,
+				ArrUtils.constvec(env.getUDim(), 0.1), env.getUMin(),
+				env.getUMax(), true));
+	}
+
+	/** Records the rewards and episodes it is notified of */
+	private static class Recorder implements EnvironmentListener {
+		final List<Double> rewards = new ArrayList<Double>();
+		int nbEpisodes = 0;
+		int nbEnded = 0;
+
+		public void newEpisode(double[] x0, int maxT) {
+			nbEpisodes++;
+		}
+
+		public void receiveSample(double[] x, double[] u, double[] xn,
+				double r, boolean isTerminal) {
+			rewards.add(r);
+		}
+
+		public void endEpisode() {
+			nbEnded++;
+		}
+	}
+
+	/** Requests one sample at a time, after a pause, and records the
+	 * rewards */
+	private static final class SlowSubscriber implements Subscriber<Sample> {
+		final List<Double> rewards = new ArrayList<Double>();
+		final CountDownLatch completed = new CountDownLatch(1);
+		@Nullable Subscription subscription = null;
+
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		public void onNext(Sample sample) {
+			rewards.add(sample.getR());
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			final Subscription subscription = this.subscription;
+			if(subscription != null) {
+				subscription.request(1);
+			}
+		}
+
+		public void onError(Throwable error) {
+			// Not expected
+		}
+
+		public void onComplete() {
+			completed.countDown();
+		}
+	}
+
+	@Test
+	public void subscribersReceiveAllSamples() throws Exception {
+		final PointMass env = new PointMass();
+		final Recorder expected = new Recorder();
+		env.addListener(expected);
+		final SamplePublisher publisher = SamplePublisher.attach(env, 4);
+		final SlowSubscriber slow = new SlowSubscriber();
+		publisher.subscribe(slow);
+		final Recorder recorder = new Recorder();
+		final CountDownLatch completed = new CountDownLatch(1);
+		publisher.subscribe(new Subscriber<Sample>() {
+			final ListenerSubscriber delegate = new ListenerSubscriber(recorder, 4);
+			public void onSubscribe(Subscription subscription) {
+				delegate.onSubscribe(subscription);
+			}
+			public void onNext(Sample sample) {
+				delegate.onNext(sample);
+			}
+			public void onError(Throwable error) {
+				delegate.onError(error);
+			}
+			public void onComplete() {
+				delegate.onComplete();
+				completed.countDown();
+			}
+		});
+		assertEquals(2, publisher.getNbSubscribers());
+		env.interact(agent(env), nbEpi, maxT);
+		publisher.close();
+		assertTrue(slow.completed.await(10, TimeUnit.SECONDS));
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		assertEquals(expected.rewards, slow.rewards);
+		assertEquals(expected.rewards, recorder.rewards);
+		assertEquals(nbEpi, recorder.nbEpisodes);
+		assertEquals(nbEpi, recorder.nbEnded);
+		// All the samples went back to the pool
+		assertEquals(4, publisher.getNbFreeSamples());
+	}
+
+	@Test
+	public void slowSubscriberThrottlesSimulation() throws Exception {
+		final int poolSize = 4;
+		final PointMass env = new PointMass();
+		final SamplePublisher publisher = SamplePublisher.attach(env, poolSize);
+		final Recorder simulated = new Recorder();
+		env.addListener(simulated);
+		// Receives 2 samples, then stops requesting
+		final List<Subscription> subscriptions = new ArrayList<Subscription>();
+		final CountDownLatch received = new CountDownLatch(2);
+		publisher.subscribe(new Subscriber<Sample>() {
+			public void onSubscribe(Subscription subscription) {
+				synchronized(subscriptions) {
+					subscriptions.add(subscription);
+				}
+				subscription.request(2);
+			}
+			public void onNext(Sample sample) {
+				received.countDown();
+			}
+			public void onError(Throwable error) {
+				// Not expected
+			}
+			public void onComplete() {
+				// Not expected
+			}
+		});
+		final Thread simulation = new Thread(new Runnable() {
+			public void run() {
+				env.interact(agent(env), nbEpi, maxT);
+			}
+		});
+		simulation.start();
+		assertTrue(received.await(10, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		// 2 samples were received, the pool is held by the next ones, and the
+		// simulation waits for a free sample
+		assertTrue(simulation.isAlive());
+		assertEquals(0, publisher.getNbFreeSamples());
+		assertEquals(2 + poolSize, simulated.rewards.size());
+		// Cancelling the subscription releases the simulation
+		synchronized(subscriptions) {
+			subscriptions.get(0).cancel();
+		}
+		simulation.join(10000);
+		assertFalse(simulation.isAlive());
+		assertEquals(nbEpi * maxT, simulated.rewards.size());
+		assertEquals(0, publisher.getNbSubscribers());
+	}
+
+	@Test
+	public void closeReleasesWaitingSimulation() throws Exception {
+		final int poolSize = 4;
+		final PointMass env = new PointMass();
+		final SamplePublisher publisher = SamplePublisher.attach(env, poolSize);
+		final Recorder simulated = new Recorder();
+		env.addListener(simulated);
+		// Subscribes without requesting any sample
+		final List<Subscription> subscriptions = new ArrayList<Subscription>();
+		final List<Double> rewards = new ArrayList<Double>();
+		final CountDownLatch completed = new CountDownLatch(1);
+		publisher.subscribe(new Subscriber<Sample>() {
+			public void onSubscribe(Subscription subscription) {
+				synchronized(subscriptions) {
+					subscriptions.add(subscription);
+				}
+			}
+			public void onNext(Sample sample) {
+				rewards.add(sample.getR());
+			}
+			public void onError(Throwable error) {
+				// Not expected
+			}
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		final Thread simulation = new Thread(new Runnable() {
+			public void run() {
+				env.interact(agent(env), nbEpi, maxT);
+			}
+		});
+		simulation.start();
+		final long deadline = System.currentTimeMillis() + 10000;
+		while(simulated.rewards.size() < poolSize
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		Thread.sleep(200);
+		// The pool is held by the subscriber, and the simulation waits for a
+		// free sample to publish the next one
+		assertTrue(simulation.isAlive());
+		assertEquals(0, publisher.getNbFreeSamples());
+		assertEquals(poolSize, simulated.rewards.size());
+		// Closing the publisher releases the simulation, whose next samples
+		// are dropped
+		publisher.close();
+		simulation.join(10000);
+		assertFalse(simulation.isAlive());
+		assertEquals(nbEpi * maxT, simulated.rewards.size());
+		// The subscriber still receives the samples published before
+		synchronized(subscriptions) {
+			subscriptions.get(0).request(Long.MAX_VALUE);
+		}
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		assertEquals(simulated.rewards.subList(0, poolSize), rewards);
+		assertEquals(poolSize, publisher.getNbFreeSamples());
+	}
+
+	@Test
+	public void failingListenerKeepsItsError() throws Exception {
+		final PointMass env = new PointMass();
+		final SamplePublisher publisher = SamplePublisher.attach(env, 4);
+		final IllegalStateException failure = new IllegalStateException("Failed");
+		final Recorder recorder = new Recorder() {
+			@Override
+			public void receiveSample(double[] x, double[] u, double[] xn,
+					double r, boolean isTerminal) {
+				super.receiveSample(x, u, xn, r, isTerminal);
+				if(rewards.size() == 3) {
+					throw failure;
+				}
+			}
+		};
+		final ListenerSubscriber subscriber = new ListenerSubscriber(recorder, 4);
+		publisher.subscribe(subscriber);
+		env.interact(agent(env), nbEpi, maxT);
+		final long deadline = System.currentTimeMillis() + 10000;
+		while(subscriber.getError() == null
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		// The listener was not fed after it failed, and its error is kept
+		assertSame(failure, subscriber.getError());
+		assertEquals(3, recorder.rewards.size());
+		assertEquals(1, recorder.nbEnded);
+		assertEquals(0, publisher.getNbSubscribers());
+		publisher.close();
+	}
+
+	@Test
+	public void failingSubscriberReleasesThePool() throws Exception {
+		final PointMass env = new PointMass();
+		final SamplePublisher publisher = SamplePublisher.attach(env, 4);
+		final Recorder simulated = new Recorder();
+		env.addListener(simulated);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final CountDownLatch failed = new CountDownLatch(1);
+		publisher.subscribe(new Subscriber<Sample>() {
+			int nbReceived = 0;
+			public void onSubscribe(Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+			public void onNext(Sample sample) {
+				if(++nbReceived == 2) {
+					throw new AssertionError("Failed");
+				}
+			}
+			public void onError(Throwable error) {
+				errors.add(error);
+				failed.countDown();
+			}
+			public void onComplete() {
+				// Not expected
+			}
+		});
+		final Thread simulation = new Thread(new Runnable() {
+			public void run() {
+				env.interact(agent(env), nbEpi, maxT);
+			}
+		});
+		simulation.start();
+		// Even an Error cancels the subscription, which gives its samples
+		// back, so the simulation is not blocked
+		assertTrue(failed.await(10, TimeUnit.SECONDS));
+		simulation.join(10000);
+		assertFalse(simulation.isAlive());
+		assertEquals(nbEpi * maxT, simulated.rewards.size());
+		assertTrue(errors.get(0) instanceof AssertionError);
+		assertEquals(0, publisher.getNbSubscribers());
+		// A sample offered while the subscription ended is given back by
+		// its last drain task
+		final long deadline = System.currentTimeMillis() + 10000;
+		while(publisher.getNbFreeSamples() < 4
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(4, publisher.getNbFreeSamples());
+		publisher.close();
+	}
+}
@@ -13,12 +13,16 @@ import com.github.didmar.jrl.environment.EnvironmentListener;
 import com.github.didmar.jrl.environment.discrete.BoyanChain;
 import com.github.didmar.jrl.environment.discrete.DiscreteEnvironment;
 import com.github.didmar.jrl.environment.discrete.DiscreteMDPEnvironment;
+import com.github.didmar.jrl.evaluation.StepContext;
 import com.github.didmar.jrl.evaluation.valuefunction.BoyanChainVFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearQFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.LinearVFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.TabularQFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.TabularVFunction;
 import com.github.didmar.jrl.evaluation.valuefunction.VFunction;
+import com.github.didmar.jrl.evaluation.vflearner.QLearning;
+import com.github.didmar.jrl.evaluation.vflearner.TabularQLearning;
+import com.github.didmar.jrl.evaluation.vflearner.TabularSARSA;
 import com.github.didmar.jrl.evaluation.vflearner.VFunctionLearner;
 import com.github.didmar.jrl.evaluation.vflearner.gtd.TDC;
 import com.github.didmar.jrl.evaluation.vflearner.ktd.KTDLambda;
@@ -28,25 +32,61 @@ import com.github.didmar.jrl.evaluation.vflearner.lstd.LSTD;
 import com.github.didmar.jrl.evaluation.vflearner.td.TDLambda;
 import com.github.didmar.jrl.evaluation.vflearner.td.TDZero;
 import com.github.didmar.jrl.features.BoyanChainFeatures;
+import com.github.didmar.jrl.features.Features;
+import com.github.didmar.jrl.features.KroneckerFeatures;
+import com.github.didmar.jrl.features.OneHotActionFeatures;
+import com.github.didmar.jrl.features.RBFFeatures;
+import com.github.didmar.jrl.features.StateActionIndicatorFeatures;
 import com.github.didmar.jrl.features.TabularStateActionFeatures;
 import com.github.didmar.jrl.features.TabularStateFeatures;
+import com.github.didmar.jrl.mdp.DiscreteMDP;
+import com.github.didmar.jrl.mdp.GARNETMDP;
 import com.github.didmar.jrl.mdp.TwoStateMDP;
+import com.github.didmar.jrl.mdp.dp.LSPE;
 import com.github.didmar.jrl.mdp.dp.PolicyEvaluation;
+import com.github.didmar.jrl.policy.BoltzmannPolicy;
 import com.github.didmar.jrl.policy.BoltzmannPolicyOverQ;
 import com.github.didmar.jrl.policy.ConstantActionPolicy;
 import com.github.didmar.jrl.policy.DiscreteRandomPolicy;
 import com.github.didmar.jrl.policy.EpsGreedyPolicyOverQ;
 import com.github.didmar.jrl.policy.Policy;
 import com.github.didmar.jrl.policy.QFunctionBasedPolicy;
+import com.github.didmar.jrl.policy.TabularEpsGreedyPolicy;
+import com.github.didmar.jrl.policy.TabularPolicy;
 import com.github.didmar.jrl.policy.UniRandomPolicy;
 import com.github.didmar.jrl.stepsize.ConstantStepSize;
 import com.github.didmar.jrl.stepsize.DecreasingStepSize;
 import com.github.didmar.jrl.utils.DiscountFactor;
+import com.github.didmar.jrl.utils.RandUtils;
 import com.github.didmar.jrl.utils.array.ArrUtils;
 import com.github.didmar.jrl.utils.plot.QFunctionPlot;
 
+import Jama.Matrix;
+
 public class TestTDAlgorithms {
 
+	/** Counts the features vectors computed by some features */
+	private static final class CountingFeatures extends Features {
+		private final Features features;
+		int nbPhi = 0;
+
+		CountingFeatures(Features features) {
+			super(features.inDim, features.outDim);
+			this.features = features;
+		}
+
+		@Override
+		protected void computePhi(double[] x, double[] y) {
+			nbPhi++;
+			features.phi(x, y);
+		}
+
+		@Override
+		public boolean isNormalized() {
+			return features.isNormalized();
+		}
+	}
+
 	@Test
 	public void boyanChain() {
 		
@@ -185,6 +225,313 @@ public class TestTDAlgorithms {
 				));		
 	}
 	
+	@Test
+	public void stepContext() {
+		final BoyanChainFeatures feat = new BoyanChainFeatures();
+		final CountingFeatures countingFeat = new CountingFeatures(feat);
+		final DiscountFactor gamma = new DiscountFactor(0.9);
+		final TDZero td = new TDZero(new LinearVFunction(countingFeat),
+				new ConstantStepSize(0.1), gamma);
+		final LinearVFunction ref = new LinearVFunction(feat);
+		final int T = BoyanChain.CHAIN_LENGTH - 1;
+		for(int t=0; t<T; t++) {
+			final double[] x = {T-t};
+			final double[] xn = {T-t-1};
+			final boolean isTerminal = (t == T-1);
+			td.addSample(x, xn, -3., isTerminal);
+			ref.updateForState(x,
+					0.1 * ref.tdError(x, xn, -3., isTerminal, gamma));
+		}
+		// phi(xn) of each transition was reused as phi(x) of the next one
+		assertTrue(countingFeat.nbPhi <= T+1);
+		assertArrayEquals(ref.getParams(),
+				((LinearVFunction) td.getVFunction()).getParams(), 1e-12);
+		// A context must compute the features of the value function
+		final StepContext other = new StepContext(feat, null, feat.inDim);
+		other.set(new double[]{1.}, null, new double[]{0.}, true);
+		try {
+			td.addSample(other, -3.);
+			fail("The features of the context are not the ones of the value function");
+		} catch(IllegalArgumentException e) {
+			// Expected
+		}
+		assertArrayEquals(ref.getParams(),
+				((LinearVFunction) td.getVFunction()).getParams(), 1e-12);
+	}
+
+	@Test
+	public void tabularQLearning() {
+		final GARNETMDP mdp = new GARNETMDP(10, 3, 2);
+		final DiscountFactor gamma = new DiscountFactor(0.9);
+		final double[][] actions = mdp.actionsGrid();
+		final LinearQFunction linear = new LinearQFunction(
+				new TabularStateActionFeatures(mdp), 1, 1);
+		final QLearning qLearning = new QLearning(linear, actions, gamma,
+				new DiscountFactor(0.), new ConstantStepSize(0.1));
+		final TabularQFunction tabular = new TabularQFunction(mdp.n, mdp.m);
+		final TabularQLearning tabularQLearning = new TabularQLearning(
+				tabular, gamma, new ConstantStepSize(0.1));
+		// Both learners receive the same random samples
+		for(int t=0; t<1000; t++) {
+			final int x = RandUtils.nextInt(mdp.n);
+			final int u = RandUtils.nextInt(mdp.m);
+			final int xn = RandUtils.nextInt(mdp.n);
+			final boolean isTerminal = (t % 50 == 49);
+			qLearning.receiveSample(new double[]{x}, actions[u],
+					new double[]{xn}, mdp.R[x][u], isTerminal);
+			tabularQLearning.receiveSample(x, u, xn, mdp.R[x][u], isTerminal);
+		}
+		for(int x=0; x<mdp.n; x++) {
+			for(int u=0; u<mdp.m; u++) {
+				assertEquals(linear.get(new double[]{x}, actions[u]),
+						tabular.get(x, u), 1e-9);
+			}
+		}
+	}
+
+	/** A chain of n states where action 0 moves left and action 1 moves
+	 * right, rewarded when reaching or staying in the rightmost state */
+	private static DiscreteMDP chainMDP(int n) {
+		final double[] P0 = ArrUtils.constvec(n, 1. / n);
+		final double[][][] P = new double[n][2][n];
+		final double[][] R = new double[n][2];
+		for(int x=0; x<n; x++) {
+			P[x][0][Math.max(0, x-1)] = 1.;
+			P[x][1][Math.min(n-1, x+1)] = 1.;
+		}
+		R[n-2][1] = 1.;
+		R[n-1][1] = 1.;
+		return new DiscreteMDP(P0, P, R);
+	}
+
+	@Test
+	public void tabularSARSA() {
+		RandUtils.setSeed(0);
+		final DiscreteMDP mdp = chainMDP(4);
+		final DiscreteMDPEnvironment env = new DiscreteMDPEnvironment(mdp);
+		final DiscountFactor gamma = new DiscountFactor(0.8);
+		// Evaluation of a fixed policy, which moves right with probability 0.7
+		final double[][] polTab = new double[mdp.n][];
+		for(int x=0; x<mdp.n; x++) {
+			polTab[x] = new double[]{0.3, 0.7};
+		}
+		final TabularPolicy pol = new TabularPolicy() {
+			public int drawAction(int x) {
+				return (RandUtils.nextDouble() < 0.7 ? 1 : 0);
+			}
+		};
+		final TabularQFunction q = new TabularQFunction(mdp.n, mdp.m);
+		final TabularSARSA sarsa = new TabularSARSA(q, pol, gamma,
+				new DecreasingStepSize(1., 500));
+		env.addListener(sarsa);
+		env.interactTabular(pol, 2000, 50);
+		env.removeListener(sarsa);
+		final double[][] Q = new PolicyEvaluation(mdp, polTab, gamma).getQ();
+		for(int x=0; x<mdp.n; x++) {
+			for(int u=0; u<mdp.m; u++) {
+				assertEquals(Q[x][u], q.get(x, u), 0.05 * Math.abs(Q[x][u]));
+			}
+		}
+		// Control with an epsilon-greedy policy over its own Q-function,
+		// which learns to move right in every state
+		final TabularQFunction qControl = new TabularQFunction(mdp.n, mdp.m);
+		final TabularEpsGreedyPolicy epsGreedy = new TabularEpsGreedyPolicy(
+				qControl, 0.2);
+		final TabularSARSA control = new TabularSARSA(qControl, epsGreedy,
+				gamma, new ConstantStepSize(0.1));
+		env.addListener(control);
+		env.interactTabular(epsGreedy, 500, 50);
+		for(int x=0; x<mdp.n; x++) {
+			assertEquals(1, qControl.argmax(x));
+		}
+	}
+
+	@Test
+	public void actionValues() {
+		final BoyanChainFeatures feat = new BoyanChainFeatures();
+		final CountingFeatures countingFeat = new CountingFeatures(feat);
+		final double[][] actions = {{-1.}, {0.}, {1.}, {2.}};
+		final LinearQFunction q = new LinearQFunction(
+				new StateActionIndicatorFeatures(countingFeat, actions), 1, 1,
+				ArrUtils.rand(feat.outDim * actions.length));
+		// The same actions in another array and order go through the lookup
+		final double[][] otherActions = {{2.}, {0.}, {-1.}};
+		final double[] values = new double[actions.length];
+		for(int j=0; j<BoyanChain.CHAIN_LENGTH; j++) {
+			final double[] x = {j};
+			countingFeat.nbPhi = 0;
+			q.getActionValues(x, actions, values);
+			assertEquals(1, countingFeat.nbPhi);
+			for(int i=0; i<actions.length; i++) {
+				assertEquals(q.get(x, actions[i]), values[i], 1e-12);
+			}
+			q.getActionValues(x, otherActions, values);
+			for(int i=0; i<otherActions.length; i++) {
+				assertEquals(q.get(x, otherActions[i]), values[i], 1e-12);
+			}
+		}
+		// Tabular Q-functions
+		final GARNETMDP mdp = new GARNETMDP(10, 3, 2);
+		final double[][] grid = mdp.actionsGrid();
+		final LinearQFunction linear = new LinearQFunction(
+				new TabularStateActionFeatures(mdp), 1, 1,
+				ArrUtils.rand(mdp.n * mdp.m));
+		final TabularQFunction tabular = new TabularQFunction(
+				ArrUtils.rand(mdp.n, mdp.m));
+		final double[] linearValues = new double[mdp.m];
+		final double[] tabularValues = new double[mdp.m];
+		for(int j=0; j<mdp.n; j++) {
+			final double[] x = {j};
+			linear.getActionValues(x, grid, linearValues);
+			tabular.getActionValues(x, grid, tabularValues);
+			for(int i=0; i<mdp.m; i++) {
+				assertEquals(linear.get(x, grid[i]), linearValues[i], 1e-12);
+				assertEquals(tabular.get(x, grid[i]), tabularValues[i], 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void kroneckerFeatures() {
+		final RBFFeatures stateFeat = new RBFFeatures(
+				ArrUtils.buildGrid(new double[]{0.}, new double[]{1.}, 5),
+				new double[]{0.05}, true);
+		final double[][] actions = {{-1.}, {0.}, {1.}};
+		final KroneckerFeatures kron = new KroneckerFeatures(stateFeat,
+				new OneHotActionFeatures(actions));
+		// The indicator features are the one-hot case
+		final StateActionIndicatorFeatures indicator
+			= new StateActionIndicatorFeatures(stateFeat, actions);
+		for(int i=0; i<actions.length; i++) {
+			assertEquals(i, indicator.actionIndex(new double[]{actions[i][0]}));
+			final double[] xu = {0.3, actions[i][0]};
+			assertArrayEquals(kron.phi(xu), indicator.phi(xu), 0.);
+		}
+		// The same features, seen as dense state-action features
+		final Features dense = new Features(kron.inDim, kron.outDim) {
+			@Override
+			protected void computePhi(double[] x, double[] y) {
+				kron.phi(x, y);
+			}
+			@Override
+			public boolean isNormalized() {
+				return kron.isNormalized();
+			}
+		};
+		final double[] params = ArrUtils.rand(kron.outDim);
+		final LinearQFunction q = new LinearQFunction(kron, 1, 1,
+				params.clone());
+		final LinearQFunction denseQ = new LinearQFunction(dense, 1, 1,
+				params.clone());
+		final BoltzmannPolicy pol = new BoltzmannPolicy(kron, actions, 1.);
+		final BoltzmannPolicy densePol = new BoltzmannPolicy(dense, actions, 1.);
+		pol.setParams(params);
+		densePol.setParams(params);
+		final double[][] xs = new double[10][];
+		for(int j=0; j<xs.length; j++) {
+			final double[] x = {RandUtils.nextDouble()};
+			xs[j] = x;
+			final double[] probas = pol.getProbaTable(new double[][]{x})[0];
+			final double[] meanPhi = new double[kron.outDim];
+			for(int i=0; i<actions.length; i++) {
+				assertEquals(denseQ.get(x, actions[i]), q.get(x, actions[i]),
+						1e-12);
+				final double[] phixu = dense.phi(new double[]{x[0], actions[i][0]});
+				for(int l=0; l<meanPhi.length; l++) {
+					meanPhi[l] += probas[i] * phixu[l];
+				}
+			}
+			// dLogdTheta(x,u) = phi(x,u) - sum_a pi(a|x) phi(x,a)
+			for(int i=0; i<actions.length; i++) {
+				final double[] expected = dense.phi(new double[]{x[0], actions[i][0]});
+				for(int l=0; l<expected.length; l++) {
+					expected[l] -= meanPhi[l];
+				}
+				assertArrayEquals(expected, pol.dLogdTheta(x, i), 1e-12);
+			}
+			q.updateForStateAction(x, actions[j % actions.length], 0.1);
+			denseQ.updateForStateAction(x, actions[j % actions.length], 0.1);
+		}
+		assertArrayEquals(denseQ.getParams(), q.getParams(), 1e-12);
+		final double[][] probas = pol.getProbaTable(xs);
+		final double[][] denseProbas = densePol.getProbaTable(xs);
+		for(int j=0; j<xs.length; j++) {
+			assertArrayEquals(denseProbas[j], probas[j], 1e-12);
+		}
+	}
+
+	@Test
+	public void lspeRedundantFeatures() {
+		final GARNETMDP mdp = new GARNETMDP(10, 3, 2);
+		final DiscountFactor gamma = new DiscountFactor(0.9);
+		final double[][] pol = new double[mdp.n][mdp.m];
+		for(int x=0; x<mdp.n; x++) {
+			ArrUtils.constvec(pol[x], 1./mdp.m);
+		}
+		// Tabular features phi, followed by random combinations M * phi of
+		// them, so that the LSPE system is singular, but its pivots are only
+		// zero up to rounding
+		final TabularStateActionFeatures tab = new TabularStateActionFeatures(mdp);
+		final int k = tab.outDim;
+		final double[][] M = new double[k][k];
+		for(int i=0; i<k; i++) {
+			for(int j=0; j<k; j++) {
+				M[i][j] = RandUtils.nextDouble() - 0.5;
+			}
+		}
+		final Features redundant = new Features(tab.inDim, 2*k) {
+			private final double[] phi = new double[k];
+			@Override
+			protected void computePhi(double[] x, double[] y) {
+				tab.phi(x, phi);
+				for(int i=0; i<k; i++) {
+					y[i] = phi[i];
+					y[k+i] = ArrUtils.dotProduct(M[i], phi, k);
+				}
+			}
+			@Override
+			public boolean isNormalized() {
+				return false;
+			}
+		};
+		final LinearQFunction qFunction = new LinearQFunction(redundant, 1, 1);
+		new LSPE(mdp, pol, qFunction, gamma);
+		final double[][] Q = new PolicyEvaluation(mdp, pol, gamma).getQ();
+		final double[] q = new double[k];
+		for(int x=0; x<mdp.n; x++) {
+			for(int u=0; u<mdp.m; u++) {
+				assertEquals(Q[x][u], qFunction.get(new double[]{x},
+						new double[]{u}), 1e-6);
+				q[x+mdp.n*u] = Q[x][u];
+			}
+		}
+		// Minimum-norm solution of w1 + M' w2 = q :
+		// w1 = (I + M'M)^-1 q and w2 = M w1
+		final Matrix matM = new Matrix(M);
+		final Matrix w1 = Matrix.identity(k, k).plus(
+				matM.transpose().times(matM)).solve(new Matrix(q, k));
+		final double[] expected = new double[2*k];
+		System.arraycopy(w1.getColumnPackedCopy(), 0, expected, 0, k);
+		System.arraycopy(matM.times(w1).getColumnPackedCopy(), 0, expected, k, k);
+		assertArrayEquals(expected, qFunction.getParams(), 1e-6);
+	}
+
+	@Test
+	public void lstdSingularSystem() {
+		final DiscountFactor gamma = new DiscountFactor(0.8);
+		final LinearVFunction vFunction = new LinearVFunction(
+				new TabularStateFeatures(chainMDP(4)));
+		// Updating after a single transition, without regularization, gives
+		// the rank one system e0 (e0 - gamma e1)' v = e0
+		final LSTD lstd = new LSTD(vFunction, gamma, 1, 0.);
+		lstd.receiveSample(new double[]{0.}, new double[]{1.},
+				new double[]{1.}, 1., false);
+		// Minimum-norm solution
+		final double norm2 = 1. + gamma.value * gamma.value;
+		assertArrayEquals(new double[]{1. / norm2, -gamma.value / norm2, 0., 0.},
+				vFunction.getParams(), 1e-9);
+	}
+
 	private boolean MSELessThan(double targetMSE,
 			DiscreteEnvironment env,
 			int nbEpisodes, int maxT,